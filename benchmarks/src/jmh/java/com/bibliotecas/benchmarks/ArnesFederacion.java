@@ -0,0 +1,173 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.federacion.BibliotecaFederada;
+import com.bibliotecas.federacion.SucursalRemota;
+import com.bibliotecas.model.Libro;
+import com.bibliotecas.model.Publicacion;
+import com.bibliotecas.model.ResultadoPrestamo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Mide cómo escala una BibliotecaFederada con el número de sucursales, cada una en su propio proceso.
+ * Para cada número de sucursales arranca esos procesos con Main en modo servidor (cada uno con su registro
+ * en un directorio temporal), reparte por la federación un catálogo de libros y unos usuarios, y durante
+ * un tiempo fijo varios clientes hacen préstamos seguidos de su devolución sobre publicaciones y usuarios
+ * al azar, de modo que la mayoría de los préstamos son entre sucursales. Imprime las operaciones por segundo.
+ *
+ * No es un benchmark JMH: se ejecuta con gradle :benchmarks:arnesFederacion. Los argumentos, que se cambian
+ * con -PargsArnes="1,2,4 5000 1000 64 10", son los números de sucursales separados por comas, las publicaciones,
+ * los usuarios, los clientes y los segundos de cada medida.
+ * Los procesos compiten por la misma máquina, así que la escalabilidad que muestra está limitada por sus núcleos.
+ */
+public final class ArnesFederacion {
+
+    private static final int TIEMPO_ARRANQUE_MS = 60_000;
+
+    private ArnesFederacion() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] sucursales = (args.length > 0 ? args[0] : "1,2,4").split(",");
+        int publicaciones = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int usuarios = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int clientes = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int segundos = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        System.out.printf("%d publicaciones, %d usuarios, %d clientes, %d s por medida%n", publicaciones, usuarios, clientes, segundos);
+        for (String n : sucursales) {
+            medir(Integer.parseInt(n.trim()), publicaciones, usuarios, clientes, segundos);
+        }
+    }
+
+    private static void medir(int n, int publicaciones, int usuarios, int clientes, int segundos) throws Exception {
+        Path directorio = Files.createTempDirectory("federacion");
+        List<Process> procesos = new ArrayList<>();
+        List<SucursalRemota> remotas = new ArrayList<>();
+        try {
+            for (int i = 0; i < n; i++) {
+                int puerto = puertoLibre();
+                procesos.add(arrancar(directorio.resolve("sucursal" + i), i, puerto));
+                remotas.add(new SucursalRemota("sucursal" + i, URI.create("http://127.0.0.1:" + puerto)));
+            }
+            for (SucursalRemota remota : remotas) {
+                esperarArranque(remota);
+            }
+            try (BibliotecaFederada federacion = new BibliotecaFederada(remotas)) {
+                long[] ids = cargar(federacion, publicaciones, usuarios);
+                LongAdder operaciones = new LongAdder();
+                LongAdder entreSucursales = new LongAdder();
+                long fin = System.nanoTime() + segundos * 1_000_000_000L;
+                try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (int c = 0; c < clientes; c++) {
+                        SplittableRandom aleatorio = new SplittableRandom(CatalogoSintetico.SEMILLA + c);
+                        hilos.submit(() -> {
+                            while (System.nanoTime() < fin) {
+                                int idUsuario = 1 + aleatorio.nextInt(usuarios);
+                                long idPublicacion = ids[aleatorio.nextInt(ids.length)];
+                                if (federacion.registrarPrestamo(idUsuario, idPublicacion) == ResultadoPrestamo.PRESTADO) {
+                                    federacion.registrarDevolucion(idUsuario, idPublicacion);
+                                }
+                                if (federacion.sucursalDeUsuario(idUsuario) != federacion.sucursalDePublicacion(idPublicacion)) {
+                                    entreSucursales.increment();
+                                }
+                                operaciones.increment();
+                            }
+                            return null;
+                        });
+                    }
+                }
+                System.out.printf("%2d sucursales: %8.0f préstamos/s (%.0f%% entre sucursales)%n", n,
+                        operaciones.sum() / (double) segundos, 100.0 * entreSucursales.sum() / Math.max(1, operaciones.sum()));
+            }
+        } finally {
+            remotas.forEach(SucursalRemota::close);
+            for (Process proceso : procesos) {
+                proceso.destroy();
+            }
+            for (Process proceso : procesos) {
+                proceso.waitFor();
+            }
+            borrar(directorio);
+        }
+    }
+
+    private static Process arrancar(Path directorio, int nodo, int puerto) throws IOException {
+        Files.createDirectories(directorio);
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        return new ProcessBuilder(java.toString(), "-Xmx512m",
+                "-cp", System.getProperty("java.class.path"),
+                "-Dbiblioteca.puerto=" + puerto,
+                "-Dbiblioteca.nodo=" + nodo,
+                "-Dbiblioteca.catalogo=" + directorio.resolve("catalogo.bin"),
+                "-Dbiblioteca.registro=" + directorio.resolve("registro"),
+                "-Dbiblioteca.secuencia=" + directorio.resolve("secuencia.bin"),
+                "com.bibliotecas.app.Main", "servidor")
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static int puertoLibre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void esperarArranque(SucursalRemota remota) throws InterruptedException {
+        long limite = System.currentTimeMillis() + TIEMPO_ARRANQUE_MS;
+        while (true) {
+            try {
+                remota.nombreUsuario(0);
+                return;
+            } catch (UncheckedIOException e) {
+                if (System.currentTimeMillis() > limite) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /// Reparte libros y usuarios por la federación con varios hilos; devuelve los IDs de los libros
+    private static long[] cargar(BibliotecaFederada federacion, int publicaciones, int usuarios) {
+        long[] ids = new long[publicaciones];
+        try (ExecutorService hilos = Executors.newFixedThreadPool(32, Thread.ofVirtual().factory())) {
+            for (int i = 0; i < publicaciones; i++) {
+                int indice = i;
+                hilos.submit(() -> {
+                    Publicacion libro = new Libro(CatalogoSintetico.titulo(indice), "Miguel de Cervantes",
+                            CatalogoSintetico.isbn(indice), 2000, 100);
+                    federacion.agregarPublicacion(libro);
+                    ids[indice] = libro.getId();
+                    return null;
+                });
+            }
+            for (int id = 1; id <= usuarios; id++) {
+                int idUsuario = id;
+                hilos.submit(() -> federacion.registrarUsuario(idUsuario, "Usuario " + idUsuario));
+            }
+        }
+        return ids;
+    }
+
+    private static void borrar(Path directorio) throws IOException {
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(ruta);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.model.Biblioteca;
+import com.bibliotecas.model.Publicacion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide buscarPublicacionPorTitulo sobre títulos que existen y que no existen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BusquedaBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int publicaciones;
+
+    private Biblioteca biblioteca;
+    private String[] titulos;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final SplittableRandom aleatorio = new SplittableRandom(CatalogoSintetico.SEMILLA);
+    }
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        CatalogoSintetico.silenciarConsola();
+        biblioteca = CatalogoSintetico.crear(publicaciones, 0, null);
+        titulos = new String[1024];
+        SplittableRandom aleatorio = new SplittableRandom(CatalogoSintetico.SEMILLA);
+        for (int i = 0; i < titulos.length; i++) {
+            titulos[i] = CatalogoSintetico.titulo(aleatorio.nextInt(publicaciones)).toUpperCase();
+        }
+    }
+
+    @Benchmark
+    public Publicacion buscarExistente(Cursor cursor) {
+        return biblioteca.buscarPublicacionPorTitulo(titulos[cursor.aleatorio.nextInt(titulos.length)]);
+    }
+
+    @Benchmark
+    public Publicacion buscarInexistente() {
+        return biblioteca.buscarPublicacionPorTitulo("Título que no está en el catálogo");
+    }
+}
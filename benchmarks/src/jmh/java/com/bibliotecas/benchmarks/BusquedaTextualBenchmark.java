@@ -0,0 +1,60 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.busqueda.IndiceTextual;
+import com.bibliotecas.busqueda.ResultadoBusqueda;
+import com.bibliotecas.model.Biblioteca;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide las búsquedas de los diez mejores resultados en el índice textual:
+ * un autor frecuente, dos palabras de un autor y las palabras de un título concreto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BusquedaTextualBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int publicaciones;
+
+    private IndiceTextual indice;
+    private String[] titulos;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final SplittableRandom aleatorio = new SplittableRandom(CatalogoSintetico.SEMILLA);
+    }
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        CatalogoSintetico.silenciarConsola();
+        Biblioteca biblioteca = CatalogoSintetico.crear(publicaciones, 0, null);
+        indice = new IndiceTextual();
+        biblioteca.agregarOyenteConPublicaciones(indice);
+        titulos = new String[1024];
+        SplittableRandom aleatorio = new SplittableRandom(CatalogoSintetico.SEMILLA);
+        for (int i = 0; i < titulos.length; i++) {
+            // Sin la palabra "Título", que está en todas las publicaciones
+            titulos[i] = CatalogoSintetico.titulo(aleatorio.nextInt(publicaciones)).substring(7);
+        }
+    }
+
+    @Benchmark
+    public List<ResultadoBusqueda> buscarAutor() {
+        return indice.buscar("tolkien", 10);
+    }
+
+    @Benchmark
+    public List<ResultadoBusqueda> buscarVariasPalabras() {
+        return indice.buscar("garcia marquez", 10);
+    }
+
+    @Benchmark
+    public List<ResultadoBusqueda> buscarTitulo(Cursor cursor) {
+        return indice.buscar(titulos[cursor.aleatorio.nextInt(titulos.length)], 10);
+    }
+}
@@ -0,0 +1,90 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.model.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * Genera bibliotecas sintéticas para los benchmarks.
+ * El contenido depende solo del tamaño y de la semilla, de modo que dos ejecuciones miden lo mismo.
+ */
+final class CatalogoSintetico {
+
+    static final long SEMILLA = 20241018L;
+
+    private static final String[] AUTORES = {
+            "Miguel de Cervantes", "J.R.R. Tolkien", "Gabriel García Márquez", "Antoine de Saint-Exupéry",
+            "Liu Cixin", "Ángel González", "Zoe Valdés", "Isabel Allende", "Jorge Luis Borges", "Ana María Matute"
+    };
+
+    private CatalogoSintetico() {
+    }
+
+    /**
+     * Silencia la salida estándar para que la escritura en consola no enmascare el coste medido.
+     */
+    static void silenciarConsola() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Crea una biblioteca con el número de publicaciones y usuarios indicado.
+     * Seis de cada diez publicaciones son libros, tres revistas y una audiolibro.
+     */
+    static Biblioteca crear(int publicaciones, int usuarios, Publicacion[] destino) {
+        Biblioteca biblioteca = new Biblioteca();
+        SplittableRandom aleatorio = new SplittableRandom(SEMILLA);
+        for (int i = 0; i < publicaciones; i++) {
+            Publicacion publicacion = crearPublicacion(i, aleatorio);
+            biblioteca.agregarPublicacion(publicacion);
+            if (destino != null) {
+                destino[i] = publicacion;
+            }
+        }
+        for (int id = 1; id <= usuarios; id++) {
+            biblioteca.registrarUsuario(id, "Usuario " + id);
+        }
+        return biblioteca;
+    }
+
+    static String titulo(int i) {
+        return "Título " + Integer.toString(i * 7919 % 1_000_003, 36) + " " + i;
+    }
+
+    /// ISBN-13 distinto para cada publicación, con su dígito de control
+    static String isbn(int i) {
+        String digitos = "978" + (100_000_000 + i % 900_000_000);
+        int suma = 0;
+        for (int d = 0; d < 12; d++) {
+            suma += (d % 2 == 0 ? 1 : 3) * (digitos.charAt(d) - '0');
+        }
+        return digitos + (10 - suma % 10) % 10;
+    }
+
+    /// ISSN distinto para cada publicación (hasta diez millones), con su dígito de control
+    static String issn(int i) {
+        String digitos = String.format("%07d", i % 10_000_000);
+        int suma = 0;
+        for (int d = 0; d < 7; d++) {
+            suma += (8 - d) * (digitos.charAt(d) - '0');
+        }
+        int control = (11 - suma % 11) % 11;
+        return digitos.substring(0, 4) + "-" + digitos.substring(4) + (control == 10 ? "X" : String.valueOf(control));
+    }
+
+    private static Publicacion crearPublicacion(int i, SplittableRandom aleatorio) {
+        String autor = AUTORES[aleatorio.nextInt(AUTORES.length)];
+        int anio = 1900 + aleatorio.nextInt(120);
+        int tipo = i % 10;
+        if (tipo < 6) {
+            return new Libro(titulo(i), autor, isbn(i), anio, 50 + aleatorio.nextInt(900));
+        } else if (tipo < 9) {
+            return new Revista(titulo(i), autor, anio, issn(i), 1 + aleatorio.nextInt(200),
+                    Revista.Mes.values()[aleatorio.nextInt(12)], Revista.CategoriaRevista.values()[aleatorio.nextInt(8)]);
+        }
+        return new Audiolibro(titulo(i), autor, anio, "Narrador " + aleatorio.nextInt(100),
+                1 + aleatorio.nextInt(40), "Español", Audiolibro.FormatoAudio.MP3);
+    }
+}
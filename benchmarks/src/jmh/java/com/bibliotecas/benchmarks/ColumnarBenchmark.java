@@ -0,0 +1,83 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.analitica.CatalogoColumnar;
+import com.bibliotecas.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara consultas de informes sobre el catálogo por columnas con el mismo cálculo
+ * recorriendo los objetos con instanceof, que es como se hacían hasta ahora.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColumnarBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int publicaciones;
+
+    private CatalogoColumnar columnas;
+    private List<Publicacion> objetos;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        CatalogoSintetico.silenciarConsola();
+        Biblioteca biblioteca = CatalogoSintetico.crear(publicaciones, 0, null);
+        columnas = new CatalogoColumnar();
+        biblioteca.agregarOyenteConPublicaciones(columnas);
+        objetos = biblioteca.obtenerPublicaciones();
+    }
+
+    @Benchmark
+    public double mediaPaginasColumnas() {
+        return columnas.mediaPaginas(1950, 1999);
+    }
+
+    @Benchmark
+    public double mediaPaginasObjetos() {
+        long suma = 0;
+        int cuenta = 0;
+        for (Publicacion publicacion : objetos) {
+            if (publicacion instanceof Libro libro && libro.getAnioPublicacion() >= 1950 && libro.getAnioPublicacion() <= 1999) {
+                suma += libro.getNumPaginas();
+                cuenta++;
+            }
+        }
+        return cuenta == 0 ? 0 : (double) suma / cuenta;
+    }
+
+    @Benchmark
+    public int contarRevistasColumnas() {
+        return columnas.contar(Revista.class);
+    }
+
+    @Benchmark
+    public int contarRevistasObjetos() {
+        int cuenta = 0;
+        for (Publicacion publicacion : objetos) {
+            if (publicacion instanceof Revista) {
+                cuenta++;
+            }
+        }
+        return cuenta;
+    }
+
+    @Benchmark
+    public double duracionColumnas() {
+        return columnas.duracionTotal("Español");
+    }
+
+    @Benchmark
+    public double duracionObjetos() {
+        double suma = 0;
+        for (Publicacion publicacion : objetos) {
+            if (publicacion instanceof Audiolibro audiolibro && audiolibro.getIdioma().equals("Español")) {
+                suma += audiolibro.getDuracion();
+            }
+        }
+        return suma;
+    }
+}
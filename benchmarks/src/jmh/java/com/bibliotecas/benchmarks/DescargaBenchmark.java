@@ -0,0 +1,140 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.descargas.AlmacenBlobs;
+import com.bibliotecas.descargas.AlmacenContenidos;
+import com.bibliotecas.descargas.LimitadorAnchoBanda;
+import com.bibliotecas.descargas.MotorDescargas;
+import com.bibliotecas.model.Audiolibro;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Mide la descarga entera de un audiolibro de un almacén local de contenidos, sin límite de ancho de banda.
+ * transferirASocket envía con el motor a un socket local, del que otro hilo lee y descarta, y
+ * copiarASocket hace lo mismo copiando por un stream, que pasa cada byte por la JVM; transferirAFichero
+ * descarga a un fichero. transferirBlobASocket envía el mismo contenido desde un AlmacenBlobs, asociado
+ * a una reedición; como el contenido repite un bloque de 1 MB, en el paquete ocupa poco más de ese bloque
+ * y la descarga lee una y otra vez las mismas páginas. Cada operación es una descarga de megas MB;
+ * con varios hilos (-t) cada uno usa su propio socket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DescargaBenchmark {
+
+    @Param({"64"})
+    int megas;
+
+    private Path directorio;
+    private Audiolibro audiolibro;
+    private Audiolibro reedicion;
+    private AlmacenBlobs blobs;
+    private MotorDescargas motor;
+
+    @State(Scope.Thread)
+    public static class Conexion {
+        ServerSocketChannel servidor;
+        SocketChannel cliente;
+        Thread lector;
+        Path destino;
+
+        @Setup(Level.Trial)
+        public void abrir(DescargaBenchmark benchmark) throws IOException {
+            servidor = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+            cliente = SocketChannel.open(servidor.getLocalAddress());
+            SocketChannel aceptada = servidor.accept();
+            lector = Thread.ofPlatform().daemon().start(() -> {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+                try (aceptada) {
+                    while (aceptada.read(buffer.clear()) >= 0) {
+                        // Se descarta lo recibido
+                    }
+                } catch (IOException e) {
+                    // Se ha cerrado el cliente al terminar
+                }
+            });
+            destino = Files.createTempFile(benchmark.directorio, "descarga", ".mp3");
+        }
+
+        @TearDown(Level.Trial)
+        public void cerrar() throws IOException, InterruptedException {
+            cliente.close();
+            lector.join();
+            servidor.close();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        CatalogoSintetico.silenciarConsola();
+        directorio = Files.createTempDirectory("contenidos");
+        audiolibro = new Audiolibro("Don Quijote de la Mancha", "Miguel de Cervantes", 2015, "José Luis Gil", 36.5,
+                "Español", Audiolibro.FormatoAudio.MP3);
+        Path origen = directorio.resolve("origen.mp3");
+        byte[] bloque = new byte[1 << 20];
+        new SplittableRandom(CatalogoSintetico.SEMILLA).nextBytes(bloque);
+        try (OutputStream salida = Files.newOutputStream(origen)) {
+            for (int i = 0; i < megas; i++) {
+                salida.write(bloque);
+            }
+        }
+        AlmacenContenidos almacen = AlmacenContenidos.abrir(directorio.resolve("almacen"));
+        almacen.guardar(audiolibro, origen);
+        reedicion = new Audiolibro("El Quijote", "Miguel de Cervantes", 2015, "José Luis Gil", 36.5,
+                "Español", Audiolibro.FormatoAudio.MP3);
+        blobs = AlmacenBlobs.abrir(directorio.resolve("blobs"));
+        blobs.importar(reedicion, origen);
+        motor = new MotorDescargas(almacen, blobs, LimitadorAnchoBanda.sinLimite());
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() throws IOException {
+        motor.close();
+        blobs.close();
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(ruta);
+            }
+        }
+    }
+
+    @Benchmark
+    public long transferirASocket(Conexion conexion) throws IOException {
+        return motor.transferir(1, audiolibro, null, conexion.cliente);
+    }
+
+    @Benchmark
+    public long transferirBlobASocket(Conexion conexion) throws IOException {
+        return motor.transferir(1, reedicion, null, conexion.cliente);
+    }
+
+    @Benchmark
+    public long copiarASocket(Conexion conexion) throws IOException {
+        try (InputStream entrada = Files.newInputStream(motor.almacen().ruta(audiolibro))) {
+            return entrada.transferTo(Channels.newOutputStream(conexion.cliente));
+        }
+    }
+
+    @Benchmark
+    public long transferirAFichero(Conexion conexion) throws IOException {
+        try (FileChannel salida = FileChannel.open(conexion.destino, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return motor.transferir(1, audiolibro, null, salida);
+        }
+    }
+}
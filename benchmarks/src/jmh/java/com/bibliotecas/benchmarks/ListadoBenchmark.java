@@ -0,0 +1,49 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.model.Biblioteca;
+import com.bibliotecas.model.Libro;
+import com.bibliotecas.model.OrdenPublicaciones;
+import com.bibliotecas.model.Publicacion;
+import com.bibliotecas.model.RenderizadorPublicaciones;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide listarPublicaciones con la salida estándar descartada,
+ * de modo que se cuentan el recorrido y el formateo pero no la consola,
+ * y una página de 50 libros a mitad del catálogo pedida por clave.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListadoBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    int publicaciones;
+
+    private Biblioteca biblioteca;
+    private Publicacion mitad;
+    private RenderizadorPublicaciones renderizador;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        CatalogoSintetico.silenciarConsola();
+        biblioteca = CatalogoSintetico.crear(publicaciones, 0, null);
+        mitad = biblioteca.publicaciones(OrdenPublicaciones.TITULO, Libro.class)
+                .skip(publicaciones / 4).findFirst().orElse(null);
+        renderizador = new RenderizadorPublicaciones(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void listarPublicaciones() {
+        biblioteca.listarPublicaciones();
+    }
+
+    @Benchmark
+    public void paginaIntermedia() throws IOException {
+        renderizador.escribirPagina(biblioteca.pagina(OrdenPublicaciones.TITULO, Libro.class, mitad, 50));
+    }
+}
@@ -0,0 +1,48 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.model.Biblioteca;
+import com.bibliotecas.model.Publicacion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el recorrido por páginas de las vistas ordenadas por autor y por título,
+ * que es lo que hacen las opciones 5 y 6 del menú desde que las vistas se mantienen al insertar.
+ * Cada invocación pide la página siguiente y vuelve al principio al llegar al final.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrdenacionBenchmark {
+
+    private static final int TAMANIO_PAGINA = 50;
+
+    @Param({"10000", "1000000", "10000000"})
+    int publicaciones;
+
+    private Biblioteca biblioteca;
+    private Publicacion ultimaPorAutor;
+    private Publicacion ultimaPorTitulo;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        CatalogoSintetico.silenciarConsola();
+        biblioteca = CatalogoSintetico.crear(publicaciones, 0, null);
+    }
+
+    @Benchmark
+    public List<Publicacion> paginaPorAutor() {
+        List<Publicacion> pagina = biblioteca.paginaPorAutor(ultimaPorAutor, TAMANIO_PAGINA);
+        ultimaPorAutor = pagina.size() < TAMANIO_PAGINA ? null : pagina.get(pagina.size() - 1);
+        return pagina;
+    }
+
+    @Benchmark
+    public List<Publicacion> paginaPorTitulo() {
+        List<Publicacion> pagina = biblioteca.paginaPorTitulo(ultimaPorTitulo, TAMANIO_PAGINA);
+        ultimaPorTitulo = pagina.size() < TAMANIO_PAGINA ? null : pagina.get(pagina.size() - 1);
+        return pagina;
+    }
+}
@@ -0,0 +1,76 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.model.Biblioteca;
+import com.bibliotecas.model.Publicacion;
+import com.bibliotecas.model.PublicacionPrestable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide un ciclo completo de registrarPrestamo seguido de registrarDevolucion.
+ * Cada hilo trabaja con sus propios usuarios para medir el camino sin colas de espera;
+ * con varios hilos (-t) se mide además la escalabilidad de los bloqueos por usuario.
+ * prestarYDevolverLote hace lo mismo con lotes de hasta LOTE publicaciones por operación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrestamoBenchmark {
+
+    private static final int LOTE = 5; // Límite de préstamos de un usuario
+
+    @Param({"10000", "1000000", "10000000"})
+    int publicaciones;
+
+    @Param({"100", "10000", "1000000"})
+    int usuarios;
+
+    private Biblioteca biblioteca;
+    private Publicacion[] catalogo;
+
+    @State(Scope.Thread)
+    public static class Hilo {
+        SplittableRandom aleatorio;
+        final List<PublicacionPrestable> lote = new ArrayList<>(LOTE);
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            aleatorio = new SplittableRandom(CatalogoSintetico.SEMILLA + Thread.currentThread().threadId());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        CatalogoSintetico.silenciarConsola();
+        catalogo = new Publicacion[publicaciones];
+        biblioteca = CatalogoSintetico.crear(publicaciones, usuarios, catalogo);
+    }
+
+    @Benchmark
+    public void prestarYDevolver(Hilo hilo) {
+        int idUsuario = 1 + hilo.aleatorio.nextInt(usuarios);
+        Publicacion publicacion = catalogo[hilo.aleatorio.nextInt(publicaciones)];
+        if (publicacion instanceof PublicacionPrestable prestable && !prestable.isPrestado()) {
+            biblioteca.registrarPrestamo(idUsuario, prestable);
+            biblioteca.registrarDevolucion(idUsuario, prestable);
+        }
+    }
+
+    @Benchmark
+    public void prestarYDevolverLote(Hilo hilo) {
+        int idUsuario = 1 + hilo.aleatorio.nextInt(usuarios);
+        hilo.lote.clear();
+        for (int i = 0; i < LOTE; i++) {
+            if (catalogo[hilo.aleatorio.nextInt(publicaciones)] instanceof PublicacionPrestable prestable
+                    && !prestable.isPrestado() && !hilo.lote.contains(prestable)) {
+                hilo.lote.add(prestable);
+            }
+        }
+        biblioteca.registrarPrestamos(idUsuario, hilo.lote);
+        biblioteca.registrarDevoluciones(idUsuario, hilo.lote);
+    }
+}
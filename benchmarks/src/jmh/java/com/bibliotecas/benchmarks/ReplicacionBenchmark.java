@@ -0,0 +1,100 @@
+package com.bibliotecas.benchmarks;
+
+import com.bibliotecas.model.Biblioteca;
+import com.bibliotecas.model.Publicacion;
+import com.bibliotecas.model.PublicacionPrestable;
+import com.bibliotecas.replicacion.BibliotecaReplicada;
+import com.bibliotecas.replicacion.PrimarioReplicacion;
+import com.bibliotecas.replicacion.ReplicaBiblioteca;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide las lecturas de una BibliotecaReplicada mientras otros hilos prestan y devuelven en la primaria.
+ * Con replicas = 0 todas las lecturas van a la primaria; con réplicas en proceso, las lecturas de préstamos
+ * de un usuario van a la réplica que ya tenga sus escrituras, y las búsquedas a cualquiera al día.
+ * Los hilos de cada papel se cambian con -tg, por ejemplo -tg 1,4,4 (escritores, lectores de préstamos y buscadores).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReplicacionBenchmark {
+
+    @Param({"100000"})
+    int publicaciones;
+
+    @Param({"10000"})
+    int usuarios;
+
+    @Param({"0", "2"})
+    int replicas;
+
+    private Biblioteca primaria;
+    private Publicacion[] catalogo;
+    private PrimarioReplicacion primario;
+    private List<ReplicaBiblioteca> lectoras;
+    private BibliotecaReplicada replicada;
+
+    @State(Scope.Thread)
+    public static class Hilo {
+        SplittableRandom aleatorio;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            aleatorio = new SplittableRandom(CatalogoSintetico.SEMILLA + Thread.currentThread().threadId());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        CatalogoSintetico.silenciarConsola();
+        catalogo = new Publicacion[publicaciones];
+        primaria = CatalogoSintetico.crear(publicaciones, usuarios, catalogo);
+        primario = PrimarioReplicacion.iniciar(primaria);
+        lectoras = new ArrayList<>();
+        for (int i = 0; i < replicas; i++) {
+            ReplicaBiblioteca replica = ReplicaBiblioteca.enProceso(primario, Biblioteca::new);
+            replica.esperar(primario.lsn(), Duration.ofMinutes(1));
+            lectoras.add(replica);
+        }
+        replicada = new BibliotecaReplicada(primaria, primario, lectoras, Duration.ofSeconds(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void terminar() throws IOException {
+        for (ReplicaBiblioteca replica : lectoras) {
+            replica.close();
+        }
+        primario.close();
+    }
+
+    @Benchmark
+    @Group("mixto")
+    public void escribir(Hilo hilo) {
+        int idUsuario = 1 + hilo.aleatorio.nextInt(usuarios);
+        Publicacion publicacion = catalogo[hilo.aleatorio.nextInt(publicaciones)];
+        if (publicacion instanceof PublicacionPrestable prestable && !prestable.isPrestado()) {
+            replicada.registrarPrestamo(idUsuario, publicacion.getId());
+            replicada.registrarDevolucion(idUsuario, publicacion.getId());
+        }
+    }
+
+    @Benchmark
+    @Group("mixto")
+    public Object leerPrestamos(Hilo hilo) {
+        int idUsuario = 1 + hilo.aleatorio.nextInt(usuarios);
+        return replicada.paraLeer(idUsuario).obtenerPrestamosActivos(idUsuario);
+    }
+
+    @Benchmark
+    @Group("mixto")
+    public Object buscar(Hilo hilo) {
+        return replicada.paraLeer().buscarPublicacionPorId(catalogo[hilo.aleatorio.nextInt(publicaciones)].getId());
+    }
+}
@@ -0,0 +1,416 @@
+package com.bibliotecas.analitica;
+
+import com.bibliotecas.model.*;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copia del catálogo organizada por columnas para consultas de informes.
+ * Cada atributo que se consulta se guarda en un array primitivo propio (tipo, año, páginas, duración)
+ * o, si es texto, como códigos de un diccionario (autor, idioma); la categoría de las revistas se guarda
+ * por su ordinal. Los filtros y agregados recorren solo las columnas que necesitan, sin cargar objetos
+ * ni comprobar clases, y sus bucles no tienen saltos que dependan de los datos: cada condición se convierte
+ * en un 0 o un 1 que se suma o multiplica, de modo que el compilador JIT puede vectorizarlos.
+ * <p>
+ * Es un oyente de la biblioteca y recoge cada alta al momento; hay que añadirlo con
+ * agregarOyenteConPublicaciones para que recoja también las publicaciones ya existentes y las del catálogo
+ * adjunto, o los informes solo cubrirán las altas posteriores. Guarda los valores que tenía cada
+ * publicación al darse de alta; las modificaciones posteriores con los setters no se reflejan.
+ * Las filas del catálogo adjunto se rellenan con sus campos, sin cargar las publicaciones: solo se guarda
+ * en qué tramo del catálogo está cada fila, y publicadasEntre carga las que devuelve.
+ * Las consultas comparten un bloqueo de lectura; las altas toman el de escritura, y el catálogo adjunto
+ * se añade por tandas, para que las consultas no esperen a que se copie entero.
+ */
+public class CatalogoColumnar implements OyenteBiblioteca {
+
+    private static final byte TIPO_LIBRO = 1;
+    private static final byte TIPO_REVISTA = 2;
+    private static final byte TIPO_AUDIOLIBRO = 3;
+    private static final byte SIN_CATEGORIA = -1;
+    private static final Revista.CategoriaRevista[] CATEGORIAS = Revista.CategoriaRevista.values();
+    // Publicaciones del catálogo adjunto que se copian con cada adquisición del bloqueo de escritura
+    private static final int TAMANIO_TANDA = 4096;
+
+    private Publicacion[] publicaciones; // null en las filas del catálogo adjunto, que se buscan en tramos
+    private final List<TramoCatalogo> tramos;
+    private byte[] tipos;
+    private int[] anios;
+    private int[] paginas; // Número de páginas de los libros, 0 en el resto
+    private double[] duraciones; // Duración de los audiolibros, 0 en el resto
+    private int[] autores; // Códigos del diccionario de autores
+    private int[] idiomas; // Códigos del diccionario de idiomas, SIN_VALOR salvo en audiolibros
+    private byte[] categorias; // Ordinal de la categoría de las revistas, SIN_CATEGORIA en el resto
+    private int tamanio;
+    private final Diccionario diccionarioAutores;
+    private final Diccionario diccionarioIdiomas;
+    private final ReentrantReadWriteLock bloqueo;
+
+    public CatalogoColumnar() {
+        this.publicaciones = new Publicacion[1024];
+        this.tipos = new byte[1024];
+        this.anios = new int[1024];
+        this.paginas = new int[1024];
+        this.duraciones = new double[1024];
+        this.autores = new int[1024];
+        this.idiomas = new int[1024];
+        this.categorias = new byte[1024];
+        this.diccionarioAutores = new Diccionario();
+        this.diccionarioIdiomas = new Diccionario();
+        this.tramos = new ArrayList<>();
+        this.bloqueo = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Filas consecutivas que son publicaciones consecutivas de un catálogo adjunto.
+     * @param primeraFila Primera fila del tramo.
+     * @param catalogo Catálogo del que salen.
+     * @param primeraPosicion Posición en el catálogo de la primera fila.
+     */
+    private record TramoCatalogo(int primeraFila, OrigenCatalogo catalogo, int primeraPosicion) {
+    }
+
+    @Override
+    public void publicacionAgregada(Publicacion publicacion) {
+        agregar(publicacion);
+    }
+
+    @Override
+    public void catalogoAdjuntado(OrigenCatalogo catalogo) {
+        agregarCatalogo(catalogo);
+    }
+
+    /**
+     * Añade una publicación al final de las columnas.
+     * @param publicacion Libro, revista o audiolibro a añadir.
+     */
+    public void agregar(Publicacion publicacion) {
+        byte tipo;
+        if (publicacion instanceof Libro) {
+            tipo = TIPO_LIBRO;
+        } else if (publicacion instanceof Revista) {
+            tipo = TIPO_REVISTA;
+        } else if (publicacion instanceof Audiolibro) {
+            tipo = TIPO_AUDIOLIBRO;
+        } else {
+            throw new IllegalArgumentException("Tipo de publicación no soportado: " + publicacion.getClass().getSimpleName());
+        }
+        bloqueo.writeLock().lock();
+        try {
+            int i = nuevaFila(publicacion, tipo, publicacion.getAnioPublicacion(), publicacion.getAutor());
+            if (publicacion instanceof Libro libro) {
+                paginas[i] = libro.getNumPaginas();
+            } else if (publicacion instanceof Revista revista) {
+                categorias[i] = (byte) revista.getCategoria().ordinal();
+            } else if (publicacion instanceof Audiolibro audiolibro) {
+                duraciones[i] = audiolibro.getDuracion();
+                idiomas[i] = diccionarioIdiomas.codificar(audiolibro.getIdioma());
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Añade todas las publicaciones de un catálogo adjunto leyendo solo sus campos.
+     * Cada tanda se lee sin bloqueo y se copia con una sola adquisición del bloqueo de escritura,
+     * como un tramo de filas consecutivas.
+     * @param catalogo Catálogo a añadir.
+     */
+    public void agregarCatalogo(OrigenCatalogo catalogo) {
+        CamposPublicacion[] tanda = new CamposPublicacion[TAMANIO_TANDA];
+        for (int inicio = 0; inicio < catalogo.tamanio(); inicio += TAMANIO_TANDA) {
+            int n = Math.min(catalogo.tamanio() - inicio, TAMANIO_TANDA);
+            for (int j = 0; j < n; j++) {
+                tanda[j] = catalogo.campos(inicio + j);
+            }
+            bloqueo.writeLock().lock();
+            try {
+                tramos.add(new TramoCatalogo(tamanio, catalogo, inicio));
+                for (int j = 0; j < n; j++) {
+                    CamposPublicacion campos = tanda[j];
+                    int i = nuevaFila(null, codigoTipo(campos.tipo()), campos.anio(), campos.autor());
+                    paginas[i] = campos.paginas();
+                    if (campos.categoria() != null) {
+                        categorias[i] = (byte) campos.categoria().ordinal();
+                    }
+                    duraciones[i] = campos.duracion();
+                    if (campos.idioma() != null) {
+                        idiomas[i] = diccionarioIdiomas.codificar(campos.idioma());
+                    }
+                }
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+        }
+    }
+
+    /// Añade una fila con los campos comunes y devuelve su índice; se llama con el bloqueo de escritura
+    private int nuevaFila(Publicacion publicacion, byte tipo, int anio, String autor) {
+        if (tamanio == tipos.length) {
+            crecer();
+        }
+        int i = tamanio++;
+        publicaciones[i] = publicacion;
+        tipos[i] = tipo;
+        anios[i] = anio;
+        autores[i] = diccionarioAutores.codificar(autor);
+        idiomas[i] = Diccionario.SIN_VALOR;
+        categorias[i] = SIN_CATEGORIA;
+        return i;
+    }
+
+    /// Publicación de una fila; las del catálogo adjunto se cargan a partir de su tramo
+    private Publicacion publicacion(int fila) {
+        Publicacion publicacion = publicaciones[fila];
+        if (publicacion != null) {
+            return publicacion;
+        }
+        int bajo = 0;
+        int alto = tramos.size() - 1;
+        while (bajo < alto) {
+            int medio = (bajo + alto + 1) >>> 1;
+            if (tramos.get(medio).primeraFila() <= fila) {
+                bajo = medio;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        TramoCatalogo tramo = tramos.get(bajo);
+        return tramo.catalogo().cargar(tramo.primeraPosicion() + fila - tramo.primeraFila());
+    }
+
+    private void crecer() {
+        int capacidad = tamanio * 2;
+        publicaciones = Arrays.copyOf(publicaciones, capacidad);
+        tipos = Arrays.copyOf(tipos, capacidad);
+        anios = Arrays.copyOf(anios, capacidad);
+        paginas = Arrays.copyOf(paginas, capacidad);
+        duraciones = Arrays.copyOf(duraciones, capacidad);
+        autores = Arrays.copyOf(autores, capacidad);
+        idiomas = Arrays.copyOf(idiomas, capacidad);
+        categorias = Arrays.copyOf(categorias, capacidad);
+    }
+
+    private static byte codigoTipo(Class<? extends Publicacion> tipo) {
+        if (tipo == Libro.class) {
+            return TIPO_LIBRO;
+        } else if (tipo == Revista.class) {
+            return TIPO_REVISTA;
+        } else if (tipo == Audiolibro.class) {
+            return TIPO_AUDIOLIBRO;
+        }
+        throw new IllegalArgumentException("Tipo de publicación no soportado: " + tipo.getSimpleName());
+    }
+
+    /// 1 si el valor es igual al esperado, 0 si no; ambos deben estar entre 0 y 127
+    private static int igual(int valor, int esperado) {
+        return ((valor ^ esperado) - 1) >>> 31;
+    }
+
+    /**
+     * 1 si el valor está entre desde y desde + ancho, ambos incluidos, 0 si no.
+     * Es una sola comparación sin signo de valor - desde con ancho, correcta para cualquier int.
+     */
+    private static int entre(int valor, int desde, int ancho) {
+        return (valor - desde) + Integer.MIN_VALUE <= ancho + Integer.MIN_VALUE ? 1 : 0;
+    }
+
+    /// Número de publicaciones en las columnas
+    public int tamanio() {
+        bloqueo.readLock().lock();
+        try {
+            return tamanio;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta las publicaciones de un tipo.
+     * @param tipo Libro.class, Revista.class o Audiolibro.class.
+     * @return Número de publicaciones de ese tipo.
+     */
+    public int contar(Class<? extends Publicacion> tipo) {
+        int codigo = codigoTipo(tipo);
+        bloqueo.readLock().lock();
+        try {
+            byte[] tipos = this.tipos;
+            int n = tamanio;
+            int cuenta = 0;
+            for (int i = 0; i < n; i++) {
+                cuenta += igual(tipos[i], codigo);
+            }
+            return cuenta;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta las publicaciones de cualquier tipo publicadas entre dos años, ambos incluidos.
+     */
+    public int contarPublicadasEntre(int desde, int hasta) {
+        if (desde > hasta) {
+            return 0;
+        }
+        int ancho = hasta - desde;
+        bloqueo.readLock().lock();
+        try {
+            int[] anios = this.anios;
+            int n = tamanio;
+            int cuenta = 0;
+            for (int i = 0; i < n; i++) {
+                cuenta += entre(anios[i], desde, ancho);
+            }
+            return cuenta;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula el número medio de páginas de los libros publicados entre dos años, ambos incluidos.
+     * @return La media, o 0 si no hay libros en ese intervalo.
+     */
+    public double mediaPaginas(int desde, int hasta) {
+        if (desde > hasta) {
+            return 0;
+        }
+        int ancho = hasta - desde;
+        bloqueo.readLock().lock();
+        try {
+            byte[] tipos = this.tipos;
+            int[] anios = this.anios;
+            int[] paginas = this.paginas;
+            int n = tamanio;
+            long suma = 0;
+            int cuenta = 0;
+            for (int i = 0; i < n; i++) {
+                int seleccionado = igual(tipos[i], TIPO_LIBRO) & entre(anios[i], desde, ancho);
+                suma += seleccionado * paginas[i];
+                cuenta += seleccionado;
+            }
+            return cuenta == 0 ? 0 : (double) suma / cuenta;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Suma la duración de los audiolibros narrados en un idioma.
+     * @param idioma Idioma de los audiolibros, o null para sumar todos.
+     * @return Duración total en horas.
+     */
+    public double duracionTotal(String idioma) {
+        bloqueo.readLock().lock();
+        try {
+            double[] duraciones = this.duraciones;
+            int n = tamanio;
+            double suma = 0;
+            if (idioma == null) {
+                // Las publicaciones que no son audiolibros tienen duración 0
+                for (int i = 0; i < n; i++) {
+                    suma += duraciones[i];
+                }
+                return suma;
+            }
+            int codigo = diccionarioIdiomas.buscar(idioma);
+            if (codigo == Diccionario.SIN_VALOR) {
+                return 0;
+            }
+            int[] idiomas = this.idiomas;
+            for (int i = 0; i < n; i++) {
+                suma += duraciones[i] * (idiomas[i] == codigo ? 1 : 0);
+            }
+            return suma;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta las publicaciones de cada autor.
+     * @return Autores ordenados de más a menos publicaciones, con su número de publicaciones.
+     */
+    public Map<String, Integer> contarPorAutor() {
+        bloqueo.readLock().lock();
+        try {
+            int[] autores = this.autores;
+            int n = tamanio;
+            int[] cuentas = new int[diccionarioAutores.tamanio()];
+            for (int i = 0; i < n; i++) {
+                cuentas[autores[i]]++;
+            }
+            Integer[] orden = new Integer[cuentas.length];
+            Arrays.setAll(orden, i -> i);
+            Arrays.sort(orden, (a, b) -> Integer.compare(cuentas[b], cuentas[a]));
+            Map<String, Integer> resultado = new LinkedHashMap<>();
+            for (int codigo : orden) {
+                resultado.put(diccionarioAutores.valor(codigo), cuentas[codigo]);
+            }
+            return resultado;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta las revistas de cada categoría.
+     * @return Número de revistas por categoría, incluidas las categorías sin revistas.
+     */
+    public Map<Revista.CategoriaRevista, Integer> contarRevistasPorCategoria() {
+        bloqueo.readLock().lock();
+        try {
+            byte[] categorias = this.categorias;
+            int n = tamanio;
+            // La posición 0 recoge las publicaciones sin categoría, para no tener que saltarlas
+            int[] cuentas = new int[CATEGORIAS.length + 1];
+            for (int i = 0; i < n; i++) {
+                cuentas[categorias[i] + 1]++;
+            }
+            Map<Revista.CategoriaRevista, Integer> resultado = new EnumMap<>(Revista.CategoriaRevista.class);
+            for (Revista.CategoriaRevista categoria : CATEGORIAS) {
+                resultado.put(categoria, cuentas[categoria.ordinal() + 1]);
+            }
+            return resultado;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Filtra las publicaciones de un tipo publicadas entre dos años, ambos incluidos.
+     * Primero se calculan las posiciones seleccionadas recorriendo solo las columnas de tipo y año,
+     * y después se recogen las publicaciones de esas posiciones.
+     * @param tipo Libro.class, Revista.class o Audiolibro.class.
+     * @return Las publicaciones en orden de alta.
+     */
+    public List<Publicacion> publicadasEntre(Class<? extends Publicacion> tipo, int desde, int hasta) {
+        int codigo = codigoTipo(tipo);
+        if (desde > hasta) {
+            return new ArrayList<>();
+        }
+        int ancho = hasta - desde;
+        bloqueo.readLock().lock();
+        try {
+            byte[] tipos = this.tipos;
+            int[] anios = this.anios;
+            int n = tamanio;
+            // Se escribe siempre la posición y solo se avanza si está seleccionada
+            int[] seleccion = new int[n + 1];
+            int seleccionadas = 0;
+            for (int i = 0; i < n; i++) {
+                seleccion[seleccionadas] = i;
+                seleccionadas += igual(tipos[i], codigo) & entre(anios[i], desde, ancho);
+            }
+            List<Publicacion> resultado = new ArrayList<>(seleccionadas);
+            for (int i = 0; i < seleccionadas; i++) {
+                resultado.add(publicacion(seleccion[i]));
+            }
+            return resultado;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.bibliotecas.analitica;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificación por diccionario de una columna de texto: cada valor distinto recibe un código
+ * consecutivo, de modo que la columna se guarda como un int[] y agrupar por ella es indexar un array.
+ */
+final class Diccionario {
+
+    /// Código de los valores ausentes (por ejemplo, el idioma de un libro)
+    static final int SIN_VALOR = -1;
+
+    private final Map<String, Integer> codigos;
+    private final List<String> valores;
+
+    Diccionario() {
+        this.codigos = new HashMap<>();
+        this.valores = new ArrayList<>();
+    }
+
+    /// Devuelve el código del valor, asignándole uno nuevo si no lo tenía
+    int codificar(String valor) {
+        if (valor == null) {
+            return SIN_VALOR;
+        }
+        Integer codigo = codigos.get(valor);
+        if (codigo == null) {
+            codigo = valores.size();
+            codigos.put(valor, codigo);
+            valores.add(valor);
+        }
+        return codigo;
+    }
+
+    /// Devuelve el código del valor, o SIN_VALOR si no aparece en la columna
+    int buscar(String valor) {
+        Integer codigo = valor == null ? null : codigos.get(valor);
+        return codigo == null ? SIN_VALOR : codigo;
+    }
+
+    String valor(int codigo) {
+        return valores.get(codigo);
+    }
+
+    int tamanio() {
+        return valores.size();
+    }
+}
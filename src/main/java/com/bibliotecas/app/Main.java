@@ -1,15 +1,73 @@
 package com.bibliotecas.app;
 
+import com.bibliotecas.analitica.*;
+import com.bibliotecas.busqueda.*;
+import com.bibliotecas.descargas.*;
+import com.bibliotecas.estadisticas.*;
+import com.bibliotecas.importacion.*;
 import com.bibliotecas.model.*;
+import com.bibliotecas.persistencia.*;
+import com.bibliotecas.servidor.ServidorBiblioteca;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class Main {
 
     private static final Biblioteca biblioteca = new Biblioteca();
+    private static final Path ficheroCatalogo = Path.of(System.getProperty("biblioteca.catalogo", "catalogo.bin"));
+    private static final Path directorioRegistro = Path.of(System.getProperty("biblioteca.registro", "registro"));
+    private static final Path ficheroSecuencia = Path.of(System.getProperty("biblioteca.secuencia", "secuencia.bin"));
+    // Si se indica un número de nodo, los IDs se generan al estilo Snowflake en lugar de con la secuencia en disco
+    private static final String nodo = System.getProperty("biblioteca.nodo");
+    // Puerto del servidor HTTP; sin él solo se arranca el menú, salvo en modo servidor, que usa el 8080
+    private static final Integer puerto = Integer.getInteger("biblioteca.puerto");
+    // Directorio con el contenido de los audiolibros que sirve el servidor, como ficheros sueltos o en el almacén
+    // de blobs de su subdirectorio blobs, y límite de descarga de cada usuario
+    private static final Path directorioContenidos = Path.of(System.getProperty("biblioteca.contenidos", "contenidos"));
+    private static final long anchoBandaPorUsuario = Long.getLong("biblioteca.anchoBanda", 0);
+    private static final IndiceTextual indiceTextual = new IndiceTextual();
+    private static final CatalogoColumnar catalogoColumnar = new CatalogoColumnar();
+    private static final EstadisticasCirculacion estadisticas = new EstadisticasCirculacion();
+    private static RegistroOperaciones registro;
+    private static ServidorBiblioteca servidor;
+    private static MotorDescargas descargas;
+    private static AlmacenBlobs blobs;
 
+    /**
+     * Arranca el menú de consola. Con el argumento "servidor" no hay menú: se atienden peticiones HTTP
+     * hasta que se detiene el proceso.
+     */
     public static void main(String[] args) {
+        configurarIds();
+        abrirCatalogo();
+        abrirRegistro();
+        // Con el catálogo ya adjunto, para que el índice y las columnas reciban también sus publicaciones
+        biblioteca.agregarOyenteConPublicaciones(indiceTextual);
+        biblioteca.agregarOyenteConPublicaciones(catalogoColumnar);
+        biblioteca.agregarOyente(estadisticas);
+        boolean soloServidor = args.length > 0 && args[0].equals("servidor");
+        if (puerto != null || soloServidor) {
+            iniciarServidor(puerto != null ? puerto : 8080);
+        }
+        if (soloServidor) {
+            if (servidor == null) {
+                cerrarRegistro();
+                return;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                detenerServidor();
+                cerrarRegistro();
+            }));
+            return;
+        }
         Scanner scanner = new Scanner(System.in);
         int opcion;
 
@@ -35,10 +93,14 @@ public class Main {
                     break;
                 case 5:
                     biblioteca.ordenarPorAutor();
+                    System.out.println("Se han ordenado las publicaciones según su autor.");
+                    System.out.print("\n");
                     biblioteca.listarPublicaciones();
                     break;
                 case 6:
                     biblioteca.ordenarPorTitulo();
+                    System.out.println("Se han ordenado las publicaciones según su título.");
+                    System.out.print("\n");
                     biblioteca.listarPublicaciones();
                     break;
                 case 7:
@@ -54,13 +116,30 @@ public class Main {
                     rellenarUsuariosDummy();
                     break;
                 case 11:
+                    guardarCatalogo();
+                    break;
+                case 12:
+                    buscarPublicaciones(scanner);
+                    break;
+                case 13:
+                    importarPublicaciones(scanner);
+                    break;
+                case 14:
+                    mostrarInforme();
+                    break;
+                case 15:
+                    mostrarEstadisticas();
+                    break;
+                case 16:
                     System.out.println("Saliendo del programa...");
                     break;
                 default:
                     System.out.println("Opción no válida. Inténtelo de nuevo.");
             }
-        } while (opcion != 11);
+        } while (opcion != 16);
         scanner.close();
+        detenerServidor();
+        cerrarRegistro();
     }
 
     public static void mostrarMenu() {
@@ -75,10 +154,115 @@ public class Main {
         System.out.println("8. Registrar devolución");
         System.out.println("9. Rellenar biblioteca");
         System.out.println("10. Rellenar usuarios");
-        System.out.println("11. Salir");
+        System.out.println("11. Guardar catálogo");
+        System.out.println("12. Buscar publicaciones");
+        System.out.println("13. Importar publicaciones");
+        System.out.println("14. Informe del catálogo");
+        System.out.println("15. Estadísticas de préstamos");
+        System.out.println("16. Salir");
         System.out.print("Seleccione opción: ");
     }
 
+    /// Metodo para elegir cómo se asignan los IDs de las publicaciones nuevas, antes de restaurar ninguna
+    private static void configurarIds() {
+        if (nodo != null) {
+            Publicacion.setGeneradorIds(new GeneradorSnowflake(Integer.parseInt(nodo)));
+            return;
+        }
+        try {
+            Publicacion.setGeneradorIds(new SecuenciaPorBloques(SecuenciaEnFichero.abrir(ficheroSecuencia)));
+        } catch (IOException e) {
+            System.out.println("No se ha podido abrir la secuencia de IDs, se usará una en memoria: " + e.getMessage());
+            System.out.print("\n");
+        }
+    }
+
+    /// Metodo para abrir el catálogo guardado, si existe
+    private static void abrirCatalogo() {
+        if (!Files.exists(ficheroCatalogo)) {
+            return;
+        }
+        try {
+            CatalogoMapeado catalogo = CatalogoMapeado.abrir(ficheroCatalogo);
+            biblioteca.adjuntarCatalogo(catalogo);
+            System.out.println("Catálogo abierto: " + catalogo.tamanio() + " publicaciones.");
+        } catch (IOException e) {
+            System.out.println("No se ha podido abrir el catálogo: " + e.getMessage());
+        }
+        System.out.print("\n");
+    }
+
+    /// Metodo para atender peticiones HTTP sobre la misma biblioteca que el menú
+    private static void iniciarServidor(int puerto) {
+        try {
+            blobs = AlmacenBlobs.abrir(directorioContenidos.resolve("blobs"));
+            descargas = new MotorDescargas(AlmacenContenidos.abrir(directorioContenidos), blobs, new LimitadorAnchoBanda(anchoBandaPorUsuario));
+            servidor = ServidorBiblioteca.iniciar(biblioteca, indiceTextual, descargas, new InetSocketAddress(puerto));
+            System.out.println("Servidor escuchando en el puerto " + servidor.puerto() + ".");
+        } catch (IOException e) {
+            System.out.println("No se ha podido iniciar el servidor: " + e.getMessage());
+        }
+        System.out.print("\n");
+    }
+
+    private static void detenerServidor() {
+        if (servidor != null) {
+            servidor.close();
+        }
+        if (descargas != null) {
+            descargas.close();
+        }
+        if (blobs != null) {
+            try {
+                blobs.close();
+            } catch (IOException e) {
+                System.out.println("No se ha podido cerrar el almacén de blobs: " + e.getMessage());
+            }
+        }
+    }
+
+    /// Metodo para recuperar publicaciones, usuarios y préstamos del registro de operaciones y seguir registrándolos
+    private static void abrirRegistro() {
+        try {
+            long operaciones = RecuperacionBiblioteca.recuperar(directorioRegistro, biblioteca);
+            if (operaciones > 0) {
+                System.out.println("Recuperadas " + operaciones + " operaciones del registro.");
+                System.out.print("\n");
+            }
+            registro = RegistroOperaciones.abrir(directorioRegistro, PoliticaSincronizacion.duradera());
+            biblioteca.agregarOyente(registro);
+            registro.programarInstantaneas(biblioteca, Duration.ofMinutes(5));
+        } catch (IOException e) {
+            System.out.println("No se ha podido abrir el registro de operaciones: " + e.getMessage());
+            System.out.print("\n");
+        }
+    }
+
+    /// Metodo para guardar una instantánea y cerrar el registro de operaciones al salir
+    private static void cerrarRegistro() {
+        if (registro == null) {
+            return;
+        }
+        try {
+            registro.crearInstantanea(biblioteca);
+            registro.close();
+        } catch (IOException e) {
+            System.out.println("No se ha podido cerrar el registro de operaciones: " + e.getMessage());
+        }
+    }
+
+    /// Metodo para guardar todas las publicaciones en el fichero de catálogo
+    private static void guardarCatalogo() {
+        try {
+            List<Publicacion> publicaciones = biblioteca.obtenerPublicaciones();
+            EscritorCatalogo.escribir(ficheroCatalogo, publicaciones);
+            System.out.println("Catálogo guardado: " + publicaciones.size() + " publicaciones.");
+        } catch (IOException e) {
+            System.out.println("No se ha podido guardar el catálogo: " + e.getMessage());
+        }
+        System.out.print("\n");
+    }
+
     public static void agregarPublicacion(Scanner scanner) {
         System.out.println("Ingrese título: ");
         String titulo = scanner.nextLine();
@@ -88,11 +272,89 @@ public class Main {
         int anio = scanner.nextInt();
         scanner.nextLine();
 
-        Publicacion libro = new Libro(titulo, autor, "1234567890123", anio, 200);
+        Publicacion libro = new Libro(titulo, autor, "1234567890128", anio, 200);
         biblioteca.agregarPublicacion(libro);
         System.out.println("Publicación agregada con éxito.");
     }
 
+    /// Metodo para buscar publicaciones por palabras del título, el autor o el narrador
+    private static void buscarPublicaciones(Scanner scanner) {
+        System.out.println("Ingrese las palabras a buscar: ");
+        String consulta = scanner.nextLine();
+
+        List<ResultadoBusqueda> resultados = indiceTextual.buscar(consulta, 10);
+        if (resultados.isEmpty()) {
+            System.out.println("No se ha encontrado ninguna publicación.");
+        }
+        for (ResultadoBusqueda resultado : resultados) {
+            resultado.publicacion().mostrarInfo();
+            System.out.print("\n");
+        }
+        System.out.print("\n");
+    }
+
+    /// Metodo para mostrar un resumen de las publicaciones en memoria, calculado sobre el catálogo por columnas
+    private static void mostrarInforme() {
+        System.out.println("---- INFORME DEL CATÁLOGO ----");
+        System.out.println("Libros: " + catalogoColumnar.contar(Libro.class));
+        System.out.println("Revistas: " + catalogoColumnar.contar(Revista.class));
+        System.out.println("Audiolibros: " + catalogoColumnar.contar(Audiolibro.class));
+        System.out.printf("Páginas por libro (media): %.1f%n", catalogoColumnar.mediaPaginas(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        System.out.printf("Horas de audiolibros: %.1f%n", catalogoColumnar.duracionTotal(null));
+        System.out.println("\n-- AUTORES CON MÁS PUBLICACIONES --");
+        int mostrados = 0;
+        for (Map.Entry<String, Integer> autor : catalogoColumnar.contarPorAutor().entrySet()) {
+            if (mostrados++ == 5) {
+                break;
+            }
+            System.out.println(autor.getKey() + ": " + autor.getValue());
+        }
+        System.out.println("\n-- REVISTAS POR CATEGORÍA --");
+        catalogoColumnar.contarRevistasPorCategoria().forEach((categoria, cuenta) -> {
+            if (cuenta > 0) {
+                System.out.println(categoria + ": " + cuenta);
+            }
+        });
+        System.out.print("\n");
+    }
+
+    /// Metodo para mostrar las estadísticas de préstamos desde que se abrió el programa
+    private static void mostrarEstadisticas() {
+        System.out.println("---- ESTADÍSTICAS DE PRÉSTAMOS ----");
+        System.out.println("Préstamos hoy: " + estadisticas.prestamosEn(LocalDate.now()));
+        System.out.println("Préstamos: " + estadisticas.prestamos() + ", devoluciones: " + estadisticas.devoluciones());
+        System.out.printf("Devoluciones con retraso: %.1f %%%n", estadisticas.tasaRetraso() * 100);
+        System.out.println("Usuarios en espera: " + estadisticas.usuariosEnEspera());
+        Histograma libros = estadisticas.duracionPrestamos(Libro.class);
+        Histograma revistas = estadisticas.duracionPrestamos(Revista.class);
+        System.out.printf("Duración media del préstamo: libros %.1f días (p90 %d), revistas %.1f días (p90 %d)%n",
+                libros.media(), libros.percentil(90), revistas.media(), revistas.percentil(90));
+        System.out.println("\n-- MÁS PRESTADAS --");
+        for (EstadisticasCirculacion.PublicacionFrecuente frecuente : estadisticas.masPrestadas(5)) {
+            System.out.println(frecuente.publicacion().getTitulo() + ": " + frecuente.prestamos());
+        }
+        System.out.print("\n");
+    }
+
+    /// Metodo para importar publicaciones desde un fichero CSV o JSON-lines
+    private static void importarPublicaciones(Scanner scanner) {
+        System.out.println("Ingrese la ruta del fichero (.csv o .jsonl): ");
+        Path fichero = Path.of(scanner.nextLine().trim());
+
+        try {
+            InformeImportacion informe = new ImportadorCatalogo().importar(fichero, biblioteca);
+            System.out.println("Publicaciones importadas: " + informe.getAceptadas());
+            if (informe.getRechazadas() > 0) {
+                Path errores = fichero.resolveSibling(fichero.getFileName() + ".errores.txt");
+                informe.escribirErrores(errores);
+                System.out.println("Líneas rechazadas: " + informe.getRechazadas() + " (detalle en " + errores + ")");
+            }
+        } catch (IOException e) {
+            System.out.println("No se ha podido importar el fichero: " + e.getMessage());
+        }
+        System.out.print("\n");
+    }
+
     public static void registrarUsuario(Scanner scanner) {
         System.out.println("Ingrese ID de usuario: ");
         int id = scanner.nextInt();
@@ -100,7 +362,11 @@ public class Main {
         System.out.println("Ingrese nombre del usuario: ");
         String nombre = scanner.nextLine();
 
-        biblioteca.registrarUsuario(id, nombre);
+        if (biblioteca.registrarUsuario(id, nombre)) {
+            System.out.println("Usuario registrado con éxito.");
+        } else {
+            System.out.println("El usuario con ID " + id + " ya está registrado.");
+        }
         System.out.println("\n");
     }
 
@@ -109,7 +375,7 @@ public class Main {
         System.out.println("Ingrese ID de usuario: ");
         int id = scanner.nextInt();
         scanner.nextLine();
-        if (!biblioteca.usuarios.containsKey(id)){
+        if (!biblioteca.existeUsuario(id)){
             System.out.println("El usuario no está registrado.");
             System.out.print("\n");
             return;}
@@ -126,7 +392,7 @@ public class Main {
         scanner.nextLine();
 
         // Se comprueba que el usuario existe
-        if (!biblioteca.usuarios.containsKey(id)){
+        if (!biblioteca.existeUsuario(id)){
             System.out.println("El usuario no está registrado. Regístrelo antes de continuar.");
             return;
         }
@@ -136,8 +402,18 @@ public class Main {
 
         // Si la publicación existe y es prestable, se efectúa el préstamo
         Publicacion pub = biblioteca.buscarPublicacionPorTitulo(titulo);
-        if (pub instanceof PublicacionPrestable) {
-            biblioteca.registrarPrestamo(id, (PublicacionPrestable) pub);
+        if (pub instanceof PublicacionPrestable prestable) {
+            switch (biblioteca.registrarPrestamo(id, prestable)) {
+                case PRESTADO ->
+                        System.out.println("Préstamo registrado con éxito. Fecha de devolución: " + prestable.getFechaDevolucion());
+                case EN_COLA ->
+                        System.out.println("La publicación ya está prestada. Se ha añadido a la cola de espera (posición "
+                                + biblioteca.posicionEnCola(id, prestable) + ").");
+                case LIMITE_ALCANZADO -> System.out.println("El usuario ya tiene el máximo de préstamos permitidos.");
+                case USUARIO_NO_REGISTRADO ->
+                        System.out.println("El usuario no está registrado. Regístrelo antes de continuar.");
+            }
+            System.out.print("\n");
         } else {
             System.out.println("La publicación no es prestable o no existe.");
             System.out.print("\n");
@@ -151,12 +427,12 @@ public class Main {
         System.out.println("Ingrese ID de usuario: ");
         int id = scanner.nextInt();
         scanner.nextLine();
-        if (!biblioteca.usuarios.containsKey(id)){
+        if (!biblioteca.existeUsuario(id)){
             System.out.println("El usuario no está registrado.");
             System.out.print("\n");
             return;}
 
-        List<Publicacion> publicaciones = biblioteca.prestamosActivos.get(id);
+        List<Publicacion> publicaciones = biblioteca.obtenerPrestamosActivos(id);
         if (publicaciones.isEmpty()){
             System.out.println("El usuario no tiene publicaciones prestadas.");
             System.out.print("\n");
@@ -173,28 +449,39 @@ public class Main {
         int seleccion = scanner.nextInt();
 
         // Se realiza la devolución
-        Publicacion pub = biblioteca.buscarPublicacionPorTitulo(publicaciones.get(seleccion-1).getTitulo());
-        biblioteca.registrarDevolucion(id, (PublicacionPrestable) pub);
+        PublicacionPrestable pub = (PublicacionPrestable) publicaciones.get(seleccion-1);
+        switch (biblioteca.registrarDevolucion(id, pub)) {
+            case DEVUELTO -> System.out.println("Devolución registrada con éxito.");
+            case DEVUELTO_CON_RETRASO -> {
+                System.out.println("AVISO: Se ha sobrepasado la fecha de devolución.");
+                System.out.println("Devolución registrada con éxito.");
+            }
+            case NO_PRESTADO, USUARIO_NO_REGISTRADO -> System.out.println("El usuario no tiene prestada esa publicación.");
+        }
+        if (pub.isPrestado()) {
+            System.out.println("La publicación se ha prestado al siguiente usuario en espera.");
+        }
+        System.out.print("\n");
     }
 
     /// Metodo para rellenar la biblioteca con publicaciones
     private static void rellenarBibliotecaDummy() {
         Libro libro =
-                new Libro("Don quijote de la Mancha", "Miguel de Cervantes", "9788424117386",1490 , 863);
+                new Libro("Don quijote de la Mancha", "Miguel de Cervantes", "9788424117382",1490 , 863);
         Main.biblioteca.agregarPublicacion(libro);
         libro = new Libro("El señor de los anillos", "J.R.R. Tolkien", "9788445000663", 1954,  1216);
         Main.biblioteca.agregarPublicacion(libro);
         libro = new Libro("Cien años de soledad", "Gabriel García Márquez", "9788420471839",1967,  432);
         Main.biblioteca.agregarPublicacion(libro);
-        libro = new Libro("El principito", "Antoine de Saint-Exupéry", "9788493650016",1943,  96);
+        libro = new Libro("El principito", "Antoine de Saint-Exupéry", "9788493650018",1943,  96);
         Main.biblioteca.agregarPublicacion(libro);
         // Agregamos también revistas o audiolibros
         Revista revista =
                 new Revista(
-                        "National Geographic", "National Geographic", 1888,"1211-1221", 1, Revista.Mes.ENERO, Revista.CategoriaRevista.CIENCIA);
+                        "National Geographic", "National Geographic", 1888,"0027-9358", 1, Revista.Mes.ENERO, Revista.CategoriaRevista.CIENCIA);
         Main.biblioteca.agregarPublicacion(revista);
         revista =
-                new Revista("Muy Interesante", "Muy Interesante", 1981, "2112-5544", 1,  Revista.Mes.ENERO, Revista.CategoriaRevista.CIENCIA);
+                new Revista("Muy Interesante", "Muy Interesante", 1981, "1136-5536", 1,  Revista.Mes.ENERO, Revista.CategoriaRevista.CIENCIA);
         Main.biblioteca.agregarPublicacion(revista);
         Audiolibro audiolibro =
                 new Audiolibro("El Quijote", "Miguel de Cervantes", 1605, "Varios",36.5,  "Español", Audiolibro.FormatoAudio.MP3);
@@ -216,6 +503,8 @@ public class Main {
         biblioteca.registrarUsuario(3,"Marta Campos");
         biblioteca.registrarUsuario(4,"Jose Iglesias");
         biblioteca.registrarUsuario(5,"Laura Pazos");
+        System.out.println("Usuarios registrados con éxito.");
+        System.out.print("\n");
     }
 
 }
@@ -0,0 +1,390 @@
+package com.bibliotecas.busqueda;
+
+import com.bibliotecas.model.Audiolibro;
+import com.bibliotecas.model.CamposPublicacion;
+import com.bibliotecas.model.OrigenCatalogo;
+import com.bibliotecas.model.OyenteBiblioteca;
+import com.bibliotecas.model.Publicacion;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+/**
+ * Índice invertido sobre el título, el autor y el narrador de las publicaciones.
+ * Cada término apunta a una ListaPostings comprimida con los documentos que lo contienen;
+ * los documentos se numeran en el orden en que se indexan. Las búsquedas ordenan por BM25
+ * y devuelven los k mejores con el algoritmo MaxScore: en cuanto hay k candidatos, los términos
+ * cuya puntuación máxima no basta para entrar en el resultado dejan de generar candidatos y solo
+ * se consultan, saltando por bloques, para los documentos que ya lo son. Además, con las cotas por
+ * bloque de cada lista se descartan bloques enteros de documentos que no pueden superar al k-ésimo.
+ * Se mantiene como oyente de la biblioteca, de modo que cada alta se indexa al momento; añadido con
+ * agregarOyenteConPublicaciones, indexa también las publicaciones ya existentes y las del catálogo adjunto.
+ * Las del catálogo adjunto se indexan leyendo sus campos, sin cargarlas: el índice solo guarda en qué
+ * tramo del catálogo está cada documento y carga las publicaciones de los resultados al devolverlos.
+ * Las búsquedas comparten un bloqueo de lectura; las altas toman el de escritura, y el catálogo adjunto
+ * se añade por tandas, para que las búsquedas no esperen a que se indexe entero.
+ */
+public class IndiceTextual implements OyenteBiblioteca {
+
+    // Parámetros habituales de BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Una aparición en el título cuenta como dos en el autor o el narrador
+    private static final int PESO_TITULO = 2;
+    // Publicaciones del catálogo adjunto que se indexan con cada adquisición del bloqueo de escritura
+    private static final int TAMANIO_TANDA = 4096;
+
+    private final Map<String, ListaPostings> terminos;
+    private Publicacion[] documentos; // null en los documentos del catálogo adjunto, que se buscan en tramos
+    private final List<TramoCatalogo> tramos;
+    private int[] longitudes;
+    private int numDocumentos;
+    private long longitudTotal;
+    private final ReentrantReadWriteLock bloqueo;
+
+    public IndiceTextual() {
+        this.terminos = new HashMap<>();
+        this.documentos = new Publicacion[1024];
+        this.longitudes = new int[1024];
+        this.tramos = new ArrayList<>();
+        this.bloqueo = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Documentos consecutivos que son publicaciones consecutivas de un catálogo adjunto.
+     * @param primerDocumento Número del primer documento del tramo.
+     * @param catalogo Catálogo del que salen.
+     * @param primeraPosicion Posición en el catálogo del primer documento.
+     */
+    private record TramoCatalogo(int primerDocumento, OrigenCatalogo catalogo, int primeraPosicion) {
+    }
+
+    @Override
+    public void publicacionAgregada(Publicacion publicacion) {
+        agregar(publicacion);
+    }
+
+    @Override
+    public void catalogoAdjuntado(OrigenCatalogo catalogo) {
+        agregarCatalogo(catalogo);
+    }
+
+    /**
+     * Indexa una publicación.
+     * @param publicacion Publicación a indexar.
+     */
+    public void agregar(Publicacion publicacion) {
+        String narrador = publicacion instanceof Audiolibro audiolibro ? audiolibro.getNarrador() : null;
+        Map<String, Integer> frecuencias = frecuencias(publicacion.getTitulo(), publicacion.getAutor(), narrador);
+        bloqueo.writeLock().lock();
+        try {
+            insertar(publicacion, frecuencias);
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexa todas las publicaciones de un catálogo adjunto leyendo solo sus campos.
+     * Cada tanda se tokeniza sin bloqueo y se añade con una sola adquisición del bloqueo de escritura,
+     * como un tramo de documentos consecutivos.
+     * @param catalogo Catálogo a indexar.
+     */
+    public void agregarCatalogo(OrigenCatalogo catalogo) {
+        List<Map<String, Integer>> tanda = new ArrayList<>(TAMANIO_TANDA);
+        for (int inicio = 0; inicio < catalogo.tamanio(); inicio += TAMANIO_TANDA) {
+            int fin = Math.min(catalogo.tamanio(), inicio + TAMANIO_TANDA);
+            tanda.clear();
+            for (int posicion = inicio; posicion < fin; posicion++) {
+                CamposPublicacion campos = catalogo.campos(posicion);
+                tanda.add(frecuencias(campos.titulo(), campos.autor(), campos.narrador()));
+            }
+            bloqueo.writeLock().lock();
+            try {
+                tramos.add(new TramoCatalogo(numDocumentos, catalogo, inicio));
+                for (Map<String, Integer> frecuencias : tanda) {
+                    insertar(null, frecuencias);
+                }
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+        }
+    }
+
+    /// Frecuencia de cada término de una publicación, con el peso del título aplicado
+    private static Map<String, Integer> frecuencias(String titulo, String autor, String narrador) {
+        Map<String, Integer> frecuencias = new HashMap<>();
+        List<String> tokens = new ArrayList<>();
+        Tokenizador.tokenizar(titulo, tokens);
+        for (String token : tokens) {
+            frecuencias.merge(token, PESO_TITULO, Integer::sum);
+        }
+        tokens.clear();
+        Tokenizador.tokenizar(autor, tokens);
+        if (narrador != null) {
+            Tokenizador.tokenizar(narrador, tokens);
+        }
+        for (String token : tokens) {
+            frecuencias.merge(token, 1, Integer::sum);
+        }
+        return frecuencias;
+    }
+
+    /// Añade un documento al final; se llama con el bloqueo de escritura
+    private void insertar(Publicacion publicacion, Map<String, Integer> frecuencias) {
+        int longitud = 0;
+        for (int frecuencia : frecuencias.values()) {
+            longitud += frecuencia;
+        }
+        if (numDocumentos == documentos.length) {
+            documentos = Arrays.copyOf(documentos, numDocumentos * 2);
+            longitudes = Arrays.copyOf(longitudes, numDocumentos * 2);
+        }
+        int documento = numDocumentos++;
+        documentos[documento] = publicacion;
+        longitudes[documento] = longitud;
+        longitudTotal += longitud;
+        for (Map.Entry<String, Integer> entrada : frecuencias.entrySet()) {
+            terminos.computeIfAbsent(entrada.getKey(), k -> new ListaPostings()).agregar(documento, entrada.getValue(), longitud);
+        }
+    }
+
+    /// Publicación de un documento; las del catálogo adjunto se cargan a partir de su tramo
+    private Publicacion documento(int documento) {
+        Publicacion publicacion = documentos[documento];
+        if (publicacion != null) {
+            return publicacion;
+        }
+        int bajo = 0;
+        int alto = tramos.size() - 1;
+        while (bajo < alto) {
+            int medio = (bajo + alto + 1) >>> 1;
+            if (tramos.get(medio).primerDocumento() <= documento) {
+                bajo = medio;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        TramoCatalogo tramo = tramos.get(bajo);
+        return tramo.catalogo().cargar(tramo.primeraPosicion() + documento - tramo.primerDocumento());
+    }
+
+    /// Número de publicaciones indexadas
+    public int tamanio() {
+        bloqueo.readLock().lock();
+        try {
+            return numDocumentos;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca las publicaciones más relevantes para una consulta, sin distinguir mayúsculas ni acentos.
+     * Una publicación aparece si contiene al menos uno de los términos; las que contienen más
+     * términos, o términos menos frecuentes en el catálogo, puntúan más.
+     * @param consulta Texto de la consulta, por ejemplo "señor anillos".
+     * @param k Número máximo de resultados.
+     * @return Los resultados ordenados de mayor a menor puntuación.
+     */
+    public List<ResultadoBusqueda> buscar(String consulta, int k) {
+        List<String> tokens = new ArrayList<>();
+        Tokenizador.tokenizar(consulta, tokens);
+        if (k <= 0 || tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+        bloqueo.readLock().lock();
+        try {
+            return buscarTerminos(new LinkedHashSet<>(tokens), k);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private List<ResultadoBusqueda> buscarTerminos(Set<String> consulta, int k) {
+        List<Termino> lista = new ArrayList<>(consulta.size());
+        for (String texto : consulta) {
+            ListaPostings postings = terminos.get(texto);
+            if (postings != null) {
+                double idf = Math.log(1 + (numDocumentos - postings.documentos() + 0.5) / (postings.documentos() + 0.5));
+                lista.add(new Termino(postings, idf));
+            }
+        }
+        if (lista.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // De menor a mayor puntuación máxima; maximoAcumulado[i] es la suma de las máximas hasta i
+        lista.sort(Comparator.comparingDouble(t -> t.idf));
+        Termino[] consultaOrdenada = lista.toArray(new Termino[0]);
+        double[] maximoAcumulado = new double[consultaOrdenada.length];
+        double suma = 0;
+        for (int i = 0; i < consultaOrdenada.length; i++) {
+            consultaOrdenada[i].cursor.siguiente();
+            suma += consultaOrdenada[i].idf * (K1 + 1);
+            maximoAcumulado[i] = suma;
+        }
+
+        double longitudMedia = (double) longitudTotal / numDocumentos;
+        Mejores mejores = new Mejores(k);
+        int esenciales = 0; // Los términos anteriores a este índice ya no generan candidatos
+        int comprobadoHasta = -1; // Hasta este documento las cotas por bloque no permiten descartar nada
+        while (esenciales < consultaOrdenada.length) {
+            int documento = Integer.MAX_VALUE;
+            for (int i = esenciales; i < consultaOrdenada.length; i++) {
+                documento = Math.min(documento, consultaOrdenada[i].cursor.documento());
+            }
+            if (documento == Integer.MAX_VALUE) {
+                break;
+            }
+            if (mejores.umbral() > 0 && documento > comprobadoHasta) {
+                // Cota de los documentos hasta el final del bloque más corto que contiene a este documento
+                int finBloques = Integer.MAX_VALUE;
+                double cota = 0;
+                for (Termino termino : consultaOrdenada) {
+                    ListaPostings postings = termino.postings;
+                    if (postings.ultimoDocumento() >= documento) {
+                        int bloque = termino.cursor.bloqueDe(documento);
+                        finBloques = Math.min(finBloques, postings.finBloque(bloque));
+                        double normalizacion = K1 * (1 - B + B * postings.minimaLongitud(bloque) / longitudMedia);
+                        cota += termino.puntuar(postings.maximaFrecuencia(bloque), normalizacion);
+                    }
+                }
+                if (cota <= mejores.umbral()) {
+                    for (int i = esenciales; i < consultaOrdenada.length; i++) {
+                        consultaOrdenada[i].cursor.avanzarHasta(finBloques + 1);
+                    }
+                    continue;
+                }
+                comprobadoHasta = finBloques;
+            }
+            double normalizacion = K1 * (1 - B + B * longitudes[documento] / longitudMedia);
+            double puntuacion = 0;
+            for (int i = esenciales; i < consultaOrdenada.length; i++) {
+                ListaPostings.Cursor cursor = consultaOrdenada[i].cursor;
+                if (cursor.documento() == documento) {
+                    puntuacion += consultaOrdenada[i].puntuar(cursor.frecuencia(), normalizacion);
+                    cursor.siguiente();
+                }
+            }
+            for (int i = esenciales - 1; i >= 0; i--) {
+                if (puntuacion + maximoAcumulado[i] <= mejores.umbral()) {
+                    break;
+                }
+                ListaPostings.Cursor cursor = consultaOrdenada[i].cursor;
+                if (cursor.avanzarHasta(documento) && cursor.documento() == documento) {
+                    puntuacion += consultaOrdenada[i].puntuar(cursor.frecuencia(), normalizacion);
+                }
+            }
+            if (mejores.ofrecer(documento, puntuacion)) {
+                comprobadoHasta = -1;
+                while (esenciales < consultaOrdenada.length && maximoAcumulado[esenciales] <= mejores.umbral()) {
+                    esenciales++;
+                }
+            }
+        }
+        return mejores.resultados(this::documento);
+    }
+
+    /**
+     * Término de la consulta con su lista, su cursor y su IDF.
+     */
+    private static final class Termino {
+        final ListaPostings postings;
+        final ListaPostings.Cursor cursor;
+        final double idf;
+
+        Termino(ListaPostings postings, double idf) {
+            this.postings = postings;
+            this.cursor = postings.cursor();
+            this.idf = idf;
+        }
+
+        double puntuar(int frecuencia, double normalizacion) {
+            return idf * frecuencia * (K1 + 1) / (frecuencia + normalizacion);
+        }
+    }
+
+    /**
+     * Montículo de mínimos con los k mejores documentos vistos hasta el momento.
+     */
+    private static final class Mejores {
+        private final int[] documentos;
+        private final double[] puntuaciones;
+        private int tamanio;
+
+        Mejores(int k) {
+            this.documentos = new int[k];
+            this.puntuaciones = new double[k];
+        }
+
+        /// Puntuación que hay que superar para entrar; 0 mientras no haya k documentos
+        double umbral() {
+            return tamanio < documentos.length ? 0 : puntuaciones[0];
+        }
+
+        /// Ofrece un documento; devuelve true si ha cambiado el umbral
+        boolean ofrecer(int documento, double puntuacion) {
+            if (tamanio < documentos.length) {
+                documentos[tamanio] = documento;
+                puntuaciones[tamanio] = puntuacion;
+                subir(tamanio++);
+                return tamanio == documentos.length;
+            }
+            if (puntuacion <= puntuaciones[0]) {
+                return false;
+            }
+            documentos[0] = documento;
+            puntuaciones[0] = puntuacion;
+            bajar(0);
+            return true;
+        }
+
+        private void subir(int i) {
+            while (i > 0) {
+                int padre = (i - 1) / 2;
+                if (puntuaciones[padre] <= puntuaciones[i]) {
+                    return;
+                }
+                intercambiar(i, padre);
+                i = padre;
+            }
+        }
+
+        private void bajar(int i) {
+            while (true) {
+                int menor = i;
+                int izquierdo = 2 * i + 1;
+                if (izquierdo < tamanio && puntuaciones[izquierdo] < puntuaciones[menor]) {
+                    menor = izquierdo;
+                }
+                if (izquierdo + 1 < tamanio && puntuaciones[izquierdo + 1] < puntuaciones[menor]) {
+                    menor = izquierdo + 1;
+                }
+                if (menor == i) {
+                    return;
+                }
+                intercambiar(i, menor);
+                i = menor;
+            }
+        }
+
+        private void intercambiar(int a, int b) {
+            int documento = documentos[a];
+            documentos[a] = documentos[b];
+            documentos[b] = documento;
+            double puntuacion = puntuaciones[a];
+            puntuaciones[a] = puntuaciones[b];
+            puntuaciones[b] = puntuacion;
+        }
+
+        List<ResultadoBusqueda> resultados(IntFunction<Publicacion> publicaciones) {
+            List<ResultadoBusqueda> resultado = new ArrayList<>(tamanio);
+            for (int i = 0; i < tamanio; i++) {
+                resultado.add(new ResultadoBusqueda(publicaciones.apply(documentos[i]), puntuaciones[i]));
+            }
+            resultado.sort(Comparator.comparingDouble(ResultadoBusqueda::puntuacion).reversed());
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.bibliotecas.busqueda;
+
+import java.util.Arrays;
+
+/**
+ * Lista de documentos que contienen un término, comprimida.
+ * Cada entrada guarda la diferencia con el documento anterior y la frecuencia del término,
+ * ambas como enteros de longitud variable (7 bits por byte), así que una entrada suele ocupar dos bytes.
+ * Cada BLOQUE entradas se apunta un salto (último documento y posición en bytes) para que
+ * un cursor pueda avanzar hasta un documento sin descodificar todo lo anterior.
+ * Además, por cada bloque se guardan la mayor frecuencia y la menor longitud de documento,
+ * con las que se acota la puntuación que puede dar el bloque sin descodificarlo.
+ * Los documentos se añaden siempre en orden creciente.
+ */
+final class ListaPostings {
+
+    static final int BLOQUE = 128;
+
+    private byte[] datos;
+    private int bytes;
+    private int documentos;
+    private int ultimoDocumento;
+    private int[] saltoDocumento; // Último documento antes del comienzo de cada bloque, a partir del segundo
+    private int[] saltoPosicion;  // Posición en bytes del comienzo de cada bloque, a partir del segundo
+    private int[] maximaFrecuencia; // Mayor frecuencia de cada bloque
+    private int[] minimaLongitud;   // Menor longitud de documento de cada bloque
+
+    ListaPostings() {
+        this.datos = new byte[8];
+        this.ultimoDocumento = -1;
+        this.saltoDocumento = new int[0];
+        this.saltoPosicion = new int[0];
+        this.maximaFrecuencia = new int[1];
+        this.minimaLongitud = new int[1];
+    }
+
+    /**
+     * Añade un documento al final de la lista.
+     * @param documento Número del documento, mayor que el último añadido.
+     * @param frecuencia Frecuencia (ponderada) del término en el documento.
+     * @param longitud Longitud (ponderada) del documento.
+     */
+    void agregar(int documento, int frecuencia, int longitud) {
+        if (documentos > 0 && documentos % BLOQUE == 0) {
+            int bloque = documentos / BLOQUE - 1;
+            if (bloque == saltoDocumento.length) {
+                int capacidad = Math.max(4, bloque * 2);
+                saltoDocumento = Arrays.copyOf(saltoDocumento, capacidad);
+                saltoPosicion = Arrays.copyOf(saltoPosicion, capacidad);
+            }
+            saltoDocumento[bloque] = ultimoDocumento;
+            saltoPosicion[bloque] = bytes;
+        }
+        int bloque = documentos / BLOQUE;
+        if (documentos % BLOQUE == 0) {
+            if (bloque == maximaFrecuencia.length) {
+                maximaFrecuencia = Arrays.copyOf(maximaFrecuencia, bloque * 2);
+                minimaLongitud = Arrays.copyOf(minimaLongitud, bloque * 2);
+            }
+            maximaFrecuencia[bloque] = frecuencia;
+            minimaLongitud[bloque] = longitud;
+        } else {
+            maximaFrecuencia[bloque] = Math.max(maximaFrecuencia[bloque], frecuencia);
+            minimaLongitud[bloque] = Math.min(minimaLongitud[bloque], longitud);
+        }
+        if (datos.length - bytes < 10) {
+            datos = Arrays.copyOf(datos, datos.length * 2);
+        }
+        escribirVarint(documento - ultimoDocumento);
+        escribirVarint(frecuencia);
+        ultimoDocumento = documento;
+        documentos++;
+    }
+
+    private void escribirVarint(int valor) {
+        while ((valor & ~0x7F) != 0) {
+            datos[bytes++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        datos[bytes++] = (byte) valor;
+    }
+
+    /// Número de documentos que contienen el término
+    int documentos() {
+        return documentos;
+    }
+
+    /// Último documento de la lista
+    int ultimoDocumento() {
+        return ultimoDocumento;
+    }
+
+    /// Último documento del bloque indicado
+    int finBloque(int bloque) {
+        return bloque < (documentos - 1) / BLOQUE ? saltoDocumento[bloque] : ultimoDocumento;
+    }
+
+    /// Mayor frecuencia del bloque indicado
+    int maximaFrecuencia(int bloque) {
+        return maximaFrecuencia[bloque];
+    }
+
+    /// Menor longitud de documento del bloque indicado
+    int minimaLongitud(int bloque) {
+        return minimaLongitud[bloque];
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Recorre la lista en orden. Tras crearlo hay que llamar a siguiente() para situarse en el primer documento.
+     */
+    final class Cursor {
+        private int posicion;
+        private int leidos;
+        private int documento = -1;
+        private int frecuencia;
+        private int bloqueSuperficial;
+
+        int documento() {
+            return documento;
+        }
+
+        int frecuencia() {
+            return frecuencia;
+        }
+
+        /**
+         * Devuelve el bloque que contendría el documento indicado, sin descodificar nada.
+         * Las llamadas deben hacerse con documentos crecientes: la búsqueda continúa donde terminó la anterior.
+         * @param objetivo Documento, no mayor que el último de la lista.
+         * @return Número del bloque.
+         */
+        int bloqueDe(int objetivo) {
+            int bloques = (documentos - 1) / BLOQUE;
+            while (bloqueSuperficial < bloques && saltoDocumento[bloqueSuperficial] < objetivo) {
+                bloqueSuperficial++;
+            }
+            return bloqueSuperficial;
+        }
+
+        /// Avanza al siguiente documento; devuelve false (y documento() pasa a valer Integer.MAX_VALUE) al terminar
+        boolean siguiente() {
+            if (leidos == documentos) {
+                documento = Integer.MAX_VALUE;
+                return false;
+            }
+            documento += leerVarint();
+            frecuencia = leerVarint();
+            leidos++;
+            return true;
+        }
+
+        /**
+         * Avanza hasta el primer documento mayor o igual que el indicado, usando los saltos para
+         * no descodificar los bloques que quedan enteros por detrás.
+         * @param objetivo Documento buscado.
+         * @return false si la lista se termina antes.
+         */
+        boolean avanzarHasta(int objetivo) {
+            if (documento >= objetivo) {
+                return documento != Integer.MAX_VALUE;
+            }
+            int bloque = leidos / BLOQUE;
+            int bloques = (documentos - 1) / BLOQUE;
+            while (bloque < bloques && saltoDocumento[bloque] < objetivo) {
+                bloque++;
+            }
+            if (bloque > leidos / BLOQUE && bloque > 0) {
+                posicion = saltoPosicion[bloque - 1];
+                documento = saltoDocumento[bloque - 1];
+                leidos = bloque * BLOQUE;
+            }
+            while (siguiente()) {
+                if (documento >= objetivo) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int leerVarint() {
+            int valor = 0;
+            int desplazamiento = 0;
+            byte b;
+            do {
+                b = datos[posicion++];
+                valor |= (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while (b < 0);
+            return valor;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.bibliotecas.busqueda;
+
+import com.bibliotecas.model.Publicacion;
+
+/**
+ * Publicación encontrada por una búsqueda de texto, con su puntuación.
+ *
+ * @param publicacion Publicación encontrada.
+ * @param puntuacion  Puntuación BM25; cuanto mayor, más relevante.
+ */
+public record ResultadoBusqueda(Publicacion publicacion, double puntuacion) {
+}
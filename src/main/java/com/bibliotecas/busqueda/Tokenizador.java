@@ -0,0 +1,60 @@
+package com.bibliotecas.busqueda;
+
+import java.text.Normalizer;
+import java.util.List;
+
+/**
+ * Divide un texto en términos de búsqueda.
+ * Un término es una secuencia de letras o dígitos; todo lo demás separa términos.
+ * Cada carácter se pasa a minúsculas y se le quitan los acentos y diacríticos
+ * ("Señor" y "senor" dan el mismo término), con una tabla precalculada para los alfabetos latinos.
+ */
+final class Tokenizador {
+
+    // Carácter plegado de cada carácter latino, calculado una vez con la descomposición canónica
+    private static final char[] PLEGADO = new char[0x250];
+
+    static {
+        for (char c = 0; c < PLEGADO.length; c++) {
+            String descompuesto = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            PLEGADO[c] = Character.toLowerCase(descompuesto.charAt(0));
+        }
+    }
+
+    private Tokenizador() {
+    }
+
+    /**
+     * Pasa un carácter a minúsculas y le quita los diacríticos.
+     * @param c Carácter a plegar.
+     * @return El carácter plegado.
+     */
+    static char plegar(char c) {
+        return c < PLEGADO.length ? PLEGADO[c] : Character.toLowerCase(c);
+    }
+
+    /**
+     * Añade a la lista los términos del texto, en el orden en que aparecen.
+     * @param texto Texto a dividir; si es null no se añade nada.
+     * @param destino Lista en la que se añaden los términos.
+     */
+    static void tokenizar(String texto, List<String> destino) {
+        if (texto == null) {
+            return;
+        }
+        char[] termino = new char[texto.length()];
+        int longitud = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                termino[longitud++] = plegar(c);
+            } else if (longitud > 0) {
+                destino.add(new String(termino, 0, longitud));
+                longitud = 0;
+            }
+        }
+        if (longitud > 0) {
+            destino.add(new String(termino, 0, longitud));
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.bibliotecas.descargas;
+
+import com.bibliotecas.model.Multimedia;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Almacén de contenidos direccionado por contenido: cada grabación se guarda una sola vez como un blob
+ * identificado por su SHA-256, y las publicaciones multimedia lo referencian en lugar de tener su propio
+ * fichero, de modo que las reediciones o la misma grabación con otro título no ocupan más espacio.
+ * Además, los blobs se parten en trozos definidos por el contenido (ver Troceador) y cada trozo, también
+ * identificado por su SHA-256, se guarda una sola vez aunque aparezca en varios blobs.
+ *
+ * Todo vive en un directorio:
+ * <ul>
+ *     <li>paquete.dat: los trozos, uno tras otro, y la receta de cada blob: long tamaño | int trozos |
+ *     trozos × (long posición | int longitud). Solo crece.</li>
+ *     <li>indice.bin: un IndiceBlobs mapeado en memoria, de huella a posición en el paquete.</li>
+ *     <li>referencias.bin: long ID de publicación | huella, por cada asociación; vale la última de cada ID.</li>
+ * </ul>
+ * Al tener todos los contenidos en un único fichero, un trozo que comparten varios blobs ocupa las mismas
+ * páginas de la caché del sistema, y se envía desde ellas con FileChannel.transferTo.
+ * Los trozos y la receta se escriben en el paquete y se llevan al disco antes de añadir al índice ninguna
+ * entrada que apunte a ellos, así que tras un fallo puede quedar espacio sin usar al final del paquete, pero
+ * nunca una entrada con datos que no llegaron al disco.
+ *
+ * Un guardado lee, trocea y resume el contenido sin bloqueo; solo se serializan las escrituras al final del
+ * paquete y la publicación en el índice. Los trozos escritos que aún no se han publicado se apuntan aparte,
+ * de modo que si dos guardados a la vez traen el mismo trozo nuevo solo uno lo escribe y ambos lo usan.
+ */
+public final class AlmacenBlobs implements AutoCloseable {
+
+    private static final int TAMANIO_REFERENCIA = 8 + Huella.TAMANIO;
+
+    private final FileChannel paquete;
+    private final IndiceBlobs indice;
+    private final FileChannel referencias;
+    private final Map<Long, Huella> porPublicacion;
+    private final Map<Huella, IndiceBlobs.Ubicacion> sinPublicar; // Trozos ya en el paquete pero no en el índice; con escritura
+    private final ReentrantLock escritura;            // Serializa las escrituras al final del paquete, la publicación y las asociaciones
+    private final ReentrantReadWriteLock bloqueoIndice; // Las búsquedas no pueden coincidir con un crecimiento del índice
+    private long finPaquete;
+
+    private AlmacenBlobs(FileChannel paquete, IndiceBlobs indice, FileChannel referencias, Map<Long, Huella> porPublicacion) throws IOException {
+        this.paquete = paquete;
+        this.indice = indice;
+        this.referencias = referencias;
+        this.porPublicacion = porPublicacion;
+        this.sinPublicar = new HashMap<>();
+        this.escritura = new ReentrantLock();
+        this.bloqueoIndice = new ReentrantReadWriteLock();
+        this.finPaquete = paquete.size();
+    }
+
+    /**
+     * Abre el almacén, creando su directorio y sus ficheros si no existen.
+     * @throws IOException Si no se pueden abrir o el índice está dañado.
+     */
+    public static AlmacenBlobs abrir(Path directorio) throws IOException {
+        Files.createDirectories(directorio);
+        FileChannel paquete = FileChannel.open(directorio.resolve("paquete.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            IndiceBlobs indice = IndiceBlobs.abrir(directorio.resolve("indice.bin"));
+            FileChannel referencias = FileChannel.open(directorio.resolve("referencias.bin"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new AlmacenBlobs(paquete, indice, referencias, leerReferencias(referencias));
+        } catch (IOException | RuntimeException e) {
+            paquete.close();
+            throw e;
+        }
+    }
+
+    /// Lee las asociaciones guardadas; un registro incompleto al final, de una escritura cortada, se descarta
+    private static Map<Long, Huella> leerReferencias(FileChannel referencias) throws IOException {
+        long completos = referencias.size() / TAMANIO_REFERENCIA;
+        Map<Long, Huella> resultado = new ConcurrentHashMap<>();
+        // Capacidad múltiplo del registro, para que ninguna lectura parta uno entre dos vueltas
+        ByteBuffer registros = ByteBuffer.allocate((int) Math.min(completos * TAMANIO_REFERENCIA,
+                (1 << 20) / TAMANIO_REFERENCIA * TAMANIO_REFERENCIA));
+        long posicion = 0;
+        while (posicion < completos * TAMANIO_REFERENCIA) {
+            registros.clear().limit((int) Math.min(registros.capacity(), completos * TAMANIO_REFERENCIA - posicion));
+            leer(referencias, registros, posicion);
+            posicion += registros.limit();
+            registros.flip();
+            while (registros.hasRemaining()) {
+                resultado.put(registros.getLong(), Huella.leer(registros));
+            }
+        }
+        referencias.truncate(completos * TAMANIO_REFERENCIA);
+        referencias.position(completos * TAMANIO_REFERENCIA);
+        return resultado;
+    }
+
+    /**
+     * Guarda el contenido de un fichero como blob.
+     * @return Huella del blob, que es el SHA-256 del contenido.
+     * @throws IOException Si no se puede leer el origen o escribir en el almacén.
+     */
+    public Huella guardar(Path origen) throws IOException {
+        try (InputStream entrada = Files.newInputStream(origen)) {
+            return guardar(entrada);
+        }
+    }
+
+    /**
+     * Guarda un contenido como blob, escribiendo en el paquete solo los trozos que aún no tiene.
+     * Si el blob ya existe no se añade nada al índice.
+     * @param origen Contenido a guardar; no se cierra.
+     * @return Huella del blob, que es el SHA-256 del contenido.
+     * @throws IOException Si no se puede leer el origen o escribir en el almacén.
+     */
+    public Huella guardar(InputStream origen) throws IOException {
+        MessageDigest resumenBlob = sha256();
+        MessageDigest resumenTrozo = sha256();
+        Troceador troceador = new Troceador(origen);
+        // Trozos que usa este guardado y que no estaban en el índice, con los que haya escrito otro aún sin publicar
+        Map<Huella, IndiceBlobs.Ubicacion> nuevos = new LinkedHashMap<>();
+        try {
+            ByteBuffer receta = ByteBuffer.allocate(12 + 12 * 64);
+            receta.position(12);
+            long tamanio = 0;
+            int trozos = 0;
+            for (ByteBuffer trozo = troceador.siguiente(); trozo != null; trozo = troceador.siguiente()) {
+                int longitud = trozo.remaining();
+                resumenBlob.update(trozo.duplicate());
+                resumenTrozo.update(trozo.duplicate());
+                Huella huella = Huella.de(resumenTrozo.digest());
+                IndiceBlobs.Ubicacion ubicacion = nuevos.get(huella);
+                if (ubicacion == null) {
+                    ubicacion = buscar(huella, IndiceBlobs.TROZO);
+                }
+                if (ubicacion == null) {
+                    ubicacion = escribirTrozo(huella, trozo);
+                    nuevos.put(huella, ubicacion);
+                }
+                if (receta.remaining() < 12) {
+                    receta = ByteBuffer.allocate(receta.capacity() * 2).put(receta.flip());
+                }
+                receta.putLong(ubicacion.posicion()).putInt(longitud);
+                tamanio += longitud;
+                trozos++;
+            }
+            Huella blob = Huella.de(resumenBlob.digest());
+            if (contiene(blob)) {
+                return blob;
+            }
+            receta.putLong(0, tamanio).putInt(8, trozos).flip();
+            IndiceBlobs.Ubicacion ubicacionReceta = escribirAlFinal(receta);
+            // Los trozos y la receta han de estar en disco antes de que el índice publique nada que apunte a ellos
+            paquete.force(false);
+            escritura.lock();
+            try {
+                for (Map.Entry<Huella, IndiceBlobs.Ubicacion> trozo : nuevos.entrySet()) {
+                    if (buscar(trozo.getKey(), IndiceBlobs.TROZO) == null) {
+                        publicar(trozo.getKey(), IndiceBlobs.TROZO, trozo.getValue());
+                    }
+                }
+                if (buscar(blob, IndiceBlobs.BLOB) == null) {
+                    publicar(blob, IndiceBlobs.BLOB, ubicacionReceta);
+                    indice.forzar();
+                }
+            } finally {
+                escritura.unlock();
+            }
+            return blob;
+        } finally {
+            // Publicados o no, este guardado ya no los ofrece; quien más los use los tiene en sus propios nuevos
+            escritura.lock();
+            try {
+                sinPublicar.keySet().removeAll(nuevos.keySet());
+            } finally {
+                escritura.unlock();
+            }
+        }
+    }
+
+    /**
+     * Escribe un trozo al final del paquete, salvo que ya lo haya escrito otro guardado que aún no lo ha
+     * publicado, o que ya esté en el índice; en esos casos devuelve dónde está.
+     */
+    private IndiceBlobs.Ubicacion escribirTrozo(Huella huella, ByteBuffer trozo) throws IOException {
+        escritura.lock();
+        try {
+            IndiceBlobs.Ubicacion ubicacion = sinPublicar.get(huella);
+            if (ubicacion == null) {
+                ubicacion = buscar(huella, IndiceBlobs.TROZO);
+            }
+            if (ubicacion == null) {
+                ubicacion = escribirAlFinal(trozo);
+                sinPublicar.put(huella, ubicacion);
+            }
+            return ubicacion;
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    /// Escribe los datos al final del paquete, sin añadirlos al índice, y devuelve dónde han quedado
+    private IndiceBlobs.Ubicacion escribirAlFinal(ByteBuffer datos) throws IOException {
+        escritura.lock();
+        try {
+            IndiceBlobs.Ubicacion ubicacion = new IndiceBlobs.Ubicacion(finPaquete, datos.remaining());
+            while (datos.hasRemaining()) {
+                finPaquete += paquete.write(datos, finPaquete);
+            }
+            return ubicacion;
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    /// Añade al índice datos que ya están en disco; se llama con el bloqueo de escritura
+    private void publicar(Huella huella, int clase, IndiceBlobs.Ubicacion ubicacion) throws IOException {
+        bloqueoIndice.writeLock().lock();
+        try {
+            indice.insertar(huella, clase, ubicacion);
+        } finally {
+            bloqueoIndice.writeLock().unlock();
+        }
+    }
+
+    private IndiceBlobs.Ubicacion buscar(Huella huella, int clase) {
+        bloqueoIndice.readLock().lock();
+        try {
+            return indice.buscar(huella, clase);
+        } finally {
+            bloqueoIndice.readLock().unlock();
+        }
+    }
+
+    public boolean contiene(Huella blob) {
+        return buscar(blob, IndiceBlobs.BLOB) != null;
+    }
+
+    /**
+     * Hace que una publicación multimedia use un blob como contenido, sustituyendo al que tuviera.
+     * @throws IllegalArgumentException Si el almacén no tiene el blob.
+     * @throws IOException Si no se puede guardar la asociación.
+     */
+    public void asociar(Multimedia multimedia, Huella blob) throws IOException {
+        if (!contiene(blob)) {
+            throw new IllegalArgumentException("El almacén no tiene el blob " + blob);
+        }
+        ByteBuffer registro = ByteBuffer.allocate(TAMANIO_REFERENCIA).putLong(multimedia.getId());
+        blob.escribir(registro);
+        registro.flip();
+        escritura.lock();
+        try {
+            while (registro.hasRemaining()) {
+                referencias.write(registro);
+            }
+            referencias.force(false);
+            porPublicacion.put(multimedia.getId(), blob);
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    /**
+     * Guarda el contenido de un fichero y lo asocia a una publicación.
+     * @return Huella del blob.
+     */
+    public Huella importar(Multimedia multimedia, Path origen) throws IOException {
+        Huella blob = guardar(origen);
+        asociar(multimedia, blob);
+        return blob;
+    }
+
+    /// Blob que usa la publicación como contenido, o null si no tiene ninguno
+    public Huella blobDe(Multimedia multimedia) {
+        return porPublicacion.get(multimedia.getId());
+    }
+
+    /// Bytes que ocupa el paquete: lo que cuestan en disco todos los blobs, una vez quitados los trozos repetidos
+    public long tamanioPaquete() {
+        escritura.lock();
+        try {
+            return finPaquete;
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    /**
+     * Abre un blob para enviarlo. Los trozos que están seguidos en el paquete se envían juntos,
+     * así que un blob sin trozos compartidos se envía con una sola transferencia.
+     * @throws NoSuchFileException Si el almacén no tiene el blob.
+     */
+    public Contenido abrir(Huella blob) throws IOException {
+        IndiceBlobs.Ubicacion ubicacion = buscar(blob, IndiceBlobs.BLOB);
+        if (ubicacion == null) {
+            throw new NoSuchFileException(blob.toString());
+        }
+        ByteBuffer receta = ByteBuffer.allocate(ubicacion.longitud());
+        leer(paquete, receta, ubicacion.posicion());
+        receta.flip();
+        long tamanio = receta.getLong();
+        int trozos = receta.getInt();
+        long[] inicios = new long[trozos];    // Posición en el blob de cada tramo
+        long[] posiciones = new long[trozos]; // Posición en el paquete de cada tramo
+        long[] longitudes = new long[trozos];
+        int tramos = 0;
+        long enBlob = 0;
+        for (int i = 0; i < trozos; i++) {
+            long posicion = receta.getLong();
+            int longitud = receta.getInt();
+            if (tramos > 0 && posiciones[tramos - 1] + longitudes[tramos - 1] == posicion) {
+                longitudes[tramos - 1] += longitud;
+            } else {
+                inicios[tramos] = enBlob;
+                posiciones[tramos] = posicion;
+                longitudes[tramos] = longitud;
+                tramos++;
+            }
+            enBlob += longitud;
+        }
+        return new ContenidoBlob(paquete, tamanio, Arrays.copyOf(inicios, tramos),
+                Arrays.copyOf(posiciones, tramos), Arrays.copyOf(longitudes, tramos));
+    }
+
+    /// Blob abierto; no cierra el paquete, que comparten todos
+    private record ContenidoBlob(FileChannel paquete, long tamanio, long[] inicios, long[] posiciones, long[] longitudes)
+            implements Contenido {
+
+        @Override
+        public long transferir(long posicion, long cantidad, WritableByteChannel destino) throws IOException {
+            if (posicion >= tamanio || cantidad <= 0) {
+                return 0;
+            }
+            int tramo = Arrays.binarySearch(inicios, posicion);
+            if (tramo < 0) {
+                tramo = -tramo - 2;
+            }
+            long dentro = posicion - inicios[tramo];
+            return paquete.transferTo(posiciones[tramo] + dentro, Math.min(cantidad, longitudes[tramo] - dentro), destino);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void leer(FileChannel canal, ByteBuffer destino, long posicion) throws IOException {
+        while (destino.hasRemaining()) {
+            int leidos = canal.read(destino, posicion);
+            if (leidos < 0) {
+                throw new EOFException("El almacén de blobs está dañado: falta el final del paquete");
+            }
+            posicion += leidos;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("La plataforma no tiene SHA-256", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        escritura.lock();
+        try {
+            referencias.close();
+            indice.close();
+            paquete.close();
+        } finally {
+            escritura.unlock();
+        }
+    }
+}
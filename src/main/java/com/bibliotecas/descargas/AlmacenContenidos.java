@@ -0,0 +1,92 @@
+package com.bibliotecas.descargas;
+
+import com.bibliotecas.model.Multimedia;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Almacén local con el contenido de las publicaciones multimedia: un fichero por publicación,
+ * llamado con su ID y la extensión de su formato, por ejemplo 7290083215945728.mp3, en un mismo directorio.
+ */
+public final class AlmacenContenidos {
+
+    private final Path raiz;
+
+    private AlmacenContenidos(Path raiz) {
+        this.raiz = raiz;
+    }
+
+    /**
+     * Abre el almacén, creando su directorio si no existe.
+     * @param raiz Directorio con los ficheros.
+     * @throws IOException Si no se puede crear el directorio.
+     */
+    public static AlmacenContenidos abrir(Path raiz) throws IOException {
+        Files.createDirectories(raiz);
+        return new AlmacenContenidos(raiz);
+    }
+
+    /// Fichero con el contenido de la publicación, exista o no
+    public Path ruta(Multimedia multimedia) {
+        return raiz.resolve(multimedia.getId() + "." + multimedia.extension());
+    }
+
+    public boolean contiene(Multimedia multimedia) {
+        return Files.isRegularFile(ruta(multimedia));
+    }
+
+    /**
+     * Guarda el contenido de una publicación copiándolo de un fichero. La copia se hace en un fichero
+     * temporal que luego se renombra, de modo que una descarga en curso nunca ve un contenido a medias.
+     * @param multimedia Publicación a la que pertenece el contenido.
+     * @param origen Fichero con el contenido.
+     * @throws IOException Si no se puede leer el origen o escribir en el almacén.
+     */
+    public void guardar(Multimedia multimedia, Path origen) throws IOException {
+        Path destino = ruta(multimedia);
+        Path temporal = Files.createTempFile(raiz, multimedia.getId() + ".", ".tmp");
+        try {
+            try (FileChannel entrada = FileChannel.open(origen, StandardOpenOption.READ);
+                 FileChannel salida = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                long copiados = 0;
+                long tamanio = entrada.size();
+                while (copiados < tamanio) {
+                    copiados += entrada.transferTo(copiados, tamanio - copiados, salida);
+                }
+                salida.force(true);
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Abre el contenido de una publicación para enviarlo.
+     * @throws java.nio.file.NoSuchFileException Si el almacén no tiene su contenido.
+     */
+    public Contenido abrir(Multimedia multimedia) throws IOException {
+        FileChannel canal = FileChannel.open(ruta(multimedia), StandardOpenOption.READ);
+        return new ContenidoFichero(canal, canal.size());
+    }
+
+    /// Fichero abierto; si otro lo sustituye en el almacén, se sigue enviando el que se abrió
+    private record ContenidoFichero(FileChannel canal, long tamanio) implements Contenido {
+
+        @Override
+        public long transferir(long posicion, long cantidad, WritableByteChannel destino) throws IOException {
+            return posicion >= tamanio ? 0 : canal.transferTo(posicion, Math.min(cantidad, tamanio - posicion), destino);
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.bibliotecas.descargas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Contenido abierto de una publicación multimedia, de tamaño fijo mientras está abierto,
+ * que se envía por partes como con FileChannel.transferTo.
+ */
+public interface Contenido extends Closeable {
+
+    long tamanio();
+
+    /**
+     * Envía bytes del contenido a partir de una posición.
+     * @param posicion Primer byte a enviar.
+     * @param cantidad Número máximo de bytes a enviar.
+     * @param destino Canal al que se envían.
+     * @return Bytes enviados, que pueden ser menos que cantidad; 0 si posicion está en el final.
+     */
+    long transferir(long posicion, long cantidad, WritableByteChannel destino) throws IOException;
+}
@@ -0,0 +1,46 @@
+package com.bibliotecas.descargas;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+
+/**
+ * Resumen SHA-256 de un contenido, que lo identifica en el AlmacenBlobs.
+ * Se guarda en cuatro long, de mayor a menor peso, para compararlo sin recorrer arrays.
+ */
+public record Huella(long a, long b, long c, long d) {
+
+    static final int TAMANIO = 32;
+
+    /// Huella de los 32 bytes de un resumen SHA-256
+    static Huella de(byte[] resumen) {
+        ByteBuffer bytes = ByteBuffer.wrap(resumen);
+        return new Huella(bytes.getLong(), bytes.getLong(), bytes.getLong(), bytes.getLong());
+    }
+
+    /// Lee una huella de 32 bytes en la posición actual del buffer
+    static Huella leer(ByteBuffer origen) {
+        return new Huella(origen.getLong(), origen.getLong(), origen.getLong(), origen.getLong());
+    }
+
+    /// Escribe los 32 bytes de la huella en la posición actual del buffer
+    void escribir(ByteBuffer destino) {
+        destino.putLong(a).putLong(b).putLong(c).putLong(d);
+    }
+
+    /**
+     * Interpreta una huella escrita en hexadecimal, como la devuelve toString.
+     * @throws IllegalArgumentException Si el texto no son 64 dígitos hexadecimales.
+     */
+    public static Huella analizar(String hexadecimal) {
+        if (hexadecimal.length() != TAMANIO * 2) {
+            throw new IllegalArgumentException("Una huella SHA-256 tiene 64 dígitos hexadecimales: " + hexadecimal);
+        }
+        return de(HexFormat.of().parseHex(hexadecimal));
+    }
+
+    @Override
+    public String toString() {
+        HexFormat hex = HexFormat.of();
+        return hex.toHexDigits(a) + hex.toHexDigits(b) + hex.toHexDigits(c) + hex.toHexDigits(d);
+    }
+}
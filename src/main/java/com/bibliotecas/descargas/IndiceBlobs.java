@@ -0,0 +1,185 @@
+package com.bibliotecas.descargas;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Índice del AlmacenBlobs en un fichero mapeado en memoria: una tabla hash de direccionamiento abierto,
+ * con sondeo lineal, que asocia la huella de cada trozo y de cada blob a su posición en el paquete.
+ * <pre>
+ * int mágico | int versión | int capacidad | int ocupadas | capacidad × ranura
+ * ranura: huella (32 bytes) | long posición | int longitud | int clase
+ * </pre>
+ * Un trozo y un blob con el mismo contenido tienen la misma huella, así que la clase forma parte de la clave.
+ * Al pasar de la mitad de ocupación se crea un fichero con el doble de ranuras y se sustituye al anterior.
+ * No es seguro para hilos: el almacén serializa las escrituras y las excluye de las búsquedas.
+ */
+final class IndiceBlobs implements Closeable {
+
+    static final int TROZO = 1;
+    static final int BLOB = 2;
+
+    private static final int MAGICO = 0x49424C42; // "IBLB"
+    private static final int VERSION = 1;
+    private static final int TAMANIO_CABECERA = 16;
+    private static final int TAMANIO_RANURA = 48;
+    private static final int CAPACIDAD_INICIAL = 1 << 12;
+    private static final int CAPACIDAD_MAXIMA = (Integer.MAX_VALUE - TAMANIO_CABECERA) / TAMANIO_RANURA;
+
+    /// Parte del paquete que ocupa un trozo o la receta de un blob
+    record Ubicacion(long posicion, int longitud) {
+    }
+
+    private final Path fichero;
+    private FileChannel canal;
+    private MappedByteBuffer ranuras;
+    private int capacidad;
+    private int ocupadas;
+
+    private IndiceBlobs(Path fichero) {
+        this.fichero = fichero;
+    }
+
+    /**
+     * Abre el índice, creándolo vacío si no existe.
+     * @throws IOException Si no se puede abrir o está dañado.
+     */
+    static IndiceBlobs abrir(Path fichero) throws IOException {
+        IndiceBlobs indice = new IndiceBlobs(fichero);
+        if (Files.exists(fichero)) {
+            indice.mapear();
+        } else {
+            Path nuevo = crear(fichero, CAPACIDAD_INICIAL);
+            Files.move(nuevo, fichero, StandardCopyOption.ATOMIC_MOVE);
+            indice.mapear();
+        }
+        return indice;
+    }
+
+    private void mapear() throws IOException {
+        canal = FileChannel.open(fichero, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long tamanio = canal.size();
+        if (tamanio < TAMANIO_CABECERA) {
+            throw new IOException("Índice de blobs dañado: " + fichero);
+        }
+        ranuras = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanio);
+        capacidad = ranuras.getInt(8);
+        ocupadas = ranuras.getInt(12);
+        if (ranuras.getInt(0) != MAGICO || ranuras.getInt(4) != VERSION || Integer.bitCount(capacidad) != 1
+                || tamanio != TAMANIO_CABECERA + (long) capacidad * TAMANIO_RANURA || ocupadas > capacidad / 2) {
+            throw new IOException("Índice de blobs dañado: " + fichero);
+        }
+    }
+
+    /// Crea junto al índice un fichero vacío con la capacidad indicada y devuelve su ruta
+    private static Path crear(Path fichero, int capacidad) throws IOException {
+        Path nuevo = fichero.resolveSibling(fichero.getFileName() + ".nuevo");
+        try (FileChannel salida = FileChannel.open(nuevo, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapa = salida.map(FileChannel.MapMode.READ_WRITE, 0, TAMANIO_CABECERA + (long) capacidad * TAMANIO_RANURA);
+            mapa.putInt(0, MAGICO).putInt(4, VERSION).putInt(8, capacidad).putInt(12, 0);
+            mapa.force();
+        }
+        return nuevo;
+    }
+
+    int ocupadas() {
+        return ocupadas;
+    }
+
+    Ubicacion buscar(Huella huella, int clase) {
+        int ranura = ranuraDe(huella, clase);
+        int desplazamiento = TAMANIO_CABECERA + ranura * TAMANIO_RANURA;
+        return ranuras.getInt(desplazamiento + 44) == 0 ? null
+                : new Ubicacion(ranuras.getLong(desplazamiento + 32), ranuras.getInt(desplazamiento + 40));
+    }
+
+    /**
+     * Añade una entrada que no está en el índice, creciendo si hace falta.
+     * @throws IllegalStateException Si el índice ya tiene el máximo de ranuras que cabe en un fichero mapeado.
+     */
+    void insertar(Huella huella, int clase, Ubicacion ubicacion) throws IOException {
+        if ((ocupadas + 1) * 2L > capacidad) {
+            crecer();
+        }
+        escribir(ranuras, capacidad, huella, clase, ubicacion);
+        ocupadas++;
+        ranuras.putInt(12, ocupadas);
+    }
+
+    /// Lleva al disco las entradas añadidas
+    void forzar() {
+        ranuras.force();
+    }
+
+    /**
+     * Ranura de la entrada, o la vacía en la que iría. La huella ya es un resumen uniforme,
+     * así que su primer long sirve directamente como hash.
+     */
+    private int ranuraDe(Huella huella, int clase) {
+        int mascara = capacidad - 1;
+        int ranura = (int) (huella.a() ^ (huella.a() >>> 32)) & mascara;
+        while (true) {
+            int desplazamiento = TAMANIO_CABECERA + ranura * TAMANIO_RANURA;
+            int ocupante = ranuras.getInt(desplazamiento + 44);
+            if (ocupante == 0 || (ocupante == clase
+                    && ranuras.getLong(desplazamiento) == huella.a() && ranuras.getLong(desplazamiento + 8) == huella.b()
+                    && ranuras.getLong(desplazamiento + 16) == huella.c() && ranuras.getLong(desplazamiento + 24) == huella.d())) {
+                return ranura;
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+    }
+
+    /// Escribe la entrada en la primera ranura libre desde su posición; la clase va la última y la da por ocupada
+    private static void escribir(MappedByteBuffer destino, int capacidad, Huella huella, int clase, Ubicacion ubicacion) {
+        int mascara = capacidad - 1;
+        int ranura = (int) (huella.a() ^ (huella.a() >>> 32)) & mascara;
+        while (destino.getInt(TAMANIO_CABECERA + ranura * TAMANIO_RANURA + 44) != 0) {
+            ranura = (ranura + 1) & mascara;
+        }
+        int desplazamiento = TAMANIO_CABECERA + ranura * TAMANIO_RANURA;
+        destino.putLong(desplazamiento, huella.a()).putLong(desplazamiento + 8, huella.b())
+                .putLong(desplazamiento + 16, huella.c()).putLong(desplazamiento + 24, huella.d())
+                .putLong(desplazamiento + 32, ubicacion.posicion()).putInt(desplazamiento + 40, ubicacion.longitud())
+                .putInt(desplazamiento + 44, clase);
+    }
+
+    /// Copia las entradas a un fichero con el doble de ranuras y lo pone en lugar del actual
+    private void crecer() throws IOException {
+        if (capacidad * 2L > CAPACIDAD_MAXIMA) {
+            throw new IllegalStateException("El índice de blobs no admite más de " + CAPACIDAD_MAXIMA / 2 + " entradas");
+        }
+        int nuevaCapacidad = capacidad * 2;
+        Path nuevo = crear(fichero, nuevaCapacidad);
+        try (FileChannel salida = FileChannel.open(nuevo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapa = salida.map(FileChannel.MapMode.READ_WRITE, 0, salida.size());
+            for (int ranura = 0; ranura < capacidad; ranura++) {
+                int desplazamiento = TAMANIO_CABECERA + ranura * TAMANIO_RANURA;
+                int clase = ranuras.getInt(desplazamiento + 44);
+                if (clase != 0) {
+                    Huella huella = new Huella(ranuras.getLong(desplazamiento), ranuras.getLong(desplazamiento + 8),
+                            ranuras.getLong(desplazamiento + 16), ranuras.getLong(desplazamiento + 24));
+                    escribir(mapa, nuevaCapacidad, huella, clase,
+                            new Ubicacion(ranuras.getLong(desplazamiento + 32), ranuras.getInt(desplazamiento + 40)));
+                }
+            }
+            mapa.putInt(12, ocupadas);
+            mapa.force();
+        }
+        canal.close();
+        Files.move(nuevo, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        mapear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
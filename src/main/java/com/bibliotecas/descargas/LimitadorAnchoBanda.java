@@ -0,0 +1,104 @@
+package com.bibliotecas.descargas;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limita los bytes por segundo que descarga cada usuario, sumando todas sus descargas a la vez.
+ * Cada usuario tiene un cubo de testigos que se llena al ritmo del límite hasta una ráfaga de un segundo.
+ * En lugar de contar testigos se guarda hasta qué momento se han gastado: el cubo tiene los que se han
+ * repuesto desde entonces, y quien pide más de los que hay espera hasta que se repongan. La espera se hace fuera
+ * de cualquier bloqueo, así que en un hilo virtual no ocupa ningún hilo del sistema.
+ * Un cubo que ha vuelto a llenarse es igual que uno nuevo, así que cada INTERVALO_LIMPIEZA se quitan los de
+ * los usuarios que han dejado de descargar y el mapa solo guarda los que descargan o lo han hecho hace poco.
+ */
+public final class LimitadorAnchoBanda {
+
+    private static final long NANOS_POR_SEGUNDO = TimeUnit.SECONDS.toNanos(1);
+    static final long INTERVALO_LIMPIEZA = TimeUnit.SECONDS.toNanos(10);
+
+    private final long bytesPorSegundo;
+    private final Map<Integer, Cubo> cubos;
+    private final AtomicLong proximaLimpieza;
+
+    /**
+     * Cubo de un usuario; gastadoHasta avanza, al ritmo del límite, con cada byte enviado.
+     * Un cubo retirado ya no está en el mapa: quien lo encuentre así debe buscar o crear el nuevo.
+     */
+    private static final class Cubo {
+        long gastadoHasta;
+        boolean retirado;
+    }
+
+    /**
+     * Constructor del limitador.
+     * @param bytesPorSegundo Límite de cada usuario; 0 o negativo para no limitar.
+     */
+    public LimitadorAnchoBanda(long bytesPorSegundo) {
+        this.bytesPorSegundo = bytesPorSegundo;
+        this.cubos = new ConcurrentHashMap<>();
+        this.proximaLimpieza = new AtomicLong(System.nanoTime() + INTERVALO_LIMPIEZA);
+    }
+
+    public static LimitadorAnchoBanda sinLimite() {
+        return new LimitadorAnchoBanda(0);
+    }
+
+    public long bytesPorSegundo() {
+        return bytesPorSegundo;
+    }
+
+    /**
+     * Toma testigos para enviar bytes al usuario, esperando si ha superado su límite.
+     * @throws InterruptedException Si se interrumpe la espera; los testigos ya se han gastado.
+     */
+    public void consumir(int idUsuario, long bytes) throws InterruptedException {
+        if (bytesPorSegundo <= 0) {
+            return;
+        }
+        long coste = (long) ((double) bytes / bytesPorSegundo * NANOS_POR_SEGUNDO);
+        long ahora = System.nanoTime();
+        limpiarSiToca(ahora);
+        long espera = -1;
+        while (espera < 0) {
+            Cubo cubo = cubos.computeIfAbsent(idUsuario, k -> {
+                Cubo nuevo = new Cubo();
+                nuevo.gastadoHasta = ahora - NANOS_POR_SEGUNDO;
+                return nuevo;
+            });
+            synchronized (cubo) {
+                if (!cubo.retirado) {
+                    // Un cubo lleno tiene un segundo de testigos: lo no gastado antes se pierde
+                    cubo.gastadoHasta = Math.max(cubo.gastadoHasta, ahora - NANOS_POR_SEGUNDO) + coste;
+                    espera = Math.max(cubo.gastadoHasta - ahora, 0);
+                }
+            }
+        }
+        if (espera > 0) {
+            TimeUnit.NANOSECONDS.sleep(espera);
+        }
+    }
+
+    /**
+     * Quita los cubos llenos si ha pasado INTERVALO_LIMPIEZA desde la última vez. Solo limpia un hilo, el que
+     * gana el turno; los demás siguen sin esperar. Cada cubo se retira bajo su propio bloqueo, de modo que
+     * nadie gasta testigos de un cubo que ya no está en el mapa mientras otro crea el nuevo.
+     */
+    private void limpiarSiToca(long ahora) {
+        long prevista = proximaLimpieza.get();
+        if (ahora - prevista < 0 || !proximaLimpieza.compareAndSet(prevista, ahora + INTERVALO_LIMPIEZA)) {
+            return;
+        }
+        for (Map.Entry<Integer, Cubo> entrada : cubos.entrySet()) {
+            Cubo cubo = entrada.getValue();
+            synchronized (cubo) {
+                if (cubo.gastadoHasta <= ahora - NANOS_POR_SEGUNDO) {
+                    cubo.retirado = true;
+                    cubos.remove(entrada.getKey(), cubo);
+                }
+            }
+        }
+    }
+}
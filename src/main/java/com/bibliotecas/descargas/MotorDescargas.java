@@ -0,0 +1,193 @@
+package com.bibliotecas.descargas;
+
+import com.bibliotecas.model.Multimedia;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Motor que descarga el contenido de las publicaciones multimedia: de su blob en un AlmacenBlobs,
+ * si tiene uno asociado, o si no de su fichero en un AlmacenContenidos.
+ * El contenido se envía por trozos de TAMANIO_TROZO con FileChannel.transferTo, que cuando el destino
+ * es un socket o un fichero copia dentro del sistema operativo, sin pasar los bytes por la JVM.
+ * Antes de cada trozo se toman del limitador los testigos del usuario, así que su límite se cumple
+ * aunque tenga varias descargas a la vez.
+ *
+ * transferir trabaja en el hilo que la llama, como el de una petición HTTP; descargar lanza cada descarga
+ * en su propio hilo virtual, de modo que puede haber miles en curso mientras esperan al disco, a la red o
+ * al limitador.
+ */
+public class MotorDescargas implements AutoCloseable {
+
+    static final int TAMANIO_TROZO = 256 * 1024;
+    /// Pausa antes de reintentar con un destino no seleccionable que no ha aceptado nada
+    static final long ESPERA_SIN_PROGRESO = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AlmacenContenidos almacen;
+    private final AlmacenBlobs blobs;
+    private final LimitadorAnchoBanda limitador;
+    private final ExecutorService hilos;
+
+    public MotorDescargas(AlmacenContenidos almacen, LimitadorAnchoBanda limitador) {
+        this(almacen, null, limitador);
+    }
+
+    /**
+     * Constructor del motor.
+     * @param almacen Ficheros de las publicaciones sin blob.
+     * @param blobs Blobs de las publicaciones que los tienen asociados, o null.
+     * @param limitador Límite de ancho de banda de cada usuario.
+     */
+    public MotorDescargas(AlmacenContenidos almacen, AlmacenBlobs blobs, LimitadorAnchoBanda limitador) {
+        this.almacen = almacen;
+        this.blobs = blobs;
+        this.limitador = limitador;
+        this.hilos = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    public AlmacenContenidos almacen() {
+        return almacen;
+    }
+
+    /**
+     * Abre el contenido de una publicación: su blob si tiene uno, o su fichero.
+     * @throws java.nio.file.NoSuchFileException Si no está en ninguno de los almacenes.
+     */
+    public Contenido abrir(Multimedia multimedia) throws IOException {
+        Huella blob = blobs != null ? blobs.blobDe(multimedia) : null;
+        return blob != null ? blobs.abrir(blob) : almacen.abrir(multimedia);
+    }
+
+    /**
+     * Envía una parte del contenido de una publicación.
+     * @param idUsuario Usuario que descarga, al que se aplica el límite.
+     * @param multimedia Publicación cuyo contenido se envía.
+     * @param rango Parte a enviar, o null para enviarlo entero.
+     * @param destino Canal al que se envía; no se cierra.
+     * @return Bytes enviados.
+     * @throws java.nio.file.NoSuchFileException Si el almacén no tiene el contenido.
+     * @throws InterruptedIOException Si se interrumpe el hilo mientras espera al limitador.
+     */
+    public long transferir(int idUsuario, Multimedia multimedia, Rango rango, WritableByteChannel destino) throws IOException {
+        try (Contenido contenido = abrir(multimedia)) {
+            if (rango == null) {
+                rango = Rango.completo(contenido.tamanio());
+            }
+            return transferir(idUsuario, contenido, rango, destino);
+        }
+    }
+
+    /**
+     * Envía una parte de un contenido ya abierto, por ejemplo después de consultar su tamaño para responder
+     * con el mismo fichero aunque otro lo sustituya en el almacén entretanto.
+     * @param contenido Contenido abierto con abrir; no se cierra.
+     * @return Bytes enviados; menos que la longitud del rango solo si pasa del final del contenido.
+     */
+    public long transferir(int idUsuario, Contenido contenido, Rango rango, WritableByteChannel destino) throws IOException {
+        long desde = rango.desde();
+        long longitud = rango.longitud();
+        long enviados = 0;
+        Selector selector = null;
+        try {
+            while (enviados < longitud) {
+                long trozo = Math.min(TAMANIO_TROZO, longitud - enviados);
+                try {
+                    limitador.consumir(idUsuario, trozo);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Descarga interrumpida tras " + enviados + " bytes");
+                }
+                // Se puede enviar menos de lo pedido, por ejemplo si el socket está lleno o el trozo cruza dos tramos de un blob
+                long hasta = enviados + trozo;
+                while (enviados < hasta) {
+                    long n = contenido.transferir(desde + enviados, hasta - enviados, destino);
+                    if (n > 0) {
+                        enviados += n;
+                    } else if (desde + enviados >= contenido.tamanio()) {
+                        return enviados;
+                    } else {
+                        selector = esperarDestino(destino, selector, enviados);
+                    }
+                }
+            }
+            return enviados;
+        } finally {
+            if (selector != null) {
+                selector.close();
+            }
+        }
+    }
+
+    /**
+     * Espera a que un destino que no ha aceptado ningún byte pueda recibir más, en lugar de reintentar sin pausa.
+     * Un canal no bloqueante con el búfer lleno devuelve 0 hasta que el otro extremo lee: si es seleccionable
+     * se espera con un selector, que se abre la primera vez y se reutiliza; si no, se reintenta tras una pausa.
+     * @return El selector con el que se espera, o null si no se ha necesitado.
+     * @throws InterruptedIOException Si se interrumpe el hilo mientras espera.
+     */
+    private static Selector esperarDestino(WritableByteChannel destino, Selector selector, long enviados) throws IOException {
+        if (destino instanceof SelectableChannel seleccionable && !seleccionable.isBlocking()) {
+            if (selector == null) {
+                selector = Selector.open();
+                seleccionable.register(selector, SelectionKey.OP_WRITE);
+            }
+            selector.select();
+            selector.selectedKeys().clear();
+        } else {
+            LockSupport.parkNanos(ESPERA_SIN_PROGRESO);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Descarga interrumpida tras " + enviados + " bytes");
+        }
+        return selector;
+    }
+
+    /**
+     * Descarga el contenido de una publicación a un fichero en segundo plano. Si el fichero ya existe
+     * con parte del contenido, la descarga se reanuda donde se quedó; si es mayor que el contenido,
+     * se descarga de nuevo desde el principio.
+     * @param idUsuario Usuario que descarga, al que se aplica el límite.
+     * @param multimedia Publicación cuyo contenido se descarga.
+     * @param destino Fichero en el que se guarda.
+     * @return Futuro con el tamaño final del fichero; falla con UncheckedIOException si falla la descarga.
+     */
+    public CompletableFuture<Long> descargar(int idUsuario, Multimedia multimedia, Path destino) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Contenido contenido = abrir(multimedia);
+                 FileChannel salida = FileChannel.open(destino, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long tamanio = contenido.tamanio();
+                long yaDescargado = salida.size();
+                if (yaDescargado > tamanio) {
+                    salida.truncate(0);
+                    yaDescargado = 0;
+                }
+                salida.position(yaDescargado);
+                long enviados = transferir(idUsuario, contenido, new Rango(yaDescargado, tamanio - yaDescargado), salida);
+                return yaDescargado + enviados;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, hilos);
+    }
+
+    /**
+     * Deja de aceptar descargas y espera a que terminen las que están en curso.
+     */
+    @Override
+    public void close() {
+        hilos.close();
+    }
+}
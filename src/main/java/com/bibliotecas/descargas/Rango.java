@@ -0,0 +1,63 @@
+package com.bibliotecas.descargas;
+
+/**
+ * Parte de un contenido que se descarga: longitud bytes a partir de desde.
+ * Se obtiene de la cabecera Range de HTTP, que permite reanudar una descarga cortada.
+ */
+public record Rango(long desde, long longitud) {
+
+    public static Rango completo(long tamanio) {
+        return new Rango(0, tamanio);
+    }
+
+    /// Último byte incluido, como lo indica la cabecera Content-Range
+    public long hasta() {
+        return desde + longitud - 1;
+    }
+
+    /**
+     * Interpreta una cabecera Range de un solo rango de bytes: bytes=a-b, bytes=a- o bytes=-n (los n últimos).
+     * Las cabeceras con varios rangos u otras unidades se ignoran, como permite HTTP, y se envía todo; también las
+     * de un rango mal formado, como bytes=500-100, que termina antes de empezar.
+     * @param cabecera Valor de la cabecera, o null si la petición no la trae.
+     * @param tamanio Tamaño del contenido.
+     * @return El rango pedido, recortado al contenido, o null si hay que enviarlo entero.
+     * @throws IllegalArgumentException Si el rango no se puede satisfacer, por ejemplo si empieza después del final.
+     */
+    public static Rango analizar(String cabecera, long tamanio) {
+        if (cabecera == null || !cabecera.startsWith("bytes=") || cabecera.indexOf(',') >= 0) {
+            return null;
+        }
+        String especificacion = cabecera.substring("bytes=".length()).trim();
+        int guion = especificacion.indexOf('-');
+        if (guion < 0) {
+            return null;
+        }
+        try {
+            String primero = especificacion.substring(0, guion).trim();
+            String ultimo = especificacion.substring(guion + 1).trim();
+            if (primero.isEmpty()) {
+                long sufijo = Long.parseLong(ultimo);
+                if (sufijo <= 0 || tamanio == 0) {
+                    throw new IllegalArgumentException("Rango no satisfacible: " + cabecera);
+                }
+                long longitud = Math.min(sufijo, tamanio);
+                return new Rango(tamanio - longitud, longitud);
+            }
+            long desde = Long.parseLong(primero);
+            long pedidoHasta = ultimo.isEmpty() ? Long.MAX_VALUE : Long.parseLong(ultimo);
+            if (desde < 0 || pedidoHasta < desde) {
+                // bytes=a-b con b < a no es un rango válido: la cabecera se ignora y se envía todo
+                return null;
+            }
+            if (desde >= tamanio) {
+                throw new IllegalArgumentException("Rango no satisfacible: " + cabecera);
+            }
+            long hasta = Math.min(pedidoHasta, tamanio - 1);
+            return new Rango(desde, hasta - desde + 1);
+        } catch (NumberFormatException e) {
+            // Una cabecera mal formada se ignora
+            return null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.bibliotecas.descargas;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Parte un contenido en trozos definidos por el propio contenido, al estilo de FastCDC: un hash gear
+ * recorre los bytes y se corta donde sus bits altos valen cero, con trozos de entre MINIMO y MAXIMO bytes
+ * y una media cercana a MEDIO. Como los cortes dependen solo de los bytes cercanos, dos grabaciones que
+ * comparten una parte, aunque una tenga una introducción distinta delante, producen los mismos trozos
+ * en esa parte. Hasta MEDIO se usa una máscara más exigente y después una más fácil, lo que concentra
+ * los tamaños alrededor de la media.
+ */
+final class Troceador {
+
+    static final int MINIMO = 16 * 1024;
+    static final int MEDIO = 64 * 1024;
+    static final int MAXIMO = 256 * 1024;
+
+    private static final long MASCARA_DIFICIL = -1L << (64 - 18);
+    private static final long MASCARA_FACIL = -1L << (64 - 14);
+
+    // La tabla no puede cambiar: con otra, los cortes de contenidos nuevos no coincidirían con los ya guardados
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom aleatorio = new SplittableRandom(0x5EED_B10B5L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = aleatorio.nextLong();
+        }
+    }
+
+    private final InputStream origen;
+    private final byte[] buffer;
+    private int inicio; // Primer byte aún no entregado
+    private int fin;    // Fin de los bytes leídos
+    private boolean agotado;
+
+    Troceador(InputStream origen) {
+        this.origen = origen;
+        this.buffer = new byte[MAXIMO * 4];
+    }
+
+    /**
+     * Devuelve el siguiente trozo, que sigue siendo válido hasta la próxima llamada.
+     * @return El trozo, o null si se ha llegado al final.
+     */
+    ByteBuffer siguiente() throws IOException {
+        rellenar();
+        int disponibles = fin - inicio;
+        if (disponibles == 0) {
+            return null;
+        }
+        int longitud = corte(buffer, inicio, Math.min(disponibles, MAXIMO));
+        ByteBuffer trozo = ByteBuffer.wrap(buffer, inicio, longitud);
+        inicio += longitud;
+        return trozo;
+    }
+
+    /// Garantiza al menos MAXIMO bytes pendientes, salvo al final del origen
+    private void rellenar() throws IOException {
+        if (agotado || fin - inicio >= MAXIMO) {
+            return;
+        }
+        System.arraycopy(buffer, inicio, buffer, 0, fin - inicio);
+        fin -= inicio;
+        inicio = 0;
+        while (fin < buffer.length) {
+            int leidos = origen.read(buffer, fin, buffer.length - fin);
+            if (leidos < 0) {
+                agotado = true;
+                return;
+            }
+            fin += leidos;
+        }
+    }
+
+    /// Longitud del trozo que empieza en desde, con n bytes disponibles como mucho MAXIMO
+    static int corte(byte[] datos, int desde, int n) {
+        if (n <= MINIMO) {
+            return n;
+        }
+        long hash = 0;
+        int i = MINIMO;
+        int limite = Math.min(MEDIO, n);
+        for (; i < limite; i++) {
+            hash = (hash << 1) + GEAR[datos[desde + i] & 0xFF];
+            if ((hash & MASCARA_DIFICIL) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < n; i++) {
+            hash = (hash << 1) + GEAR[datos[desde + i] & 0xFF];
+            if ((hash & MASCARA_FACIL) == 0) {
+                return i + 1;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,52 @@
+package com.bibliotecas.estadisticas;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de los últimos días en un array circular: cada día ocupa la posición de su número de día
+ * módulo la capacidad, y al llegar un día nuevo su posición se reutiliza con un contador nuevo.
+ * Incrementar es O(1) y no compite por un único contador: cada día usa un LongAdder.
+ */
+final class ContadorPorDia {
+
+    private record Dia(long numero, LongAdder cuenta) {
+    }
+
+    private final AtomicReferenceArray<Dia> dias;
+
+    /// @param capacidad Número de días que se conservan.
+    ContadorPorDia(int capacidad) {
+        this.dias = new AtomicReferenceArray<>(capacidad);
+    }
+
+    void incrementar(LocalDate fecha) {
+        long numero = fecha.toEpochDay();
+        int posicion = (int) Math.floorMod(numero, (long) dias.length());
+        Dia dia = dias.get(posicion);
+        while (dia == null || dia.numero() != numero) {
+            if (dia != null && dia.numero() > numero) {
+                return; // Un día ya descartado por antiguo
+            }
+            Dia nuevo = new Dia(numero, new LongAdder());
+            if (dias.compareAndSet(posicion, dia, nuevo)) {
+                dia = nuevo;
+            } else {
+                dia = dias.get(posicion);
+            }
+        }
+        dia.cuenta().increment();
+    }
+
+    /// Cuenta de un día, o 0 si no hubo ninguna o ya no se conserva
+    long cuenta(LocalDate fecha) {
+        long numero = fecha.toEpochDay();
+        Dia dia = dias.get((int) Math.floorMod(numero, (long) dias.length()));
+        return dia != null && dia.numero() == numero ? dia.cuenta().sum() : 0;
+    }
+
+    int capacidad() {
+        return dias.length();
+    }
+}
@@ -0,0 +1,45 @@
+package com.bibliotecas.estadisticas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Esbozo Count-Min: estima cuántas veces ha aparecido cada clave con memoria fija.
+ * Cada clave incrementa un contador en cada una de las filas, elegido con una función hash distinta por fila;
+ * la estimación es el mínimo de esos contadores, que nunca es menor que la cuenta real y la supera como mucho
+ * en una pequeña fracción del total cuando hay colisiones.
+ */
+final class EsbozoCountMin {
+
+    private static final int FILAS = 4;
+    private static final long[] SEMILLAS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    private final AtomicLongArray contadores;
+    private final int mascara;
+
+    /// @param anchura Contadores por fila; se redondea a una potencia de dos.
+    EsbozoCountMin(int anchura) {
+        int columnas = Integer.highestOneBit(Math.max(1, anchura - 1) << 1);
+        this.contadores = new AtomicLongArray(FILAS * columnas);
+        this.mascara = columnas - 1;
+    }
+
+    private int posicion(int fila, long clave) {
+        long h = (clave + fila) * SEMILLAS[fila];
+        h ^= h >>> 29;
+        return fila * (mascara + 1) + ((int) (h ^ (h >>> 32)) & mascara);
+    }
+
+    void incrementar(long clave) {
+        for (int fila = 0; fila < FILAS; fila++) {
+            contadores.incrementAndGet(posicion(fila, clave));
+        }
+    }
+
+    long estimar(long clave) {
+        long minimo = Long.MAX_VALUE;
+        for (int fila = 0; fila < FILAS; fila++) {
+            minimo = Math.min(minimo, contadores.get(posicion(fila, clave)));
+        }
+        return minimo;
+    }
+}
@@ -0,0 +1,167 @@
+package com.bibliotecas.estadisticas;
+
+import com.bibliotecas.model.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estadísticas de circulación calculadas a medida que llegan los eventos de la biblioteca.
+ * Cada préstamo, devolución o cambio en las colas de espera actualiza en O(1) unos contadores,
+ * un contador por día, un histograma de duración de préstamos por tipo de publicación, un esbozo Count-Min
+ * con los préstamos de cada publicación y una lista Space-Saving de las más prestadas.
+ * Las consultas leen esos agregados directamente, sin recorrer préstamos ni publicaciones.
+ * Solo cuenta lo ocurrido desde que se añade como oyente; no guarda nada en disco.
+ */
+public class EstadisticasCirculacion implements OyenteBiblioteca {
+
+    /// Días que se conservan en la cuenta de préstamos por día
+    public static final int DIAS_CONSERVADOS = 400;
+    private static final int PUBLICACIONES_SEGUIDAS = 100;
+
+    /**
+     * Publicación entre las más prestadas.
+     * @param prestamos Préstamos contados; puede superar a los reales en como mucho error.
+     * @param error Cota del exceso de prestamos sobre la cuenta real.
+     */
+    public record PublicacionFrecuente(Publicacion publicacion, long prestamos, long error) {
+    }
+
+    private final LongAdder prestamos;
+    private final LongAdder devoluciones;
+    private final LongAdder devolucionesConRetraso;
+    private final LongAdder enEspera;
+    private final ContadorPorDia prestamosPorDia;
+    private final Map<Class<? extends PublicacionPrestable>, Histograma> duraciones;
+    private final EsbozoCountMin prestamosPorPublicacion;
+    private final MasFrecuentes<PublicacionPrestable> masPrestadas;
+
+    public EstadisticasCirculacion() {
+        this.prestamos = new LongAdder();
+        this.devoluciones = new LongAdder();
+        this.devolucionesConRetraso = new LongAdder();
+        this.enEspera = new LongAdder();
+        this.prestamosPorDia = new ContadorPorDia(DIAS_CONSERVADOS);
+        this.duraciones = new ConcurrentHashMap<>();
+        this.prestamosPorPublicacion = new EsbozoCountMin(1 << 16);
+        this.masPrestadas = new MasFrecuentes<>(PUBLICACIONES_SEGUIDAS, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    @Override
+    public void prestamo(int idUsuario, PublicacionPrestable publicacion, ResultadoPrestamo resultado) {
+        if (resultado != ResultadoPrestamo.PRESTADO) {
+            return;
+        }
+        prestamos.increment();
+        prestamosPorDia.incrementar(LocalDate.now());
+        prestamosPorPublicacion.incrementar(publicacion.getId());
+        masPrestadas.registrar(publicacion.getId(), publicacion);
+    }
+
+    @Override
+    public void devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado, LocalDate fechaPrestamo) {
+        if (resultado != ResultadoDevolucion.DEVUELTO && resultado != ResultadoDevolucion.DEVUELTO_CON_RETRASO) {
+            return;
+        }
+        devoluciones.increment();
+        if (resultado == ResultadoDevolucion.DEVUELTO_CON_RETRASO) {
+            devolucionesConRetraso.increment();
+        }
+        if (fechaPrestamo != null) {
+            duraciones.computeIfAbsent(publicacion.getClass(), k -> new Histograma())
+                    .registrar(ChronoUnit.DAYS.between(fechaPrestamo, LocalDate.now()));
+        }
+    }
+
+    @Override
+    public void esperaIniciada(int idUsuario, PublicacionPrestable publicacion) {
+        enEspera.increment();
+    }
+
+    @Override
+    public void esperaTerminada(int idUsuario, PublicacionPrestable publicacion) {
+        enEspera.decrement();
+    }
+
+    /// Préstamos realizados desde que se empezó a contar
+    public long prestamos() {
+        return prestamos.sum();
+    }
+
+    /// Devoluciones realizadas desde que se empezó a contar
+    public long devoluciones() {
+        return devoluciones.sum();
+    }
+
+    /**
+     * Préstamos realizados en un día.
+     * @param fecha Día a consultar; solo se conservan los últimos DIAS_CONSERVADOS días.
+     */
+    public long prestamosEn(LocalDate fecha) {
+        return prestamosPorDia.cuenta(fecha);
+    }
+
+    /**
+     * Préstamos realizados cada día entre dos fechas, ambas incluidas. El rango se recorta a los días que
+     * se conservan, los últimos DIAS_CONSERVADOS hasta hoy, así que un rango enorme no cuesta más que ese.
+     * @return Mapa ordenado por fecha con la cuenta de cada día del rango recortado, incluidos los días sin préstamos.
+     */
+    public SortedMap<LocalDate, Long> prestamosPorDia(LocalDate desde, LocalDate hasta) {
+        LocalDate hoy = LocalDate.now();
+        LocalDate primero = hoy.minusDays(DIAS_CONSERVADOS - 1);
+        if (desde.isBefore(primero)) {
+            desde = primero;
+        }
+        if (hasta.isAfter(hoy)) {
+            hasta = hoy;
+        }
+        SortedMap<LocalDate, Long> resultado = new TreeMap<>();
+        for (LocalDate dia = desde; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+            resultado.put(dia, prestamosPorDia.cuenta(dia));
+        }
+        return resultado;
+    }
+
+    /**
+     * Histograma de la duración en días de los préstamos devueltos de un tipo de publicación,
+     * por ejemplo Libro.class (plazo de 21 días) o Revista.class (plazo de 7 días).
+     * @return El histograma, vacío si no se ha devuelto ninguna publicación de ese tipo.
+     */
+    public Histograma duracionPrestamos(Class<? extends PublicacionPrestable> tipo) {
+        Histograma histograma = duraciones.get(tipo);
+        return histograma != null ? histograma : new Histograma();
+    }
+
+    /// Fracción de las devoluciones que se hicieron con retraso, entre 0 y 1
+    public double tasaRetraso() {
+        long total = devoluciones.sum();
+        return total == 0 ? 0 : (double) devolucionesConRetraso.sum() / total;
+    }
+
+    /// Número total de usuarios esperando en las colas de todas las publicaciones
+    public long usuariosEnEspera() {
+        return enEspera.sum();
+    }
+
+    /**
+     * Estima cuántas veces se ha prestado una publicación. La estimación nunca es menor que la cuenta real.
+     */
+    public long prestamosEstimados(Publicacion publicacion) {
+        return prestamosPorPublicacion.estimar(publicacion.getId());
+    }
+
+    /**
+     * Publicaciones más prestadas, de más a menos préstamos.
+     * @param n Número de publicaciones; hasta 100, las que sigue cada tramo de la lista Space-Saving.
+     */
+    public List<PublicacionFrecuente> masPrestadas(int n) {
+        List<PublicacionFrecuente> resultado = new ArrayList<>();
+        for (MasFrecuentes.Entrada<PublicacionPrestable> entrada : masPrestadas.mayores(n)) {
+            resultado.add(new PublicacionFrecuente(entrada.valor(), entrada.cuenta(), entrada.error()));
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,101 @@
+package com.bibliotecas.estadisticas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores enteros no negativos con precisión relativa fija, al estilo de HdrHistogram.
+ * Los valores menores que 128 tienen un contador cada uno; a partir de ahí cada potencia de dos se reparte
+ * en 64 intervalos iguales, así que cualquier valor se guarda con un error menor del 1,6 %
+ * usando un número fijo de contadores, sea cual sea el máximo.
+ * Registrar un valor es calcular su intervalo con unas pocas operaciones de bits e incrementar un contador
+ * atómico; los percentiles recorren los contadores, no los valores registrados.
+ */
+public class Histograma {
+
+    private static final int LINEALES = 128;
+    private static final int BITS_SUBINTERVALO = 6;
+    private static final int SUBINTERVALOS = 1 << BITS_SUBINTERVALO;
+    // Intervalos lineales más 64 por cada una de las potencias de dos de 2^7 a 2^62
+    private static final int INTERVALOS = LINEALES + (63 - 7) * SUBINTERVALOS;
+
+    private final AtomicLongArray cuentas;
+    private final LongAdder total;
+    private final LongAdder suma;
+    private final LongAccumulator maximo;
+
+    public Histograma() {
+        this.cuentas = new AtomicLongArray(INTERVALOS);
+        this.total = new LongAdder();
+        this.suma = new LongAdder();
+        this.maximo = new LongAccumulator(Math::max, 0);
+    }
+
+    private static int intervalo(long valor) {
+        if (valor < LINEALES) {
+            return (int) valor;
+        }
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBINTERVALO;
+        return LINEALES + (desplazamiento - 1) * SUBINTERVALOS + (int) (valor >>> desplazamiento) - SUBINTERVALOS;
+    }
+
+    /// Mayor valor que cae en el intervalo indicado
+    private static long maximoDe(int intervalo) {
+        if (intervalo < LINEALES) {
+            return intervalo;
+        }
+        int desplazamiento = (intervalo - LINEALES) / SUBINTERVALOS + 1;
+        long inicio = (long) ((intervalo - LINEALES) % SUBINTERVALOS + SUBINTERVALOS) << desplazamiento;
+        return inicio + (1L << desplazamiento) - 1;
+    }
+
+    /**
+     * Registra un valor.
+     * @param valor Valor no negativo; los negativos se registran como 0.
+     */
+    public void registrar(long valor) {
+        long v = Math.max(0, valor);
+        cuentas.incrementAndGet(intervalo(v));
+        total.increment();
+        suma.add(v);
+        maximo.accumulate(v);
+    }
+
+    /// Número de valores registrados
+    public long total() {
+        return total.sum();
+    }
+
+    /// Media exacta de los valores registrados, o 0 si no hay ninguno
+    public double media() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    /// Mayor valor registrado, o 0 si no hay ninguno
+    public long maximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Calcula un percentil de los valores registrados.
+     * @param percentil Percentil entre 0 y 100, por ejemplo 99.
+     * @return El mayor valor del intervalo en el que cae el percentil (nunca mayor que el máximo registrado), o 0 si no hay valores.
+     */
+    public long percentil(double percentil) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentil)) / 100 * n));
+        long acumulado = 0;
+        for (int i = 0; i < INTERVALOS; i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(maximoDe(i), maximo());
+            }
+        }
+        return maximo();
+    }
+}
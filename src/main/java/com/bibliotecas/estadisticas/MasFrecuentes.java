@@ -0,0 +1,219 @@
+package com.bibliotecas.estadisticas;
+
+import java.util.*;
+
+/**
+ * Algoritmo Space-Saving: sigue las claves más frecuentes de un flujo con k contadores.
+ * Una clave que no se está siguiendo sustituye a la de menor cuenta y hereda esa cuenta como error máximo,
+ * así que toda clave con más de total / k apariciones está garantizado que aparece.
+ * <p>
+ * Para que los préstamos simultáneos no compitan por un único bloqueo, las claves se reparten por hash entre
+ * varios tramos, cada uno con sus k contadores y su propio bloqueo. Cada clave cae siempre en el mismo tramo,
+ * así que la garantía se cumple dentro de cada tramo, con el total de ese tramo, y la consulta solo tiene que
+ * juntar las mayores de cada uno.
+ * <p>
+ * En cada tramo las entradas se guardan en un array ordenado por cuenta de menor a mayor. Como las cuentas
+ * solo suben de uno en uno, incrementar una entrada es intercambiarla con la última de su cuenta, que se busca
+ * por bisección, y sumarle uno, sin reordenar nada. Una tabla de direccionamiento abierto sin objetos da la
+ * posición de cada clave. Se empieza con k entradas vacías de cuenta 0, de modo que llenar el array es lo
+ * mismo que sustituir.
+ */
+final class MasFrecuentes<T> {
+
+    /**
+     * Clave seguida, con su cuenta y el error máximo de esa cuenta.
+     */
+    record Entrada<T>(long clave, T valor, long cuenta, long error) {
+    }
+
+    private final Tramo[] tramos;
+
+    /**
+     * @param k Contadores de cada tramo.
+     * @param nivelConcurrencia Número aproximado de tramos; se redondea a una potencia de dos.
+     */
+    MasFrecuentes(int k, int nivelConcurrencia) {
+        this.tramos = new Tramo[Integer.highestOneBit(Math.max(1, nivelConcurrencia - 1) << 1)];
+        for (int i = 0; i < tramos.length; i++) {
+            tramos[i] = new Tramo(k);
+        }
+    }
+
+    private Tramo tramo(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return tramos[(int) (h >>> 32) & (tramos.length - 1)];
+    }
+
+    /**
+     * Cuenta una aparición de la clave.
+     * @param clave Clave que identifica el elemento.
+     * @param valor Objeto que se devuelve junto a la clave en los resultados.
+     */
+    void registrar(long clave, T valor) {
+        Tramo tramo = tramo(clave);
+        synchronized (tramo) {
+            tramo.registrar(clave, valor);
+        }
+    }
+
+    /**
+     * Devuelve las claves seguidas de mayor a menor cuenta.
+     * @param n Número máximo de entradas.
+     */
+    List<Entrada<T>> mayores(int n) {
+        List<Entrada<T>> resultado = new ArrayList<>();
+        for (Tramo tramo : tramos) {
+            synchronized (tramo) {
+                tramo.mayores(n, resultado);
+            }
+        }
+        resultado.sort(Comparator.comparingLong((Entrada<T> e) -> e.cuenta()).reversed());
+        return resultado.size() > n ? new ArrayList<>(resultado.subList(0, n)) : resultado;
+    }
+
+    /**
+     * Space-Saving de un tramo; quien lo usa debe sincronizar sobre él.
+     */
+    private static final class Tramo {
+
+        private static final int LIBRE = -1;
+
+        private final long[] claves;
+        private final Object[] valores;
+        private final long[] cuentas;
+        private final long[] errores;
+        private final boolean[] ocupadas;
+        private final long[] clavesTabla;     // Tabla clave -> posición en los arrays, con sondeo lineal
+        private final int[] posicionesTabla;  // LIBRE en las casillas vacías
+        private final int mascara;
+
+        Tramo(int k) {
+            this.claves = new long[k];
+            this.valores = new Object[k];
+            this.cuentas = new long[k];
+            this.errores = new long[k];
+            this.ocupadas = new boolean[k];
+            int capacidad = Integer.highestOneBit(Math.max(2, k) * 2 - 1) << 1;
+            this.clavesTabla = new long[capacidad];
+            this.posicionesTabla = new int[capacidad];
+            Arrays.fill(posicionesTabla, LIBRE);
+            this.mascara = capacidad - 1;
+        }
+
+        void registrar(long clave, Object valor) {
+            int i = buscar(clave);
+            if (i == LIBRE) {
+                // Se sustituye la de menor cuenta, que es la primera
+                i = 0;
+                if (ocupadas[0]) {
+                    quitar(claves[0]);
+                }
+                claves[0] = clave;
+                valores[0] = valor;
+                errores[0] = cuentas[0];
+                ocupadas[0] = true;
+                poner(clave, 0);
+            }
+            incrementar(i);
+        }
+
+        private void incrementar(int i) {
+            long cuenta = cuentas[i];
+            // Última posición con la misma cuenta: el array está ordenado, así que se busca por bisección
+            int bajo = i;
+            int alto = cuentas.length - 1;
+            while (bajo < alto) {
+                int medio = (bajo + alto + 1) >>> 1;
+                if (cuentas[medio] == cuenta) {
+                    bajo = medio;
+                } else {
+                    alto = medio - 1;
+                }
+            }
+            intercambiar(i, bajo);
+            cuentas[bajo] = cuenta + 1;
+        }
+
+        private void intercambiar(int a, int b) {
+            if (a == b) {
+                return;
+            }
+            long clave = claves[a];
+            claves[a] = claves[b];
+            claves[b] = clave;
+            Object valor = valores[a];
+            valores[a] = valores[b];
+            valores[b] = valor;
+            long cuenta = cuentas[a];
+            cuentas[a] = cuentas[b];
+            cuentas[b] = cuenta;
+            long error = errores[a];
+            errores[a] = errores[b];
+            errores[b] = error;
+            boolean ocupada = ocupadas[a];
+            ocupadas[a] = ocupadas[b];
+            ocupadas[b] = ocupada;
+            if (ocupadas[a]) {
+                poner(claves[a], a);
+            }
+            if (ocupadas[b]) {
+                poner(claves[b], b);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> void mayores(int n, List<Entrada<T>> destino) {
+            int anadidas = 0;
+            for (int i = claves.length - 1; i >= 0 && anadidas < n; i--) {
+                if (ocupadas[i]) {
+                    destino.add(new Entrada<>(claves[i], (T) valores[i], cuentas[i], errores[i]));
+                    anadidas++;
+                }
+            }
+        }
+
+        private int casilla(long clave) {
+            long h = clave * 0xC2B2AE3D27D4EB4FL;
+            return (int) (h ^ (h >>> 32)) & mascara;
+        }
+
+        /// Posición de la clave en los arrays, o LIBRE si no se sigue
+        private int buscar(long clave) {
+            for (int c = casilla(clave); posicionesTabla[c] != LIBRE; c = (c + 1) & mascara) {
+                if (clavesTabla[c] == clave) {
+                    return posicionesTabla[c];
+                }
+            }
+            return LIBRE;
+        }
+
+        /// Guarda o actualiza la posición de una clave
+        private void poner(long clave, int posicion) {
+            int c = casilla(clave);
+            while (posicionesTabla[c] != LIBRE && clavesTabla[c] != clave) {
+                c = (c + 1) & mascara;
+            }
+            clavesTabla[c] = clave;
+            posicionesTabla[c] = posicion;
+        }
+
+        /// Quita una clave y recoloca las que la seguían en su racha, para no dejar huecos en el sondeo
+        private void quitar(long clave) {
+            int c = casilla(clave);
+            while (clavesTabla[c] != clave || posicionesTabla[c] == LIBRE) {
+                c = (c + 1) & mascara;
+            }
+            posicionesTabla[c] = LIBRE;
+            for (int s = (c + 1) & mascara; posicionesTabla[s] != LIBRE; s = (s + 1) & mascara) {
+                int ideal = casilla(clavesTabla[s]);
+                // La entrada de s puede ocupar el hueco c si c está entre su casilla ideal y s, de forma circular
+                if (((s - ideal) & mascara) >= ((s - c) & mascara)) {
+                    clavesTabla[c] = clavesTabla[s];
+                    posicionesTabla[c] = posicionesTabla[s];
+                    posicionesTabla[s] = LIBRE;
+                    c = s;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.bibliotecas.eventos;
+
+import com.bibliotecas.model.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Oyente que escribe los eventos de la biblioteca en un Writer desde un hilo propio.
+ * Las operaciones solo encolan el evento; el hilo escritor los saca por lotes, los formatea
+ * y hace un único flush por lote. Si la cola se llena, el evento se descarta y se cuenta,
+ * para que el registro nunca frene un préstamo. Se puede desactivar con setActivo(false).
+ */
+public class RegistroAsincrono implements OyenteBiblioteca, AutoCloseable {
+
+    private static final int TAMANIO_LOTE = 256;
+
+    /**
+     * Evento pendiente de escribir.
+     */
+    private record Evento(long instante, String tipo, int idUsuario, long idPublicacion, String detalle) {
+    }
+
+    private final BlockingQueue<Evento> pendientes;
+    private final Writer destino;
+    private final Thread escritor;
+    private final AtomicLong descartados;
+    private volatile boolean activo;
+    private volatile boolean cerrado;
+
+    /**
+     * Crea el registro y arranca su hilo escritor.
+     * @param destino Writer en el que se escriben los eventos.
+     * @param capacidad Número máximo de eventos pendientes antes de empezar a descartar.
+     */
+    public RegistroAsincrono(Writer destino, int capacidad) {
+        this.pendientes = new ArrayBlockingQueue<>(capacidad);
+        this.destino = destino;
+        this.descartados = new AtomicLong();
+        this.activo = true;
+        this.escritor = new Thread(this::escribir, "registro-biblioteca");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Crea un registro que escribe en la salida estándar.
+     * @return El registro ya arrancado.
+     */
+    public static RegistroAsincrono consola() {
+        return new RegistroAsincrono(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 8192);
+    }
+
+    public void setActivo(boolean activo) {
+        this.activo = activo;
+    }
+
+    public boolean isActivo() {
+        return activo;
+    }
+
+    /**
+     * Obtiene el número de eventos descartados porque la cola estaba llena.
+     * @return Eventos descartados desde que se creó el registro.
+     */
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    @Override
+    public void usuarioRegistrado(int idUsuario, String nombre) {
+        encolar("USUARIO", idUsuario, 0, nombre);
+    }
+
+    @Override
+    public void prestamo(int idUsuario, PublicacionPrestable publicacion, ResultadoPrestamo resultado) {
+        encolar("PRESTAMO", idUsuario, publicacion.getId(), resultado.name());
+    }
+
+    @Override
+    public void devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado) {
+        encolar("DEVOLUCION", idUsuario, publicacion.getId(), resultado.name());
+    }
+
+    private void encolar(String tipo, int idUsuario, long idPublicacion, String detalle) {
+        if (!activo || cerrado) {
+            return;
+        }
+        if (!pendientes.offer(new Evento(System.currentTimeMillis(), tipo, idUsuario, idPublicacion, detalle))) {
+            descartados.incrementAndGet();
+        }
+    }
+
+    /// Bucle del hilo escritor: espera un evento y escribe todos los que haya pendientes como un lote
+    private void escribir() {
+        List<Evento> lote = new ArrayList<>(TAMANIO_LOTE);
+        StringBuilder linea = new StringBuilder(128);
+        try {
+            while (!cerrado || !pendientes.isEmpty()) {
+                Evento primero = pendientes.poll(100, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                pendientes.drainTo(lote, TAMANIO_LOTE - 1);
+                escribirLote(lote, linea);
+                lote.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void escribirLote(List<Evento> lote, StringBuilder linea) {
+        try {
+            for (Evento evento : lote) {
+                linea.setLength(0);
+                linea.append(Instant.ofEpochMilli(evento.instante())).append(' ')
+                        .append(evento.tipo())
+                        .append(" usuario=").append(evento.idUsuario());
+                if (evento.idPublicacion() != 0) {
+                    linea.append(" publicacion=").append(evento.idPublicacion());
+                }
+                linea.append(' ').append(evento.detalle()).append('\n');
+                destino.append(linea);
+            }
+            destino.flush();
+        } catch (IOException e) {
+            descartados.addAndGet(lote.size());
+        }
+    }
+
+    /**
+     * Escribe los eventos pendientes y detiene el hilo escritor.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
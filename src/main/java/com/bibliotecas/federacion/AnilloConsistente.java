@@ -0,0 +1,94 @@
+package com.bibliotecas.federacion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Anillo de hash consistente que asigna cada clave (un ID de usuario o de publicación) a un nodo.
+ * Cada nodo ocupa varios puntos del anillo, calculados a partir de su nombre, y una clave pertenece
+ * al nodo del primer punto que encuentra avanzando desde su propio hash. Los puntos virtuales reparten
+ * las claves de forma pareja, y como dependen del nombre y no de la posición en la lista, añadir
+ * o quitar un nodo solo cambia de dueño la parte de las claves que le corresponde a ese nodo.
+ * Es inmutable, así que se puede consultar desde cualquier hilo sin sincronización.
+ * @param <N> Tipo de los nodos.
+ */
+public final class AnilloConsistente<N> {
+
+    private final List<N> nodos;
+    private final long[] puntos;  // Hashes de los puntos, ordenados
+    private final int[] duenios;  // Posición en nodos del dueño de cada punto
+
+    /**
+     * Construye el anillo.
+     * @param nodos Nodos del anillo; el orden solo determina el resultado de indiceDe.
+     * @param nombre Nombre de cada nodo, que debe ser único y estable entre ejecuciones.
+     * @param nodosVirtuales Número de puntos de cada nodo.
+     */
+    public AnilloConsistente(List<? extends N> nodos, Function<? super N, String> nombre, int nodosVirtuales) {
+        if (nodos.isEmpty() || nodosVirtuales < 1) {
+            throw new IllegalArgumentException("El anillo necesita al menos un nodo y un punto por nodo");
+        }
+        this.nodos = List.copyOf(nodos);
+        Set<String> nombres = new HashSet<>();
+        // Cada punto se ordena por su hash, que va en los 64 bits altos, y lleva su dueño en los bajos
+        long[][] pares = new long[nodos.size() * nodosVirtuales][];
+        for (int i = 0; i < nodos.size(); i++) {
+            String nombreNodo = nombre.apply(nodos.get(i));
+            if (!nombres.add(nombreNodo)) {
+                throw new IllegalArgumentException("Nombre de nodo repetido: " + nombreNodo);
+            }
+            for (int v = 0; v < nodosVirtuales; v++) {
+                pares[i * nodosVirtuales + v] = new long[]{hash(nombreNodo + "#" + v), i};
+            }
+        }
+        Arrays.sort(pares, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        this.puntos = new long[pares.length];
+        this.duenios = new int[pares.length];
+        for (int j = 0; j < pares.length; j++) {
+            puntos[j] = pares[j][0];
+            duenios[j] = (int) pares[j][1];
+        }
+    }
+
+    /// Nodo al que pertenece la clave
+    public N nodoPara(long clave) {
+        return nodos.get(indiceDe(clave));
+    }
+
+    /// Posición en la lista de nodos del nodo al que pertenece la clave
+    public int indiceDe(long clave) {
+        int i = Arrays.binarySearch(puntos, mezclar(clave));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return duenios[i == puntos.length ? 0 : i];
+    }
+
+    /// Nodos del anillo, en el orden en que se dieron al construirlo
+    public List<N> nodos() {
+        return nodos;
+    }
+
+    /// Hash de 64 bits de un nombre: FNV-1a sobre sus bytes, mezclado para repartir también los bits altos
+    private static long hash(String nombre) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : nombre.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mezclar(h);
+    }
+
+    /// Función de mezcla final de MurmurHash3: claves consecutivas acaban en puntos alejados del anillo
+    private static long mezclar(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
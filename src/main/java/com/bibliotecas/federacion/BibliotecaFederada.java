@@ -0,0 +1,280 @@
+package com.bibliotecas.federacion;
+
+import com.bibliotecas.model.*;
+
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Biblioteca repartida entre varias sucursales, cada una con su propia Biblioteca en esta JVM o en otro proceso.
+ * Un anillo de hash consistente asigna cada usuario (por su ID) y cada publicación (por el suyo) a una
+ * sucursal, su sucursal de origen; las consultas por ID van solo a ella, y las búsquedas por título se
+ * envían a todas a la vez y se mezclan en orden de título.
+ *
+ * Préstamos entre sucursales: una publicación siempre se presta desde su sucursal de origen. Si el usuario
+ * es de otra, se registra allí como visitante con el mismo ID y nombre, y el límite de préstamos se aplica
+ * sumando los que tiene en su sucursal y en las que visita. Para que esa suma sea coherente, la federación
+ * serializa los préstamos de cada usuario con bloqueos por grupos, como Biblioteca; por eso debe haber una
+ * sola federación delante de cada conjunto de sucursales. Las sucursales que visita cada usuario se guardan
+ * en memoria y, tras reiniciar la federación, se averiguan preguntando a todas la primera vez que presta.
+ * Cuando una publicación pasa al siguiente de su cola de espera, la sucursal solo comprueba el límite con sus
+ * propios préstamos, así que un usuario con préstamos en varias sucursales puede superarlo por esa vía.
+ *
+ * Las sucursales son fijas durante la vida de la federación: el anillo permite añadir una moviendo solo
+ * la parte de usuarios y publicaciones que pasa a ser suya, pero ese traslado no está implementado.
+ */
+public class BibliotecaFederada implements AutoCloseable {
+
+    private static final int NODOS_VIRTUALES = 160;
+    private static final int MAXIMO_SUCURSALES = Long.SIZE; // Una por bit en la máscara de visitas
+    private static final int BLOQUEOS_USUARIO = 256;
+    // El mismo orden que las búsquedas por prefijo de Biblioteca: título en minúsculas y, a igual título, ID
+    private static final Comparator<Publicacion> ORDEN_TITULO =
+            Comparator.comparing((Publicacion p) -> p.getTitulo().toLowerCase(Locale.ROOT)).thenComparingLong(Publicacion::getId);
+
+    private final AnilloConsistente<Sucursal> anillo;
+    private final ReentrantLock[] bloqueosUsuario;
+    // Para cada usuario que ha pedido préstamos, máscara con las sucursales que visita además de la suya
+    private final ConcurrentHashMap<Integer, Long> visitas;
+    private final ExecutorService hilos; // Hilos virtuales para las consultas a todas las sucursales
+
+    /**
+     * Constructor de la federación.
+     * @param sucursales Sucursales, con nombres distintos; la federación no las cierra.
+     */
+    public BibliotecaFederada(List<? extends Sucursal> sucursales) {
+        if (sucursales.size() > MAXIMO_SUCURSALES) {
+            throw new IllegalArgumentException("Una federación admite como mucho " + MAXIMO_SUCURSALES + " sucursales");
+        }
+        this.anillo = new AnilloConsistente<>(sucursales, Sucursal::nombre, NODOS_VIRTUALES);
+        this.bloqueosUsuario = new ReentrantLock[BLOQUEOS_USUARIO];
+        for (int i = 0; i < BLOQUEOS_USUARIO; i++) {
+            bloqueosUsuario[i] = new ReentrantLock();
+        }
+        this.visitas = new ConcurrentHashMap<>();
+        this.hilos = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /// Espera a que terminen las consultas en curso; las sucursales siguen abiertas
+    @Override
+    public void close() {
+        hilos.close();
+    }
+
+    /// Sucursales de la federación
+    public List<Sucursal> sucursales() {
+        return anillo.nodos();
+    }
+
+    /// Sucursal de origen del usuario
+    public Sucursal sucursalDeUsuario(int idUsuario) {
+        return anillo.nodoPara(idUsuario);
+    }
+
+    /// Sucursal de origen de la publicación
+    public Sucursal sucursalDePublicacion(long idPublicacion) {
+        return anillo.nodoPara(idPublicacion);
+    }
+
+    private ReentrantLock bloqueoDe(int idUsuario) {
+        int h = idUsuario * 0x9E3779B9;
+        return bloqueosUsuario[(h ^ (h >>> 16)) & (BLOQUEOS_USUARIO - 1)];
+    }
+
+    /// Registra el usuario en su sucursal de origen; devuelve false si ya estaba registrado
+    public boolean registrarUsuario(int id, String nombre) {
+        return sucursalDeUsuario(id).registrarUsuario(id, nombre);
+    }
+
+    /**
+     * Añade la publicación a su sucursal de origen. La publicación ya tiene su ID, así que cuando varios
+     * procesos crean publicaciones para la misma federación deben usar un GeneradorSnowflake con nodos distintos.
+     * @throws IllegalArgumentException Si ya hay una publicación con ese ID.
+     */
+    public void agregarPublicacion(Publicacion publicacion) {
+        sucursalDePublicacion(publicacion.getId()).agregarPublicacion(publicacion);
+    }
+
+    /// Publicación con el ID indicado, o null si no existe
+    public Publicacion buscarPublicacionPorId(long id) {
+        return sucursalDePublicacion(id).buscarPublicacionPorId(id);
+    }
+
+    /**
+     * Busca en todas las sucursales a la vez las publicaciones cuyo título empieza por el prefijo.
+     * @return Los resultados de todas las sucursales, ordenados por título y, a igual título, por ID.
+     */
+    public List<Publicacion> buscarPublicacionesPorPrefijo(String prefijo) {
+        return mezclarPorTitulo(en(todas(), i -> sucursal(i).buscarPublicacionesPorPrefijo(prefijo)));
+    }
+
+    /**
+     * Presta una publicación de cualquier sucursal a un usuario de cualquier sucursal.
+     * @throws IllegalArgumentException Si no existe ninguna publicación prestable con ese ID.
+     */
+    public ResultadoPrestamo registrarPrestamo(int idUsuario, long idPublicacion) {
+        int origen = anillo.indiceDe(idUsuario);
+        int destino = anillo.indiceDe(idPublicacion);
+        Sucursal casa = sucursal(origen);
+        Sucursal sucursal = sucursal(destino);
+        ReentrantLock bloqueo = bloqueoDe(idUsuario);
+        bloqueo.lock();
+        try {
+            long visitadas = visitadas(idUsuario, origen);
+            if (destino == origen && visitadas == 0) {
+                // Todos sus préstamos están en su sucursal, que ya aplica el límite
+                return casa.registrarPrestamo(idUsuario, idPublicacion);
+            }
+            if (numeroPrestamos(idUsuario, origen, visitadas) >= Usuario.LIMITE_PRESTAMOS) {
+                return ResultadoPrestamo.LIMITE_ALCANZADO;
+            }
+            if (destino != origen && (visitadas & (1L << destino)) == 0) {
+                // Primera visita: solo entonces hace falta su nombre, y así se comprueba que está registrado
+                String nombre = casa.nombreUsuario(idUsuario);
+                if (nombre == null) {
+                    return ResultadoPrestamo.USUARIO_NO_REGISTRADO;
+                }
+                if (sucursal.buscarPublicacionPorId(idPublicacion) == null) {
+                    throw new IllegalArgumentException("No existe ninguna publicación prestable con ID " + idPublicacion);
+                }
+                sucursal.registrarUsuario(idUsuario, nombre);
+                visitas.merge(idUsuario, 1L << destino, (a, b) -> a | b);
+            }
+            return sucursal.registrarPrestamo(idUsuario, idPublicacion);
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /**
+     * Registra la devolución de una publicación en su sucursal de origen.
+     * @throws IllegalArgumentException Si no existe ninguna publicación prestable con ese ID.
+     */
+    public ResultadoDevolucion registrarDevolucion(int idUsuario, long idPublicacion) {
+        return sucursalDePublicacion(idPublicacion).registrarDevolucion(idUsuario, idPublicacion);
+    }
+
+    /// Publicaciones que tiene prestadas el usuario en su sucursal y en las que visita
+    public List<Publicacion> obtenerPrestamosActivos(int idUsuario) {
+        int origen = anillo.indiceDe(idUsuario);
+        long consultadas = visitadas(idUsuario, origen) | (1L << origen);
+        List<Publicacion> resultado = new ArrayList<>();
+        for (List<Publicacion> parcial : en(consultadas, i -> sucursal(i).obtenerPrestamosActivos(idUsuario))) {
+            resultado.addAll(parcial);
+        }
+        return resultado;
+    }
+
+    /**
+     * Máscara de las sucursales que visita el usuario. Si la federación aún no lo sabe, pregunta a todas
+     * si lo tienen registrado; es seguro hacerlo sin el bloqueo del usuario porque las máscaras solo se
+     * combinan con OR y una visita nueva se añade después de registrarlo en la sucursal.
+     * De los usuarios que no están registrados en su sucursal no se guarda nada.
+     */
+    private long visitadas(int idUsuario, int origen) {
+        Long conocidas = visitas.get(idUsuario);
+        if (conocidas != null) {
+            return conocidas;
+        }
+        List<Boolean> registrado = en(todas(), i -> sucursal(i).nombreUsuario(idUsuario) != null);
+        if (!registrado.get(origen)) {
+            return 0;
+        }
+        long mascara = 0;
+        for (int i = 0; i < registrado.size(); i++) {
+            if (i != origen && registrado.get(i)) {
+                mascara |= 1L << i;
+            }
+        }
+        return visitas.merge(idUsuario, mascara, (a, b) -> a | b);
+    }
+
+    /// Préstamos del usuario sumando su sucursal y las que visita
+    private int numeroPrestamos(int idUsuario, int origen, long visitadas) {
+        int total = 0;
+        for (int parcial : en(visitadas | (1L << origen), i -> sucursal(i).numeroPrestamos(idUsuario))) {
+            total += parcial;
+        }
+        return total;
+    }
+
+    private Sucursal sucursal(int indice) {
+        return anillo.nodos().get(indice);
+    }
+
+    /// Máscara con todas las sucursales
+    private long todas() {
+        return -1L >>> (Long.SIZE - anillo.nodos().size());
+    }
+
+    /**
+     * Aplica la operación a las sucursales de la máscara a la vez, cada una en un hilo virtual.
+     * Si solo hay una, se aplica en el hilo que llama.
+     * @param mascara Bit i activo si hay que consultar la sucursal i.
+     * @param operacion Recibe la posición de la sucursal.
+     * @return Los resultados en el orden de las sucursales.
+     */
+    private <T> List<T> en(long mascara, IntFunction<T> operacion) {
+        if (Long.bitCount(mascara) == 1) {
+            return List.of(operacion.apply(Long.numberOfTrailingZeros(mascara)));
+        }
+        List<Future<T>> pendientes = new ArrayList<>(Long.bitCount(mascara));
+        for (long resto = mascara; resto != 0; resto &= resto - 1) {
+            int i = Long.numberOfTrailingZeros(resto);
+            pendientes.add(hilos.submit(() -> operacion.apply(i)));
+        }
+        List<T> resultados = new ArrayList<>(pendientes.size());
+        try {
+            for (Future<T> pendiente : pendientes) {
+                resultados.add(pendiente.get());
+            }
+        } catch (InterruptedException e) {
+            pendientes.forEach(pendiente -> pendiente.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrumpido esperando a las sucursales"));
+        } catch (ExecutionException e) {
+            pendientes.forEach(pendiente -> pendiente.cancel(true));
+            if (e.getCause() instanceof RuntimeException fallo) {
+                throw fallo;
+            }
+            throw new RuntimeException("Ha fallado una consulta a las sucursales", e.getCause());
+        }
+        return resultados;
+    }
+
+    /// Mezcla listas ya ordenadas por título en una sola, también ordenada
+    private static List<Publicacion> mezclarPorTitulo(List<List<Publicacion>> listas) {
+        int total = 0;
+        // Cada cursor es {lista, posición}; la cola da el que apunta al menor título
+        PriorityQueue<int[]> cursores = new PriorityQueue<>(Math.max(1, listas.size()),
+                (a, b) -> ORDEN_TITULO.compare(listas.get(a[0]).get(a[1]), listas.get(b[0]).get(b[1])));
+        for (int i = 0; i < listas.size(); i++) {
+            total += listas.get(i).size();
+            if (!listas.get(i).isEmpty()) {
+                cursores.add(new int[]{i, 0});
+            }
+        }
+        List<Publicacion> resultado = new ArrayList<>(total);
+        while (!cursores.isEmpty()) {
+            int[] cursor = cursores.poll();
+            List<Publicacion> lista = listas.get(cursor[0]);
+            resultado.add(lista.get(cursor[1]++));
+            if (cursor[1] < lista.size()) {
+                cursores.add(cursor);
+            }
+        }
+        return resultado;
+    }
+}
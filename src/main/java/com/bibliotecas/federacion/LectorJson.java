@@ -0,0 +1,180 @@
+package com.bibliotecas.federacion;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Analizador JSON mínimo para las respuestas de ServidorBiblioteca.
+ * Los objetos se leen como Map, las listas como List, los números enteros como Long y el resto como Double.
+ */
+final class LectorJson {
+
+    private final String texto;
+    private int posicion;
+
+    private LectorJson(String texto) {
+        this.texto = texto;
+    }
+
+    /**
+     * Lee un documento JSON completo.
+     * @throws IllegalArgumentException Si el texto no es JSON válido.
+     */
+    static Object leer(String texto) {
+        LectorJson lector = new LectorJson(texto);
+        Object valor = lector.valor();
+        lector.saltarEspacios();
+        if (lector.posicion != texto.length()) {
+            throw lector.error("Sobran caracteres");
+        }
+        return valor;
+    }
+
+    private Object valor() {
+        saltarEspacios();
+        if (posicion >= texto.length()) {
+            throw error("Fin inesperado");
+        }
+        char c = texto.charAt(posicion);
+        return switch (c) {
+            case '{' -> objeto();
+            case '[' -> lista();
+            case '"' -> cadena();
+            case 't' -> literal("true", Boolean.TRUE);
+            case 'f' -> literal("false", Boolean.FALSE);
+            case 'n' -> literal("null", null);
+            default -> numero();
+        };
+    }
+
+    private Map<String, Object> objeto() {
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        posicion++;
+        saltarEspacios();
+        if (consumir('}')) {
+            return resultado;
+        }
+        do {
+            saltarEspacios();
+            if (posicion >= texto.length() || texto.charAt(posicion) != '"') {
+                throw error("Se esperaba el nombre de un campo");
+            }
+            String nombre = cadena();
+            saltarEspacios();
+            if (!consumir(':')) {
+                throw error("Se esperaba ':'");
+            }
+            resultado.put(nombre, valor());
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir('}')) {
+            throw error("Se esperaba '}'");
+        }
+        return resultado;
+    }
+
+    private List<Object> lista() {
+        List<Object> resultado = new ArrayList<>();
+        posicion++;
+        saltarEspacios();
+        if (consumir(']')) {
+            return resultado;
+        }
+        do {
+            resultado.add(valor());
+            saltarEspacios();
+        } while (consumir(','));
+        if (!consumir(']')) {
+            throw error("Se esperaba ']'");
+        }
+        return resultado;
+    }
+
+    private String cadena() {
+        StringBuilder resultado = new StringBuilder();
+        posicion++;
+        while (posicion < texto.length()) {
+            char c = texto.charAt(posicion++);
+            if (c == '"') {
+                return resultado.toString();
+            }
+            if (c != '\\') {
+                resultado.append(c);
+                continue;
+            }
+            if (posicion >= texto.length()) {
+                break;
+            }
+            char escapado = texto.charAt(posicion++);
+            switch (escapado) {
+                case 'n' -> resultado.append('\n');
+                case 't' -> resultado.append('\t');
+                case 'r' -> resultado.append('\r');
+                case 'b' -> resultado.append('\b');
+                case 'f' -> resultado.append('\f');
+                case 'u' -> {
+                    if (posicion + 4 > texto.length()) {
+                        throw error("Escape \\u incompleto");
+                    }
+                    try {
+                        resultado.append((char) Integer.parseInt(texto, posicion, posicion + 4, 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Escape \\u no válido");
+                    }
+                    posicion += 4;
+                }
+                default -> resultado.append(escapado); // \" \\ \/
+            }
+        }
+        throw error("Cadena sin cerrar");
+    }
+
+    private Object numero() {
+        int inicio = posicion;
+        boolean decimal = false;
+        while (posicion < texto.length()) {
+            char c = texto.charAt(posicion);
+            if (c == '.' || c == 'e' || c == 'E') {
+                decimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            posicion++;
+        }
+        String numero = texto.substring(inicio, posicion);
+        try {
+            return decimal ? (Object) Double.parseDouble(numero) : (Object) Long.parseLong(numero);
+        } catch (NumberFormatException e) {
+            posicion = inicio;
+            throw error("Valor no válido");
+        }
+    }
+
+    private Object literal(String literal, Object valor) {
+        if (!texto.startsWith(literal, posicion)) {
+            throw error("Valor no válido");
+        }
+        posicion += literal.length();
+        return valor;
+    }
+
+    private boolean consumir(char c) {
+        if (posicion < texto.length() && texto.charAt(posicion) == c) {
+            posicion++;
+            return true;
+        }
+        return false;
+    }
+
+    private void saltarEspacios() {
+        while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+            posicion++;
+        }
+    }
+
+    private IllegalArgumentException error(String mensaje) {
+        return new IllegalArgumentException(mensaje + " en la posición " + posicion + " del JSON");
+    }
+}
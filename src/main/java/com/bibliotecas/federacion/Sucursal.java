@@ -0,0 +1,55 @@
+package com.bibliotecas.federacion;
+
+import com.bibliotecas.model.Publicacion;
+import com.bibliotecas.model.ResultadoDevolucion;
+import com.bibliotecas.model.ResultadoPrestamo;
+
+import java.util.List;
+
+/**
+ * Una de las bibliotecas de una federación, ya sea en la misma JVM o en otro proceso.
+ * Las operaciones reciben IDs en lugar de objetos para que se puedan enviar por la red;
+ * las publicaciones que devuelve una sucursal remota son copias sin estado de préstamo.
+ * Todas las implementaciones deben poder usarse desde varios hilos a la vez.
+ */
+public interface Sucursal {
+
+    /// Nombre único de la sucursal; determina su posición en el anillo de la federación
+    String nombre();
+
+    /// Registra un usuario; devuelve false si ya estaba registrado
+    boolean registrarUsuario(int id, String nombre);
+
+    /// Nombre del usuario, o null si no está registrado en la sucursal
+    String nombreUsuario(int id);
+
+    /// Número de préstamos activos que tiene el usuario en la sucursal
+    int numeroPrestamos(int idUsuario);
+
+    /**
+     * Añade una publicación conservando su ID.
+     * @throws IllegalArgumentException Si ya hay una publicación con ese ID.
+     */
+    void agregarPublicacion(Publicacion publicacion);
+
+    /// Publicación con el ID indicado, o null si no está en la sucursal
+    Publicacion buscarPublicacionPorId(long id);
+
+    /// Publicaciones cuyo título empieza por el prefijo, ordenadas por título
+    List<Publicacion> buscarPublicacionesPorPrefijo(String prefijo);
+
+    /**
+     * Presta una publicación de la sucursal a un usuario registrado en ella.
+     * @throws IllegalArgumentException Si la sucursal no tiene ninguna publicación prestable con ese ID.
+     */
+    ResultadoPrestamo registrarPrestamo(int idUsuario, long idPublicacion);
+
+    /**
+     * Registra la devolución de una publicación de la sucursal.
+     * @throws IllegalArgumentException Si la sucursal no tiene ninguna publicación prestable con ese ID.
+     */
+    ResultadoDevolucion registrarDevolucion(int idUsuario, long idPublicacion);
+
+    /// Publicaciones de la sucursal que tiene prestadas el usuario
+    List<Publicacion> obtenerPrestamosActivos(int idUsuario);
+}
@@ -0,0 +1,84 @@
+package com.bibliotecas.federacion;
+
+import com.bibliotecas.model.*;
+
+import java.util.List;
+
+/**
+ * Sucursal que es una Biblioteca de la misma JVM. Sirve para repartir una biblioteca grande entre
+ * varias instancias con sus propios bloqueos, o para probar una federación sin levantar procesos.
+ */
+public class SucursalLocal implements Sucursal {
+
+    private final String nombre;
+    private final Biblioteca biblioteca;
+
+    public SucursalLocal(String nombre, Biblioteca biblioteca) {
+        this.nombre = nombre;
+        this.biblioteca = biblioteca;
+    }
+
+    /// Biblioteca de la sucursal
+    public Biblioteca biblioteca() {
+        return biblioteca;
+    }
+
+    @Override
+    public String nombre() {
+        return nombre;
+    }
+
+    @Override
+    public boolean registrarUsuario(int id, String nombre) {
+        return biblioteca.registrarUsuario(id, nombre);
+    }
+
+    @Override
+    public String nombreUsuario(int id) {
+        Usuario usuario = biblioteca.obtenerUsuario(id);
+        return usuario == null ? null : usuario.getNombre();
+    }
+
+    @Override
+    public int numeroPrestamos(int idUsuario) {
+        Usuario usuario = biblioteca.obtenerUsuario(idUsuario);
+        return usuario == null ? 0 : usuario.numeroPrestamos();
+    }
+
+    @Override
+    public void agregarPublicacion(Publicacion publicacion) {
+        biblioteca.agregarPublicacion(publicacion);
+    }
+
+    @Override
+    public Publicacion buscarPublicacionPorId(long id) {
+        return biblioteca.buscarPublicacionPorId(id);
+    }
+
+    @Override
+    public List<Publicacion> buscarPublicacionesPorPrefijo(String prefijo) {
+        return biblioteca.buscarPublicacionesPorPrefijo(prefijo);
+    }
+
+    @Override
+    public ResultadoPrestamo registrarPrestamo(int idUsuario, long idPublicacion) {
+        return biblioteca.registrarPrestamo(idUsuario, prestable(idPublicacion));
+    }
+
+    @Override
+    public ResultadoDevolucion registrarDevolucion(int idUsuario, long idPublicacion) {
+        return biblioteca.registrarDevolucion(idUsuario, prestable(idPublicacion));
+    }
+
+    @Override
+    public List<Publicacion> obtenerPrestamosActivos(int idUsuario) {
+        return biblioteca.obtenerPrestamosActivos(idUsuario);
+    }
+
+    private PublicacionPrestable prestable(long id) {
+        if (!(biblioteca.buscarPublicacionPorId(id) instanceof PublicacionPrestable prestable)) {
+            throw new IllegalArgumentException("No existe ninguna publicación prestable con ID " + id);
+        }
+        return prestable;
+    }
+}
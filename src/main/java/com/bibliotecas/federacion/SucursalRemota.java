@@ -0,0 +1,257 @@
+package com.bibliotecas.federacion;
+
+import com.bibliotecas.importacion.ImportadorCatalogo;
+import com.bibliotecas.model.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sucursal que es otro proceso con un ServidorBiblioteca. Cada operación es una petición HTTP;
+ * el cliente mantiene abiertas las conexiones entre peticiones.
+ * Los fallos de red se lanzan como UncheckedIOException, y las respuestas inesperadas del servidor
+ * como RuntimeException con el mensaje de error que envía.
+ */
+public class SucursalRemota implements Sucursal, AutoCloseable {
+
+    private static final Duration TIEMPO_CONEXION = Duration.ofSeconds(5);
+    private static final Duration TIEMPO_RESPUESTA = Duration.ofSeconds(30);
+
+    private final String nombre;
+    private final URI direccion;
+    private final HttpClient cliente;
+
+    /**
+     * Constructor de la sucursal.
+     * @param nombre Nombre único de la sucursal.
+     * @param direccion Dirección base del servidor, por ejemplo http://localhost:8080.
+     */
+    public SucursalRemota(String nombre, URI direccion) {
+        this.nombre = nombre;
+        this.direccion = direccion;
+        this.cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIEMPO_CONEXION)
+                .build();
+    }
+
+    private record Respuesta(int estado, Map<String, Object> cuerpo) {
+
+        String error() {
+            return String.valueOf(cuerpo.get("error"));
+        }
+    }
+
+    @Override
+    public String nombre() {
+        return nombre;
+    }
+
+    /// Cierra las conexiones con el servidor
+    @Override
+    public void close() {
+        cliente.close();
+    }
+
+    @Override
+    public boolean registrarUsuario(int id, String nombre) {
+        Respuesta respuesta = post("/usuarios", Map.of("id", String.valueOf(id), "nombre", nombre));
+        return switch (respuesta.estado()) {
+            case 201 -> true;
+            case 409 -> false;
+            default -> throw inesperada(respuesta);
+        };
+    }
+
+    @Override
+    public String nombreUsuario(int id) {
+        Respuesta respuesta = get("/usuarios", Map.of("id", String.valueOf(id)));
+        return switch (respuesta.estado()) {
+            case 200 -> (String) respuesta.cuerpo().get("nombre");
+            case 404 -> null;
+            default -> throw inesperada(respuesta);
+        };
+    }
+
+    @Override
+    public int numeroPrestamos(int idUsuario) {
+        Respuesta respuesta = get("/usuarios", Map.of("id", String.valueOf(idUsuario)));
+        return switch (respuesta.estado()) {
+            case 200 -> ((Long) respuesta.cuerpo().get("prestamos")).intValue();
+            case 404 -> 0;
+            default -> throw inesperada(respuesta);
+        };
+    }
+
+    @Override
+    public void agregarPublicacion(Publicacion publicacion) {
+        Respuesta respuesta = post("/publicaciones", campos(publicacion));
+        switch (respuesta.estado()) {
+            case 201 -> {
+            }
+            case 409 -> throw new IllegalArgumentException(respuesta.error());
+            default -> throw inesperada(respuesta);
+        }
+    }
+
+    @Override
+    public Publicacion buscarPublicacionPorId(long id) {
+        Respuesta respuesta = get("/publicacion", Map.of("id", String.valueOf(id)));
+        return switch (respuesta.estado()) {
+            case 200 -> publicacion(respuesta.cuerpo());
+            case 404 -> null;
+            default -> throw inesperada(respuesta);
+        };
+    }
+
+    @Override
+    public List<Publicacion> buscarPublicacionesPorPrefijo(String prefijo) {
+        Respuesta respuesta = get("/titulos", Map.of("prefijo", prefijo));
+        if (respuesta.estado() != 200) {
+            throw inesperada(respuesta);
+        }
+        return publicaciones(respuesta.cuerpo().get("publicaciones"));
+    }
+
+    @Override
+    public ResultadoPrestamo registrarPrestamo(int idUsuario, long idPublicacion) {
+        Respuesta respuesta = post("/prestamos", Map.of("usuario", String.valueOf(idUsuario), "publicacion", String.valueOf(idPublicacion)));
+        // Sin resultado, la publicación no existe o no es prestable
+        if (respuesta.cuerpo().get("resultado") instanceof String resultado) {
+            return ResultadoPrestamo.valueOf(resultado);
+        }
+        if (respuesta.estado() == 404 || respuesta.estado() == 409) {
+            throw new IllegalArgumentException("No existe ninguna publicación prestable con ID " + idPublicacion);
+        }
+        throw inesperada(respuesta);
+    }
+
+    @Override
+    public ResultadoDevolucion registrarDevolucion(int idUsuario, long idPublicacion) {
+        Respuesta respuesta = post("/devoluciones", Map.of("usuario", String.valueOf(idUsuario), "publicacion", String.valueOf(idPublicacion)));
+        if (respuesta.cuerpo().get("resultado") instanceof String resultado) {
+            return ResultadoDevolucion.valueOf(resultado);
+        }
+        if (respuesta.estado() == 404) {
+            throw new IllegalArgumentException("No existe ninguna publicación prestable con ID " + idPublicacion);
+        }
+        throw inesperada(respuesta);
+    }
+
+    @Override
+    public List<Publicacion> obtenerPrestamosActivos(int idUsuario) {
+        Respuesta respuesta = get("/prestamos", Map.of("usuario", String.valueOf(idUsuario)));
+        return switch (respuesta.estado()) {
+            case 200 -> publicaciones(respuesta.cuerpo().get("prestamos"));
+            case 404 -> List.of();
+            default -> throw inesperada(respuesta);
+        };
+    }
+
+    private Respuesta get(String ruta, Map<String, String> parametros) {
+        return enviar(HttpRequest.newBuilder(direccion.resolve(ruta + "?" + formulario(parametros))).GET());
+    }
+
+    private Respuesta post(String ruta, Map<String, String> parametros) {
+        return enviar(HttpRequest.newBuilder(direccion.resolve(ruta))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(formulario(parametros), StandardCharsets.UTF_8)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Respuesta enviar(HttpRequest.Builder peticion) {
+        HttpResponse<String> respuesta;
+        try {
+            respuesta = cliente.send(peticion.timeout(TIEMPO_RESPUESTA).build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se ha podido contactar con la sucursal " + nombre, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrumpido esperando a la sucursal " + nombre));
+        }
+        if (!(LectorJson.leer(respuesta.body()) instanceof Map<?, ?> cuerpo)) {
+            throw new RuntimeException("La sucursal " + nombre + " ha respondido algo que no es un objeto JSON");
+        }
+        return new Respuesta(respuesta.statusCode(), (Map<String, Object>) cuerpo);
+    }
+
+    private RuntimeException inesperada(Respuesta respuesta) {
+        if (respuesta.estado() == 400) {
+            return new IllegalArgumentException(respuesta.error());
+        }
+        return new RuntimeException("La sucursal " + nombre + " ha respondido " + respuesta.estado() + ": " + respuesta.error());
+    }
+
+    private static String formulario(Map<String, String> parametros) {
+        StringBuilder texto = new StringBuilder();
+        for (Map.Entry<String, String> parametro : parametros.entrySet()) {
+            if (!texto.isEmpty()) {
+                texto.append('&');
+            }
+            texto.append(URLEncoder.encode(parametro.getKey(), StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(parametro.getValue(), StandardCharsets.UTF_8));
+        }
+        return texto.toString();
+    }
+
+    /// Campos de alta de la publicación, con los nombres que acepta ImportadorCatalogo y su ID
+    private static Map<String, String> campos(Publicacion publicacion) {
+        Map<String, String> campos = new LinkedHashMap<>();
+        campos.put("id", String.valueOf(publicacion.getId()));
+        campos.put("tipo", publicacion.getClass().getSimpleName().toUpperCase(Locale.ROOT));
+        campos.put("titulo", publicacion.getTitulo());
+        campos.put("autor", publicacion.getAutor());
+        campos.put("anio", String.valueOf(publicacion.getAnioPublicacion()));
+        if (publicacion instanceof Libro libro) {
+            campos.put("isbn", libro.getISBN());
+            campos.put("paginas", String.valueOf(libro.getNumPaginas()));
+        } else if (publicacion instanceof Revista revista) {
+            campos.put("issn", revista.getISSN());
+            campos.put("edicion", String.valueOf(revista.getNumEdicion()));
+            campos.put("mes", revista.getMesPublicacion().name());
+            campos.put("categoria", revista.getCategoria().name());
+        } else if (publicacion instanceof Audiolibro audiolibro) {
+            campos.put("narrador", audiolibro.getNarrador());
+            campos.put("duracion", String.valueOf(audiolibro.getDuracion()));
+            campos.put("idioma", audiolibro.getIdioma());
+            campos.put("formato", audiolibro.getFormatoAudio().name());
+        }
+        return campos;
+    }
+
+    private static List<Publicacion> publicaciones(Object lista) {
+        List<?> elementos = (List<?>) lista;
+        List<Publicacion> resultado = new ArrayList<>(elementos.size());
+        for (Object elemento : elementos) {
+            resultado.add(publicacion((Map<?, ?>) elemento));
+        }
+        return resultado;
+    }
+
+    /// Copia local de una publicación recibida del servidor, con su mismo ID
+    private static Publicacion publicacion(Map<?, ?> json) {
+        Map<String, String> campos = new HashMap<>();
+        for (Map.Entry<?, ?> campo : json.entrySet()) {
+            if (campo.getValue() != null) {
+                campos.put((String) campo.getKey(), campo.getValue().toString());
+            }
+        }
+        // El servidor envía los IDs como cadenas para no perder precisión en clientes JavaScript
+        return ImportadorCatalogo.restaurar(campos, Long.parseLong((String) json.get("id")));
+    }
+}
@@ -0,0 +1,204 @@
+package com.bibliotecas.importacion;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Convierte una línea de CSV o de JSON en un mapa de nombre de campo a valor.
+ * En CSV el primer campo es el tipo de publicación y decide el nombre del resto de columnas.
+ * En JSON solo se admiten objetos planos cuyos valores sean textos, números, booleanos o null.
+ * Los errores de formato se lanzan como IllegalArgumentException con un mensaje para el informe.
+ */
+final class AnalizadorLineas {
+
+    // Columnas de cada tipo en CSV, después de la columna del tipo
+    private static final String[] COLUMNAS_LIBRO = {"titulo", "autor", "anio", "isbn", "paginas"};
+    private static final String[] COLUMNAS_REVISTA = {"titulo", "autor", "anio", "issn", "edicion", "mes", "categoria"};
+    private static final String[] COLUMNAS_AUDIOLIBRO = {"titulo", "autor", "anio", "narrador", "duracion", "idioma", "formato"};
+
+    private AnalizadorLineas() {
+    }
+
+    static Map<String, String> analizar(String linea, FormatoImportacion formato) {
+        return formato == FormatoImportacion.CSV ? csv(linea) : json(linea);
+    }
+
+    /**
+     * Analiza una línea CSV. Un campo entre comillas dobles puede contener comas, y dos comillas seguidas
+     * dentro de él representan una comilla.
+     */
+    static Map<String, String> csv(String linea) {
+        String[] campos = new String[COLUMNAS_REVISTA.length + 1];
+        int numCampos = 0;
+        StringBuilder campo = new StringBuilder();
+        int i = 0;
+        while (true) {
+            campo.setLength(0);
+            if (i < linea.length() && linea.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= linea.length()) {
+                        throw new IllegalArgumentException("Comillas sin cerrar");
+                    }
+                    char c = linea.charAt(i++);
+                    if (c == '"') {
+                        if (i < linea.length() && linea.charAt(i) == '"') {
+                            campo.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        campo.append(c);
+                    }
+                }
+                if (i < linea.length() && linea.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Texto después de las comillas de cierre");
+                }
+            } else {
+                int fin = linea.indexOf(',', i);
+                campo.append(linea, i, fin < 0 ? linea.length() : fin);
+                i = fin < 0 ? linea.length() : fin;
+            }
+            if (numCampos == campos.length) {
+                throw new IllegalArgumentException("Demasiados campos");
+            }
+            campos[numCampos++] = campo.toString().trim();
+            if (i >= linea.length()) {
+                break;
+            }
+            i++; // Coma
+        }
+
+        String[] columnas = switch (campos[0].toUpperCase(Locale.ROOT)) {
+            case "LIBRO" -> COLUMNAS_LIBRO;
+            case "REVISTA" -> COLUMNAS_REVISTA;
+            case "AUDIOLIBRO" -> COLUMNAS_AUDIOLIBRO;
+            default -> throw new IllegalArgumentException("Tipo de publicación desconocido: " + campos[0]);
+        };
+        if (numCampos != columnas.length + 1) {
+            throw new IllegalArgumentException("Se esperaban " + (columnas.length + 1) + " campos y hay " + numCampos);
+        }
+        Map<String, String> resultado = new HashMap<>();
+        resultado.put("tipo", campos[0]);
+        for (int c = 0; c < columnas.length; c++) {
+            resultado.put(columnas[c], campos[c + 1]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Analiza una línea con un objeto JSON plano.
+     */
+    static Map<String, String> json(String linea) {
+        Map<String, String> resultado = new HashMap<>();
+        int[] posicion = {saltarEspacios(linea, 0)};
+        esperar(linea, posicion, '{');
+        if (caracter(linea, posicion) == '}') {
+            posicion[0]++;
+        } else {
+            while (true) {
+                String nombre = texto(linea, posicion);
+                esperar(linea, posicion, ':');
+                resultado.put(nombre, valor(linea, posicion));
+                char c = caracter(linea, posicion);
+                posicion[0]++;
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("JSON no válido: se esperaba ',' o '}' en la posición " + posicion[0]);
+                }
+            }
+        }
+        if (saltarEspacios(linea, posicion[0]) != linea.length()) {
+            throw new IllegalArgumentException("JSON no válido: texto después del objeto");
+        }
+        return resultado;
+    }
+
+    private static int saltarEspacios(String linea, int i) {
+        while (i < linea.length() && Character.isWhitespace(linea.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /// Devuelve el siguiente carácter que no es un espacio, sin consumirlo
+    private static char caracter(String linea, int[] posicion) {
+        posicion[0] = saltarEspacios(linea, posicion[0]);
+        if (posicion[0] >= linea.length()) {
+            throw new IllegalArgumentException("JSON no válido: la línea termina antes de tiempo");
+        }
+        return linea.charAt(posicion[0]);
+    }
+
+    private static void esperar(String linea, int[] posicion, char esperado) {
+        if (caracter(linea, posicion) != esperado) {
+            throw new IllegalArgumentException("JSON no válido: se esperaba '" + esperado + "' en la posición " + posicion[0]);
+        }
+        posicion[0]++;
+    }
+
+    private static String valor(String linea, int[] posicion) {
+        char c = caracter(linea, posicion);
+        if (c == '"') {
+            return texto(linea, posicion);
+        }
+        if (c == '{' || c == '[') {
+            throw new IllegalArgumentException("JSON no válido: solo se admiten valores simples");
+        }
+        int inicio = posicion[0];
+        while (posicion[0] < linea.length() && ",} \t".indexOf(linea.charAt(posicion[0])) < 0) {
+            posicion[0]++;
+        }
+        String literal = linea.substring(inicio, posicion[0]);
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static String texto(String linea, int[] posicion) {
+        esperar(linea, posicion, '"');
+        StringBuilder resultado = new StringBuilder();
+        int i = posicion[0];
+        while (true) {
+            if (i >= linea.length()) {
+                throw new IllegalArgumentException("JSON no válido: texto sin cerrar");
+            }
+            char c = linea.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                resultado.append(c);
+                continue;
+            }
+            if (i >= linea.length()) {
+                throw new IllegalArgumentException("JSON no válido: texto sin cerrar");
+            }
+            char escape = linea.charAt(i++);
+            switch (escape) {
+                case '"', '\\', '/' -> resultado.append(escape);
+                case 'b' -> resultado.append('\b');
+                case 'f' -> resultado.append('\f');
+                case 'n' -> resultado.append('\n');
+                case 'r' -> resultado.append('\r');
+                case 't' -> resultado.append('\t');
+                case 'u' -> {
+                    if (i + 4 > linea.length()) {
+                        throw new IllegalArgumentException("JSON no válido: escape \\u incompleto");
+                    }
+                    try {
+                        resultado.append((char) Integer.parseInt(linea.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("JSON no válido: escape \\u" + linea.substring(i, i + 4));
+                    }
+                    i += 4;
+                }
+                default -> throw new IllegalArgumentException("JSON no válido: escape \\" + escape);
+            }
+        }
+        posicion[0] = i;
+        return resultado.toString();
+    }
+}
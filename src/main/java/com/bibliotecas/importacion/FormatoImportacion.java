@@ -0,0 +1,23 @@
+package com.bibliotecas.importacion;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formatos de fichero que acepta el importador de catálogos.
+ * En los dos formatos cada publicación ocupa una línea.
+ */
+public enum FormatoImportacion {
+    CSV,   // Campos separados por comas, en el orden de ImportadorCatalogo; las comillas dobles delimitan campos
+    JSONL; // Un objeto JSON plano por línea, con los nombres de campo de ImportadorCatalogo
+
+    /**
+     * Deduce el formato a partir de la extensión del fichero.
+     * @param fichero Fichero a importar.
+     * @return JSONL para las extensiones .jsonl y .ndjson, CSV en cualquier otro caso.
+     */
+    public static FormatoImportacion deFichero(Path fichero) {
+        String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+        return nombre.endsWith(".jsonl") || nombre.endsWith(".ndjson") ? JSONL : CSV;
+    }
+}
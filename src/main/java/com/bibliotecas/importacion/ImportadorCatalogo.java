@@ -0,0 +1,321 @@
+package com.bibliotecas.importacion;
+
+import com.bibliotecas.model.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Importa publicaciones en bloque desde un fichero CSV o JSON-lines.
+ * El hilo que llama lee el fichero y reparte las líneas en lotes por una cola acotada; varios hilos
+ * analizan y validan los lotes en paralelo y añaden las publicaciones válidas a la biblioteca con
+ * un solo bloqueo por lote. Cuando la cola está llena, la lectura espera: el fichero nunca se carga
+ * entero en memoria. Las líneas que no se pueden analizar o que no pasan la validación se anotan
+ * en el informe y la importación continúa. Las publicaciones se añaden en el orden en que terminan
+ * sus lotes, que no tiene por qué coincidir con el del fichero.
+ *
+ * Campos (en CSV, en este orden y precedidos por el tipo: LIBRO, REVISTA o AUDIOLIBRO):
+ * - Libro: titulo, autor, anio, isbn, paginas
+ * - Revista: titulo, autor, anio, issn, edicion, mes, categoria
+ * - Audiolibro: titulo, autor, anio, narrador, duracion, idioma, formato
+ * Una primera línea CSV que empiece por "tipo" se toma como cabecera y se salta.
+ */
+public class ImportadorCatalogo {
+
+    private static final String[] FIN = new String[0]; // Lote que indica a un hilo que no quedan más
+
+    /**
+     * Lote de líneas consecutivas del fichero.
+     */
+    private record Lote(long primeraLinea, String[] lineas) {
+    }
+
+    private final int hilos;
+    private final int tamanioLote;
+
+    public ImportadorCatalogo() {
+        this(Runtime.getRuntime().availableProcessors(), 1000);
+    }
+
+    /**
+     * Constructor del importador.
+     * @param hilos Número de hilos que analizan y validan.
+     * @param tamanioLote Número de líneas por lote.
+     */
+    public ImportadorCatalogo(int hilos, int tamanioLote) {
+        if (hilos < 1 || tamanioLote < 1) {
+            throw new IllegalArgumentException("El número de hilos y el tamaño de lote deben ser positivos");
+        }
+        this.hilos = hilos;
+        this.tamanioLote = tamanioLote;
+    }
+
+    /**
+     * Importa un fichero, deduciendo el formato por su extensión.
+     * @param fichero Fichero en UTF-8.
+     * @param biblioteca Biblioteca a la que se añaden las publicaciones.
+     * @return El informe de la importación.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    public InformeImportacion importar(Path fichero, Biblioteca biblioteca) throws IOException {
+        try (BufferedReader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+            return importar(lector, FormatoImportacion.deFichero(fichero), biblioteca);
+        }
+    }
+
+    /**
+     * Importa las publicaciones que se leen de un Reader, que no se cierra.
+     * @param entrada Texto a importar.
+     * @param formato Formato de las líneas.
+     * @param biblioteca Biblioteca a la que se añaden las publicaciones.
+     * @return El informe de la importación.
+     * @throws IOException Si falla la lectura.
+     */
+    public InformeImportacion importar(Reader entrada, FormatoImportacion formato, Biblioteca biblioteca) throws IOException {
+        BufferedReader lector = entrada instanceof BufferedReader b ? b : new BufferedReader(entrada);
+        InformeImportacion informe = new InformeImportacion();
+        BlockingQueue<Lote> cola = new ArrayBlockingQueue<>(hilos * 2);
+        AtomicReference<Throwable> fallo = new AtomicReference<>();
+        List<Thread> trabajadores = new ArrayList<>(hilos);
+        for (int i = 0; i < hilos; i++) {
+            Thread trabajador = new Thread(() -> procesar(cola, formato, biblioteca, informe, fallo), "importacion-" + i);
+            trabajador.setDaemon(true);
+            trabajador.start();
+            trabajadores.add(trabajador);
+        }
+
+        try {
+            boolean completa = leer(lector, formato, cola, fallo);
+            for (int i = 0; i < hilos && completa; i++) {
+                completa = poner(cola, new Lote(0, FIN), fallo);
+            }
+            if (!completa) {
+                // Ha fallado un hilo: se detiene al resto en lugar de esperar a que vacíen la cola
+                for (Thread trabajador : trabajadores) {
+                    trabajador.interrupt();
+                }
+            }
+            for (Thread trabajador : trabajadores) {
+                trabajador.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Importación interrumpida");
+        } finally {
+            // Si la lectura ha fallado, los hilos no recibirán más lotes
+            for (Thread trabajador : trabajadores) {
+                trabajador.interrupt();
+            }
+        }
+        if (fallo.get() != null) {
+            throw new IllegalStateException("Ha fallado un hilo de la importación", fallo.get());
+        }
+        return informe;
+    }
+
+    /// Lee el fichero y encola sus lotes; devuelve false si se ha dejado de leer porque ha fallado un hilo
+    private boolean leer(BufferedReader lector, FormatoImportacion formato, BlockingQueue<Lote> cola,
+                         AtomicReference<Throwable> fallo) throws IOException, InterruptedException {
+        String[] lineas = new String[tamanioLote];
+        int enLote = 0;
+        long numeroLinea = 0;
+        long primeraDelLote = 1;
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            numeroLinea++;
+            if (numeroLinea == 1) {
+                if (!linea.isEmpty() && linea.charAt(0) == '\uFEFF') {
+                    linea = linea.substring(1);
+                }
+                if (formato == FormatoImportacion.CSV && linea.toLowerCase(Locale.ROOT).startsWith("tipo")) {
+                    linea = ""; // La cabecera se deja como línea vacía para que los números de línea sigan cuadrando
+                }
+            }
+            lineas[enLote++] = linea;
+            if (enLote == tamanioLote) {
+                if (!poner(cola, new Lote(primeraDelLote, lineas), fallo)) {
+                    return false;
+                }
+                lineas = new String[tamanioLote];
+                enLote = 0;
+                primeraDelLote = numeroLinea + 1;
+            }
+        }
+        if (enLote > 0) {
+            String[] ultimas = new String[enLote];
+            System.arraycopy(lineas, 0, ultimas, 0, enLote);
+            return poner(cola, new Lote(primeraDelLote, ultimas), fallo);
+        }
+        return true;
+    }
+
+    /// Encola un lote esperando mientras la cola esté llena; devuelve false si entretanto ha fallado algún hilo
+    private static boolean poner(BlockingQueue<Lote> cola, Lote lote, AtomicReference<Throwable> fallo) throws InterruptedException {
+        while (!cola.offer(lote, 100, TimeUnit.MILLISECONDS)) {
+            if (fallo.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void procesar(BlockingQueue<Lote> cola, FormatoImportacion formato, Biblioteca biblioteca,
+                                 InformeImportacion informe, AtomicReference<Throwable> fallo) {
+        try {
+            Lote lote;
+            while ((lote = cola.take()).lineas() != FIN) {
+                String[] lineas = lote.lineas();
+                List<Publicacion> validas = new ArrayList<>(lineas.length);
+                for (int i = 0; i < lineas.length; i++) {
+                    if (lineas[i].isBlank()) {
+                        continue;
+                    }
+                    try {
+                        validas.add(crear(AnalizadorLineas.analizar(lineas[i], formato)));
+                    } catch (RuntimeException e) {
+                        informe.rechazar(lote.primeraLinea() + i, e.getMessage());
+                    }
+                }
+                biblioteca.agregarPublicaciones(validas);
+                informe.aceptar(validas.size());
+            }
+        } catch (InterruptedException e) {
+            // La importación se ha cancelado
+        } catch (Throwable e) {
+            fallo.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Crea la publicación descrita por los campos. Antes de llamar al constructor se validan todos los
+     * campos con validarTodo, de modo que si la línea tiene varios errores el informe los recoge juntos.
+     * El servidor la usa también para las altas que llegan como formulario.
+     * @param campos Campos de la línea.
+     * @return La publicación creada.
+     * @throws IllegalArgumentException Con todos los errores de la línea separados por "; ".
+     */
+    public static Publicacion crear(Map<String, String> campos) {
+        return crear(campos, false, 0);
+    }
+
+    /**
+     * Como crear, pero la publicación conserva el ID indicado en lugar de recibir uno nuevo.
+     * Lo usa el servidor cuando una federación de bibliotecas reparte publicaciones que ya tienen ID.
+     * @param campos Campos de la publicación.
+     * @param id ID que asignó quien creó la publicación; no debe estar en uso en la biblioteca.
+     * @return La publicación creada.
+     * @throws IllegalArgumentException Con todos los errores de los campos separados por "; ".
+     */
+    public static Publicacion restaurar(Map<String, String> campos, long id) {
+        return crear(campos, true, id);
+    }
+
+    private static Publicacion crear(Map<String, String> campos, boolean conservarId, long id) {
+        String tipo = campos.get("tipo");
+        tipo = tipo == null ? "" : tipo.trim().toUpperCase(Locale.ROOT);
+        List<String> errores = new ArrayList<>(0);
+        String titulo = campos.get("titulo");
+        String autor = campos.get("autor");
+        int anio = entero(campos, "anio", errores);
+        switch (tipo) {
+            case "LIBRO" -> {
+                String isbn = campos.get("isbn");
+                int paginas = entero(campos, "paginas", errores);
+                comprobar(errores, Libro.validarTodo(titulo, autor, isbn, anio, paginas));
+                return conservarId ? FabricaPublicaciones.restaurarLibro(id, titulo, autor, isbn, anio, paginas)
+                        : new Libro(titulo, autor, isbn, anio, paginas);
+            }
+            case "REVISTA" -> {
+                String issn = campos.get("issn");
+                int edicion = entero(campos, "edicion", errores);
+                Revista.Mes mes = constante(Revista.Mes.class, campos, "mes", errores);
+                Revista.CategoriaRevista categoria = constante(Revista.CategoriaRevista.class, campos, "categoria", errores);
+                comprobar(errores, Revista.validarTodo(titulo, autor, anio, issn, edicion, mes, categoria));
+                return conservarId ? FabricaPublicaciones.restaurarRevista(id, titulo, autor, anio, issn, edicion, mes, categoria)
+                        : new Revista(titulo, autor, anio, issn, edicion, mes, categoria);
+            }
+            case "AUDIOLIBRO" -> {
+                String narrador = campos.get("narrador");
+                double duracion = decimal(campos, "duracion", errores);
+                String idioma = campos.get("idioma");
+                Audiolibro.FormatoAudio formato = constante(Audiolibro.FormatoAudio.class, campos, "formato", errores);
+                comprobar(errores, Audiolibro.validarTodo(titulo, autor, anio, narrador, duracion, idioma, formato));
+                return conservarId ? FabricaPublicaciones.restaurarAudiolibro(id, titulo, autor, anio, narrador, duracion, idioma, formato)
+                        : new Audiolibro(titulo, autor, anio, narrador, duracion, idioma, formato);
+            }
+            default -> throw new IllegalArgumentException("Tipo de publicación desconocido: " + tipo);
+        }
+    }
+
+    /**
+     * Lanza todos los errores de la línea: los de formato si algún campo no se ha podido leer
+     * (su valor por defecto daría además un error de validación engañoso) y si no, los de validación.
+     */
+    private static void comprobar(List<String> errores, List<String> validacion) {
+        List<String> todos = errores.isEmpty() ? validacion : errores;
+        if (!todos.isEmpty()) {
+            throw new IllegalArgumentException(String.join("; ", todos));
+        }
+    }
+
+    private static String obligatorio(Map<String, String> campos, String nombre, List<String> errores) {
+        String valor = campos.get(nombre);
+        if (valor == null || valor.isBlank()) {
+            errores.add("Falta el campo " + nombre);
+            return null;
+        }
+        return valor.trim();
+    }
+
+    private static int entero(Map<String, String> campos, String nombre, List<String> errores) {
+        String valor = obligatorio(campos, nombre, errores);
+        if (valor == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            errores.add("El campo " + nombre + " no es un número entero: " + valor);
+            return 0;
+        }
+    }
+
+    private static double decimal(Map<String, String> campos, String nombre, List<String> errores) {
+        String valor = obligatorio(campos, nombre, errores);
+        if (valor == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(valor);
+        } catch (NumberFormatException e) {
+            errores.add("El campo " + nombre + " no es un número: " + valor);
+            return 0;
+        }
+    }
+
+    private static <E extends Enum<E>> E constante(Class<E> tipo, Map<String, String> campos, String nombre, List<String> errores) {
+        String valor = obligatorio(campos, nombre, errores);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(tipo, valor.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            errores.add("Valor no válido para " + nombre + ": " + valor);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.bibliotecas.importacion;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resultado de una importación: cuántas publicaciones se han aceptado y qué líneas se han rechazado y por qué.
+ * Los hilos de la importación lo actualizan a la vez, así que todos los contadores son atómicos.
+ * Se guardan los detalles de los primeros MAX_ERRORES rechazos; del resto solo se cuenta el número.
+ */
+public class InformeImportacion {
+
+    public static final int MAX_ERRORES = 10_000;
+
+    /**
+     * Línea rechazada.
+     * @param linea  Número de línea en el fichero, empezando en 1.
+     * @param motivo Mensaje de la validación que ha fallado.
+     */
+    public record ErrorImportacion(long linea, String motivo) {
+    }
+
+    private final AtomicLong aceptadas;
+    private final AtomicLong rechazadas;
+    private final AtomicInteger erroresGuardados;
+    private final Queue<ErrorImportacion> errores;
+
+    InformeImportacion() {
+        this.aceptadas = new AtomicLong();
+        this.rechazadas = new AtomicLong();
+        this.erroresGuardados = new AtomicInteger();
+        this.errores = new ConcurrentLinkedQueue<>();
+    }
+
+    void aceptar(int publicaciones) {
+        aceptadas.addAndGet(publicaciones);
+    }
+
+    void rechazar(long linea, String motivo) {
+        rechazadas.incrementAndGet();
+        if (erroresGuardados.getAndIncrement() < MAX_ERRORES) {
+            errores.add(new ErrorImportacion(linea, motivo));
+        }
+    }
+
+    /// Número de publicaciones añadidas a la biblioteca
+    public long getAceptadas() {
+        return aceptadas.get();
+    }
+
+    /// Número de líneas rechazadas
+    public long getRechazadas() {
+        return rechazadas.get();
+    }
+
+    /**
+     * Devuelve los rechazos guardados, ordenados por número de línea.
+     * @return Lista con como mucho MAX_ERRORES rechazos.
+     */
+    public List<ErrorImportacion> getErrores() {
+        List<ErrorImportacion> resultado = new ArrayList<>(errores);
+        resultado.sort((a, b) -> Long.compare(a.linea(), b.linea()));
+        return resultado;
+    }
+
+    /**
+     * Escribe los rechazos guardados en un fichero de texto, uno por línea con el formato "línea: motivo".
+     * @param fichero Fichero de destino; se sobrescribe si existe.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public void escribirErrores(Path fichero) throws IOException {
+        try (BufferedWriter salida = Files.newBufferedWriter(fichero, StandardCharsets.UTF_8)) {
+            for (ErrorImportacion error : getErrores()) {
+                salida.write(error.linea() + ": " + error.motivo());
+                salida.newLine();
+            }
+            long sinDetalle = getRechazadas() - errores.size();
+            if (sinDetalle > 0) {
+                salida.write("... y " + sinDetalle + " líneas rechazadas más");
+                salida.newLine();
+            }
+        }
+    }
+}
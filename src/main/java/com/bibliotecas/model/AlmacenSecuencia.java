@@ -0,0 +1,31 @@
+package com.bibliotecas.model;
+
+/**
+ * Origen de los bloques de identificadores que reparte SecuenciaPorBloques.
+ * Solo se consulta cuando un bloque se agota, así que puede permitirse ser lento (por ejemplo,
+ * sincronizar un fichero) sin que lo note cada alta de publicación.
+ */
+public interface AlmacenSecuencia {
+
+    /**
+     * Reserva un bloque de identificadores consecutivos que no se volverá a entregar.
+     * @param cantidad Número de identificadores del bloque.
+     * @return El primer identificador del bloque.
+     */
+    long reservar(int cantidad);
+
+    /**
+     * Garantiza que los bloques reservados a partir de ahora empiecen después del identificador indicado.
+     * @param idMaximo El mayor identificador ya utilizado.
+     */
+    void reservarHasta(long idMaximo);
+
+    /**
+     * Crea un almacén que solo vive en memoria y empieza en 1. Tras reiniciar la aplicación vuelve a empezar,
+     * así que los identificadores solo se conservan si se restauran las publicaciones y se llama a reservarHasta.
+     * @return El almacén.
+     */
+    static AlmacenSecuencia enMemoria() {
+        return new SecuenciaEnMemoria();
+    }
+}
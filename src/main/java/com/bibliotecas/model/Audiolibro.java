@@ -5,11 +5,19 @@ import com.bibliotecas.exceptions.InvalidFormatException;
 import com.bibliotecas.exceptions.InvalidLanguageException;
 import com.bibliotecas.exceptions.InvalidNameException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Clase que representa un Audiolibro, una subclase de Publicacion que implementa la interfaz Multimedia.
  */
 public class Audiolibro extends Publicacion implements Multimedia {
 
+    private static final String MENSAJE_NARRADOR = "El nombre del narrador está vacío";
+    private static final String MENSAJE_DURACION = "La duración debe ser mayor que 0.";
+    private static final String MENSAJE_IDIOMA = "El idioma está vacío.";
+    private static final String MENSAJE_FORMATO = "El formato no es válido.";
+
     // Atributos de la clase Audiolibro
     private String narrador; // Nombre del narrador del audiolibro
     private double duracion; // Duración del audiolibro en horas
@@ -39,6 +47,15 @@ public class Audiolibro extends Publicacion implements Multimedia {
         setFormatoAudio(formatoAudio);
     }
 
+    /// Constructor para audiolibros ya validados que se recuperan de almacenamiento
+    Audiolibro(long uuid, String titulo, String autor, int anioPublicacion, String narrador, double duracion, String idioma, FormatoAudio formatoAudio) {
+        super(uuid, titulo, autor, anioPublicacion);
+        this.narrador = narrador;
+        this.duracion = duracion;
+        this.idioma = idioma;
+        this.formatoAudio = formatoAudio;
+    }
+
     // Métodos getter para cada atributo
     public String getNarrador() {return narrador;}
     public double getDuracion() {return duracion;}
@@ -47,22 +64,22 @@ public class Audiolibro extends Publicacion implements Multimedia {
 
     // Métodos setter para cada atributo con validaciones
     public void setNarrador(String narrador) throws InvalidNameException {
-        if (!validarNarrador(narrador)){throw new InvalidNameException("El nombre del narrador está vacío");}
+        if (!validarNarrador(narrador)){throw new InvalidNameException(MENSAJE_NARRADOR);}
         this.narrador = narrador;
     }
 
     public void setDuracion(double duracion) throws InvalidDurationException {
-        if (!validarDuracion(duracion)) {throw new InvalidDurationException("La duración debe ser mayor que 0.");}
+        if (!validarDuracion(duracion)) {throw new InvalidDurationException(MENSAJE_DURACION);}
         this.duracion = duracion;
     }
 
     public void setIdioma(String idioma) throws InvalidLanguageException {
-        if (!validarIdioma(idioma)) {throw new InvalidLanguageException("El idioma está vacío.");}
+        if (!validarIdioma(idioma)) {throw new InvalidLanguageException(MENSAJE_IDIOMA);}
         this.idioma = idioma;
     }
 
     public void setFormatoAudio(FormatoAudio formatoAudio) throws InvalidFormatException {
-        if (!validarFormato(formatoAudio)) {throw new InvalidFormatException("El formato no es válido.");}
+        if (!validarFormato(formatoAudio)) {throw new InvalidFormatException(MENSAJE_FORMATO);}
         this.formatoAudio = formatoAudio;
     }
 
@@ -72,7 +89,37 @@ public class Audiolibro extends Publicacion implements Multimedia {
      * @return true si el nombre es válido, false en caso contrario.
      */
     public static boolean validarNarrador(String narrador) {
-        return narrador != null && !narrador.trim().isEmpty();
+        return Validaciones.tieneTexto(narrador);
+    }
+
+    /**
+     * Valida todos los campos de un audiolibro a la vez, sin lanzar excepciones.
+     * @param titulo Título del audiolibro.
+     * @param autor Autor del audiolibro.
+     * @param anioPublicacion Año de publicación del audiolibro.
+     * @param narrador Nombre del narrador del audiolibro.
+     * @param duracion Duración del audiolibro en horas.
+     * @param idioma Idioma del audiolibro.
+     * @param formatoAudio Formato del audiolibro.
+     * @return Lista con un mensaje por cada campo no válido, vacía si todos son válidos.
+     */
+    public static List<String> validarTodo(String titulo, String autor, int anioPublicacion, String narrador, double duracion,
+                                           String idioma, FormatoAudio formatoAudio) {
+        List<String> errores = new ArrayList<>(0);
+        validarComunes(errores, titulo, autor, anioPublicacion);
+        if (!validarNarrador(narrador)) {
+            errores.add(MENSAJE_NARRADOR);
+        }
+        if (!validarDuracion(duracion)) {
+            errores.add(MENSAJE_DURACION);
+        }
+        if (!validarIdioma(idioma)) {
+            errores.add(MENSAJE_IDIOMA);
+        }
+        if (!validarFormato(formatoAudio)) {
+            errores.add(MENSAJE_FORMATO);
+        }
+        return errores;
     }
 
     /**
@@ -90,7 +137,7 @@ public class Audiolibro extends Publicacion implements Multimedia {
      * @return true si el idioma es válido, false en caso contrario.
      */
     public static boolean validarIdioma(String idioma) {
-        return idioma != null && !idioma.trim().isEmpty();
+        return Validaciones.tieneTexto(idioma);
     }
 
     /**
@@ -103,15 +150,16 @@ public class Audiolibro extends Publicacion implements Multimedia {
     }
 
     /**
-     * Metodo para mostrar la información del audiolibro, sobreescribiendo el de la clase padre.
+     * Metodo para añadir la información del audiolibro, sobreescribiendo el de la clase padre.
      */
     @Override
-    public void mostrarInfo() {
-        super.mostrarInfo();
-        System.out.println("Narrador: " + narrador);
-        System.out.println("Duración: " + duracion);
-        System.out.println("Idioma: " + idioma);
-        System.out.println("Formato: " + formatoAudio+"\n");
+    public StringBuilder describir(StringBuilder destino) {
+        super.describir(destino);
+        destino.append("Narrador: ").append(narrador).append(SALTO_LINEA);
+        destino.append("Duración: ").append(duracion).append(SALTO_LINEA);
+        destino.append("Idioma: ").append(idioma).append(SALTO_LINEA);
+        destino.append("Formato: ").append(formatoAudio).append('\n').append(SALTO_LINEA);
+        return destino;
     }
 
     /**
@@ -1,29 +1,148 @@
 package com.bibliotecas.model;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Biblioteca segura para hilos.
+ * Los préstamos y devoluciones se serializan por usuario mediante un conjunto de bloqueos
+ * repartidos por ID de usuario, y el estado de cada publicación se cambia con compareAndSet,
+ * de modo que terminales distintos solo compiten cuando actúan sobre el mismo usuario.
+ * Los préstamos activos se guardan en una TablaPrestamos por cada bloqueo de usuario que comparten
+ * la biblioteca y sus usuarios, y en una TablaTitulares repartida por ID de publicación, de la que salen
+ * el titular de cada publicación y los préstamos ordenados por fecha de devolución.
+ * El catálogo se protege con un bloqueo de lectura/escritura.
+ */
 public class Biblioteca {
     private final List<Publicacion> publicaciones;
-    public Map<Integer, Usuario> usuarios; // Almacena los usuarios
-    public Map<Integer, List<Publicacion>> prestamosActivos; // Registra préstamos activos
-    private final Queue<PublicacionPrestable> colaPrestamos; // Cola de espera para publicaciones prestadas
+    private final Map<Integer, Usuario> usuarios; // Almacena los usuarios
+    private final Map<Object, ColaReservas> reservas; // Colas de espera por obra, o por ID si no tiene obra
+    private final IndicePublicaciones indice; // Índices por título, autor, ISBN e ISSN
+    private final ReentrantReadWriteLock bloqueoCatalogo; // Protege publicaciones e índice
+    private final ReentrantLock[] bloqueosUsuario; // Bloqueos repartidos por ID de usuario
+    private final TablaPrestamos[] tablasPrestamos; // Préstamos activos de los usuarios de cada bloqueo
+    private final TablaTitulares titulares; // Titular y vencimiento de cada publicación prestada
+    private volatile OyenteBiblioteca[] oyentes; // Se sustituye el array entero al añadir o quitar oyentes
+    private final List<OyenteBiblioteca> oyentesConPublicaciones; // Reciben también el catálogo que se adjunte; protegida por bloqueoCatalogo
+    private volatile OrigenCatalogo origen; // Catálogo en disco que se consulta además de las publicaciones en memoria
+    private volatile VistasCatalogo vistasCatalogo; // Vistas ordenadas de origen para recorrerlo por páginas
+    private volatile OrdenListado orden = OrdenListado.INSERCION; // Orden en que listarPublicaciones muestra el catálogo
+
+    // Publicaciones que se leen de cada vez al recorrer el catálogo con publicaciones()
+    private static final int TAMANIO_PAGINA_RECORRIDO = 256;
+
+    /// Órdenes posibles del listado; los ordenados se leen de las vistas que mantiene el índice
+    private enum OrdenListado { INSERCION, AUTOR, TITULO }
 
     public Biblioteca() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Constructor de la biblioteca.
+     * @param nivelConcurrencia Número aproximado de bloqueos de usuario; se redondea a una potencia de dos.
+     */
+    public Biblioteca(int nivelConcurrencia) {
         this.publicaciones = new ArrayList<>();
-        this.usuarios = new HashMap<>();
-        this.prestamosActivos = new HashMap<>();
-        this.colaPrestamos = new LinkedList<>();
+        this.usuarios = new ConcurrentHashMap<>();
+        this.reservas = new ConcurrentHashMap<>();
+        this.indice = new IndicePublicaciones();
+        this.bloqueoCatalogo = new ReentrantReadWriteLock();
+        this.oyentes = new OyenteBiblioteca[0];
+        this.oyentesConPublicaciones = new ArrayList<>();
+        int bloqueos = Integer.highestOneBit(Math.max(1, nivelConcurrencia - 1) << 1);
+        this.bloqueosUsuario = new ReentrantLock[bloqueos];
+        this.tablasPrestamos = new TablaPrestamos[bloqueos];
+        this.titulares = new TablaTitulares(bloqueos);
+        for (int i = 0; i < bloqueos; i++) {
+            bloqueosUsuario[i] = new ReentrantLock();
+            tablasPrestamos[i] = new TablaPrestamos(titulares);
+        }
     }
 
-    /// Metodo para registrar un nuevo usuario
-    public void registrarUsuario(int id, String nombre) {
-        if (usuarios.containsKey(id)) {
-            System.out.println("El usuario con ID " + id + " ya está registrado.");
-            return;
+    private int grupoUsuario(int idUsuario) {
+        int h = idUsuario * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (bloqueosUsuario.length - 1);
+    }
+
+    /// Devuelve el bloqueo que protege los préstamos del usuario
+    private ReentrantLock bloqueoUsuario(int idUsuario) {
+        return bloqueosUsuario[grupoUsuario(idUsuario)];
+    }
+
+    /// Metodo para añadir un oyente que recibirá los eventos de la biblioteca
+    public synchronized void agregarOyente(OyenteBiblioteca oyente) {
+        OyenteBiblioteca[] nuevos = Arrays.copyOf(oyentes, oyentes.length + 1);
+        nuevos[oyentes.length] = oyente;
+        oyentes = nuevos;
+    }
+
+    /**
+     * Metodo para añadir un oyente que además recibe, como altas, las publicaciones que ya están en memoria
+     * y, con catalogoAdjuntado, el catálogo adjunto y los que se adjunten después.
+     * Las publicaciones en memoria se entregan con el catálogo bloqueado para escritura, así que ninguna alta
+     * se pierde ni se recibe dos veces. El catálogo adjunto se entrega después de soltar el bloqueo, para no
+     * detener la biblioteca mientras el oyente lo recorre; como el oyente queda registrado en el mismo paso
+     * en que se lee el catálogo adjunto, cada catálogo le llega una sola vez aunque se adjunte otro a la vez.
+     * @param oyente Oyente a añadir, por ejemplo un índice que necesita conocer todo el catálogo.
+     */
+    public void agregarOyenteConPublicaciones(OyenteBiblioteca oyente) {
+        OrigenCatalogo catalogo;
+        bloqueoCatalogo.writeLock().lock();
+        try {
+            for (Publicacion publicacion : publicaciones) {
+                oyente.publicacionAgregada(publicacion);
+            }
+            catalogo = origen;
+            oyentesConPublicaciones.add(oyente);
+            agregarOyente(oyente);
+        } finally {
+            bloqueoCatalogo.writeLock().unlock();
+        }
+        if (catalogo != null) {
+            oyente.catalogoAdjuntado(catalogo);
         }
-        Usuario nuevoUsuario = new Usuario(id, nombre);
-        usuarios.put(id, nuevoUsuario);
-        System.out.println("Usuario registrado con éxito.");
+    }
+
+    /// Metodo para quitar un oyente añadido previamente
+    public void quitarOyente(OyenteBiblioteca oyente) {
+        // Mismo orden que agregarOyenteConPublicaciones: primero el catálogo y después el monitor de la biblioteca
+        bloqueoCatalogo.writeLock().lock();
+        try {
+            oyentesConPublicaciones.remove(oyente);
+            synchronized (this) {
+                List<OyenteBiblioteca> restantes = new ArrayList<>(Arrays.asList(oyentes));
+                if (restantes.remove(oyente)) {
+                    oyentes = restantes.toArray(new OyenteBiblioteca[0]);
+                }
+            }
+        } finally {
+            bloqueoCatalogo.writeLock().unlock();
+        }
+    }
+
+    /// Metodo para registrar un nuevo usuario; devuelve false si el ID ya estaba registrado
+    public boolean registrarUsuario(int id, String nombre) {
+        if (usuarios.putIfAbsent(id, new Usuario(id, nombre, tablasPrestamos[grupoUsuario(id)])) != null) {
+            return false;
+        }
+        for (OyenteBiblioteca oyente : oyentes) {
+            oyente.usuarioRegistrado(id, nombre);
+        }
+        return true;
+    }
+
+    /// Metodo para comprobar si un usuario está registrado
+    public boolean existeUsuario(int id) {
+        return usuarios.containsKey(id);
     }
 
     /// Metodo para obtener un usuario por ID
@@ -31,126 +150,991 @@ public class Biblioteca {
         return usuarios.get(id);
     }
 
-    /// Metodo para agregar una publicación a la biblioteca
+    /// Metodo para obtener una copia de los usuarios registrados
+    public List<Usuario> obtenerUsuarios() {
+        return new ArrayList<>(usuarios.values());
+    }
+
+    /**
+     * Metodo para agregar una publicación a la biblioteca.
+     * El ID se comprueba con el bloqueo de escritura del catálogo, en el mismo paso que el alta,
+     * así que de dos altas simultáneas con el mismo ID solo entra una.
+     * @throws IllegalArgumentException Si ya hay una publicación con ese ID, en memoria o en el catálogo adjunto.
+     */
     public void agregarPublicacion(Publicacion publicacion) {
-        publicaciones.add(publicacion);
+        bloqueoCatalogo.writeLock().lock();
+        try {
+            long id = publicacion.getId();
+            if (indice.buscarPorId(id) != null || (origen != null && origen.buscarPorId(id) != null)) {
+                throw new IllegalArgumentException("Ya existe una publicación con ID " + id);
+            }
+            publicaciones.add(publicacion);
+            indice.indexar(publicacion);
+            for (OyenteBiblioteca oyente : oyentes) {
+                oyente.publicacionAgregada(publicacion);
+            }
+        } finally {
+            bloqueoCatalogo.writeLock().unlock();
+        }
     }
 
-    /// Metodo para listar publicaciones en la biblioteca
-    public void listarPublicaciones() {
-        System.out.println("---- LISTADO DE PUBLICACIONES ----");
+    /**
+     * Metodo para agregar muchas publicaciones de una vez, por ejemplo desde una importación.
+     * Toma el bloqueo del catálogo una sola vez para todo el lote en lugar de una vez por publicación.
+     * @param nuevas Publicaciones a agregar.
+     */
+    public void agregarPublicaciones(Collection<? extends Publicacion> nuevas) {
+        bloqueoCatalogo.writeLock().lock();
+        try {
+            publicaciones.addAll(nuevas);
+            OyenteBiblioteca[] actuales = oyentes;
+            for (Publicacion publicacion : nuevas) {
+                indice.indexar(publicacion);
+                for (OyenteBiblioteca oyente : actuales) {
+                    oyente.publicacionAgregada(publicacion);
+                }
+            }
+        } finally {
+            bloqueoCatalogo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Metodo para consultar además un catálogo guardado; sus publicaciones se cargan cuando se consultan.
+     * Los oyentes añadidos con agregarOyenteConPublicaciones lo reciben con catalogoAdjuntado, después de
+     * soltar el bloqueo del catálogo.
+     */
+    public void adjuntarCatalogo(OrigenCatalogo origen) {
+        List<OyenteBiblioteca> destinatarios;
+        bloqueoCatalogo.writeLock().lock();
+        try {
+            this.origen = origen;
+            this.vistasCatalogo = origen == null ? null : new VistasCatalogo(origen);
+            destinatarios = new ArrayList<>(oyentesConPublicaciones);
+        } finally {
+            bloqueoCatalogo.writeLock().unlock();
+        }
+        for (OyenteBiblioteca oyente : destinatarios) {
+            oyente.catalogoAdjuntado(origen);
+        }
+    }
 
-        System.out.println("\n-- LIBROS --");
-        for (Publicacion pub : publicaciones) {
-            if (pub instanceof Libro) {
-                pub.mostrarInfo();
+    /// Metodo para obtener todas las publicaciones; carga en memoria las del catálogo adjunto
+    public List<Publicacion> obtenerPublicaciones() {
+        List<Publicacion> resultado;
+        bloqueoCatalogo.readLock().lock();
+        try {
+            resultado = new ArrayList<>(publicaciones);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        OrigenCatalogo catalogo = origen;
+        if (catalogo != null) {
+            for (int i = 0; i < catalogo.tamanio(); i++) {
+                resultado.add(catalogo.cargar(i));
             }
         }
+        return resultado;
+    }
+
+    /// Metodo para obtener las publicaciones del catálogo en memoria, sin las del catálogo adjunto
+    public List<Publicacion> obtenerPublicacionesEnMemoria() {
+        bloqueoCatalogo.readLock().lock();
+        try {
+            return new ArrayList<>(publicaciones);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Metodo para listar publicaciones en la biblioteca; se escriben por bloques a través de un RenderizadorPublicaciones.
+     * Cada sección se pide por páginas y el bloqueo del catálogo solo se toma mientras se lee cada página,
+     * así que un listado largo no detiene las altas mientras se escribe.
+     */
+    public void listarPublicaciones() {
+        RenderizadorPublicaciones salida = new RenderizadorPublicaciones(new OutputStreamWriter(System.out, System.out.charset()));
+        try {
+            salida.escribirLinea("---- LISTADO DE PUBLICACIONES ----");
+            listarTipo("\n-- LIBROS --", Libro.class, salida);
+            listarTipo("\n-- REVISTAS --", Revista.class, salida);
+            listarTipo("\n-- AUDIOLIBROS --", Audiolibro.class, salida);
+            salida.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /// Escribe la sección de un tipo; en los órdenes por autor y por título incluye ya el catálogo adjunto
+    private void listarTipo(String cabecera, Class<? extends Publicacion> tipo, RenderizadorPublicaciones salida) throws IOException {
+        salida.escribirLinea(cabecera);
+        OrdenListado ordenListado = orden;
+        if (ordenListado == OrdenListado.INSERCION) {
+            listarPorInsercion(tipo, salida);
+            listarDelCatalogo(tipo, salida);
+            return;
+        }
+        OrdenPublicaciones ordenPaginas = ordenListado == OrdenListado.AUTOR ? OrdenPublicaciones.AUTOR : OrdenPublicaciones.TITULO;
+        List<Publicacion> pagina;
+        Publicacion despues = null;
+        do {
+            pagina = pagina(ordenPaginas, tipo, despues, TAMANIO_PAGINA_RECORRIDO);
+            salida.escribirPagina(pagina);
+            despues = pagina.isEmpty() ? null : pagina.get(pagina.size() - 1);
+        } while (pagina.size() == TAMANIO_PAGINA_RECORRIDO);
+    }
 
-        System.out.println("\n-- REVISTAS --");
-        for (Publicacion pub : publicaciones) {
-            if (pub instanceof Revista) {
-                pub.mostrarInfo();
+    /// Escribe las publicaciones en memoria de un tipo en orden de alta, copiando un tramo de la lista en cada página
+    private void listarPorInsercion(Class<? extends Publicacion> tipo, RenderizadorPublicaciones salida) throws IOException {
+        List<Publicacion> pagina = new ArrayList<>(TAMANIO_PAGINA_RECORRIDO);
+        int desde = 0;
+        boolean quedan = true;
+        while (quedan) {
+            pagina.clear();
+            bloqueoCatalogo.readLock().lock();
+            try {
+                // La lista solo crece, así que las posiciones ya escritas no cambian entre página y página
+                int hasta = Math.min(publicaciones.size(), desde + TAMANIO_PAGINA_RECORRIDO);
+                for (int i = desde; i < hasta; i++) {
+                    if (tipo.isInstance(publicaciones.get(i))) {
+                        pagina.add(publicaciones.get(i));
+                    }
+                }
+                desde = hasta;
+                quedan = hasta < publicaciones.size();
+            } finally {
+                bloqueoCatalogo.readLock().unlock();
             }
+            salida.escribirPagina(pagina);
         }
+    }
 
-        System.out.println("\n-- AUDIOLIBROS --");
-        for (Publicacion pub : publicaciones) {
-            if (pub instanceof Audiolibro) {
-                pub.mostrarInfo();
+    /// Escribe las publicaciones de un tipo del catálogo adjunto; el tipo se lee sin cargar la publicación
+    private void listarDelCatalogo(Class<? extends Publicacion> tipo, RenderizadorPublicaciones salida) throws IOException {
+        OrigenCatalogo catalogo = origen;
+        if (catalogo == null) {
+            return;
+        }
+        for (int i = 0; i < catalogo.tamanio(); i++) {
+            if (catalogo.tipo(i) == tipo) {
+                salida.escribir(catalogo.cargar(i));
             }
         }
     }
 
-    /// Metodo para buscar una publicación por título
+    /// Metodo para buscar una publicación por su ID
+    public Publicacion buscarPublicacionPorId(long id) {
+        Publicacion encontrada;
+        bloqueoCatalogo.readLock().lock();
+        try {
+            encontrada = indice.buscarPorId(id);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        OrigenCatalogo catalogo = origen;
+        return encontrada == null && catalogo != null ? catalogo.buscarPorId(id) : encontrada;
+    }
+
+    /**
+     * Metodo para buscar una publicación por título.
+     * Si es prestable y hay varios ejemplares de su obra, devuelve uno disponible, si lo hay, en lugar del
+     * primero registrado, para no dejar al usuario esperando por un ejemplar prestado teniendo otro libre.
+     * Las publicaciones del catálogo adjunto no forman parte de ninguna obra hasta que se añaden.
+     */
     public Publicacion buscarPublicacionPorTitulo(String titulo) {
-        for (Publicacion p : publicaciones) {
-            if (p.getTitulo().equalsIgnoreCase(titulo)) {
-                return p;
+        Publicacion encontrada;
+        bloqueoCatalogo.readLock().lock();
+        try {
+            encontrada = indice.buscarPorTitulo(titulo);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        if (encontrada instanceof PublicacionPrestable prestable && prestable.isPrestado() && prestable.obra != null) {
+            PublicacionPrestable disponible = prestable.obra.ejemplarDisponible();
+            if (disponible != null) {
+                return disponible;
+            }
+        }
+        OrigenCatalogo catalogo = origen;
+        if (encontrada == null && catalogo != null) {
+            List<Publicacion> guardadas = catalogo.buscarPorTitulo(titulo);
+            encontrada = guardadas.isEmpty() ? null : guardadas.get(0);
+        }
+        return encontrada;
+    }
+
+    /// Metodo para buscar las publicaciones cuyo título empieza por un prefijo
+    public List<Publicacion> buscarPublicacionesPorPrefijo(String prefijo) {
+        List<Publicacion> enMemoria;
+        bloqueoCatalogo.readLock().lock();
+        try {
+            enMemoria = indice.buscarPorPrefijo(prefijo);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        OrigenCatalogo catalogo = origen;
+        return catalogo == null ? enMemoria : mezclarPorTitulo(enMemoria, catalogo.buscarPorRango(prefijo, null));
+    }
+
+    /// Metodo para buscar las publicaciones cuyo título está en el rango [desde, hasta)
+    public List<Publicacion> buscarPublicacionesPorRangoTitulo(String desde, String hasta) {
+        List<Publicacion> enMemoria;
+        bloqueoCatalogo.readLock().lock();
+        try {
+            enMemoria = indice.buscarPorRango(desde, hasta);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        OrigenCatalogo catalogo = origen;
+        return catalogo == null ? enMemoria : mezclarPorTitulo(enMemoria, catalogo.buscarPorRango(desde, hasta));
+    }
+
+    /// Mezcla dos listas ordenadas por título normalizado manteniendo el orden
+    private static List<Publicacion> mezclarPorTitulo(List<Publicacion> a, List<Publicacion> b) {
+        if (b.isEmpty()) {
+            return a;
+        }
+        List<Publicacion> resultado = new ArrayList<>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            String claveA = IndicePublicaciones.normalizar(a.get(i).getTitulo());
+            String claveB = IndicePublicaciones.normalizar(b.get(j).getTitulo());
+            resultado.add(claveA.compareTo(claveB) <= 0 ? a.get(i++) : b.get(j++));
+        }
+        resultado.addAll(a.subList(i, a.size()));
+        resultado.addAll(b.subList(j, b.size()));
+        return resultado;
+    }
+
+    /// Metodo para buscar las publicaciones de un autor
+    public List<Publicacion> buscarPublicacionesPorAutor(String autor) {
+        bloqueoCatalogo.readLock().lock();
+        try {
+            return indice.buscarPorAutor(autor);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Metodo para buscar un libro por su ISBN, con o sin guiones, en memoria y en el catálogo adjunto.
+     * Si hay varios ejemplares con ese ISBN, devuelve uno que no esté prestado, si lo hay.
+     */
+    public Libro buscarLibroPorISBN(String ISBN) {
+        Libro encontrado;
+        bloqueoCatalogo.readLock().lock();
+        try {
+            encontrado = indice.buscarPorISBN(ISBN);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        OrigenCatalogo catalogo = origen;
+        return ISBN == null || catalogo == null ? encontrado : preferirDisponible(encontrado, catalogo.buscarPorISBN(ISBN));
+    }
+
+    /// Metodo para buscar una revista por su ISSN, igual que buscarLibroPorISBN
+    public Revista buscarRevistaPorISSN(String ISSN) {
+        Revista encontrada;
+        bloqueoCatalogo.readLock().lock();
+        try {
+            encontrada = indice.buscarPorISSN(ISSN);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        OrigenCatalogo catalogo = origen;
+        return ISSN == null || catalogo == null ? encontrada : preferirDisponible(encontrada, catalogo.buscarPorISSN(ISSN));
+    }
+
+    /// La publicación en memoria si está disponible; si no, un ejemplar disponible del catálogo adjunto o la primera encontrada
+    private static <T extends PublicacionPrestable> T preferirDisponible(T enMemoria, List<T> delCatalogo) {
+        if (enMemoria != null && !enMemoria.isPrestado()) {
+            return enMemoria;
+        }
+        for (T ejemplar : delCatalogo) {
+            if (!ejemplar.isPrestado()) {
+                return ejemplar;
+            }
+        }
+        return enMemoria != null || delCatalogo.isEmpty() ? enMemoria : delCatalogo.get(0);
+    }
+
+    /**
+     * Metodo para registrar un préstamo.
+     * Si la publicación está prestada pero queda libre otro ejemplar de su obra, se presta ese; el que ha
+     * recibido el usuario se obtiene con ejemplarPrestado. Si no queda ninguno, el usuario espera en la cola
+     * de la obra y recibe el primer ejemplar que se devuelva.
+     */
+    public ResultadoPrestamo registrarPrestamo(int idUsuario, PublicacionPrestable publicacion) {
+        Usuario usuario = usuarios.get(idUsuario);
+        ResultadoPrestamo resultado;
+        PublicacionPrestable prestada = publicacion;
+        if (usuario == null) {
+            resultado = ResultadoPrestamo.USUARIO_NO_REGISTRADO;
+        } else {
+            // Si hay otros usuarios esperando, la obra les corresponde a ellos primero
+            ColaReservas cola = reservas.get(claveReserva(publicacion));
+            resultado = ResultadoPrestamo.EN_COLA;
+            if (cola == null || esPrimero(cola, idUsuario)) {
+                // Si otro terminal se adelanta con un ejemplar, se prueba con el siguiente libre
+                PublicacionPrestable ejemplar;
+                while (resultado == ResultadoPrestamo.EN_COLA && (ejemplar = ejemplarLibre(publicacion)) != null) {
+                    resultado = prestar(usuario, ejemplar);
+                    prestada = ejemplar;
+                }
+            }
+            if (resultado == ResultadoPrestamo.EN_COLA) {
+                prestada = publicacion;
+                resultado = ponerEnEspera(idUsuario, publicacion);
+            }
+        }
+        notificarPrestamo(idUsuario, prestada, resultado);
+        if (resultado == ResultadoPrestamo.EN_COLA && atenderSiQuedoLibre(usuario, publicacion)) {
+            resultado = ResultadoPrestamo.PRESTADO;
+        }
+        return resultado;
+    }
+
+    /**
+     * Metodo para obtener el ejemplar de la obra de una publicación que tiene prestado un usuario,
+     * que puede no ser el pedido si registrarPrestamo ha prestado otro ejemplar libre.
+     * @return La propia publicación si la tiene él, otro ejemplar de su obra que tenga, o null si no tiene ninguno.
+     */
+    public PublicacionPrestable ejemplarPrestado(int idUsuario, PublicacionPrestable publicacion) {
+        if (titulares.titular(publicacion.getId()) == idUsuario) {
+            return publicacion;
+        }
+        Obra obra = publicacion.obra;
+        if (obra != null) {
+            for (PublicacionPrestable ejemplar : obra.ejemplares()) {
+                if (titulares.titular(ejemplar.getId()) == idUsuario) {
+                    return ejemplar;
+                }
             }
         }
         return null;
     }
 
-    /// Metodo para registrar un préstamo
-    public void registrarPrestamo(int idUsuario, PublicacionPrestable publicacion) {
-        if (!usuarios.containsKey(idUsuario)) {
-            System.out.println("El usuario no está registrado. Regístrelo antes de continuar.");
-            System.out.print("\n");
-            return;
+    /// Las esperas se guardan por obra, para que cualquier ejemplar devuelto sirva a quien espera;
+    /// las publicaciones sin obra, como las del catálogo adjunto que no se han añadido, por su ID
+    private static Object claveReserva(PublicacionPrestable publicacion) {
+        Obra obra = publicacion.obra;
+        return obra != null ? obra : (Object) publicacion.getId();
+    }
+
+    /// La propia publicación si está libre, si no otro ejemplar libre de su obra, o null si no queda ninguno
+    private static PublicacionPrestable ejemplarLibre(PublicacionPrestable publicacion) {
+        if (!publicacion.isPrestado()) {
+            return publicacion;
+        }
+        Obra obra = publicacion.obra;
+        return obra != null ? obra.ejemplarDisponible() : null;
+    }
+
+    private static boolean esPrimero(ColaReservas cola, int idUsuario) {
+        Integer primero = cola.primero();
+        return primero == null || primero == idUsuario;
+    }
+
+    /// Presta la publicación al usuario; devuelve EN_COLA si otro se ha adelantado, sin encolar al usuario
+    private ResultadoPrestamo prestar(Usuario usuario, PublicacionPrestable publicacion) {
+        int idUsuario = usuario.getIdUsuario();
+        ReentrantLock bloqueo = bloqueoUsuario(idUsuario);
+        bloqueo.lock();
+        try {
+            if (!usuario.puedePedirPrestamo()) {
+                return ResultadoPrestamo.LIMITE_ALCANZADO;
+            }
+
+            // Si otro terminal se adelanta entre la comprobación y el préstamo, prestar() falla de forma atómica
+            if (!usuario.prestarPublicacion(publicacion)) {
+                return ResultadoPrestamo.EN_COLA;
+            }
+            if (desencolar(idUsuario, publicacion)) {
+                notificarFinEspera(idUsuario, publicacion);
+            }
+            return ResultadoPrestamo.PRESTADO;
+        } finally {
+            bloqueo.unlock();
         }
+    }
+
+    private ResultadoPrestamo ponerEnEspera(int idUsuario, PublicacionPrestable publicacion) {
+        if (encolar(idUsuario, publicacion)) {
+            for (OyenteBiblioteca oyente : oyentes) {
+                oyente.esperaIniciada(idUsuario, publicacion);
+            }
+        }
+        return ResultadoPrestamo.EN_COLA;
+    }
+
+    /// Añade al usuario a la cola de la publicación; si la cola del mapa está retirada, la quita y crea otra
+    private boolean encolar(int idUsuario, PublicacionPrestable publicacion) {
+        Object clave = claveReserva(publicacion);
+        while (true) {
+            ColaReservas cola = reservas.computeIfAbsent(clave, k -> new ColaReservas());
+            synchronized (cola) {
+                if (!cola.isRetirada()) {
+                    return cola.agregar(idUsuario);
+                }
+            }
+            reservas.remove(clave, cola);
+        }
+    }
+
+    /// Saca al usuario de la cola de la publicación y quita la cola del mapa si se queda vacía
+    private boolean desencolar(int idUsuario, PublicacionPrestable publicacion) {
+        Object clave = claveReserva(publicacion);
+        ColaReservas cola = reservas.get(clave);
+        if (cola == null || !cola.cancelar(idUsuario)) {
+            return false;
+        }
+        if (cola.retirarSiVacia()) {
+            reservas.remove(clave, cola);
+        }
+        return true;
+    }
+
+    /**
+     * Comprueba, después de poner al usuario en espera, si ha quedado libre entretanto un ejemplar de la obra.
+     * Una devolución que termina entre la comprobación y la entrada en la cola no ve al nuevo usuario,
+     * así que nadie más entregaría el ejemplar; aquí se entrega a quien le corresponda.
+     * @return true si un ejemplar ha acabado prestado a este usuario.
+     */
+    private boolean atenderSiQuedoLibre(Usuario usuario, PublicacionPrestable publicacion) {
+        PublicacionPrestable ejemplar = ejemplarLibre(publicacion);
+        return ejemplar != null && entregarAlSiguiente(ejemplar, usuario) != null;
+    }
+
+    /**
+     * Metodo para registrar de una vez varios préstamos de un usuario, por ejemplo desde un puesto de autopréstamo.
+     * El lote se aplica con una sola adquisición del bloqueo del usuario, de modo que sus otros terminales ven
+     * el lote entero o nada de él, y el límite de préstamos se consulta una vez y se va descontando.
+     * Cada publicación sigue las mismas reglas que en registrarPrestamo, incluido el préstamo de otro ejemplar
+     * libre de su obra, que es el que reciben los oyentes en su lugar. Los oyentes reciben el lote en un
+     * único evento, así que el registro de operaciones lo confirma con una sola escritura. Si una publicación
+     * queda libre mientras el usuario entra en su cola, se le entrega después desde la cola, con su propio
+     * evento, y su resultado pasa a PRESTADO.
+     * @param idUsuario ID del usuario.
+     * @param publicaciones Publicaciones solicitadas.
+     * @return Resultado de cada solicitud, en el mismo orden que las publicaciones.
+     */
+    public List<ResultadoPrestamo> registrarPrestamos(int idUsuario, List<? extends PublicacionPrestable> publicaciones) {
+        ResultadoPrestamo[] resultados = new ResultadoPrestamo[publicaciones.size()];
+        PublicacionPrestable[] prestadas = publicaciones.toArray(new PublicacionPrestable[0]);
         Usuario usuario = usuarios.get(idUsuario);
+        if (usuario == null) {
+            Arrays.fill(resultados, ResultadoPrestamo.USUARIO_NO_REGISTRADO);
+        } else {
+            // Los cambios en las colas se notifican al terminar, sin el bloqueo del usuario
+            List<PublicacionPrestable> esperasIniciadas = new ArrayList<>(0);
+            List<PublicacionPrestable> esperasTerminadas = new ArrayList<>(0);
+            ReentrantLock bloqueo = bloqueoUsuario(idUsuario);
+            bloqueo.lock();
+            try {
+                int disponibles = usuario.prestamosDisponibles();
+                for (int i = 0; i < resultados.length; i++) {
+                    PublicacionPrestable publicacion = publicaciones.get(i);
+                    ColaReservas cola = reservas.get(claveReserva(publicacion));
+                    PublicacionPrestable ejemplar = null;
+                    if (cola == null || esPrimero(cola, idUsuario)) {
+                        ejemplar = ejemplarLibre(publicacion);
+                    }
+                    if (ejemplar == null) {
+                        resultados[i] = ResultadoPrestamo.EN_COLA;
+                    } else if (disponibles == 0) {
+                        resultados[i] = ResultadoPrestamo.LIMITE_ALCANZADO;
+                    } else {
+                        // Si otro terminal se adelanta con un ejemplar, se prueba con el siguiente libre
+                        while (ejemplar != null && !usuario.prestarPublicacion(ejemplar)) {
+                            ejemplar = ejemplarLibre(publicacion);
+                        }
+                        if (ejemplar == null) {
+                            resultados[i] = ResultadoPrestamo.EN_COLA;
+                        } else {
+                            disponibles--;
+                            prestadas[i] = ejemplar;
+                            if (desencolar(idUsuario, ejemplar)) {
+                                esperasTerminadas.add(ejemplar);
+                            }
+                            resultados[i] = ResultadoPrestamo.PRESTADO;
+                        }
+                    }
+                    if (resultados[i] == ResultadoPrestamo.EN_COLA && encolar(idUsuario, publicacion)) {
+                        esperasIniciadas.add(publicacion);
+                    }
+                }
+            } finally {
+                bloqueo.unlock();
+            }
+            for (PublicacionPrestable publicacion : esperasIniciadas) {
+                for (OyenteBiblioteca oyente : oyentes) {
+                    oyente.esperaIniciada(idUsuario, publicacion);
+                }
+            }
+            for (PublicacionPrestable publicacion : esperasTerminadas) {
+                notificarFinEspera(idUsuario, publicacion);
+            }
+        }
 
-        if (publicacion.isPrestado()) {
-            System.out.println("La publicación ya está prestada. Se añadirá a la cola de espera.");
-            System.out.print("\n");
-            colaPrestamos.add(publicacion);
-            return;
+        // Los oyentes reciben los ejemplares que se han prestado de verdad
+        List<ResultadoPrestamo> lista = List.of(resultados);
+        List<PublicacionPrestable> evento = List.of(prestadas);
+        for (OyenteBiblioteca oyente : oyentes) {
+            oyente.prestamos(idUsuario, evento, lista);
+        }
+        // Ya sin el bloqueo del usuario, las que han quedado libres se entregan desde su cola
+        boolean atendidas = false;
+        for (int i = 0; i < resultados.length; i++) {
+            if (resultados[i] == ResultadoPrestamo.EN_COLA && atenderSiQuedoLibre(usuario, publicaciones.get(i))) {
+                resultados[i] = ResultadoPrestamo.PRESTADO;
+                atendidas = true;
+            }
         }
+        return atendidas ? List.of(resultados) : lista;
+    }
 
-        if (usuario.puedePedirPrestamo()) {
-            usuario.prestarPublicacion(publicacion);
-            prestamosActivos.putIfAbsent(idUsuario, new ArrayList<>());
-            prestamosActivos.get(idUsuario).add(publicacion);
-            System.out.println("Préstamo registrado con éxito.");
-            System.out.print("\n");
+    /// Metodo para registrar una devolución y entregar la publicación al siguiente usuario en espera
+    public ResultadoDevolucion registrarDevolucion(int idUsuario, PublicacionPrestable publicacion) {
+        Usuario usuario = usuarios.get(idUsuario);
+        ResultadoDevolucion resultado;
+        LocalDate fechaPrestamo = null;
+        if (usuario == null) {
+            resultado = ResultadoDevolucion.USUARIO_NO_REGISTRADO;
         } else {
-            System.out.println("El usuario ya tiene el máximo de préstamos permitidos.");
-            System.out.print("\n");
+            ReentrantLock bloqueo = bloqueoUsuario(idUsuario);
+            bloqueo.lock();
+            try {
+                // devolver() borra las fechas del préstamo; los oyentes reciben la de inicio
+                LocalDate limite = publicacion.getFechaDevolucion();
+                LocalDate inicio = publicacion.getFechaPrestamo();
+                if (!usuario.devolverPublicacion(publicacion)) {
+                    resultado = ResultadoDevolucion.NO_PRESTADO;
+                } else {
+                    fechaPrestamo = inicio;
+                    resultado = limite != null && LocalDate.now().isAfter(limite)
+                            ? ResultadoDevolucion.DEVUELTO_CON_RETRASO
+                            : ResultadoDevolucion.DEVUELTO;
+                }
+            } finally {
+                bloqueo.unlock();
+            }
         }
+
+        for (OyenteBiblioteca oyente : oyentes) {
+            oyente.devolucion(idUsuario, publicacion, resultado, fechaPrestamo);
+        }
+        if (resultado == ResultadoDevolucion.DEVUELTO || resultado == ResultadoDevolucion.DEVUELTO_CON_RETRASO) {
+            entregarAlSiguiente(publicacion);
+        }
+        return resultado;
     }
 
-    /// Metodo para registrar una devolución y gestionar la cola de espera
-    public void registrarDevolucion(int idUsuario, PublicacionPrestable publicacion) {
-        if (!usuarios.containsKey(idUsuario) || !prestamosActivos.containsKey(idUsuario)) {
-            System.out.println("El usuario no tiene préstamos activos.");
-            System.out.print("\n");
+    /**
+     * Metodo para registrar de una vez varias devoluciones de un usuario.
+     * Se aplican con una sola adquisición de su bloqueo y los oyentes las reciben en un único evento;
+     * después, cada publicación devuelta se entrega al siguiente usuario en espera.
+     * @param idUsuario ID del usuario.
+     * @param publicaciones Publicaciones devueltas.
+     * @return Resultado de cada devolución, en el mismo orden que las publicaciones.
+     */
+    public List<ResultadoDevolucion> registrarDevoluciones(int idUsuario, List<? extends PublicacionPrestable> publicaciones) {
+        int[] posiciones = new int[publicaciones.size()];
+        Arrays.setAll(posiciones, i -> i);
+        Devolucion[] devoluciones = new Devolucion[posiciones.length];
+        devolverGrupo(idUsuario, publicaciones, posiciones, 0, posiciones.length, devoluciones, LocalDate.now());
+        return terminarDevoluciones(devoluciones);
+    }
+
+    /**
+     * Metodo para registrar un lote de devoluciones sin indicar el usuario, como las del buzón de devoluciones.
+     * Cada publicación se devuelve por el usuario que la tiene prestada; las de cada usuario se aplican juntas,
+     * con una sola adquisición de su bloqueo, y los oyentes reciben el lote entero en un único evento.
+     * Las publicaciones que no están prestadas dan NO_PRESTADO y no generan evento.
+     * @param publicaciones Publicaciones devueltas.
+     * @return Resultado de cada devolución, en el mismo orden que las publicaciones.
+     */
+    public List<ResultadoDevolucion> registrarDevoluciones(List<? extends PublicacionPrestable> publicaciones) {
+        // Se ordenan las posiciones por titular para recorrer los préstamos de cada usuario de una vez
+        long[] claves = new long[publicaciones.size()];
+        int conTitular = 0;
+        for (int i = 0; i < claves.length; i++) {
+            long titular = titulares.titular(publicaciones.get(i).getId());
+            if (titular != TablaPrestamos.SIN_PRESTAMO) {
+                claves[conTitular++] = titular << 32 | i;
+            }
+        }
+        Arrays.sort(claves, 0, conTitular);
+        int[] posiciones = new int[conTitular];
+        for (int i = 0; i < conTitular; i++) {
+            posiciones[i] = (int) claves[i];
+        }
+
+        Devolucion[] devoluciones = new Devolucion[claves.length];
+        LocalDate hoy = LocalDate.now();
+        int inicio = 0;
+        while (inicio < conTitular) {
+            int idUsuario = (int) (claves[inicio] >> 32);
+            int fin = inicio + 1;
+            while (fin < conTitular && (int) (claves[fin] >> 32) == idUsuario) {
+                fin++;
+            }
+            devolverGrupo(idUsuario, publicaciones, posiciones, inicio, fin, devoluciones, hoy);
+            inicio = fin;
+        }
+        return terminarDevoluciones(devoluciones);
+    }
+
+    /// Aplica las devoluciones de un usuario indicadas por posiciones[desde, hasta) con una sola adquisición de su bloqueo
+    private void devolverGrupo(int idUsuario, List<? extends PublicacionPrestable> publicaciones, int[] posiciones,
+                               int desde, int hasta, Devolucion[] destino, LocalDate hoy) {
+        Usuario usuario = usuarios.get(idUsuario);
+        if (usuario == null) {
+            for (int i = desde; i < hasta; i++) {
+                destino[posiciones[i]] = new Devolucion(idUsuario, publicaciones.get(posiciones[i]), ResultadoDevolucion.USUARIO_NO_REGISTRADO, null);
+            }
             return;
         }
+        ReentrantLock bloqueo = bloqueoUsuario(idUsuario);
+        bloqueo.lock();
+        try {
+            for (int i = desde; i < hasta; i++) {
+                PublicacionPrestable publicacion = publicaciones.get(posiciones[i]);
+                LocalDate limite = publicacion.getFechaDevolucion();
+                LocalDate fechaPrestamo = publicacion.getFechaPrestamo();
+                if (!usuario.devolverPublicacion(publicacion)) {
+                    destino[posiciones[i]] = new Devolucion(idUsuario, publicacion, ResultadoDevolucion.NO_PRESTADO, null);
+                    continue;
+                }
+                ResultadoDevolucion resultado = limite != null && hoy.isAfter(limite)
+                        ? ResultadoDevolucion.DEVUELTO_CON_RETRASO
+                        : ResultadoDevolucion.DEVUELTO;
+                destino[posiciones[i]] = new Devolucion(idUsuario, publicacion, resultado, fechaPrestamo);
+            }
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /// Avisa a los oyentes del lote, entrega las publicaciones devueltas a quien las espera y reúne los resultados
+    private List<ResultadoDevolucion> terminarDevoluciones(Devolucion[] devoluciones) {
+        List<Devolucion> aplicadas = new ArrayList<>(devoluciones.length);
+        ResultadoDevolucion[] resultados = new ResultadoDevolucion[devoluciones.length];
+        for (int i = 0; i < devoluciones.length; i++) {
+            if (devoluciones[i] == null) {
+                resultados[i] = ResultadoDevolucion.NO_PRESTADO;
+            } else {
+                aplicadas.add(devoluciones[i]);
+                resultados[i] = devoluciones[i].resultado();
+            }
+        }
+        if (!aplicadas.isEmpty()) {
+            List<Devolucion> evento = Collections.unmodifiableList(aplicadas);
+            for (OyenteBiblioteca oyente : oyentes) {
+                oyente.devoluciones(evento);
+            }
+        }
+        for (Devolucion devolucion : aplicadas) {
+            if (devolucion.resultado() == ResultadoDevolucion.DEVUELTO || devolucion.resultado() == ResultadoDevolucion.DEVUELTO_CON_RETRASO) {
+                entregarAlSiguiente(devolucion.publicacion());
+            }
+        }
+        return List.of(resultados);
+    }
+
+    private void entregarAlSiguiente(PublicacionPrestable publicacion) {
+        entregarAlSiguiente(publicacion, null);
+    }
+
+    /**
+     * Presta los ejemplares libres de la obra de la publicación a los primeros usuarios de su cola que puedan
+     * recibirlos, mientras queden ejemplares libres y usuarios esperando.
+     * @param esperado Usuario cuyo ejemplar interesa al que llama, o null.
+     * @return El ejemplar prestado a esperado, o null si no ha recibido ninguno.
+     */
+    private PublicacionPrestable entregarAlSiguiente(PublicacionPrestable publicacion, Usuario esperado) {
+        ColaReservas cola = reservas.get(claveReserva(publicacion));
+        if (cola == null) {
+            return null;
+        }
+        PublicacionPrestable recibido = null;
+        Integer siguiente;
+        PublicacionPrestable ejemplar;
+        while ((siguiente = cola.primero()) != null && (ejemplar = ejemplarLibre(publicacion)) != null) {
+            Usuario usuario = usuarios.get(siguiente);
+            ResultadoPrestamo resultado = usuario == null ? ResultadoPrestamo.USUARIO_NO_REGISTRADO : prestar(usuario, ejemplar);
+            if (resultado == ResultadoPrestamo.PRESTADO) {
+                notificarPrestamo(siguiente, ejemplar, resultado);
+                if (usuario == esperado) {
+                    recibido = ejemplar;
+                }
+            } else if (resultado != ResultadoPrestamo.EN_COLA && desencolar(siguiente, ejemplar)) {
+                // El usuario ya no puede recibirla: pierde la reserva y se pasa al siguiente.
+                // Con EN_COLA otro terminal se ha llevado el ejemplar y se vuelve a buscar uno libre.
+                notificarFinEspera(siguiente, ejemplar);
+            }
+        }
+        return recibido;
+    }
+
+    private void notificarPrestamo(int idUsuario, PublicacionPrestable publicacion, ResultadoPrestamo resultado) {
+        for (OyenteBiblioteca oyente : oyentes) {
+            oyente.prestamo(idUsuario, publicacion, resultado);
+        }
+    }
+
+    private void notificarFinEspera(int idUsuario, PublicacionPrestable publicacion) {
+        for (OyenteBiblioteca oyente : oyentes) {
+            oyente.esperaTerminada(idUsuario, publicacion);
+        }
+    }
+
+    /// Metodo para obtener el ID del usuario que tiene prestada una publicación (null si está disponible)
+    public Integer obtenerTitular(PublicacionPrestable publicacion) {
+        long titular = titulares.titular(publicacion.getId());
+        return titular == TablaPrestamos.SIN_PRESTAMO ? null : (int) titular;
+    }
+
+    /**
+     * Metodo para restablecer un préstamo recuperado de almacenamiento, sin avisar a los oyentes.
+     * Si la publicación consta prestada a otro usuario, su devolución se da por aplicada: en el registro
+     * de operaciones un préstamo posterior implica que la publicación se devolvió antes.
+     */
+    public boolean restaurarPrestamo(int idUsuario, PublicacionPrestable publicacion, LocalDate fechaPrestamo, LocalDate fechaDevolucion) {
+        Usuario usuario = usuarios.get(idUsuario);
+        if (usuario == null) {
+            return false;
+        }
+        Integer titular = obtenerTitular(publicacion);
+        if (titular != null) {
+            if (titular == idUsuario) {
+                return false;
+            }
+            restaurarDevolucion(titular, publicacion);
+        }
+        ReentrantLock bloqueo = bloqueoUsuario(idUsuario);
+        bloqueo.lock();
+        try {
+            if (!publicacion.restaurarPrestamo(fechaPrestamo, fechaDevolucion)) {
+                return false;
+            }
+            usuario.restaurarPublicacion(publicacion);
+            return true;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /// Metodo para restablecer una devolución recuperada de almacenamiento, sin avisar a los oyentes ni entregar reservas
+    public boolean restaurarDevolucion(int idUsuario, PublicacionPrestable publicacion) {
         Usuario usuario = usuarios.get(idUsuario);
-        usuario.devolverPublicacion(publicacion);
-        prestamosActivos.get(idUsuario).remove(publicacion);
+        ReentrantLock bloqueo = bloqueoUsuario(idUsuario);
+        bloqueo.lock();
+        try {
+            return usuario != null && usuario.devolverPublicacion(publicacion);
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /**
+     * Metodo para obtener los préstamos vencidos en una fecha, por ejemplo para el aviso nocturno.
+     * El coste depende del número de préstamos vencidos, no del tamaño del catálogo.
+     * @param fecha Fecha de referencia; los préstamos que vencen ese mismo día aún no cuentan.
+     * @return Lista de préstamos vencidos, del más antiguo al más reciente.
+     */
+    public List<Vencimiento> prestamosVencidos(LocalDate fecha) {
+        return vencimientosEntre(Long.MIN_VALUE, fecha.toEpochDay());
+    }
+
+    /**
+     * Metodo para obtener los préstamos que vencen en los próximos días, para enviar recordatorios.
+     * @param dias Número de días a partir de hoy; 0 devuelve solo los que vencen hoy.
+     * @return Lista de préstamos ordenada por fecha de devolución.
+     */
+    public List<Vencimiento> prestamosQueVencenEn(int dias) {
+        LocalDate hoy = LocalDate.now();
+        return prestamosQueVencenEntre(hoy, hoy.plusDays(dias));
+    }
+
+    /// Metodo para obtener los préstamos que vencen entre dos fechas, ambas incluidas
+    public List<Vencimiento> prestamosQueVencenEntre(LocalDate desde, LocalDate hasta) {
+        return vencimientosEntre(desde.toEpochDay(), hasta.toEpochDay() + 1);
+    }
+
+    /// Préstamos que vencen en [desde, hasta), en días desde la época, ordenados por fecha de devolución
+    private List<Vencimiento> vencimientosEntre(long desde, long hasta) {
+        return desde >= hasta ? new ArrayList<>() : titulares.vencen(desde, hasta);
+    }
+
+    /// Metodo para consultar la posición de un usuario en la cola de la obra de una publicación (0 si no está esperando)
+    public int posicionEnCola(int idUsuario, PublicacionPrestable publicacion) {
+        ColaReservas cola = reservas.get(claveReserva(publicacion));
+        return cola == null ? 0 : cola.posicion(idUsuario);
+    }
 
-        // Verificar la cola de espera
-        if (!colaPrestamos.isEmpty()) {
-            System.out.println("La publicación estaba en espera para otro usuario.");
-            PublicacionPrestable siguiente = colaPrestamos.poll();
-            registrarPrestamo(idUsuario, siguiente);
+    /// Metodo para cancelar la reserva de un usuario sobre la obra de una publicación
+    public boolean cancelarReserva(int idUsuario, PublicacionPrestable publicacion) {
+        if (!desencolar(idUsuario, publicacion)) {
+            return false;
         }
+        notificarFinEspera(idUsuario, publicacion);
+        // Si había un ejemplar libre esperando a este usuario, pasa al siguiente
+        entregarAlSiguiente(publicacion);
+        return true;
+    }
 
-        System.out.println("Devolución registrada con éxito.");
-        System.out.print("\n");
+    /// Metodo para obtener una copia de los préstamos activos de un usuario
+    public List<Publicacion> obtenerPrestamosActivos(int idUsuario) {
+        Usuario usuario = usuarios.get(idUsuario);
+        long[] prestamos = usuario == null ? new long[0] : usuario.prestamosActivos();
+        PublicacionPrestable[] publicaciones = publicacionesPrestadas(prestamos);
+        List<Publicacion> resultado = new ArrayList<>(publicaciones.length);
+        for (PublicacionPrestable publicacion : publicaciones) {
+            if (publicacion != null) {
+                resultado.add(publicacion);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Metodo para obtener los préstamos activos de un usuario con su fecha de devolución.
+     * @param idUsuario ID del usuario.
+     * @return Los préstamos en el orden en que se hicieron; vacía si el usuario no existe o no tiene ninguno.
+     */
+    public List<Vencimiento> vencimientosDe(int idUsuario) {
+        Usuario usuario = usuarios.get(idUsuario);
+        long[] prestamos = usuario == null ? new long[0] : usuario.prestamosActivos();
+        PublicacionPrestable[] publicaciones = publicacionesPrestadas(prestamos);
+        List<Vencimiento> resultado = new ArrayList<>(publicaciones.length);
+        for (int i = 0; i < publicaciones.length; i++) {
+            if (publicaciones[i] != null) {
+                resultado.add(new Vencimiento(idUsuario, publicaciones[i], LocalDate.ofEpochDay(prestamos[2 * i + 1])));
+            }
+        }
+        return resultado;
+    }
 
+    /// Resuelve los IDs de unos pares (ID de publicación, fecha) de la tabla de préstamos con una sola lectura del catálogo
+    private PublicacionPrestable[] publicacionesPrestadas(long[] prestamos) {
+        PublicacionPrestable[] publicaciones = new PublicacionPrestable[prestamos.length / 2];
+        if (publicaciones.length == 0) {
+            return publicaciones;
+        }
+        bloqueoCatalogo.readLock().lock();
+        try {
+            for (int i = 0; i < publicaciones.length; i++) {
+                if (indice.buscarPorId(prestamos[2 * i]) instanceof PublicacionPrestable publicacion) {
+                    publicaciones[i] = publicacion;
+                }
+            }
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        OrigenCatalogo catalogo = origen;
+        for (int i = 0; i < publicaciones.length; i++) {
+            if (publicaciones[i] == null && catalogo != null && catalogo.buscarPorId(prestamos[2 * i]) instanceof PublicacionPrestable publicacion) {
+                publicaciones[i] = publicacion;
+            }
+        }
+        return publicaciones;
     }
 
     /// Metodo para mostrar los préstamos activos de un usuario
     public void mostrarPrestamosActivos(int idUsuario) {
-        if (!prestamosActivos.containsKey(idUsuario)) {
+        List<Publicacion> prestamos = obtenerPrestamosActivos(idUsuario);
+        if (prestamos.isEmpty()) {
             System.out.println("El usuario no tiene préstamos activos.");
             System.out.println("\n");
             return;
         }
         System.out.println("Préstamos de " + usuarios.get(idUsuario).getNombre() + ":");
-        for (Publicacion p : prestamosActivos.get(idUsuario)) {
+        for (Publicacion p : prestamos) {
             System.out.println("- " + p);
         }
         System.out.println("\n");
 
     }
 
-    /// Metodo para ordenar las publicaciones por autor
+    /// Metodo para que el listado muestre las publicaciones ordenadas por autor; no reordena nada
     public void ordenarPorAutor() {
-        publicaciones.sort(new Publicacion.ComparadorPorAutor());
-        System.out.println("Se han ordenado las publicaciones según su autor.");
-        System.out.print("\n");
-
+        orden = OrdenListado.AUTOR;
     }
 
-    /// Metodo para ordenar las publicaciones por título
+    /// Metodo para que el listado muestre las publicaciones ordenadas por título; no reordena nada
     public void ordenarPorTitulo() {
-        publicaciones.sort(new Publicacion.ComparadorPorTitulo());
-        System.out.println("Se han ordenado las publicaciones según su título.");
-        System.out.print("\n");
+        orden = OrdenListado.TITULO;
+    }
+
+    /**
+     * Metodo para recorrer por páginas las publicaciones ordenadas por autor, incluidas las del catálogo adjunto.
+     * @param despues Última publicación de la página anterior, o null para empezar por el principio.
+     * @param tamanio Número máximo de publicaciones por página.
+     * @return Las publicaciones de la página; una lista más corta que tamanio indica la última página.
+     */
+    public List<Publicacion> paginaPorAutor(Publicacion despues, int tamanio) {
+        return pagina(OrdenPublicaciones.AUTOR, null, despues, tamanio);
+    }
+
+    /// Metodo para recorrer por páginas las publicaciones ordenadas por título; igual que paginaPorAutor
+    public List<Publicacion> paginaPorTitulo(Publicacion despues, int tamanio) {
+        return pagina(OrdenPublicaciones.TITULO, null, despues, tamanio);
+    }
+
+    /**
+     * Metodo para obtener una página de publicaciones en un orden estable, opcionalmente de un solo tipo.
+     * Es paginación por clave: la página se localiza a partir de la última publicación de la anterior en O(log n),
+     * así que pedir la página k cuesta lo mismo que pedir la primera, aunque se den altas entre petición y petición.
+     * Se piden hasta tamanio publicaciones en memoria y otras tantas del catálogo adjunto y se mezclan en el mismo orden;
+     * el catálogo es de solo lectura, así que su parte se lee sin el bloqueo.
+     * @param orden   Orden del recorrido.
+     * @param tipo    Libro.class, Revista.class o Audiolibro.class para filtrar por tipo, o null para todas.
+     * @param despues Última publicación de la página anterior, o null para la primera página.
+     * @param tamanio Número máximo de publicaciones de la página.
+     * @return Las publicaciones de la página; una lista más corta que tamanio indica la última página.
+     */
+    public List<Publicacion> pagina(OrdenPublicaciones orden, Class<? extends Publicacion> tipo, Publicacion despues, int tamanio) {
+        List<Publicacion> enMemoria;
+        bloqueoCatalogo.readLock().lock();
+        try {
+            enMemoria = indice.pagina(orden, tipo, despues, tamanio);
+        } finally {
+            bloqueoCatalogo.readLock().unlock();
+        }
+        VistasCatalogo catalogo = vistasCatalogo;
+        if (catalogo == null) {
+            return enMemoria;
+        }
+        List<Publicacion> guardadas = catalogo.pagina(orden, tipo, despues, tamanio);
+        if (guardadas.isEmpty()) {
+            return enMemoria;
+        }
+        Comparator<Publicacion> comparador = orden == OrdenPublicaciones.AUTOR
+                ? IndicePublicaciones.ORDEN_AUTOR : IndicePublicaciones.ORDEN_TITULO;
+        List<Publicacion> resultado = new ArrayList<>(Math.min(tamanio, enMemoria.size() + guardadas.size()));
+        int i = 0;
+        int j = 0;
+        while (resultado.size() < tamanio && (i < enMemoria.size() || j < guardadas.size())) {
+            if (j == guardadas.size() || (i < enMemoria.size() && comparador.compare(enMemoria.get(i), guardadas.get(j)) < 0)) {
+                resultado.add(enMemoria.get(i++));
+            } else {
+                resultado.add(guardadas.get(j++));
+            }
+        }
+        return resultado;
+    }
 
+    /**
+     * Metodo para recorrer las publicaciones, incluidas las del catálogo adjunto, como un Stream, en un orden estable y sin copiar el catálogo.
+     * Se leen páginas de TAMANIO_PAGINA_RECORRIDO publicaciones a medida que el Stream las consume,
+     * así que un limit o un findFirst no leen más de lo necesario.
+     * @param orden Orden del recorrido.
+     * @param tipo  Clase de las publicaciones a incluir, o null para todas.
+     * @return Stream secuencial y ordenado de publicaciones.
+     */
+    public Stream<Publicacion> publicaciones(OrdenPublicaciones orden, Class<? extends Publicacion> tipo) {
+        return StreamSupport.stream(new RecorridoPorPaginas(
+                despues -> pagina(orden, tipo, despues, TAMANIO_PAGINA_RECORRIDO), TAMANIO_PAGINA_RECORRIDO), false);
     }
 }
\ No newline at end of file
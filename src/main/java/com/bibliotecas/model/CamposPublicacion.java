@@ -0,0 +1,21 @@
+package com.bibliotecas.model;
+
+/**
+ * Campos de una publicación de un catálogo adjunto, leídos sin crear la publicación, para que los índices
+ * que necesitan conocer todo el catálogo lo recorran sin cargarlo en memoria.
+ *
+ * @param tipo      Libro.class, Revista.class o Audiolibro.class.
+ * @param id        ID de la publicación.
+ * @param titulo    Título.
+ * @param autor     Autor.
+ * @param anio      Año de publicación.
+ * @param paginas   Número de páginas de un libro, 0 en el resto.
+ * @param categoria Categoría de una revista, null en el resto.
+ * @param narrador  Narrador de un audiolibro, null en el resto.
+ * @param idioma    Idioma de un audiolibro, null en el resto.
+ * @param duracion  Duración en horas de un audiolibro, 0 en el resto.
+ */
+public record CamposPublicacion(Class<? extends Publicacion> tipo, long id, String titulo, String autor, int anio,
+                                int paginas, Revista.CategoriaRevista categoria,
+                                String narrador, String idioma, double duracion) {
+}
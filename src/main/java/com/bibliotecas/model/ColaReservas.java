@@ -0,0 +1,165 @@
+package com.bibliotecas.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cola de espera de una publicación.
+ * Guarda los IDs de los usuarios que esperan en orden de llegada. Cada usuario ocupa una
+ * posición de un array y un árbol de Fenwick cuenta las posiciones ocupadas, de modo que
+ * obtener el primero cuesta O(1) amortizado y consultar la posición o cancelar cuesta O(log n).
+ * Todos los métodos están sincronizados sobre la propia cola.
+ * Una cola vacía se retira del mapa de reservas; una cola retirada ya no admite usuarios y quien
+ * la encuentre así debe buscar o crear la nueva.
+ */
+class ColaReservas {
+
+    private static final int CAPACIDAD_INICIAL = 8;
+
+    private int[] usuarios;      // ID del usuario que ocupa cada posición
+    private boolean[] ocupadas;  // Indica si la posición sigue en la cola
+    private int[] arbol;         // Árbol de Fenwick con índices desde 1
+    private int cabeza;          // Primera posición que puede estar ocupada
+    private int siguiente;       // Primera posición libre al final
+    private int tamanio;         // Número de usuarios esperando
+    private final Map<Integer, Integer> posiciones; // ID de usuario -> posición en el array
+    private boolean retirada;    // La cola se ha quitado del mapa de reservas
+
+    ColaReservas() {
+        this.usuarios = new int[CAPACIDAD_INICIAL];
+        this.ocupadas = new boolean[CAPACIDAD_INICIAL];
+        this.arbol = new int[CAPACIDAD_INICIAL + 1];
+        this.posiciones = new HashMap<>();
+    }
+
+    /**
+     * Añade un usuario al final de la cola.
+     * @param idUsuario ID del usuario.
+     * @return true si se ha añadido, false si el usuario ya estaba esperando.
+     * @throws IllegalStateException Si la cola está retirada.
+     */
+    synchronized boolean agregar(int idUsuario) {
+        if (retirada) {
+            throw new IllegalStateException("La cola de reservas está retirada");
+        }
+        if (posiciones.containsKey(idUsuario)) {
+            return false;
+        }
+        if (siguiente == usuarios.length) {
+            compactar();
+        }
+        int posicion = siguiente++;
+        usuarios[posicion] = idUsuario;
+        ocupadas[posicion] = true;
+        sumar(posicion, 1);
+        posiciones.put(idUsuario, posicion);
+        tamanio++;
+        return true;
+    }
+
+    /**
+     * Obtiene el primer usuario de la cola sin sacarlo.
+     * @return El ID del primer usuario, o null si la cola está vacía.
+     */
+    synchronized Integer primero() {
+        while (cabeza < siguiente && !ocupadas[cabeza]) {
+            cabeza++;
+        }
+        return cabeza < siguiente ? usuarios[cabeza] : null;
+    }
+
+    /**
+     * Saca a un usuario de la cola.
+     * @param idUsuario ID del usuario.
+     * @return true si el usuario estaba esperando.
+     */
+    synchronized boolean cancelar(int idUsuario) {
+        Integer posicion = posiciones.remove(idUsuario);
+        if (posicion == null) {
+            return false;
+        }
+        ocupadas[posicion] = false;
+        sumar(posicion, -1);
+        tamanio--;
+        return true;
+    }
+
+    /**
+     * Consulta la posición de un usuario en la cola.
+     * @param idUsuario ID del usuario.
+     * @return La posición empezando en 1, o 0 si el usuario no está esperando.
+     */
+    synchronized int posicion(int idUsuario) {
+        Integer posicion = posiciones.get(idUsuario);
+        return posicion == null ? 0 : contarHasta(posicion);
+    }
+
+    synchronized int tamanio() {
+        return tamanio;
+    }
+
+    synchronized boolean estaVacia() {
+        return tamanio == 0;
+    }
+
+    synchronized boolean isRetirada() {
+        return retirada;
+    }
+
+    /**
+     * Retira la cola si está vacía; después hay que quitarla del mapa de reservas.
+     * @return true si la cola queda retirada.
+     */
+    synchronized boolean retirarSiVacia() {
+        if (tamanio == 0) {
+            retirada = true;
+        }
+        return retirada;
+    }
+
+    /// Número de posiciones ocupadas entre el inicio del array y la indicada, ambas incluidas
+    private int contarHasta(int posicion) {
+        int total = 0;
+        for (int i = posicion + 1; i > 0; i -= i & -i) {
+            total += arbol[i];
+        }
+        return total;
+    }
+
+    private void sumar(int posicion, int valor) {
+        for (int i = posicion + 1; i < arbol.length; i += i & -i) {
+            arbol[i] += valor;
+        }
+    }
+
+    /// Mueve los usuarios que siguen esperando al principio de un array nuevo y reconstruye el árbol en O(n)
+    private void compactar() {
+        int capacidad = Math.max(CAPACIDAD_INICIAL, tamanio * 2);
+        int[] nuevosUsuarios = new int[capacidad];
+        boolean[] nuevasOcupadas = new boolean[capacidad];
+        int[] nuevoArbol = new int[capacidad + 1];
+        int n = 0;
+        for (int i = cabeza; i < siguiente; i++) {
+            if (ocupadas[i]) {
+                nuevosUsuarios[n] = usuarios[i];
+                nuevasOcupadas[n] = true;
+                posiciones.put(usuarios[i], n);
+                n++;
+            }
+        }
+        for (int i = 1; i <= capacidad; i++) {
+            if (i <= n) {
+                nuevoArbol[i]++;
+            }
+            int padre = i + (i & -i);
+            if (padre <= capacidad) {
+                nuevoArbol[padre] += nuevoArbol[i];
+            }
+        }
+        usuarios = nuevosUsuarios;
+        ocupadas = nuevasOcupadas;
+        arbol = nuevoArbol;
+        cabeza = 0;
+        siguiente = n;
+    }
+}
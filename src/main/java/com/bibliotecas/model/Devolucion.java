@@ -0,0 +1,14 @@
+package com.bibliotecas.model;
+
+import java.time.LocalDate;
+
+/**
+ * Devolución ya aplicada, tal como la reciben los oyentes en los eventos de lotes.
+ *
+ * @param idUsuario     ID del usuario que devuelve la publicación.
+ * @param publicacion   Publicación devuelta; su fecha de préstamo ya se ha borrado.
+ * @param resultado     Resultado de la devolución.
+ * @param fechaPrestamo Fecha en que se prestó la publicación, o null si no se ha devuelto nada.
+ */
+public record Devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado, LocalDate fechaPrestamo) {
+}
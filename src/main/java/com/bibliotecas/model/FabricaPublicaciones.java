@@ -0,0 +1,34 @@
+package com.bibliotecas.model;
+
+/**
+ * Crea publicaciones a partir de datos que ya se validaron cuando se guardaron.
+ * Se usa al recuperar publicaciones de almacenamiento: no repite las validaciones
+ * y conserva el identificador original, así que no debe usarse con datos de entrada del usuario.
+ */
+public final class FabricaPublicaciones {
+
+    private FabricaPublicaciones() {
+    }
+
+    public static Libro restaurarLibro(long id, String titulo, String autor, String ISBN, int anioPublicacion, int numPaginas) {
+        return new Libro(id, titulo, autor, ISBN, anioPublicacion, numPaginas);
+    }
+
+    public static Revista restaurarRevista(long id, String titulo, String autor, int anioPublicacion, String ISSN, int numEdicion,
+                                           Revista.Mes mesPublicacion, Revista.CategoriaRevista categoria) {
+        return new Revista(id, titulo, autor, anioPublicacion, ISSN, numEdicion, mesPublicacion, categoria);
+    }
+
+    public static Audiolibro restaurarAudiolibro(long id, String titulo, String autor, int anioPublicacion, String narrador, double duracion,
+                                                 String idioma, Audiolibro.FormatoAudio formatoAudio) {
+        return new Audiolibro(id, titulo, autor, anioPublicacion, narrador, duracion, idioma, formatoAudio);
+    }
+
+    /**
+     * Garantiza que las publicaciones creadas a partir de ahora no repitan identificadores restaurados.
+     * @param idMaximo El mayor identificador presente en los datos restaurados.
+     */
+    public static void reservarIdsHasta(long idMaximo) {
+        Publicacion.reservarIdsHasta(idMaximo);
+    }
+}
@@ -0,0 +1,21 @@
+package com.bibliotecas.model;
+
+/**
+ * Estrategia con la que se asignan los identificadores de las publicaciones nuevas.
+ * Las implementaciones deben devolver identificadores únicos aunque se llamen desde varios hilos a la vez.
+ */
+public interface GeneradorIds {
+
+    /**
+     * Devuelve un identificador que no se ha entregado antes.
+     * @return Identificador positivo.
+     */
+    long siguiente();
+
+    /**
+     * Garantiza que los identificadores entregados a partir de ahora sean mayores que el indicado.
+     * Se usa al restaurar publicaciones guardadas, que conservan su identificador original.
+     * @param idMaximo El mayor identificador ya utilizado.
+     */
+    void reservarHasta(long idMaximo);
+}
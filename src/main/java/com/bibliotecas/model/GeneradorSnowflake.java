@@ -0,0 +1,91 @@
+package com.bibliotecas.model;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de identificadores para varios nodos que comparten catálogo, al estilo Snowflake.
+ * Cada identificador combina, de más a menos significativo:
+ * <pre>
+ * 41 bits  milisegundos desde el 1 de enero de 2024
+ * 10 bits  número de nodo (0 a 1023)
+ *  3 bits  tramo del generador dentro del nodo
+ *  9 bits  secuencia dentro del milisegundo y el tramo
+ * </pre>
+ * Dos nodos nunca generan el mismo identificador sin coordinarse, y tampoco dos tramos del mismo nodo,
+ * así que los hilos se reparten entre ocho contadores independientes en lugar de competir por uno.
+ * Si el reloj retrocede, o un tramo agota los 512 identificadores de un milisegundo, el tramo sigue
+ * contando sobre el último milisegundo usado en lugar de esperar, de modo que los identificadores
+ * de cada tramo son siempre crecientes.
+ */
+public class GeneradorSnowflake implements GeneradorIds {
+
+    public static final long EPOCA = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    public static final int MAXIMO_NODO = (1 << 10) - 1;
+
+    private static final int BITS_SECUENCIA = 9;
+    private static final int BITS_TRAMO = 3;
+    private static final int BITS_NODO = 10;
+    private static final long MAXIMA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+    private static final int DESPLAZAMIENTO_TIEMPO = BITS_SECUENCIA + BITS_TRAMO + BITS_NODO;
+
+    private final long nodo;
+    // Por tramo, el último milisegundo usado (relativo a la época) y la secuencia: (milisegundo << 9) | secuencia
+    private final AtomicLong[] estados;
+
+    /**
+     * @param nodo Número de este nodo, único entre los que comparten catálogo.
+     */
+    public GeneradorSnowflake(int nodo) {
+        if (nodo < 0 || nodo > MAXIMO_NODO) {
+            throw new IllegalArgumentException("El número de nodo debe estar entre 0 y " + MAXIMO_NODO + ".");
+        }
+        this.nodo = nodo;
+        this.estados = new AtomicLong[1 << BITS_TRAMO];
+        for (int i = 0; i < estados.length; i++) {
+            estados[i] = new AtomicLong();
+        }
+    }
+
+    @Override
+    public long siguiente() {
+        long h = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        int tramo = (int) (h >>> 32) & (estados.length - 1);
+        AtomicLong estado = estados[tramo];
+        long ahora = (System.currentTimeMillis() - EPOCA) << BITS_SECUENCIA;
+        long anterior;
+        long nuevo;
+        do {
+            anterior = estado.get();
+            // Un milisegundo nuevo empieza en la secuencia 0; si no, se sigue contando (y se pasa al siguiente al agotarla)
+            nuevo = Math.max(ahora, anterior + 1);
+        } while (!estado.compareAndSet(anterior, nuevo));
+        long milisegundo = nuevo >>> BITS_SECUENCIA;
+        return milisegundo << DESPLAZAMIENTO_TIEMPO
+                | nodo << (BITS_SECUENCIA + BITS_TRAMO)
+                | (long) tramo << BITS_SECUENCIA
+                | (nuevo & MAXIMA_SECUENCIA);
+    }
+
+    /**
+     * Adelanta el reloj lógico de todos los tramos lo necesario para que los identificadores siguientes
+     * sean mayores que el indicado, aunque este lo haya generado un nodo con el reloj adelantado.
+     */
+    @Override
+    public void reservarHasta(long idMaximo) {
+        long minimo = ((idMaximo >>> DESPLAZAMIENTO_TIEMPO) + 1) << BITS_SECUENCIA;
+        for (AtomicLong estado : estados) {
+            estado.accumulateAndGet(minimo, Math::max);
+        }
+    }
+
+    /// Número de nodo que contiene un identificador generado por esta clase
+    public static int nodoDe(long id) {
+        return (int) (id >>> (BITS_SECUENCIA + BITS_TRAMO)) & MAXIMO_NODO;
+    }
+
+    /// Instante en que se generó un identificador de esta clase, según el reloj de su nodo
+    public static Instant instanteDe(long id) {
+        return Instant.ofEpochMilli((id >>> DESPLAZAMIENTO_TIEMPO) + EPOCA);
+    }
+}
@@ -0,0 +1,237 @@
+package com.bibliotecas.model;
+
+import java.util.*;
+
+/**
+ * Índices en memoria sobre las publicaciones de una biblioteca.
+ * Mantiene un índice por ID, un índice hash por título normalizado (búsqueda exacta en O(1)),
+ * un índice ordenado por el mismo título para búsquedas por prefijo o rango,
+ * los índices secundarios por autor, ISBN e ISSN, y dos vistas ordenadas de todas las publicaciones,
+ * por autor y por título, que se actualizan en O(log n) con cada alta en lugar de reordenar el catálogo.
+ * Las vistas ordenadas desempatan por ID, así que publicaciones con el mismo autor o título no se pierden,
+ * y se mantienen también por tipo, para que una página de un solo tipo no recorra las de los demás.
+ * Además agrupa las publicaciones prestables del mismo tipo, título y autor como ejemplares de una Obra.
+ */
+class IndicePublicaciones {
+
+    static final Comparator<Publicacion> ORDEN_AUTOR =
+            new Publicacion.ComparadorPorAutor().thenComparingLong(Publicacion::getId);
+    static final Comparator<Publicacion> ORDEN_TITULO =
+            new Publicacion.ComparadorPorTitulo().thenComparingLong(Publicacion::getId);
+
+    private final Map<Long, Publicacion> porId;
+    // Las listas por título se comparten entre el índice hash y el ordenado
+    private final Map<String, List<Publicacion>> porTitulo;
+    private final NavigableMap<String, List<Publicacion>> porTituloOrdenado;
+    private final Map<String, List<Publicacion>> porAutor;
+    private final Map<String, List<Libro>> porISBN;     // Clave normalizada con normalizarCodigo
+    private final Map<String, List<Revista>> porISSN;
+    private final NavigableSet<Publicacion> ordenadasPorAutor;
+    private final NavigableSet<Publicacion> ordenadasPorTitulo;
+    // Las mismas vistas por la clase exacta de cada publicación
+    private final Map<Class<? extends Publicacion>, NavigableSet<Publicacion>> porTipoAutor;
+    private final Map<Class<? extends Publicacion>, NavigableSet<Publicacion>> porTipoTitulo;
+    private final Map<String, Obra> porObra;
+
+    IndicePublicaciones() {
+        this.porId = new HashMap<>();
+        this.porTitulo = new HashMap<>();
+        this.porTituloOrdenado = new TreeMap<>();
+        this.porAutor = new HashMap<>();
+        this.porISBN = new HashMap<>();
+        this.porISSN = new HashMap<>();
+        this.ordenadasPorAutor = new TreeSet<>(ORDEN_AUTOR);
+        this.ordenadasPorTitulo = new TreeSet<>(ORDEN_TITULO);
+        this.porTipoAutor = new HashMap<>();
+        this.porTipoTitulo = new HashMap<>();
+        this.porObra = new HashMap<>();
+    }
+
+    /**
+     * Normaliza un texto para usarlo como clave de los índices.
+     * @param texto Texto a normalizar.
+     * @return El texto en minúsculas, independiente de la configuración regional.
+     */
+    static String normalizar(String texto) {
+        return texto.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normaliza un ISBN o un ISSN para usarlo como clave: quita los guiones y espacios y pone en mayúscula
+     * la X del dígito de control, de modo que 978-84-376-0494-7 y 9788437604947 son la misma clave.
+     * @param codigo ISBN o ISSN a normalizar.
+     * @return Los dígitos del código, sin separadores.
+     */
+    static String normalizarCodigo(String codigo) {
+        StringBuilder resultado = new StringBuilder(codigo.length());
+        for (int i = 0; i < codigo.length(); i++) {
+            char c = codigo.charAt(i);
+            if (c != '-' && c != ' ') {
+                resultado.append(c == 'x' ? 'X' : c);
+            }
+        }
+        return resultado.toString();
+    }
+
+    /**
+     * Añade una publicación a todos los índices que le correspondan.
+     * @param publicacion Publicación a indexar.
+     */
+    void indexar(Publicacion publicacion) {
+        porId.put(publicacion.getId(), publicacion);
+        String clave = normalizar(publicacion.getTitulo());
+        List<Publicacion> mismoTitulo = porTitulo.get(clave);
+        if (mismoTitulo == null) {
+            mismoTitulo = new ArrayList<>(1);
+            porTitulo.put(clave, mismoTitulo);
+            porTituloOrdenado.put(clave, mismoTitulo);
+        }
+        mismoTitulo.add(publicacion);
+
+        porAutor.computeIfAbsent(normalizar(publicacion.getAutor()), k -> new ArrayList<>(1)).add(publicacion);
+
+        if (publicacion instanceof Libro libro) {
+            porISBN.computeIfAbsent(normalizarCodigo(libro.getISBN()), k -> new ArrayList<>(1)).add(libro);
+        } else if (publicacion instanceof Revista revista) {
+            porISSN.computeIfAbsent(normalizarCodigo(revista.getISSN()), k -> new ArrayList<>(1)).add(revista);
+        }
+
+        ordenadasPorAutor.add(publicacion);
+        ordenadasPorTitulo.add(publicacion);
+        porTipoAutor.computeIfAbsent(publicacion.getClass(), k -> new TreeSet<>(ORDEN_AUTOR)).add(publicacion);
+        porTipoTitulo.computeIfAbsent(publicacion.getClass(), k -> new TreeSet<>(ORDEN_TITULO)).add(publicacion);
+
+        if (publicacion instanceof PublicacionPrestable prestable && prestable.obra == null) {
+            porObra.computeIfAbsent(Obra.clave(prestable), k -> new Obra(prestable.getTitulo(), prestable.getAutor()))
+                    .agregar(prestable);
+        }
+    }
+
+    /**
+     * Devuelve una página de una vista ordenada empezando justo después de una publicación.
+     * Se localiza el inicio en O(log n), de modo que pedir la página k no recorre las anteriores.
+     * Con un filtro de tipo se recorre la vista de ese tipo; solo un supertipo que reúna varios,
+     * como PublicacionPrestable, recorre la vista completa saltando las de otros tipos.
+     * @param orden   Vista a recorrer.
+     * @param tipo    Clase de las publicaciones a incluir, por ejemplo Libro.class, o null para todas.
+     * @param despues Última publicación de la página anterior, o null para la primera página.
+     * @param tamanio Número máximo de publicaciones de la página.
+     * @return Lista con las publicaciones de la página.
+     */
+    List<Publicacion> pagina(OrdenPublicaciones orden, Class<? extends Publicacion> tipo, Publicacion despues, int tamanio) {
+        NavigableSet<Publicacion> vista = orden == OrdenPublicaciones.AUTOR ? ordenadasPorAutor : ordenadasPorTitulo;
+        if (tipo != null) {
+            NavigableSet<Publicacion> delTipo = vistaDelTipo(orden, tipo);
+            if (delTipo != null) {
+                vista = delTipo;
+                tipo = null;
+            }
+        }
+        SortedSet<Publicacion> resto = despues == null ? vista : vista.tailSet(despues, false);
+        List<Publicacion> resultado = new ArrayList<>(Math.max(0, Math.min(tamanio, 1024)));
+        for (Publicacion publicacion : resto) {
+            if (resultado.size() == tamanio) {
+                break;
+            }
+            if (tipo == null || tipo.isInstance(publicacion)) {
+                resultado.add(publicacion);
+            }
+        }
+        return resultado;
+    }
+
+    /// Vista de un tipo si ninguna otra clase indexada es subtipo suyo, o null si hay que filtrar la completa
+    private NavigableSet<Publicacion> vistaDelTipo(OrdenPublicaciones orden, Class<? extends Publicacion> tipo) {
+        Map<Class<? extends Publicacion>, NavigableSet<Publicacion>> porTipo =
+                orden == OrdenPublicaciones.AUTOR ? porTipoAutor : porTipoTitulo;
+        NavigableSet<Publicacion> encontrada = null;
+        for (Map.Entry<Class<? extends Publicacion>, NavigableSet<Publicacion>> entrada : porTipo.entrySet()) {
+            if (tipo.isAssignableFrom(entrada.getKey())) {
+                if (encontrada != null) {
+                    return null;
+                }
+                encontrada = entrada.getValue();
+            }
+        }
+        return encontrada == null ? Collections.emptyNavigableSet() : encontrada;
+    }
+
+    Publicacion buscarPorId(long id) {
+        return porId.get(id);
+    }
+
+    /**
+     * Busca la primera publicación registrada con el título indicado, sin distinguir mayúsculas.
+     * @param titulo Título a buscar.
+     * @return La publicación encontrada o null si no existe.
+     */
+    Publicacion buscarPorTitulo(String titulo) {
+        List<Publicacion> encontradas = porTitulo.get(normalizar(titulo));
+        return encontradas == null ? null : encontradas.get(0);
+    }
+
+    /**
+     * Busca las publicaciones cuyo título empieza por el prefijo indicado, ordenadas por título.
+     * @param prefijo Prefijo del título, sin distinguir mayúsculas.
+     * @return Lista con las publicaciones encontradas.
+     */
+    List<Publicacion> buscarPorPrefijo(String prefijo) {
+        String desde = normalizar(prefijo);
+        return aplanar(porTituloOrdenado.subMap(desde, true, desde + Character.MAX_VALUE, false));
+    }
+
+    /**
+     * Busca las publicaciones cuyo título está entre dos valores, ordenadas por título.
+     * @param desde Límite inferior, incluido.
+     * @param hasta Límite superior, excluido.
+     * @return Lista con las publicaciones encontradas.
+     */
+    List<Publicacion> buscarPorRango(String desde, String hasta) {
+        String inicio = normalizar(desde);
+        String fin = normalizar(hasta);
+        if (inicio.compareTo(fin) >= 0) {
+            return new ArrayList<>();
+        }
+        return aplanar(porTituloOrdenado.subMap(inicio, true, fin, false));
+    }
+
+    List<Publicacion> buscarPorAutor(String autor) {
+        List<Publicacion> encontradas = porAutor.get(normalizar(autor));
+        return encontradas == null ? new ArrayList<>() : new ArrayList<>(encontradas);
+    }
+
+    /**
+     * Busca un libro por su ISBN, con o sin guiones. Si hay varios ejemplares con ese ISBN,
+     * devuelve uno que no esté prestado, o el primero registrado si lo están todos.
+     * @param ISBN ISBN a buscar.
+     * @return El libro encontrado o null si no existe.
+     */
+    Libro buscarPorISBN(String ISBN) {
+        return ISBN == null ? null : preferirDisponible(porISBN.get(normalizarCodigo(ISBN)));
+    }
+
+    /// Lo mismo que buscarPorISBN, para revistas por su ISSN
+    Revista buscarPorISSN(String ISSN) {
+        return ISSN == null ? null : preferirDisponible(porISSN.get(normalizarCodigo(ISSN)));
+    }
+
+    private static <T extends PublicacionPrestable> T preferirDisponible(List<T> ejemplares) {
+        if (ejemplares == null) {
+            return null;
+        }
+        for (T ejemplar : ejemplares) {
+            if (!ejemplar.isPrestado()) {
+                return ejemplar;
+            }
+        }
+        return ejemplares.get(0);
+    }
+
+    private static List<Publicacion> aplanar(Map<String, List<Publicacion>> rango) {
+        List<Publicacion> resultado = new ArrayList<>();
+        for (List<Publicacion> mismoTitulo : rango.values()) {
+            resultado.addAll(mismoTitulo);
+        }
+        return resultado;
+    }
+}
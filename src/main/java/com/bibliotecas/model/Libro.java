@@ -1,6 +1,8 @@
 package com.bibliotecas.model;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import com.bibliotecas.exceptions.InvalidIsbnException;
 import com.bibliotecas.exceptions.InvalidNumPagException;
 
@@ -10,12 +12,12 @@ import com.bibliotecas.exceptions.InvalidNumPagException;
  */
 public class Libro extends PublicacionPrestable implements Prestable {
 
+    private static final String MENSAJE_ISBN = "El ISBN no es válido: debe ser un ISBN-10 o ISBN-13 con su dígito de control.";
+    private static final String MENSAJE_PAGINAS = "El número de páginas debe ser mayor que 0.";
+
     // Atributos de la clase Libro
     private String ISBN;            // Número ISBN que identifica el libro
     private int numPaginas;         // Número de páginas del libro
-    private boolean prestado;       // Indica si el libro está prestado o no
-    private LocalDate fechaPrestamo; // Fecha en la que el libro fue prestado
-    private LocalDate fechaDevolucion; // Fecha de devolución del libro
 
     /**
      * Constructor de la clase Libro
@@ -30,9 +32,13 @@ public class Libro extends PublicacionPrestable implements Prestable {
         super(titulo, autor, anioPublicacion);
         setISBN(ISBN);
         setNumPaginas(numPaginas);
-        this.prestado = false;
-        this.fechaPrestamo = null;
-        this.fechaDevolucion = null;
+    }
+
+    /// Constructor para libros ya validados que se recuperan de almacenamiento
+    Libro(long uuid, String titulo, String autor, String ISBN, int anioPublicacion, int numPaginas) {
+        super(uuid, titulo, autor, anioPublicacion);
+        this.ISBN = ISBN;
+        this.numPaginas = numPaginas;
     }
 
     /**
@@ -53,24 +59,6 @@ public class Libro extends PublicacionPrestable implements Prestable {
         return numPaginas;
     }
 
-    /**
-     * Obtiene la fecha de préstamo del libro
-     *
-     * @return Fecha de préstamo
-     */
-    public LocalDate getFechaPrestamo() {
-        return fechaPrestamo;
-    }
-
-    /**
-     * Obtiene la fecha de devolución del libro
-     *
-     * @return Fecha de devolución
-     */
-    public LocalDate getFechaDevolucion() {
-        return fechaDevolucion;
-    }
-
     /**
      * Establece el ISBN del libro
      *
@@ -79,7 +67,7 @@ public class Libro extends PublicacionPrestable implements Prestable {
      */
     public void setISBN(String ISBN) throws InvalidIsbnException {
         if (!validarISBN(ISBN)) {
-            throw new InvalidIsbnException("El ISBN no puede estar vacío.");
+            throw new InvalidIsbnException(MENSAJE_ISBN);
         }
         this.ISBN = ISBN;
     }
@@ -92,19 +80,41 @@ public class Libro extends PublicacionPrestable implements Prestable {
      */
     public void setNumPaginas(int numPaginas) throws InvalidNumPagException {
         if (!validarNumPaginas(numPaginas)) {
-            throw new InvalidNumPagException("El número de páginas debe ser mayor que 0.");
+            throw new InvalidNumPagException(MENSAJE_PAGINAS);
         }
         this.numPaginas = numPaginas;
     }
 
     /**
-     * Valida que el ISBN no sea nulo o vacío
+     * Valida que el ISBN sea un ISBN-10 o ISBN-13 con su dígito de control correcto
      *
      * @param ISBN Número ISBN a validar
      * @return true si el ISBN es válido, false en caso contrario
      */
     public static boolean validarISBN(String ISBN) {
-        return ISBN != null && !ISBN.trim().isEmpty();
+        return Validaciones.esISBN(ISBN);
+    }
+
+    /**
+     * Valida todos los campos de un libro a la vez, sin lanzar excepciones
+     *
+     * @param titulo          Título del libro
+     * @param autor           Autor del libro
+     * @param ISBN            Número ISBN del libro
+     * @param anioPublicacion Año de publicación del libro
+     * @param numPaginas      Número de páginas del libro
+     * @return Lista con un mensaje por cada campo no válido, vacía si todos son válidos
+     */
+    public static List<String> validarTodo(String titulo, String autor, String ISBN, int anioPublicacion, int numPaginas) {
+        List<String> errores = new ArrayList<>(0);
+        validarComunes(errores, titulo, autor, anioPublicacion);
+        if (!validarISBN(ISBN)) {
+            errores.add(MENSAJE_ISBN);
+        }
+        if (!validarNumPaginas(numPaginas)) {
+            errores.add(MENSAJE_PAGINAS);
+        }
+        return errores;
     }
 
     /**
@@ -118,46 +128,43 @@ public class Libro extends PublicacionPrestable implements Prestable {
     }
 
     /**
-     * Muestra la información del libro
+     * Añade la información del libro
      * Sobreescribe el metodo de la clase padre
      */
     @Override
-    public void mostrarInfo() {
-        super.mostrarInfo();
-        System.out.println("ISBN: " + ISBN);
-        System.out.println("Número de páginas: " + numPaginas+"\n");
+    public StringBuilder describir(StringBuilder destino) {
+        super.describir(destino);
+        destino.append("ISBN: ").append(ISBN).append(SALTO_LINEA);
+        destino.append("Número de páginas: ").append(numPaginas).append('\n').append(SALTO_LINEA);
+        return destino;
     }
 
     /**
      * Presta el libro si no está prestado y asigna una fecha de devolución de 21 días.
      */
     @Override
-    public void prestar() {
-        if (prestado) {
-            System.out.println("El libro ya está prestado.");
-        } else {
-            prestado = true;
-            fechaPrestamo = LocalDate.now();
-            fechaDevolucion = fechaPrestamo.plusDays(21); // 21 días después
-            System.out.println("Libro prestado. Fecha de devolución: " + fechaDevolucion);
+    public boolean prestar() {
+        if (!marcarPrestado()) {
+            return false;
         }
+        LocalDate hoy = LocalDate.now();
+        fechaDevolucion = hoy.plusDays(21); // 21 días después
+        fechaPrestamo = hoy;
+        return true;
     }
 
     /**
      * Devuelve el libro si está prestado y restablece las fechas de préstamo.
      */
     @Override
-    public void devolver() {
-        if (!prestado) {
-            System.out.println("El libro no está prestado.");
-        } else {
-            LocalDate hoy = LocalDate.now();
-            if (hoy.isAfter(fechaDevolucion)){System.out.print("AVISO: Se ha sobrepasado la fecha de devolución.");};
-            prestado = false;
-            fechaPrestamo = null;
-            fechaDevolucion = null;
-            System.out.println("Libro devuelto.");
+    public boolean devolver() {
+        if (!isPrestado()) {
+            return false;
         }
+        // Las fechas se borran antes de liberar el ejemplar: en cuanto se libera, otro préstamo puede escribir las suyas
+        fechaPrestamo = null;
+        fechaDevolucion = null;
+        return marcarDevuelto();
     }
 }
 
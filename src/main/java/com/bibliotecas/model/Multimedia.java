@@ -1,6 +1,16 @@
 package com.bibliotecas.model;
 
+import java.util.Locale;
+
 public interface Multimedia {
     void descargar();
     String obtenerFormato();
+
+    /// ID de la publicación, que identifica su contenido en el almacén de descargas
+    long getId();
+
+    /// Extensión del fichero con el contenido, según su formato
+    default String extension() {
+        return obtenerFormato().toLowerCase(Locale.ROOT);
+    }
 }
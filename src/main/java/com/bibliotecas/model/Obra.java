@@ -0,0 +1,149 @@
+package com.bibliotecas.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Obra de la que la biblioteca tiene uno o varios ejemplares: las publicaciones prestables del mismo tipo,
+ * título y autor, sin distinguir mayúsculas. Cada ejemplar sigue siendo una publicación con su propio ID,
+ * que es lo que se presta, pero su estado cambia a través de la obra, que lleva con él la cuenta de
+ * ejemplares disponibles y un mapa de bits con cuáles son. Así saber si queda alguno cuesta O(1)
+ * y encontrarlo, una palabra del mapa por cada 64 ejemplares, sin recorrerlos.
+ *
+ * El bloqueo de la obra solo lo toman los cambios de estado de sus ejemplares y las altas,
+ * así que los préstamos de obras distintas no compiten entre sí.
+ */
+public final class Obra {
+
+    private final String titulo;
+    private final String autor;
+    private final ReentrantLock bloqueo;
+    private PublicacionPrestable[] ejemplares; // Por orden de alta; la posición de cada uno es su bit en libres
+    private long[] libres;                     // Bit a 1 si el ejemplar de esa posición está disponible
+    private int numeroEjemplares;
+    private volatile int disponibles;
+
+    Obra(String titulo, String autor) {
+        this.titulo = titulo;
+        this.autor = autor;
+        this.bloqueo = new ReentrantLock();
+        this.ejemplares = new PublicacionPrestable[1];
+        this.libres = new long[1];
+    }
+
+    /**
+     * Clave que identifica la obra de una publicación en el índice.
+     * @return Tipo, título y autor normalizados.
+     */
+    static String clave(PublicacionPrestable publicacion) {
+        return publicacion.getClass().getSimpleName() + '\u0000'
+                + IndicePublicaciones.normalizar(publicacion.getTitulo()) + '\u0000'
+                + IndicePublicaciones.normalizar(publicacion.getAutor());
+    }
+
+    /**
+     * Añade un ejemplar a la obra. Se llama al incorporarlo al catálogo, antes de que nadie pueda prestarlo.
+     * @param ejemplar Publicación del mismo tipo, título y autor que la obra, que no pertenece a otra.
+     */
+    void agregar(PublicacionPrestable ejemplar) {
+        bloqueo.lock();
+        try {
+            int posicion = numeroEjemplares++;
+            if (posicion == ejemplares.length) {
+                ejemplares = Arrays.copyOf(ejemplares, posicion * 2);
+            }
+            if ((posicion >>> 6) == libres.length) {
+                libres = Arrays.copyOf(libres, libres.length * 2);
+            }
+            ejemplares[posicion] = ejemplar;
+            ejemplar.posicionEnObra = posicion;
+            ejemplar.obra = this;
+            if (!ejemplar.isPrestado()) {
+                libres[posicion >>> 6] |= 1L << posicion;
+                disponibles++;
+            }
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /**
+     * Presta o devuelve un ejemplar y actualiza la cuenta en el mismo paso.
+     * @param prestar true para prestarlo, false para devolverlo.
+     * @return true si el ejemplar ha cambiado de estado, false si ya estaba en el pedido.
+     */
+    boolean cambiarEstado(PublicacionPrestable ejemplar, boolean prestar) {
+        bloqueo.lock();
+        try {
+            if (!ejemplar.cambiarPrestado(prestar)) {
+                return false;
+            }
+            int posicion = ejemplar.posicionEnObra;
+            if (prestar) {
+                libres[posicion >>> 6] &= ~(1L << posicion);
+                disponibles--;
+            } else {
+                libres[posicion >>> 6] |= 1L << posicion;
+                disponibles++;
+            }
+            return true;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    public String getTitulo() {
+        return titulo;
+    }
+
+    public String getAutor() {
+        return autor;
+    }
+
+    /// Número de ejemplares que no están prestados; se lee sin bloqueo
+    public int disponibles() {
+        return disponibles;
+    }
+
+    public int numeroEjemplares() {
+        bloqueo.lock();
+        try {
+            return numeroEjemplares;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /**
+     * Busca un ejemplar disponible. Otro terminal puede prestarlo antes, así que quien lo recibe
+     * debe contar con que el préstamo falle y volver a pedir otro.
+     * @return Un ejemplar que no estaba prestado, o null si están todos prestados.
+     */
+    public PublicacionPrestable ejemplarDisponible() {
+        if (disponibles == 0) {
+            return null;
+        }
+        bloqueo.lock();
+        try {
+            for (int i = 0; i < libres.length; i++) {
+                if (libres[i] != 0) {
+                    return ejemplares[(i << 6) + Long.numberOfTrailingZeros(libres[i])];
+                }
+            }
+            return null;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /// Copia de los ejemplares de la obra, por orden de alta
+    public List<PublicacionPrestable> ejemplares() {
+        bloqueo.lock();
+        try {
+            return List.of(Arrays.copyOf(ejemplares, numeroEjemplares));
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+}
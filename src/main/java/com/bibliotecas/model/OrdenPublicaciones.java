@@ -0,0 +1,13 @@
+package com.bibliotecas.model;
+
+/**
+ * Órdenes estables en que se pueden recorrer las publicaciones por páginas.
+ * En ambos las publicaciones con el mismo autor o título se ordenan por ID, así que el orden es total
+ * y una página siempre continúa exactamente donde terminó la anterior.
+ */
+public enum OrdenPublicaciones {
+    /// Por autor según las reglas del español
+    AUTOR,
+    /// Por título según las reglas del español
+    TITULO
+}
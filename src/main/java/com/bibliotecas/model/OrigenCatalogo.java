@@ -0,0 +1,74 @@
+package com.bibliotecas.model;
+
+import java.util.List;
+
+/**
+ * Catálogo de solo lectura que la biblioteca consulta además de sus publicaciones en memoria.
+ * Las publicaciones se cargan bajo demanda; una misma posición debe devolver el mismo objeto mientras
+ * alguien conserve una referencia a él, porque el estado de préstamo se guarda en él. La biblioteca
+ * conserva las que están prestadas, así que las demás pueden liberarse cuando nadie las usa.
+ * Las claves de título se comparan en minúsculas con Locale.ROOT, igual que el índice de la biblioteca.
+ */
+public interface OrigenCatalogo {
+
+    /**
+     * @return Número de publicaciones del catálogo.
+     */
+    int tamanio();
+
+    /**
+     * Obtiene el tipo de la publicación guardada en una posición sin cargarla.
+     * @param posicion Posición en el catálogo, entre 0 y tamanio() - 1.
+     * @return La clase de la publicación.
+     */
+    Class<? extends Publicacion> tipo(int posicion);
+
+    /**
+     * Lee los campos de la publicación guardada en una posición sin cargarla ni retenerla.
+     * @param posicion Posición en el catálogo, entre 0 y tamanio() - 1.
+     * @return Los campos de la publicación.
+     */
+    CamposPublicacion campos(int posicion);
+
+    /**
+     * Carga la publicación de una posición, o devuelve la ya cargada.
+     * @param posicion Posición en el catálogo, entre 0 y tamanio() - 1.
+     * @return La publicación.
+     */
+    Publicacion cargar(int posicion);
+
+    /**
+     * Busca una publicación por su identificador.
+     * @param id Identificador de la publicación.
+     * @return La publicación, o null si no está en el catálogo.
+     */
+    Publicacion buscarPorId(long id);
+
+    /**
+     * Busca las publicaciones con un título, sin distinguir mayúsculas.
+     * @param titulo Título a buscar.
+     * @return Las publicaciones encontradas, o una lista vacía.
+     */
+    List<Publicacion> buscarPorTitulo(String titulo);
+
+    /**
+     * Busca las publicaciones cuyo título está en el rango [desde, hasta), sin distinguir mayúsculas.
+     * Si hasta es null, busca los títulos que empiezan por desde.
+     * @return Las publicaciones encontradas ordenadas por título.
+     */
+    List<Publicacion> buscarPorRango(String desde, String hasta);
+
+    /**
+     * Busca los libros con un ISBN, con o sin guiones y espacios.
+     * @param ISBN ISBN a buscar.
+     * @return Los libros encontrados, o una lista vacía.
+     */
+    List<Libro> buscarPorISBN(String ISBN);
+
+    /**
+     * Busca las revistas con un ISSN, con o sin guion.
+     * @param ISSN ISSN a buscar.
+     * @return Las revistas encontradas, o una lista vacía.
+     */
+    List<Revista> buscarPorISSN(String ISSN);
+}
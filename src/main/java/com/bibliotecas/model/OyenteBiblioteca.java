@@ -0,0 +1,117 @@
+package com.bibliotecas.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Recibe los eventos de una biblioteca.
+ * Los métodos se invocan en el hilo que realiza la operación, después de aplicarla,
+ * así que las implementaciones deben ser rápidas y seguras para hilos.
+ * Todos los métodos tienen una implementación vacía para que cada oyente sobrescriba solo los que necesita.
+ */
+public interface OyenteBiblioteca {
+
+    /**
+     * Se invoca cuando se registra un usuario nuevo.
+     * @param idUsuario ID del usuario.
+     * @param nombre Nombre del usuario.
+     */
+    default void usuarioRegistrado(int idUsuario, String nombre) {
+    }
+
+    /**
+     * Se invoca cuando se añade una publicación al catálogo en memoria.
+     * A diferencia del resto de eventos, se invoca con el catálogo bloqueado para escritura,
+     * de modo que los oyentes reciben las altas en el mismo orden en que se aplican.
+     * @param publicacion Publicación añadida.
+     */
+    default void publicacionAgregada(Publicacion publicacion) {
+    }
+
+    /**
+     * Se invoca con cada catálogo adjunto, solo en los oyentes añadidos con agregarOyenteConPublicaciones,
+     * una vez por catálogo: al adjuntarlo o, si ya lo estaba, al añadir el oyente.
+     * Se invoca sin el bloqueo del catálogo, así que las consultas y altas de la biblioteca siguen mientras
+     * el oyente lo recorre. Por defecto carga cada publicación y la entrega como un alta; los índices que
+     * solo necesitan algunos campos deben sobrescribirlo y leerlos con OrigenCatalogo.campos, sin cargarlas.
+     * @param catalogo Catálogo adjunto.
+     */
+    default void catalogoAdjuntado(OrigenCatalogo catalogo) {
+        for (int i = 0; i < catalogo.tamanio(); i++) {
+            publicacionAgregada(catalogo.cargar(i));
+        }
+    }
+
+    /**
+     * Se invoca tras cada solicitud de préstamo, incluidas las entregas desde la cola de espera.
+     * @param idUsuario ID del usuario que solicita el préstamo.
+     * @param publicacion Publicación solicitada.
+     * @param resultado Resultado de la solicitud.
+     */
+    default void prestamo(int idUsuario, PublicacionPrestable publicacion, ResultadoPrestamo resultado) {
+    }
+
+    /**
+     * Se invoca tras cada solicitud de devolución.
+     * @param idUsuario ID del usuario que devuelve la publicación.
+     * @param publicacion Publicación devuelta.
+     * @param resultado Resultado de la devolución.
+     */
+    default void devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado) {
+    }
+
+    /**
+     * Se invoca tras cada solicitud de devolución, con la fecha en que empezó el préstamo devuelto.
+     * Es la que invoca la biblioteca; por defecto delega en la versión sin fecha, así que los oyentes
+     * que no necesitan la fecha pueden seguir sobrescribiendo solo aquella.
+     * @param idUsuario ID del usuario que devuelve la publicación.
+     * @param publicacion Publicación devuelta; su fecha de préstamo ya se ha borrado.
+     * @param resultado Resultado de la devolución.
+     * @param fechaPrestamo Fecha en que se prestó la publicación, o null si no se ha devuelto nada.
+     */
+    default void devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado, LocalDate fechaPrestamo) {
+        devolucion(idUsuario, publicacion, resultado);
+    }
+
+    /**
+     * Se invoca tras un lote de solicitudes de préstamo de un mismo usuario, en lugar de un evento por publicación.
+     * Por defecto delega en prestamo para cada una, así que solo necesitan sobrescribirlo los oyentes que
+     * sacan partido de recibir el lote entero, como el registro de operaciones.
+     * @param idUsuario ID del usuario que solicita los préstamos.
+     * @param publicaciones Publicaciones solicitadas.
+     * @param resultados Resultado de cada solicitud, en el mismo orden que las publicaciones.
+     */
+    default void prestamos(int idUsuario, List<? extends PublicacionPrestable> publicaciones, List<ResultadoPrestamo> resultados) {
+        for (int i = 0; i < publicaciones.size(); i++) {
+            prestamo(idUsuario, publicaciones.get(i), resultados.get(i));
+        }
+    }
+
+    /**
+     * Se invoca tras un lote de devoluciones, que pueden ser de usuarios distintos, en lugar de un evento por publicación.
+     * Por defecto delega en devolucion para cada una.
+     * @param devoluciones Devoluciones del lote, en el orden en que se han pedido.
+     */
+    default void devoluciones(List<Devolucion> devoluciones) {
+        for (Devolucion devolucion : devoluciones) {
+            devolucion(devolucion.idUsuario(), devolucion.publicacion(), devolucion.resultado(), devolucion.fechaPrestamo());
+        }
+    }
+
+    /**
+     * Se invoca cuando un usuario entra en la cola de espera de una publicación.
+     * @param idUsuario ID del usuario que espera.
+     * @param publicacion Publicación esperada.
+     */
+    default void esperaIniciada(int idUsuario, PublicacionPrestable publicacion) {
+    }
+
+    /**
+     * Se invoca cuando un usuario sale de la cola de espera de una publicación, porque la recibe,
+     * cancela la reserva o pierde su turno.
+     * @param idUsuario ID del usuario que esperaba.
+     * @param publicacion Publicación esperada.
+     */
+    default void esperaTerminada(int idUsuario, PublicacionPrestable publicacion) {
+    }
+}
@@ -2,7 +2,17 @@ package com.bibliotecas.model;
 
 
 public interface Prestable {
-    void prestar();
-    void devolver();
+    /**
+     * Presta la publicación si está disponible.
+     * @return true si el préstamo se ha realizado, false si ya estaba prestada.
+     */
+    boolean prestar();
+
+    /**
+     * Devuelve la publicación si estaba prestada.
+     * @return true si la devolución se ha realizado, false si no estaba prestada.
+     */
+    boolean devolver();
+
     boolean isPrestado();
 }
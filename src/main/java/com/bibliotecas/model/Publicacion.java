@@ -3,20 +3,36 @@ package com.bibliotecas.model;
 import com.bibliotecas.exceptions.InvalidNameException;
 import com.bibliotecas.exceptions.InvalidTitleException;
 import com.bibliotecas.exceptions.InvalidYearException;
-import java.time.LocalDate;
+import java.text.Collator;
 
 import java.util.*;
 
 public abstract class Publicacion implements Comparable<Publicacion> {
-    public static Comparator<? super Publicacion> ComparadorPorAutor;
+    // Ordena según las reglas del español, de modo que "Ángel" va junto a "Angel" y no después de "Zoe".
+    // RuleBasedCollator sincroniza getCollationKey, así que cada hilo usa su propia copia para que las
+    // importaciones en paralelo no se esperen unas a otras al crear publicaciones.
+    private static final Collator COLACION_BASE = Collator.getInstance(Locale.of("es"));
+    private static final ThreadLocal<Collator> COLACION = ThreadLocal.withInitial(() -> (Collator) COLACION_BASE.clone());
+
+    // Separador que usaba println, para que describir produzca lo mismo que mostrarInfo
+    static final String SALTO_LINEA = System.lineSeparator();
+
+    private static final String MENSAJE_TITULO = "El título está vacío";
+    private static final String MENSAJE_AUTOR = "El nombre del autor está vacío";
+    private static final String MENSAJE_ANIO = "El año de publicación no puede ser mayor al año actual.";
+
     // Atributos de la clase
     private String titulo;
     private String autor;
     private int anioPublicacion;
 
-    // Identificador de publicaciones
-    private static int contador = 1;
-    private int uuid;
+    // Claves de ordenación precalculadas: comparar dos publicaciones es comparar bytes, sin pasar por el Collator
+    private byte[] claveTitulo;
+    private byte[] claveAutor;
+
+    // Generador de identificadores; las importaciones crean publicaciones desde varios hilos
+    private static volatile GeneradorIds generadorIds = new SecuenciaPorBloques(AlmacenSecuencia.enMemoria());
+    private long uuid;
 
     /**
      * Constructor de la clase Publicacion.
@@ -34,7 +50,62 @@ public abstract class Publicacion implements Comparable<Publicacion> {
         setAutor(autor);
         setAnioPublicacion(anioPublicacion);
 
-        this.uuid = contador++;
+        this.uuid = generadorIds.siguiente();
+    }
+
+    /**
+     * Constructor para publicaciones ya validadas que se recuperan de almacenamiento.
+     * No repite las validaciones y conserva el identificador original.
+     *
+     * @param uuid            El identificador guardado de la publicación.
+     * @param titulo          El título de la publicación.
+     * @param autor           El autor de la publicación.
+     * @param anioPublicacion El año de publicación.
+     */
+    Publicacion(long uuid, String titulo, String autor, int anioPublicacion) {
+        this.titulo = titulo;
+        this.claveTitulo = claveOrdenacion(titulo);
+        this.autor = autor;
+        this.claveAutor = claveOrdenacion(autor);
+        this.anioPublicacion = anioPublicacion;
+        this.uuid = uuid;
+    }
+
+    /**
+     * Garantiza que las publicaciones nuevas reciban identificadores mayores que el indicado.
+     *
+     * @param idMaximo El mayor identificador ya utilizado.
+     */
+    static void reservarIdsHasta(long idMaximo) {
+        generadorIds.reservarHasta(idMaximo);
+    }
+
+    /**
+     * Cambia la forma de asignar identificadores a las publicaciones nuevas.
+     * Debe llamarse al arrancar, antes de crear o restaurar publicaciones: las reservas hechas
+     * con reservarIdsHasta sobre el generador anterior no pasan al nuevo.
+     *
+     * @param generador El generador a usar, por ejemplo una SecuenciaPorBloques persistente
+     *                  o un GeneradorSnowflake si varios nodos crean publicaciones.
+     */
+    public static void setGeneradorIds(GeneradorIds generador) {
+        generadorIds = Objects.requireNonNull(generador);
+    }
+
+    /**
+     * Calcula la clave de ordenación de un texto según las reglas del español.
+     * Comparar dos claves byte a byte sin signo da el mismo resultado que comparar los textos con el Collator.
+     *
+     * @param texto El texto del que se calcula la clave.
+     * @return La clave de ordenación.
+     */
+    static byte[] claveOrdenacion(String texto) {
+        return COLACION.get().getCollationKey(texto).toByteArray();
+    }
+
+    /// Clave de ordenación del autor o del título, la que corresponda al orden del recorrido por páginas
+    byte[] claveOrdenacion(OrdenPublicaciones orden) {
+        return orden == OrdenPublicaciones.AUTOR ? claveAutor : claveTitulo;
     }
 
     /**
@@ -42,9 +113,23 @@ public abstract class Publicacion implements Comparable<Publicacion> {
      * Muestra la información de la publicación (título, autor y año de publicación).
      */
     public void mostrarInfo() {
-        System.out.println("Título: " + titulo);
-        System.out.println("Autor: " + autor);
-        System.out.println("Año de publicación: " + anioPublicacion);
+        System.out.print(describir(new StringBuilder()));
+    }
+
+    /**
+     * Metodo describir
+     * Añade al final del texto la misma información que muestra mostrarInfo, sin crear cadenas intermedias,
+     * para que quien muestra muchas publicaciones pueda reutilizar el mismo StringBuilder.
+     * Las subclases lo amplían con sus propios atributos.
+     *
+     * @param destino El texto al que se añade la información.
+     * @return El mismo destino, para encadenar llamadas.
+     */
+    public StringBuilder describir(StringBuilder destino) {
+        destino.append("Título: ").append(titulo).append(SALTO_LINEA);
+        destino.append("Autor: ").append(autor).append(SALTO_LINEA);
+        destino.append("Año de publicación: ").append(anioPublicacion).append(SALTO_LINEA);
+        return destino;
     }
 
     /**
@@ -55,7 +140,7 @@ public abstract class Publicacion implements Comparable<Publicacion> {
      * @return Verdadero si el título es válido, falso en caso contrario.
      */
     public static boolean validarTitulo(String titulo) {
-        return titulo != null && !titulo.trim().isEmpty();
+        return Validaciones.tieneTexto(titulo);
     }
 
     /**
@@ -67,7 +152,7 @@ public abstract class Publicacion implements Comparable<Publicacion> {
      * @throws InvalidNameException Si el nombre del autor no es válido.
      */
     public static boolean validarAutor(String autor) throws InvalidNameException {
-        return autor != null && !autor.trim().isEmpty();
+        return Validaciones.tieneTexto(autor);
     }
 
     /**
@@ -78,12 +163,41 @@ public abstract class Publicacion implements Comparable<Publicacion> {
      * @return Verdadero si el año es válido, falso en caso contrario.
      */
     public static boolean validarAnio(int anio) {
-        int anioActual = LocalDate.now().getYear();
-        return anio > 0 && anio <= anioActual;
+        return anio > 0 && anio <= Validaciones.anioActual();
+    }
+
+    /**
+     * Añade a la lista los errores de los campos comunes a todas las publicaciones.
+     * Los mensajes son los mismos que los de las excepciones de los setters.
+     *
+     * @param errores         Lista en la que se añaden los errores.
+     * @param titulo          El título de la publicación.
+     * @param autor           El autor de la publicación.
+     * @param anioPublicacion El año de publicación.
+     */
+    static void validarComunes(List<String> errores, String titulo, String autor, int anioPublicacion) {
+        if (!validarTitulo(titulo)) {
+            errores.add(MENSAJE_TITULO);
+        }
+        if (!validarAutor(autor)) {
+            errores.add(MENSAJE_AUTOR);
+        }
+        if (!validarAnio(anioPublicacion)) {
+            errores.add(MENSAJE_ANIO);
+        }
     }
 
     // Getters y Setters
 
+    /**
+     * Obtiene el identificador único de la publicación.
+     *
+     * @return El identificador de la publicación.
+     */
+    public long getId() {
+        return uuid;
+    }
+
     /**
      * Obtiene el título de la publicación.
      *
@@ -119,9 +233,10 @@ public abstract class Publicacion implements Comparable<Publicacion> {
      */
     public void setTitulo(String titulo) throws InvalidTitleException {
         if (!validarTitulo(titulo)) {
-            throw new InvalidTitleException("El título está vacío");
+            throw new InvalidTitleException(MENSAJE_TITULO);
         }
         this.titulo = titulo;
+        this.claveTitulo = claveOrdenacion(titulo);
     }
 
     /**
@@ -132,9 +247,10 @@ public abstract class Publicacion implements Comparable<Publicacion> {
      */
     public void setAutor(String autor) throws InvalidNameException {
         if (!validarAutor(autor)) {
-            throw new InvalidNameException("El nombre del autor está vacío");
+            throw new InvalidNameException(MENSAJE_AUTOR);
         }
         this.autor = autor;
+        this.claveAutor = claveOrdenacion(autor);
     }
 
     /**
@@ -145,28 +261,39 @@ public abstract class Publicacion implements Comparable<Publicacion> {
      */
     public void setAnioPublicacion(int anioPublicacion) throws InvalidYearException {
         if (!validarAnio(anioPublicacion)) {
-            throw new InvalidYearException("El año de publicación no puede ser mayor al año actual.");
+            throw new InvalidYearException(MENSAJE_ANIO);
         }
         this.anioPublicacion = anioPublicacion;
     }
 
 
+    /**
+     * Orden natural de las publicaciones: por título, después por autor y por último por ID,
+     * de modo que solo es 0 al comparar una publicación consigo misma.
+     *
+     * @param o La publicación con la que se compara.
+     * @return Un número negativo, cero o positivo si esta publicación va antes, en el mismo lugar o después.
+     */
     @Override
     public int compareTo(Publicacion o) {
-        return 0;
+        int resultado = Arrays.compareUnsigned(claveTitulo, o.claveTitulo);
+        if (resultado == 0) {
+            resultado = Arrays.compareUnsigned(claveAutor, o.claveAutor);
+        }
+        return resultado != 0 ? resultado : Long.compare(uuid, o.uuid);
     }
 
     public static class ComparadorPorAutor implements Comparator<Publicacion> {
         @Override
         public int compare(Publicacion p1, Publicacion p2) {
-            return p1.autor.compareTo(p2.autor);
+            return Arrays.compareUnsigned(p1.claveAutor, p2.claveAutor);
         }
     }
 
     public static class ComparadorPorTitulo implements Comparator<Publicacion> {
         @Override
         public int compare(Publicacion p1, Publicacion p2) {
-            return p1.titulo.compareTo(p2.titulo);
+            return Arrays.compareUnsigned(p1.claveTitulo, p2.claveTitulo);
         }
     }
 
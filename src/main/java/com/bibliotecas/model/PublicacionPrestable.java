@@ -1,12 +1,21 @@
 package com.bibliotecas.model;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
 import com.bibliotecas.exceptions.InvalidTitleException;
 import com.bibliotecas.exceptions.InvalidNameException;
 import com.bibliotecas.exceptions.InvalidYearException;
 
 
 public abstract class PublicacionPrestable extends Publicacion implements Prestable {
+
+    // El estado de préstamo se cambia con compareAndSet para que dos hilos no puedan prestar el mismo ejemplar
+    private final AtomicBoolean prestado = new AtomicBoolean(false);
+    volatile LocalDate fechaPrestamo;
+    volatile LocalDate fechaDevolucion;
+    volatile Obra obra;  // Obra de la que es ejemplar, o null si aún no está en el catálogo de una biblioteca
+    int posicionEnObra;  // Lo asigna la obra antes de publicar obra
+
     /**
      * Constructor de la clase Publicacion.
      * Inicializa los atributos de la publicación validando los valores proporcionados.
@@ -18,15 +27,55 @@ public abstract class PublicacionPrestable extends Publicacion implements Presta
      * @throws InvalidNameException  Si el nombre del autor no es válido.
      * @throws InvalidYearException  Si el año de publicación no es válido.
      */
-
-    boolean prestado;
-    LocalDate fechaPrestamo;
-    LocalDate fechaDevolucion;
-
     public PublicacionPrestable(String titulo, String autor, int anioPublicacion) {
         super(titulo, autor, anioPublicacion);
     }
 
+    /// Constructor para publicaciones ya validadas que se recuperan de almacenamiento
+    PublicacionPrestable(long uuid, String titulo, String autor, int anioPublicacion) {
+        super(uuid, titulo, autor, anioPublicacion);
+    }
+
+    /**
+     * Marca la publicación como prestada si estaba disponible; si es ejemplar de una obra, a través de ella.
+     * @return true si este hilo ha conseguido el préstamo, false si ya estaba prestada.
+     */
+    boolean marcarPrestado() {
+        Obra de = obra;
+        return de != null ? de.cambiarEstado(this, true) : cambiarPrestado(true);
+    }
+
+    /**
+     * Marca la publicación como disponible si estaba prestada; si es ejemplar de una obra, a través de ella.
+     * @return true si este hilo ha conseguido la devolución, false si no estaba prestada.
+     */
+    boolean marcarDevuelto() {
+        Obra de = obra;
+        return de != null ? de.cambiarEstado(this, false) : cambiarPrestado(false);
+    }
+
+    /// Cambia el estado sin avisar a la obra, que lo llama con su bloqueo
+    boolean cambiarPrestado(boolean prestar) {
+        return prestado.compareAndSet(!prestar, prestar);
+    }
+
+    /// Obra de la que la publicación es un ejemplar, o null si no se ha añadido a ninguna biblioteca
+    public Obra getObra() {
+        return obra;
+    }
+
+    /**
+     * Restablece un préstamo recuperado de almacenamiento con sus fechas originales.
+     * @return true si la publicación estaba disponible y se ha marcado como prestada.
+     */
+    boolean restaurarPrestamo(LocalDate fechaPrestamo, LocalDate fechaDevolucion) {
+        if (!marcarPrestado()) {
+            return false;
+        }
+        this.fechaDevolucion = fechaDevolucion;
+        this.fechaPrestamo = fechaPrestamo;
+        return true;
+    }
 
     /**
      * Verifica si la publicación está prestada.
@@ -34,6 +83,24 @@ public abstract class PublicacionPrestable extends Publicacion implements Presta
      */
     @Override
     public boolean isPrestado() {
-        return this.prestado;
+        return prestado.get();
+    }
+
+    /**
+     * Obtiene la fecha de préstamo de la publicación
+     *
+     * @return Fecha de préstamo, o null si no está prestada
+     */
+    public LocalDate getFechaPrestamo() {
+        return fechaPrestamo;
+    }
+
+    /**
+     * Obtiene la fecha de devolución de la publicación
+     *
+     * @return Fecha de devolución, o null si no está prestada
+     */
+    public LocalDate getFechaDevolucion() {
+        return fechaDevolucion;
     }
 }
@@ -0,0 +1,50 @@
+package com.bibliotecas.model;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Recorre una secuencia ordenada pidiendo páginas de una en una: cada página se pide a partir
+ * de la última publicación de la anterior, de modo que solo hay una página en memoria y el bloqueo
+ * del catálogo se toma durante cada petición, no durante todo el recorrido.
+ * Las altas hechas mientras tanto aparecen si caen después de la posición actual.
+ */
+final class RecorridoPorPaginas extends Spliterators.AbstractSpliterator<Publicacion> {
+
+    private final Function<Publicacion, List<Publicacion>> siguientePagina;
+    private final int tamanioPagina;
+    private Iterator<Publicacion> pagina;
+    private Publicacion ultima;
+    private boolean terminado;
+
+    /**
+     * @param siguientePagina Devuelve la página que sigue a una publicación (o la primera si recibe null).
+     * @param tamanioPagina   Tamaño que se pide en cada página; una página más corta indica el final.
+     */
+    RecorridoPorPaginas(Function<Publicacion, List<Publicacion>> siguientePagina, int tamanioPagina) {
+        super(Long.MAX_VALUE, ORDERED | DISTINCT | NONNULL);
+        this.siguientePagina = siguientePagina;
+        this.tamanioPagina = tamanioPagina;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Publicacion> accion) {
+        if (pagina == null || !pagina.hasNext()) {
+            if (terminado) {
+                return false;
+            }
+            List<Publicacion> nueva = siguientePagina.apply(ultima);
+            terminado = nueva.size() < tamanioPagina;
+            pagina = nueva.iterator();
+            if (!pagina.hasNext()) {
+                return false;
+            }
+        }
+        ultima = pagina.next();
+        accion.accept(ultima);
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package com.bibliotecas.model;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Escribe publicaciones en un Writer con el mismo formato que mostrarInfo.
+ * Todas se describen en un único StringBuilder que se reutiliza, y se pasan al Writer en bloques
+ * de unos 8 KB a través de un char[] también reutilizado, de modo que escribir una página no crea
+ * una cadena por publicación ni hace una escritura por línea.
+ * No cierra el Writer: quien lo crea decide cuándo cerrarlo. No es seguro para hilos.
+ */
+public class RenderizadorPublicaciones implements Flushable {
+
+    private static final int TAMANIO_BLOQUE = 8192;
+
+    private final Writer destino;
+    private final StringBuilder texto;
+    private char[] caracteres;
+
+    /// @param destino Writer donde se escriben las publicaciones.
+    public RenderizadorPublicaciones(Writer destino) {
+        this.destino = destino;
+        this.texto = new StringBuilder(TAMANIO_BLOQUE * 2);
+        this.caracteres = new char[TAMANIO_BLOQUE * 2];
+    }
+
+    /**
+     * Escribe una publicación.
+     * @param publicacion Publicación a escribir.
+     * @throws IOException Si falla la escritura en el Writer.
+     */
+    public void escribir(Publicacion publicacion) throws IOException {
+        publicacion.describir(texto);
+        vaciarSiLleno();
+    }
+
+    /**
+     * Escribe una línea de texto, por ejemplo un encabezado.
+     * @param linea Texto de la línea, sin el salto final.
+     * @throws IOException Si falla la escritura en el Writer.
+     */
+    public void escribirLinea(String linea) throws IOException {
+        texto.append(linea).append(Publicacion.SALTO_LINEA);
+        vaciarSiLleno();
+    }
+
+    /**
+     * Escribe una página de publicaciones, por ejemplo la devuelta por Biblioteca.pagina, y la envía al Writer.
+     * @param pagina Publicaciones a escribir, en orden.
+     * @throws IOException Si falla la escritura en el Writer.
+     */
+    public void escribirPagina(List<? extends Publicacion> pagina) throws IOException {
+        for (Publicacion publicacion : pagina) {
+            escribir(publicacion);
+        }
+        flush();
+    }
+
+    private void vaciarSiLleno() throws IOException {
+        if (texto.length() >= TAMANIO_BLOQUE) {
+            vaciar();
+        }
+    }
+
+    private void vaciar() throws IOException {
+        int longitud = texto.length();
+        if (longitud > caracteres.length) {
+            caracteres = new char[longitud];
+        }
+        texto.getChars(0, longitud, caracteres, 0);
+        destino.write(caracteres, 0, longitud);
+        texto.setLength(0);
+    }
+
+    /**
+     * Pasa al Writer lo que quede pendiente y lo vacía.
+     */
+    @Override
+    public void flush() throws IOException {
+        vaciar();
+        destino.flush();
+    }
+}
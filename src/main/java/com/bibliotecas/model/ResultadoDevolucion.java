@@ -0,0 +1,11 @@
+package com.bibliotecas.model;
+
+/**
+ * Resultado de una devolución.
+ */
+public enum ResultadoDevolucion {
+    DEVUELTO,              // La publicación se ha devuelto dentro de plazo
+    DEVUELTO_CON_RETRASO,  // La publicación se ha devuelto después de la fecha de devolución
+    NO_PRESTADO,           // El usuario no tenía prestada la publicación
+    USUARIO_NO_REGISTRADO  // No existe ningún usuario con ese ID
+}
@@ -0,0 +1,11 @@
+package com.bibliotecas.model;
+
+/**
+ * Resultado de una solicitud de préstamo.
+ */
+public enum ResultadoPrestamo {
+    PRESTADO,              // La publicación se ha prestado al usuario
+    EN_COLA,               // La publicación no estaba disponible y el usuario pasa a la cola de espera
+    LIMITE_ALCANZADO,      // El usuario ya tiene el máximo de préstamos permitidos
+    USUARIO_NO_REGISTRADO  // No existe ningún usuario con ese ID
+}
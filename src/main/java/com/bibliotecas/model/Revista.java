@@ -6,6 +6,8 @@ import com.bibliotecas.exceptions.InvalidISSNException;
 import com.bibliotecas.exceptions.InvalidMonthException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Clase que representa una Revista.
@@ -14,7 +16,12 @@ import java.time.LocalDate;
 public class Revista extends PublicacionPrestable implements Prestable {
 
     // Atributos de la clase Revista
-    private String ISSN; // Código ISSN de la revista (8 dígitos numéricos)
+    private static final String MENSAJE_ISSN = "El ISSN no es válido: debe tener el formato NNNN-NNNC con su dígito de control.";
+    private static final String MENSAJE_EDICION = "El número de edición debe ser positivo.";
+    private static final String MENSAJE_MES = "El mes de publicación no puede ser nulo.";
+    private static final String MENSAJE_CATEGORIA = "La categoría no puede ser nula.";
+
+    private String ISSN; // Código ISSN de la revista (NNNN-NNNC, con dígito de control)
     private int numEdicion; // Número de edición de la revista
 
 
@@ -54,6 +61,15 @@ public class Revista extends PublicacionPrestable implements Prestable {
         setCategoria(categoria);
     }
 
+    /// Constructor para revistas ya validadas que se recuperan de almacenamiento
+    Revista(long uuid, String titulo, String autor, int anioPublicacion, String ISSN, int numEdicion, Mes mesPublicacion, CategoriaRevista categoria) {
+        super(uuid, titulo, autor, anioPublicacion);
+        this.ISSN = ISSN;
+        this.numEdicion = numEdicion;
+        this.mesPublicacion = mesPublicacion;
+        this.categoria = categoria;
+    }
+
     // Métodos getter para cada atributo
     public String getISSN() { return ISSN; }
     public int getNumEdicion() { return numEdicion; }
@@ -67,7 +83,7 @@ public class Revista extends PublicacionPrestable implements Prestable {
      */
     public void setISSN(String ISSN) {
         if (!validarISSN(ISSN)) {
-            throw new InvalidISSNException("El ISSN no es válido. Debe tener 8 dígitos.");
+            throw new InvalidISSNException(MENSAJE_ISSN);
         }
         this.ISSN = ISSN;
     }
@@ -79,7 +95,7 @@ public class Revista extends PublicacionPrestable implements Prestable {
      */
     public void setNumEdicion(int numEdicion) {
         if (!validarNumEdicion(numEdicion)) {
-            throw new InvalidEditionException("El número de edición debe ser positivo.");
+            throw new InvalidEditionException(MENSAJE_EDICION);
         }
         this.numEdicion = numEdicion;
     }
@@ -91,7 +107,7 @@ public class Revista extends PublicacionPrestable implements Prestable {
      */
     public void setMesPublicacion(Mes mesPublicacion) {
         if (mesPublicacion == null) {
-            throw new InvalidMonthException("El mes de publicación no puede ser nulo.");
+            throw new InvalidMonthException(MENSAJE_MES);
         }
         this.mesPublicacion = mesPublicacion;
     }
@@ -103,30 +119,61 @@ public class Revista extends PublicacionPrestable implements Prestable {
      */
     public void setCategoria(CategoriaRevista categoria) {
         if (categoria == null) {
-            throw new InvalidCategoryException("La categoría no puede ser nula.");
+            throw new InvalidCategoryException(MENSAJE_CATEGORIA);
         }
         this.categoria = categoria;
     }
 
     /**
-     * Muestra la información de la revista, sobrescribiendo el metodo de la clase padre.
+     * Añade la información de la revista, sobrescribiendo el metodo de la clase padre.
      */
     @Override
-    public void mostrarInfo() {
-        super.mostrarInfo();
-        System.out.println("ISSN: " + ISSN);
-        System.out.println("Número de edición: " + numEdicion);
-        System.out.println("Mes de publicación: " + mesPublicacion);
-        System.out.println("Categoría: " + categoria+"\n");
+    public StringBuilder describir(StringBuilder destino) {
+        super.describir(destino);
+        destino.append("ISSN: ").append(ISSN).append(SALTO_LINEA);
+        destino.append("Número de edición: ").append(numEdicion).append(SALTO_LINEA);
+        destino.append("Mes de publicación: ").append(mesPublicacion).append(SALTO_LINEA);
+        destino.append("Categoría: ").append(categoria).append('\n').append(SALTO_LINEA);
+        return destino;
     }
 
     /**
-     * Valida que el ISSN tenga exactamente 8 dígitos numéricos.
+     * Valida que el ISSN tenga el formato NNNN-NNNC y que su dígito de control C sea correcto.
      * @param ISSN Código ISSN a validar
      * @return true si es válido, false en caso contrario
      */
     public static boolean validarISSN(String ISSN) {
-        return ISSN != null && ISSN.matches("\\d{4}-\\d{4}");
+        return Validaciones.esISSN(ISSN);
+    }
+
+    /**
+     * Valida todos los campos de una revista a la vez, sin lanzar excepciones.
+     * @param titulo Título de la revista
+     * @param autor Autor de la revista
+     * @param anioPublicacion Año de publicación de la revista
+     * @param ISSN Código ISSN de la revista
+     * @param numEdicion Número de edición de la revista
+     * @param mesPublicacion Mes en que se publica la revista
+     * @param categoria Categoría de la revista
+     * @return Lista con un mensaje por cada campo no válido, vacía si todos son válidos
+     */
+    public static List<String> validarTodo(String titulo, String autor, int anioPublicacion, String ISSN, int numEdicion,
+                                           Mes mesPublicacion, CategoriaRevista categoria) {
+        List<String> errores = new ArrayList<>(0);
+        validarComunes(errores, titulo, autor, anioPublicacion);
+        if (!validarISSN(ISSN)) {
+            errores.add(MENSAJE_ISSN);
+        }
+        if (!validarNumEdicion(numEdicion)) {
+            errores.add(MENSAJE_EDICION);
+        }
+        if (mesPublicacion == null) {
+            errores.add(MENSAJE_MES);
+        }
+        if (categoria == null) {
+            errores.add(MENSAJE_CATEGORIA);
+        }
+        return errores;
     }
 
     /**
@@ -143,31 +190,27 @@ public class Revista extends PublicacionPrestable implements Prestable {
      * Presta la revista si no está prestada y asigna una fecha de devolución de 7 días.
      */
     @Override
-    public void prestar() {
-        if (prestado) {
-            System.out.println("La revista ya está prestado.");
-        } else {
-            prestado = true;
-            fechaPrestamo = LocalDate.now();
-            fechaDevolucion = fechaPrestamo.plusDays(7); // 7 días después
-            System.out.println("Revista prestado. Fecha de devolución: " + fechaDevolucion);
+    public boolean prestar() {
+        if (!marcarPrestado()) {
+            return false;
         }
+        LocalDate hoy = LocalDate.now();
+        fechaDevolucion = hoy.plusDays(7); // 7 días después
+        fechaPrestamo = hoy;
+        return true;
     }
 
     /**
      * Devuelve la revista si está prestada y restablece las fechas de préstamo.
      */
     @Override
-    public void devolver() {
-        if (!prestado) {
-            System.out.println("La revista no está prestado.");
-        } else {
-            LocalDate hoy = LocalDate.now();
-            if (hoy.isAfter(fechaDevolucion)){System.out.print("AVISO: Se ha sobrepasado la fecha de devolución.");};
-            prestado = false;
-            fechaPrestamo = null;
-            fechaDevolucion = null;
-            System.out.println("Revista devuelta.");
+    public boolean devolver() {
+        if (!isPrestado()) {
+            return false;
         }
+        // Las fechas se borran antes de liberar el ejemplar: en cuanto se libera, otro préstamo puede escribir las suyas
+        fechaPrestamo = null;
+        fechaDevolucion = null;
+        return marcarDevuelto();
     }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.bibliotecas.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Almacén de secuencia en memoria: un contador atómico del que solo se toman bloques enteros.
+ */
+class SecuenciaEnMemoria implements AlmacenSecuencia {
+
+    private final AtomicLong siguiente = new AtomicLong(1);
+
+    @Override
+    public long reservar(int cantidad) {
+        return siguiente.getAndAdd(cantidad);
+    }
+
+    @Override
+    public void reservarHasta(long idMaximo) {
+        siguiente.accumulateAndGet(idMaximo + 1, Math::max);
+    }
+}
@@ -0,0 +1,82 @@
+package com.bibliotecas.model;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generador de identificadores secuenciales de 64 bits que reparte bloques alquilados a un AlmacenSecuencia.
+ * Los hilos se reparten entre varios tramos según su ID, cada uno con su propio bloqueo y su propio bloque
+ * de identificadores, así que las altas concurrentes no compiten por un único contador: solo se coordinan
+ * con el almacén cuando se agota un bloque. A cambio los identificadores no salen en orden estricto de alta
+ * y, si el almacén es persistente, los que quedaban libres en los bloques al cerrar la aplicación no se usan.
+ */
+public class SecuenciaPorBloques implements GeneradorIds {
+
+    public static final int TAMANIO_BLOQUE_POR_DEFECTO = 1024;
+
+    private final AlmacenSecuencia almacen;
+    private final int tamanioBloque;
+    private final Tramo[] tramos;
+    // Los bloques que empiezan en o por debajo de este ID se descartan; lo sube reservarHasta
+    private volatile long suelo;
+
+    /**
+     * Crea un generador con bloques del tamaño por defecto y un tramo por cada dos procesadores.
+     * @param almacen Almacén del que se alquilan los bloques.
+     */
+    public SecuenciaPorBloques(AlmacenSecuencia almacen) {
+        this(almacen, TAMANIO_BLOQUE_POR_DEFECTO, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @param almacen Almacén del que se alquilan los bloques.
+     * @param tamanioBloque Identificadores de cada bloque.
+     * @param nivelConcurrencia Número aproximado de tramos; se redondea a una potencia de dos.
+     */
+    public SecuenciaPorBloques(AlmacenSecuencia almacen, int tamanioBloque, int nivelConcurrencia) {
+        if (tamanioBloque <= 0) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser positivo.");
+        }
+        this.almacen = almacen;
+        this.tamanioBloque = tamanioBloque;
+        int numTramos = Integer.highestOneBit(Math.max(1, nivelConcurrencia - 1) << 1);
+        this.tramos = new Tramo[numTramos];
+        for (int i = 0; i < numTramos; i++) {
+            tramos[i] = new Tramo();
+        }
+    }
+
+    @Override
+    public long siguiente() {
+        long h = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        Tramo tramo = tramos[(int) (h >>> 32) & (tramos.length - 1)];
+        tramo.bloqueo.lock();
+        try {
+            if (tramo.siguiente >= tramo.fin || tramo.siguiente <= suelo) {
+                tramo.siguiente = almacen.reservar(tamanioBloque);
+                tramo.fin = tramo.siguiente + tamanioBloque;
+            }
+            return tramo.siguiente++;
+        } finally {
+            tramo.bloqueo.unlock();
+        }
+    }
+
+    @Override
+    public void reservarHasta(long idMaximo) {
+        almacen.reservarHasta(idMaximo);
+        synchronized (this) {
+            if (idMaximo > suelo) {
+                suelo = idMaximo;
+            }
+        }
+    }
+
+    /**
+     * Bloque de identificadores en uso por los hilos de un tramo: quedan libres de siguiente a fin - 1.
+     */
+    private static final class Tramo {
+        final ReentrantLock bloqueo = new ReentrantLock();
+        long siguiente;
+        long fin;
+    }
+}
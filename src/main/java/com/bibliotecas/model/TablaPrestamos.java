@@ -0,0 +1,174 @@
+package com.bibliotecas.model;
+
+import java.util.Arrays;
+
+/**
+ * Préstamos activos de un grupo de usuarios, en una tabla hash de direccionamiento abierto de int a long[].
+ * Cada usuario con préstamos ocupa una posición: su ID en claves y, en valores, un long[] con el número
+ * de préstamos seguido de un par (ID de publicación, fecha de devolución en días desde la época) por préstamo,
+ * en el orden en que se prestaron. Como un usuario tiene pocos préstamos, añadir, quitar y consultar cuestan O(1).
+ * Los usuarios sin préstamos no ocupan nada: al devolver el último se libera su posición desplazando
+ * hacia atrás las siguientes, sin marcas de borrado.
+ * Las tablas de una biblioteca comparten una TablaTitulares, repartida por ID de publicación, que agregar
+ * y quitar actualizan en el mismo paso: agregar se llama después de marcar la publicación como prestada
+ * y quitar antes de marcarla como devuelta, así que nadie más puede prestarla mientras conste en ella.
+ * Todos los métodos están sincronizados sobre la propia tabla; Biblioteca usa una por cada bloqueo de
+ * usuario, así que en la práctica no compiten.
+ */
+final class TablaPrestamos {
+
+    /// Valor que devuelven quitar y TablaTitulares.titular si la publicación no está prestada a quien se pregunta
+    static final long SIN_PRESTAMO = Long.MIN_VALUE;
+
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private final TablaTitulares titulares; // null en los usuarios que no pertenecen a una biblioteca
+    private int[] claves;      // ID del usuario de cada posición ocupada
+    private long[][] valores;  // null si la posición está libre
+    private int ocupadas;
+    private int desplazamiento; // 64 menos el número de bits de la capacidad
+
+    TablaPrestamos() {
+        this(null);
+    }
+
+    TablaPrestamos(TablaTitulares titulares) {
+        this.titulares = titulares;
+        this.claves = new int[CAPACIDAD_INICIAL];
+        this.valores = new long[CAPACIDAD_INICIAL][];
+        this.desplazamiento = 64 - Integer.numberOfTrailingZeros(CAPACIDAD_INICIAL);
+    }
+
+    /// Posición ideal del usuario; usa los bits altos para no depender de cómo se reparten los usuarios entre tablas
+    private int posicionInicial(int idUsuario) {
+        return (int) ((idUsuario * 0x9E3779B97F4A7C15L) >>> desplazamiento);
+    }
+
+    private int buscar(int idUsuario) {
+        int mascara = claves.length - 1;
+        for (int i = posicionInicial(idUsuario); valores[i] != null; i = (i + 1) & mascara) {
+            if (claves[i] == idUsuario) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /// Número de préstamos activos del usuario
+    synchronized int cantidad(int idUsuario) {
+        int i = buscar(idUsuario);
+        return i < 0 ? 0 : (int) valores[i][0];
+    }
+
+    /**
+     * Añade un préstamo al usuario. No aplica ningún límite: lo aplica Usuario al prestar, y al restaurar
+     * un registro un préstamo puede llegar antes que la devolución que lo dejó dentro del límite.
+     * @param idUsuario ID del usuario.
+     * @param publicacion Publicación prestada, ya marcada como prestada.
+     * @param diaDevolucion Fecha de devolución en días desde la época.
+     * @throws IllegalStateException Si la publicación ya consta prestada.
+     */
+    synchronized void agregar(int idUsuario, PublicacionPrestable publicacion, long diaDevolucion) {
+        if (titulares != null) {
+            titulares.agregar(idUsuario, publicacion, diaDevolucion);
+        }
+        int i = buscar(idUsuario);
+        if (i < 0) {
+            if ((ocupadas + 1) * 4 > claves.length * 3) {
+                crecer();
+            }
+            int mascara = claves.length - 1;
+            i = posicionInicial(idUsuario);
+            while (valores[i] != null) {
+                i = (i + 1) & mascara;
+            }
+            claves[i] = idUsuario;
+            valores[i] = new long[1 + 2 * Usuario.LIMITE_PRESTAMOS];
+            ocupadas++;
+        }
+        long[] fila = valores[i];
+        int n = (int) fila[0];
+        if (1 + 2 * (n + 1) > fila.length) {
+            fila = valores[i] = Arrays.copyOf(fila, fila.length + 2 * Usuario.LIMITE_PRESTAMOS);
+        }
+        fila[1 + 2 * n] = publicacion.getId();
+        fila[2 + 2 * n] = diaDevolucion;
+        fila[0] = n + 1;
+    }
+
+    /**
+     * Quita un préstamo del usuario, conservando el orden de los demás.
+     * @param idUsuario ID del usuario.
+     * @param idPublicacion ID de la publicación devuelta.
+     * @return La fecha de devolución del préstamo en días desde la época, o SIN_PRESTAMO si no lo tenía.
+     */
+    synchronized long quitar(int idUsuario, long idPublicacion) {
+        int i = buscar(idUsuario);
+        if (i < 0) {
+            return SIN_PRESTAMO;
+        }
+        long[] fila = valores[i];
+        int n = (int) fila[0];
+        for (int j = 0; j < n; j++) {
+            if (fila[1 + 2 * j] == idPublicacion) {
+                long dia = fila[2 + 2 * j];
+                System.arraycopy(fila, 3 + 2 * j, fila, 1 + 2 * j, 2 * (n - j - 1));
+                fila[0] = n - 1;
+                if (n == 1) {
+                    liberar(i);
+                }
+                if (titulares != null) {
+                    titulares.quitar(idPublicacion);
+                }
+                return dia;
+            }
+        }
+        return SIN_PRESTAMO;
+    }
+
+    /**
+     * Copia los préstamos del usuario.
+     * @param idUsuario ID del usuario.
+     * @return Pares (ID de publicación, fecha de devolución en días desde la época), en el orden en que se prestaron.
+     */
+    synchronized long[] prestamos(int idUsuario) {
+        int i = buscar(idUsuario);
+        return i < 0 ? new long[0] : Arrays.copyOfRange(valores[i], 1, 1 + 2 * (int) valores[i][0]);
+    }
+
+    /// Libera la posición y desplaza hacia atrás las siguientes del mismo grupo que puedan ocuparla
+    private void liberar(int libre) {
+        int mascara = claves.length - 1;
+        valores[libre] = null;
+        ocupadas--;
+        for (int i = (libre + 1) & mascara; valores[i] != null; i = (i + 1) & mascara) {
+            int ideal = posicionInicial(claves[i]);
+            // La entrada puede moverse si su posición ideal no está entre el hueco (excluido) y ella
+            if (((i - ideal) & mascara) >= ((i - libre) & mascara)) {
+                claves[libre] = claves[i];
+                valores[libre] = valores[i];
+                valores[i] = null;
+                libre = i;
+            }
+        }
+    }
+
+    private void crecer() {
+        int[] clavesAnteriores = claves;
+        long[][] valoresAnteriores = valores;
+        claves = new int[clavesAnteriores.length * 2];
+        valores = new long[clavesAnteriores.length * 2][];
+        desplazamiento--;
+        int mascara = claves.length - 1;
+        for (int j = 0; j < clavesAnteriores.length; j++) {
+            if (valoresAnteriores[j] != null) {
+                int i = posicionInicial(clavesAnteriores[j]);
+                while (valores[i] != null) {
+                    i = (i + 1) & mascara;
+                }
+                claves[i] = clavesAnteriores[j];
+                valores[i] = valoresAnteriores[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.bibliotecas.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Titular y fecha de devolución de cada publicación prestada de una biblioteca, repartidos en tramos por ID
+ * de publicación para que consultar el titular de una publicación toque un solo tramo. Cada tramo guarda:
+ * <ul>
+ * <li>Una tabla de direccionamiento abierto del ID de cada publicación prestada a su titular, su fecha de
+ * devolución, su hueco en la lista de su día y la propia publicación, que así no hay que buscar en el
+ * catálogo al listar los vencimientos y sigue en memoria mientras está prestada.</li>
+ * <li>Los días en que vence algún préstamo, ordenados, cada uno con la lista de IDs que vencen ese día.
+ * Un préstamo se quita de su día en O(1), poniendo en su hueco el último.</li>
+ * </ul>
+ * Las dos vistas de un tramo se actualizan juntas, con el monitor del tramo. Las publicaciones devueltas
+ * y los días que se quedan vacíos se liberan sin marcas de borrado.
+ * Las TablaPrestamos de la biblioteca llaman a agregar y quitar con su propio monitor, así que el orden
+ * de bloqueo es siempre tabla de préstamos y después tramo.
+ */
+final class TablaTitulares {
+
+    private final Tramo[] tramos;
+
+    /**
+     * @param nivelConcurrencia Número aproximado de tramos; se redondea a una potencia de dos.
+     */
+    TablaTitulares(int nivelConcurrencia) {
+        this.tramos = new Tramo[Integer.highestOneBit(Math.max(1, nivelConcurrencia - 1) << 1)];
+        for (int i = 0; i < tramos.length; i++) {
+            tramos[i] = new Tramo();
+        }
+    }
+
+    /// Tramo de la publicación; mezcla el ID con otra constante que la de las posiciones dentro del tramo
+    private Tramo tramo(long idPublicacion) {
+        long h = idPublicacion * 0xC2B2AE3D27D4EB4FL;
+        return tramos[(int) (h ^ (h >>> 32)) & (tramos.length - 1)];
+    }
+
+    /**
+     * Anota el titular de una publicación recién prestada.
+     * @throws IllegalStateException Si la publicación ya consta prestada.
+     */
+    void agregar(int idUsuario, PublicacionPrestable publicacion, long diaDevolucion) {
+        tramo(publicacion.getId()).agregar(idUsuario, publicacion, (int) diaDevolucion);
+    }
+
+    /// Quita la publicación devuelta; no hace nada si no constaba prestada
+    void quitar(long idPublicacion) {
+        tramo(idPublicacion).quitar(idPublicacion);
+    }
+
+    /**
+     * Consulta quién tiene prestada una publicación.
+     * @return El ID del usuario, o TablaPrestamos.SIN_PRESTAMO si no está prestada.
+     */
+    long titular(long idPublicacion) {
+        return tramo(idPublicacion).titular(idPublicacion);
+    }
+
+    /**
+     * Copia los préstamos que vencen en un intervalo de días. El coste depende del número de préstamos
+     * devueltos y del logaritmo del número de días distintos, no del total de préstamos.
+     * Cada tramo se lee de una vez y devuelve sus préstamos por día; se unen día a día, tomando cada vez
+     * del tramo con el día más temprano todos sus préstamos de ese día, sin ordenar préstamo a préstamo.
+     * @param desde Primer día, en días desde la época, incluido.
+     * @param hasta Último día, excluido.
+     * @return Los préstamos ordenados por fecha de devolución, sin orden dentro de cada día.
+     */
+    List<Vencimiento> vencen(long desde, long hasta) {
+        List<List<Vencimiento>> porTramo = new ArrayList<>(tramos.length);
+        int total = 0;
+        for (Tramo tramo : tramos) {
+            List<Vencimiento> deTramo = tramo.vencen(desde, hasta);
+            porTramo.add(deTramo);
+            total += deTramo.size();
+        }
+        int[] siguientes = new int[tramos.length];
+        List<Vencimiento> resultado = new ArrayList<>(total);
+        while (resultado.size() < total) {
+            int elegido = -1;
+            LocalDate primera = null;
+            for (int i = 0; i < tramos.length; i++) {
+                if (siguientes[i] < porTramo.get(i).size()) {
+                    LocalDate fecha = porTramo.get(i).get(siguientes[i]).fechaDevolucion();
+                    if (primera == null || fecha.isBefore(primera)) {
+                        elegido = i;
+                        primera = fecha;
+                    }
+                }
+            }
+            List<Vencimiento> deTramo = porTramo.get(elegido);
+            int i = siguientes[elegido];
+            while (i < deTramo.size() && deTramo.get(i).fechaDevolucion().equals(primera)) {
+                resultado.add(deTramo.get(i++));
+            }
+            siguientes[elegido] = i;
+        }
+        return resultado;
+    }
+
+    private static final class Tramo {
+
+        private static final int CAPACIDAD_INICIAL = 16;
+        private static final long LIBRE = Long.MIN_VALUE; // Posición libre en la tabla
+
+        private long[] ids;                          // ID de la publicación prestada de cada posición, o LIBRE
+        private int[] titulares;                     // Usuario que la tiene
+        private int[] diasDevolucion;                // Fecha de devolución en días desde la época
+        private int[] huecosEnDia;                   // Posición de su ID en la lista de su día
+        private PublicacionPrestable[] publicaciones;
+        private int ocupadas;
+        private int desplazamiento;                  // 64 menos el número de bits de la capacidad
+
+        private int[] dias;        // Días con algún préstamo que vence en ellos, en orden creciente
+        private long[][] porDia;   // Para cada día, el número de préstamos seguido de sus IDs de publicación
+        private int numeroDias;
+
+        Tramo() {
+            this.ids = new long[CAPACIDAD_INICIAL];
+            Arrays.fill(ids, LIBRE);
+            this.titulares = new int[CAPACIDAD_INICIAL];
+            this.diasDevolucion = new int[CAPACIDAD_INICIAL];
+            this.huecosEnDia = new int[CAPACIDAD_INICIAL];
+            this.publicaciones = new PublicacionPrestable[CAPACIDAD_INICIAL];
+            this.desplazamiento = 64 - Integer.numberOfTrailingZeros(CAPACIDAD_INICIAL);
+            this.dias = new int[4];
+            this.porDia = new long[4][];
+        }
+
+        private int posicionInicial(long idPublicacion) {
+            return (int) ((idPublicacion * 0x9E3779B97F4A7C15L) >>> desplazamiento);
+        }
+
+        private int buscar(long idPublicacion) {
+            int mascara = ids.length - 1;
+            for (int i = posicionInicial(idPublicacion); ids[i] != LIBRE; i = (i + 1) & mascara) {
+                if (ids[i] == idPublicacion) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        synchronized void agregar(int idUsuario, PublicacionPrestable publicacion, int dia) {
+            long idPublicacion = publicacion.getId();
+            if (buscar(idPublicacion) >= 0) {
+                throw new IllegalStateException("La publicación " + idPublicacion + " ya consta prestada");
+            }
+            if ((ocupadas + 1) * 2 > ids.length) {
+                crecer();
+            }
+            int mascara = ids.length - 1;
+            int p = posicionInicial(idPublicacion);
+            while (ids[p] != LIBRE) {
+                p = (p + 1) & mascara;
+            }
+            ids[p] = idPublicacion;
+            titulares[p] = idUsuario;
+            diasDevolucion[p] = dia;
+            huecosEnDia[p] = agregarAlDia(dia, idPublicacion);
+            publicaciones[p] = publicacion;
+            ocupadas++;
+        }
+
+        synchronized void quitar(long idPublicacion) {
+            int p = buscar(idPublicacion);
+            if (p >= 0) {
+                quitarDelDia(diasDevolucion[p], huecosEnDia[p]);
+                liberar(p);
+            }
+        }
+
+        synchronized long titular(long idPublicacion) {
+            int p = buscar(idPublicacion);
+            return p < 0 ? TablaPrestamos.SIN_PRESTAMO : titulares[p];
+        }
+
+        /// Préstamos del tramo que vencen en [desde, hasta), por orden de día
+        synchronized List<Vencimiento> vencen(long desde, long hasta) {
+            int primero = primerDiaNoMenor(desde);
+            int total = 0;
+            int ultimo = primero;
+            for (; ultimo < numeroDias && dias[ultimo] < hasta; ultimo++) {
+                total += (int) porDia[ultimo][0];
+            }
+            List<Vencimiento> resultado = new ArrayList<>(total);
+            for (int d = primero; d < ultimo; d++) {
+                long[] lista = porDia[d];
+                LocalDate fecha = LocalDate.ofEpochDay(dias[d]);
+                for (int j = 1; j <= lista[0]; j++) {
+                    int p = buscar(lista[j]);
+                    resultado.add(new Vencimiento(titulares[p], publicaciones[p], fecha));
+                }
+            }
+            return resultado;
+        }
+
+        /// Índice en dias del primer día mayor o igual que el indicado
+        private int primerDiaNoMenor(long dia) {
+            int bajo = 0;
+            int alto = numeroDias;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (dias[medio] < dia) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+
+        /// Añade el ID a la lista de su día, creando el día si no existe, y devuelve su hueco en ella
+        private int agregarAlDia(int dia, long idPublicacion) {
+            int d = primerDiaNoMenor(dia);
+            if (d == numeroDias || dias[d] != dia) {
+                if (numeroDias == dias.length) {
+                    dias = Arrays.copyOf(dias, dias.length * 2);
+                    porDia = Arrays.copyOf(porDia, porDia.length * 2);
+                }
+                System.arraycopy(dias, d, dias, d + 1, numeroDias - d);
+                System.arraycopy(porDia, d, porDia, d + 1, numeroDias - d);
+                dias[d] = dia;
+                porDia[d] = new long[1 + CAPACIDAD_INICIAL];
+                numeroDias++;
+            }
+            long[] lista = porDia[d];
+            int hueco = 1 + (int) lista[0];
+            if (hueco == lista.length) {
+                lista = porDia[d] = Arrays.copyOf(lista, lista.length * 2);
+            }
+            lista[hueco] = idPublicacion;
+            lista[0] = hueco;
+            return hueco;
+        }
+
+        /// Quita de la lista de su día el ID del hueco indicado, poniendo en su lugar el último
+        private void quitarDelDia(int dia, int hueco) {
+            int d = primerDiaNoMenor(dia);
+            long[] lista = porDia[d];
+            int ultimo = (int) lista[0];
+            if (hueco != ultimo) {
+                lista[hueco] = lista[ultimo];
+                huecosEnDia[buscar(lista[hueco])] = hueco;
+            }
+            lista[0] = ultimo - 1;
+            if (ultimo == 1) {
+                System.arraycopy(dias, d + 1, dias, d, numeroDias - d - 1);
+                System.arraycopy(porDia, d + 1, porDia, d, numeroDias - d - 1);
+                numeroDias--;
+                porDia[numeroDias] = null;
+            }
+        }
+
+        /// Libera la posición y desplaza hacia atrás las siguientes del mismo grupo que puedan ocuparla
+        private void liberar(int libre) {
+            int mascara = ids.length - 1;
+            ids[libre] = LIBRE;
+            publicaciones[libre] = null;
+            ocupadas--;
+            for (int i = (libre + 1) & mascara; ids[i] != LIBRE; i = (i + 1) & mascara) {
+                int ideal = posicionInicial(ids[i]);
+                // La entrada puede moverse si su posición ideal no está entre el hueco (excluido) y ella
+                if (((i - ideal) & mascara) >= ((i - libre) & mascara)) {
+                    ids[libre] = ids[i];
+                    titulares[libre] = titulares[i];
+                    diasDevolucion[libre] = diasDevolucion[i];
+                    huecosEnDia[libre] = huecosEnDia[i];
+                    publicaciones[libre] = publicaciones[i];
+                    ids[i] = LIBRE;
+                    publicaciones[i] = null;
+                    libre = i;
+                }
+            }
+        }
+
+        private void crecer() {
+            long[] idsAnteriores = ids;
+            int[] titularesAnteriores = titulares;
+            int[] diasAnteriores = diasDevolucion;
+            int[] huecosAnteriores = huecosEnDia;
+            PublicacionPrestable[] publicacionesAnteriores = publicaciones;
+            int capacidad = idsAnteriores.length * 2;
+            ids = new long[capacidad];
+            Arrays.fill(ids, LIBRE);
+            titulares = new int[capacidad];
+            diasDevolucion = new int[capacidad];
+            huecosEnDia = new int[capacidad];
+            publicaciones = new PublicacionPrestable[capacidad];
+            desplazamiento--;
+            int mascara = capacidad - 1;
+            for (int j = 0; j < idsAnteriores.length; j++) {
+                if (idsAnteriores[j] != LIBRE) {
+                    int i = posicionInicial(idsAnteriores[j]);
+                    while (ids[i] != LIBRE) {
+                        i = (i + 1) & mascara;
+                    }
+                    ids[i] = idsAnteriores[j];
+                    titulares[i] = titularesAnteriores[j];
+                    diasDevolucion[i] = diasAnteriores[j];
+                    huecosEnDia[i] = huecosAnteriores[j];
+                    publicaciones[i] = publicacionesAnteriores[j];
+                }
+            }
+        }
+    }
+}
@@ -1,48 +1,73 @@
 package com.bibliotecas.model;
-import java.util.*;
-
 
 public class Usuario {
     private int idUsuario;
     private String nombre;
-    private List<PublicacionPrestable> publicacionesUsuario;
-    private static final int LIMITE_PRESTAMOS = 5;
+    private final TablaPrestamos prestamos; // Tabla compartida con la biblioteca donde están sus préstamos activos
+    public static final int LIMITE_PRESTAMOS = 5;
 
     public Usuario(int idUsuario, String nombre) {
+        this(idUsuario, nombre, new TablaPrestamos());
+    }
+
+    /// Constructor para los usuarios de una biblioteca, que guardan sus préstamos en la tabla de la biblioteca
+    Usuario(int idUsuario, String nombre, TablaPrestamos prestamos) {
         this.idUsuario = idUsuario;
         this.nombre = nombre;
-        this.publicacionesUsuario = new ArrayList<>(); // Inicializar lista para evitar NullPointerException
+        this.prestamos = prestamos;
+    }
+
+    public int getIdUsuario() {
+        return idUsuario;
     }
 
     public String getNombre() {
         return nombre;
     }
 
-    public boolean puedePedirPrestamo() {
-        return publicacionesUsuario.size() < LIMITE_PRESTAMOS;
+    public synchronized boolean puedePedirPrestamo() {
+        return prestamos.cantidad(idUsuario) < LIMITE_PRESTAMOS;
+    }
+
+    /// Número de préstamos activos del usuario
+    public synchronized int numeroPrestamos() {
+        return prestamos.cantidad(idUsuario);
     }
 
-    public void prestarPublicacion(PublicacionPrestable publicacion) {
-        if (publicacionesUsuario.size() >= LIMITE_PRESTAMOS) {
-            System.out.println("El usuario ha alcanzado el límite de préstamos (5).");
-            return;
+    /// Número de préstamos que aún puede pedir el usuario antes de alcanzar el límite
+    public synchronized int prestamosDisponibles() {
+        return Math.max(0, LIMITE_PRESTAMOS - prestamos.cantidad(idUsuario));
+    }
+
+    /// Presta la publicación al usuario; devuelve false si no se ha podido realizar el préstamo
+    public synchronized boolean prestarPublicacion(PublicacionPrestable publicacion) {
+        if (prestamos.cantidad(idUsuario) >= LIMITE_PRESTAMOS) {
+            return false;
         }
-        if (publicacion.isPrestado()) {
-            System.out.println("La publicación ya está prestada.");
-            return;
+        // prestar() es atómico: si otro hilo se adelanta, devuelve false
+        if (!publicacion.prestar()) {
+            return false;
         }
-        publicacion.prestar();
-        publicacionesUsuario.add(publicacion);
-        System.out.println("Préstamo registrado para: " + nombre);
+        prestamos.agregar(idUsuario, publicacion, publicacion.getFechaDevolucion().toEpochDay());
+        return true;
+    }
+
+    /// Añade un préstamo recuperado de almacenamiento; no aplica el límite porque ya se aplicó al prestarla
+    synchronized void restaurarPublicacion(PublicacionPrestable publicacion) {
+        prestamos.agregar(idUsuario, publicacion, publicacion.getFechaDevolucion().toEpochDay());
     }
 
-    public void devolverPublicacion(PublicacionPrestable publicacion) {
-        if (!publicacion.isPrestado()) {
-            System.out.println("La publicación no está prestada.");
-            return;
+    /// Devuelve una publicación que tenga prestada el usuario; devuelve false si no la tenía
+    public synchronized boolean devolverPublicacion(PublicacionPrestable publicacion) {
+        if (prestamos.quitar(idUsuario, publicacion.getId()) == TablaPrestamos.SIN_PRESTAMO) {
+            return false;
         }
-        publicacionesUsuario.remove(publicacion);
         publicacion.devolver();
-        System.out.println("Devolución registrada para: " + nombre);
+        return true;
+    }
+
+    /// Copia los préstamos activos como pares (ID de publicación, fecha de devolución en días desde la época)
+    synchronized long[] prestamosActivos() {
+        return prestamos.prestamos(idUsuario);
     }
 }
@@ -0,0 +1,120 @@
+package com.bibliotecas.model;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Comprobaciones de los campos de las publicaciones.
+ * Todas recorren el texto carácter a carácter sin crear objetos, porque se ejecutan una vez por
+ * campo en cada alta y en las importaciones masivas se notan en el perfil.
+ * El año actual se guarda y solo se vuelve a calcular cuando el reloj pasa al año siguiente.
+ */
+public final class Validaciones {
+
+    private static volatile int anioActual;
+    private static volatile long inicioAnioSiguiente; // Milisegundos desde la época en que empieza el año siguiente
+
+    private Validaciones() {
+    }
+
+    /**
+     * Comprueba que un texto no sea nulo ni esté formado solo por espacios.
+     * @param texto Texto a comprobar.
+     * @return true si contiene algún carácter distinto de un espacio.
+     */
+    public static boolean tieneTexto(String texto) {
+        if (texto == null) {
+            return false;
+        }
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve el año actual en la zona horaria del sistema.
+     * @return El año actual.
+     */
+    public static int anioActual() {
+        if (System.currentTimeMillis() >= inicioAnioSiguiente) {
+            actualizarAnio();
+        }
+        return anioActual;
+    }
+
+    private static synchronized void actualizarAnio() {
+        ZoneId zona = ZoneId.systemDefault();
+        LocalDate hoy = LocalDate.now(zona);
+        // Se escribe primero el año para que quien vea el límite nuevo vea también el año nuevo
+        anioActual = hoy.getYear();
+        inicioAnioSiguiente = hoy.withDayOfYear(1).plusYears(1).atStartOfDay(zona).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Comprueba un ISBN-10 o ISBN-13, incluido su dígito de control.
+     * Se admiten guiones y espacios entre los dígitos; en un ISBN-10 el dígito de control puede ser X.
+     * @param isbn ISBN a comprobar.
+     * @return true si el ISBN es válido.
+     */
+    public static boolean esISBN(String isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        int digitos = 0;
+        int sumaIsbn10 = 0; // Suma ponderada 10, 9, ..., 1
+        int sumaIsbn13 = 0; // Suma ponderada 1, 3, 1, 3, ...
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            int valor;
+            if (c >= '0' && c <= '9') {
+                valor = c - '0';
+            } else if ((c == 'X' || c == 'x') && digitos == 9 && i == isbn.length() - 1) {
+                valor = 10;
+            } else if ((c == '-' || c == ' ') && digitos > 0 && i < isbn.length() - 1) {
+                continue;
+            } else {
+                return false;
+            }
+            if (digitos == 13) {
+                return false;
+            }
+            sumaIsbn10 += (10 - digitos) * valor;
+            sumaIsbn13 += (digitos % 2 == 0 ? 1 : 3) * valor;
+            digitos++;
+        }
+        if (digitos == 10) {
+            return sumaIsbn10 % 11 == 0;
+        }
+        return digitos == 13 && sumaIsbn13 % 10 == 0;
+    }
+
+    /**
+     * Comprueba un ISSN con el formato NNNN-NNNC, incluido su dígito de control C, que puede ser X.
+     * @param issn ISSN a comprobar.
+     * @return true si el ISSN es válido.
+     */
+    public static boolean esISSN(String issn) {
+        if (issn == null || issn.length() != 9 || issn.charAt(4) != '-') {
+            return false;
+        }
+        int suma = 0;
+        int peso = 8;
+        for (int i = 0; i < 8; i++) {
+            char c = issn.charAt(i < 4 ? i : i + 1);
+            int valor;
+            if (c >= '0' && c <= '9') {
+                valor = c - '0';
+            } else if ((c == 'X' || c == 'x') && i == 7) {
+                valor = 10;
+            } else {
+                return false;
+            }
+            suma += peso * valor;
+            peso--;
+        }
+        return suma % 11 == 0;
+    }
+}
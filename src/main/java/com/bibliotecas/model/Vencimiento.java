@@ -0,0 +1,13 @@
+package com.bibliotecas.model;
+
+import java.time.LocalDate;
+
+/**
+ * Préstamo activo junto con su fecha de devolución, tal como lo devuelven las consultas de vencimientos.
+ *
+ * @param idUsuario       ID del usuario que tiene la publicación.
+ * @param publicacion     Publicación prestada.
+ * @param fechaDevolucion Fecha límite de devolución.
+ */
+public record Vencimiento(int idUsuario, PublicacionPrestable publicacion, LocalDate fechaDevolucion) {
+}
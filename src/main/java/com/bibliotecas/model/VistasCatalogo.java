@@ -0,0 +1,136 @@
+package com.bibliotecas.model;
+
+import java.util.*;
+
+/**
+ * Vistas ordenadas por autor y por título de un catálogo adjunto, para recorrerlo por páginas en los mismos
+ * órdenes que las publicaciones en memoria. Cada vista es un array de posiciones del catálogo ordenadas por
+ * la clave de ordenación y después por ID, con una vista aparte para cada tipo, así que una página de un tipo
+ * no recorre las de los demás.
+ * <p>
+ * Las vistas se construyen la primera vez que se piden, leyendo los campos de todo el catálogo sin cargar
+ * las publicaciones; después solo se guardan las posiciones. Para localizar el inicio de una página se hace
+ * una bisección que lee los campos de O(log n) posiciones.
+ */
+final class VistasCatalogo {
+
+    private final OrigenCatalogo catalogo;
+    private volatile Vistas autor;
+    private volatile Vistas titulo;
+
+    /// Posiciones ordenadas de todo el catálogo y de cada tipo
+    private record Vistas(int[] todas, Map<Class<? extends Publicacion>, int[]> porTipo) {
+    }
+
+    VistasCatalogo(OrigenCatalogo catalogo) {
+        this.catalogo = catalogo;
+    }
+
+    /**
+     * Devuelve una página de publicaciones del catálogo empezando justo después de una publicación,
+     * que puede ser del catálogo o de la memoria.
+     * @param orden   Orden del recorrido.
+     * @param tipo    Clase de las publicaciones a incluir, o null para todas.
+     * @param despues Última publicación de la página anterior, o null para la primera página.
+     * @param tamanio Número máximo de publicaciones de la página.
+     * @return Las publicaciones de la página, cargadas del catálogo.
+     */
+    List<Publicacion> pagina(OrdenPublicaciones orden, Class<? extends Publicacion> tipo, Publicacion despues, int tamanio) {
+        Vistas vistas = vistas(orden);
+        int[] posiciones = vistas.porTipo().get(tipo);
+        boolean filtrar = false;
+        if (tipo == null) {
+            posiciones = vistas.todas();
+        } else if (posiciones == null) {
+            // Un supertipo, como PublicacionPrestable, reúne varios tipos: se filtra la vista completa
+            posiciones = vistas.todas();
+            filtrar = true;
+        }
+        int inicio = despues == null ? 0 : primeraDespues(posiciones, orden, despues);
+        List<Publicacion> resultado = new ArrayList<>(Math.max(0, Math.min(tamanio, 1024)));
+        for (int i = inicio; i < posiciones.length && resultado.size() < tamanio; i++) {
+            if (!filtrar || tipo.isAssignableFrom(catalogo.tipo(posiciones[i]))) {
+                resultado.add(catalogo.cargar(posiciones[i]));
+            }
+        }
+        return resultado;
+    }
+
+    /// Primer índice de la vista cuya publicación va después de la indicada, por bisección
+    private int primeraDespues(int[] posiciones, OrdenPublicaciones orden, Publicacion despues) {
+        byte[] claveDespues = despues.claveOrdenacion(orden);
+        int bajo = 0;
+        int alto = posiciones.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            CamposPublicacion campos = catalogo.campos(posiciones[medio]);
+            int comparacion = Arrays.compareUnsigned(clave(campos, orden), claveDespues);
+            if (comparacion == 0) {
+                comparacion = Long.compare(campos.id(), despues.getId());
+            }
+            if (comparacion <= 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private Vistas vistas(OrdenPublicaciones orden) {
+        Vistas vistas = orden == OrdenPublicaciones.AUTOR ? autor : titulo;
+        if (vistas == null) {
+            synchronized (this) {
+                vistas = orden == OrdenPublicaciones.AUTOR ? autor : titulo;
+                if (vistas == null) {
+                    vistas = construir(orden);
+                    if (orden == OrdenPublicaciones.AUTOR) {
+                        autor = vistas;
+                    } else {
+                        titulo = vistas;
+                    }
+                }
+            }
+        }
+        return vistas;
+    }
+
+    /// Ordena todas las posiciones del catálogo por clave e ID y las reparte por tipo conservando el orden
+    private Vistas construir(OrdenPublicaciones orden) {
+        record Entrada(byte[] clave, long id, int posicion, Class<? extends Publicacion> tipo) {
+        }
+        Entrada[] entradas = new Entrada[catalogo.tamanio()];
+        for (int i = 0; i < entradas.length; i++) {
+            CamposPublicacion campos = catalogo.campos(i);
+            entradas[i] = new Entrada(clave(campos, orden), campos.id(), i, campos.tipo());
+        }
+        Arrays.sort(entradas, (a, b) -> {
+            int comparacion = Arrays.compareUnsigned(a.clave(), b.clave());
+            return comparacion != 0 ? comparacion : Long.compare(a.id(), b.id());
+        });
+
+        int[] todas = new int[entradas.length];
+        Map<Class<? extends Publicacion>, int[]> porTipo = new HashMap<>();
+        Map<Class<? extends Publicacion>, Integer> ocupadas = new HashMap<>();
+        for (Entrada entrada : entradas) {
+            ocupadas.merge(entrada.tipo(), 1, Integer::sum);
+        }
+        for (Map.Entry<Class<? extends Publicacion>, Integer> tipo : ocupadas.entrySet()) {
+            porTipo.put(tipo.getKey(), new int[tipo.getValue()]);
+            tipo.setValue(0);
+        }
+        for (int i = 0; i < entradas.length; i++) {
+            todas[i] = entradas[i].posicion();
+            int siguiente = ocupadas.merge(entradas[i].tipo(), 1, Integer::sum);
+            porTipo.get(entradas[i].tipo())[siguiente - 1] = entradas[i].posicion();
+        }
+        for (Class<? extends Publicacion> tipo : List.of(Libro.class, Revista.class, Audiolibro.class)) {
+            porTipo.putIfAbsent(tipo, new int[0]);
+        }
+        return new Vistas(todas, porTipo);
+    }
+
+    private static byte[] clave(CamposPublicacion campos, OrdenPublicaciones orden) {
+        return Publicacion.claveOrdenacion(orden == OrdenPublicaciones.AUTOR ? campos.autor() : campos.titulo());
+    }
+}
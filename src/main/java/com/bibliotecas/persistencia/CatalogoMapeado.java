@@ -0,0 +1,487 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.*;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.bibliotecas.persistencia.FormatoCatalogo.*;
+
+/**
+ * Catálogo guardado en disco y leído a través de un fichero mapeado en memoria.
+ * Abrirlo solo lee la cabecera; cada publicación se crea la primera vez que se consulta,
+ * sin volver a pasar por las validaciones, y se guarda con una referencia débil: mientras alguien
+ * la use se devuelve el mismo objeto, y cuando nadie la usa el recolector la libera, de modo que
+ * recorrer el catálogo no lo deja entero en memoria. La biblioteca retiene las publicaciones prestadas.
+ * Los registros están ordenados por título normalizado, así que las búsquedas por título,
+ * prefijo o rango se resuelven con búsqueda binaria sobre el fichero; las búsquedas por ID,
+ * ISBN o ISSN construyen en la primera consulta un índice ordenado de claves primitivas.
+ */
+public class CatalogoMapeado implements OrigenCatalogo, AutoCloseable {
+
+    // Número de registros de cada segmento mapeado, para no superar el límite de 2 GB de un ByteBuffer
+    private static final int REGISTROS_POR_SEGMENTO = (1 << 30) / TAMANIO_REGISTRO;
+    // Cifras de un ISBN-13, el código más largo; con la cifra del tipo delante, 11^14 cabe en un long
+    private static final int MAXIMO_CIFRAS_CODIGO = 13;
+    private static final long SIN_CLAVE = -1;
+
+    private static final Revista.Mes[] MESES = Revista.Mes.values();
+    private static final Revista.CategoriaRevista[] CATEGORIAS = Revista.CategoriaRevista.values();
+    private static final Audiolibro.FormatoAudio[] FORMATOS = Audiolibro.FormatoAudio.values();
+
+    private final FileChannel canal;
+    private final MappedByteBuffer[] registros;
+    private final MappedByteBuffer pool;
+    private final int tamanio;
+    private final Map<Integer, Cargada> cargadas;
+    private final ReferenceQueue<Publicacion> liberadas; // Referencias de cargadas cuya publicación ya no se usa
+    private volatile IndiceOrdenado indicePorId;     // Se construye en la primera búsqueda por ID
+    private volatile IndiceOrdenado indicePorCodigo; // Se construye en la primera búsqueda por ISBN o ISSN
+
+    /**
+     * Claves ordenadas, con la posición de cada una en el array paralelo.
+     */
+    private record IndiceOrdenado(long[] claves, int[] posiciones) {
+    }
+
+    /**
+     * Referencia débil a una publicación cargada, con su posición para quitarla de cargadas cuando se libera.
+     */
+    private static final class Cargada extends WeakReference<Publicacion> {
+        final int posicion;
+
+        Cargada(Publicacion publicacion, int posicion, ReferenceQueue<Publicacion> cola) {
+            super(publicacion, cola);
+            this.posicion = posicion;
+        }
+    }
+
+    private CatalogoMapeado(FileChannel canal, MappedByteBuffer[] registros, MappedByteBuffer pool, int tamanio) {
+        this.canal = canal;
+        this.registros = registros;
+        this.pool = pool;
+        this.tamanio = tamanio;
+        this.cargadas = new ConcurrentHashMap<>();
+        this.liberadas = new ReferenceQueue<>();
+    }
+
+    /**
+     * Abre un catálogo escrito con EscritorCatalogo.
+     * @param fichero Fichero del catálogo.
+     * @return El catálogo abierto.
+     * @throws IOException Si el fichero no se puede leer o no tiene el formato esperado.
+     */
+    public static CatalogoMapeado abrir(Path fichero) throws IOException {
+        FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ);
+        try {
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANIO_CABECERA);
+            canal.read(cabecera, 0);
+            cabecera.flip();
+            if (cabecera.remaining() < TAMANIO_CABECERA || cabecera.getInt() != MAGIC) {
+                throw new IOException("El fichero " + fichero + " no es un catálogo.");
+            }
+            int version = cabecera.getInt();
+            if (version != VERSION) {
+                throw new IOException("Versión de catálogo no soportada: " + version);
+            }
+            int tamanio = cabecera.getInt();
+            cabecera.getInt();
+            long idMaximo = cabecera.getLong();
+            long offsetPool = cabecera.getLong();
+            long tamanioPool = cabecera.getLong();
+
+            int segmentos = (tamanio + REGISTROS_POR_SEGMENTO - 1) / REGISTROS_POR_SEGMENTO;
+            MappedByteBuffer[] registros = new MappedByteBuffer[segmentos];
+            for (int i = 0; i < segmentos; i++) {
+                int enSegmento = Math.min(REGISTROS_POR_SEGMENTO, tamanio - i * REGISTROS_POR_SEGMENTO);
+                long inicio = TAMANIO_CABECERA + (long) i * REGISTROS_POR_SEGMENTO * TAMANIO_REGISTRO;
+                registros[i] = canal.map(FileChannel.MapMode.READ_ONLY, inicio, (long) enSegmento * TAMANIO_REGISTRO);
+            }
+            MappedByteBuffer pool = canal.map(FileChannel.MapMode.READ_ONLY, offsetPool, tamanioPool);
+
+            FabricaPublicaciones.reservarIdsHasta(idMaximo);
+            return new CatalogoMapeado(canal, registros, pool, tamanio);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int tamanio() {
+        return tamanio;
+    }
+
+    @Override
+    public Class<? extends Publicacion> tipo(int posicion) {
+        return switch (segmento(posicion).get(desplazamiento(posicion) + POS_TIPO)) {
+            case TIPO_LIBRO -> Libro.class;
+            case TIPO_REVISTA -> Revista.class;
+            case TIPO_AUDIOLIBRO -> Audiolibro.class;
+            default -> throw new IllegalStateException("Registro corrupto en la posición " + posicion);
+        };
+    }
+
+    @Override
+    public CamposPublicacion campos(int posicion) {
+        comprobarPosicion(posicion);
+        ByteBuffer datos = segmento(posicion);
+        int base = desplazamiento(posicion);
+        long id = datos.getLong(base + POS_ID);
+        int anio = datos.getInt(base + POS_ANIO);
+        String titulo = cadena(datos.getInt(base + POS_TITULO));
+        String autor = cadena(datos.getInt(base + POS_AUTOR));
+        return switch (datos.get(base + POS_TIPO)) {
+            case TIPO_LIBRO -> new CamposPublicacion(Libro.class, id, titulo, autor, anio,
+                    datos.getInt(base + POS_NUMERO), null, null, null, 0);
+            case TIPO_REVISTA -> new CamposPublicacion(Revista.class, id, titulo, autor, anio,
+                    0, CATEGORIAS[datos.get(base + POS_ENUM2)], null, null, 0);
+            case TIPO_AUDIOLIBRO -> new CamposPublicacion(Audiolibro.class, id, titulo, autor, anio,
+                    0, null, cadena(datos.getInt(base + POS_TEXTO1)), cadena(datos.getInt(base + POS_TEXTO2)),
+                    datos.getDouble(base + POS_DURACION));
+            default -> throw new IllegalStateException("Registro corrupto en la posición " + posicion);
+        };
+    }
+
+    @Override
+    public Publicacion cargar(int posicion) {
+        comprobarPosicion(posicion);
+        Cargada cargada = cargadas.get(posicion);
+        Publicacion publicacion = cargada == null ? null : cargada.get();
+        if (publicacion != null) {
+            return publicacion;
+        }
+        purgar();
+        // La publicación se guarda en una variable local para que no se libere antes de devolverla
+        Publicacion[] resultado = new Publicacion[1];
+        cargadas.compute(posicion, (clave, actual) -> {
+            Publicacion existente = actual == null ? null : actual.get();
+            if (existente != null) {
+                resultado[0] = existente;
+                return actual;
+            }
+            resultado[0] = materializar(clave);
+            return new Cargada(resultado[0], clave, liberadas);
+        });
+        return resultado[0];
+    }
+
+    /// Quita de cargadas las referencias cuyas publicaciones ha liberado el recolector
+    private void purgar() {
+        for (Object liberada; (liberada = liberadas.poll()) != null; ) {
+            Cargada cargada = (Cargada) liberada;
+            cargadas.remove(cargada.posicion, cargada);
+        }
+    }
+
+    private void comprobarPosicion(int posicion) {
+        if (posicion < 0 || posicion >= tamanio) {
+            throw new IndexOutOfBoundsException(posicion);
+        }
+    }
+
+    /**
+     * Busca una publicación por su identificador. La primera llamada recorre los registros
+     * una vez para construir un índice ordenado por ID; las siguientes hacen búsqueda binaria.
+     */
+    @Override
+    public Publicacion buscarPorId(long id) {
+        IndiceOrdenado indice = indicePorId();
+        int encontrado = Arrays.binarySearch(indice.claves(), id);
+        return encontrado >= 0 ? cargar(indice.posiciones()[encontrado]) : null;
+    }
+
+    private IndiceOrdenado indicePorId() {
+        IndiceOrdenado indice = indicePorId;
+        if (indice == null) {
+            synchronized (this) {
+                indice = indicePorId;
+                if (indice == null) {
+                    long[] ids = new long[tamanio];
+                    for (int i = 0; i < tamanio; i++) {
+                        ids[i] = segmento(i).getLong(desplazamiento(i) + POS_ID);
+                    }
+                    int[] posiciones = new int[tamanio];
+                    Arrays.setAll(posiciones, i -> i);
+                    indice = ordenar(ids, posiciones);
+                    indicePorId = indice;
+                }
+            }
+        }
+        return indice;
+    }
+
+    @Override
+    public List<Libro> buscarPorISBN(String ISBN) {
+        List<Libro> resultado = new ArrayList<>(1);
+        for (Publicacion publicacion : buscarPorCodigo(TIPO_LIBRO, ISBN)) {
+            resultado.add((Libro) publicacion);
+        }
+        return resultado;
+    }
+
+    @Override
+    public List<Revista> buscarPorISSN(String ISSN) {
+        List<Revista> resultado = new ArrayList<>(1);
+        for (Publicacion publicacion : buscarPorCodigo(TIPO_REVISTA, ISSN)) {
+            resultado.add((Revista) publicacion);
+        }
+        return resultado;
+    }
+
+    /// Publicaciones del tipo cuyo ISBN o ISSN coincide con el indicado, sin contar separadores
+    private List<Publicacion> buscarPorCodigo(byte tipo, String codigo) {
+        List<Publicacion> resultado = new ArrayList<>(1);
+        long clave = codigo == null ? SIN_CLAVE : claveCodigo(tipo, codigo);
+        if (clave == SIN_CLAVE) {
+            return resultado;
+        }
+        IndiceOrdenado indice = indicePorCodigo();
+        long[] claves = indice.claves();
+        int i = Arrays.binarySearch(claves, clave);
+        if (i < 0) {
+            return resultado;
+        }
+        while (i > 0 && claves[i - 1] == clave) {
+            i--;
+        }
+        for (; i < claves.length && claves[i] == clave; i++) {
+            resultado.add(cargar(indice.posiciones()[i]));
+        }
+        return resultado;
+    }
+
+    private IndiceOrdenado indicePorCodigo() {
+        IndiceOrdenado indice = indicePorCodigo;
+        if (indice == null) {
+            synchronized (this) {
+                indice = indicePorCodigo;
+                if (indice == null) {
+                    long[] claves = new long[tamanio];
+                    int[] posiciones = new int[tamanio];
+                    int n = 0;
+                    for (int i = 0; i < tamanio; i++) {
+                        ByteBuffer datos = segmento(i);
+                        int base = desplazamiento(i);
+                        byte tipo = datos.get(base + POS_TIPO);
+                        if (tipo == TIPO_LIBRO || tipo == TIPO_REVISTA) {
+                            long clave = claveCodigo(tipo, datos.getInt(base + POS_TEXTO1));
+                            if (clave != SIN_CLAVE) {
+                                claves[n] = clave;
+                                posiciones[n++] = i;
+                            }
+                        }
+                    }
+                    indice = ordenar(Arrays.copyOf(claves, n), Arrays.copyOf(posiciones, n));
+                    indicePorCodigo = indice;
+                }
+            }
+        }
+        return indice;
+    }
+
+    /**
+     * Ordena unas claves junto con la posición del registro del que sale cada una.
+     * Cada clave ocupa el primer hueco libre entre las iguales de una copia ordenada; las claves
+     * repetidas, como el ISBN de varios ejemplares, son pocas, así que encontrar ese hueco cuesta poco.
+     * @param claves Claves sin ordenar.
+     * @param posiciones Posición del registro de cada clave.
+     */
+    private static IndiceOrdenado ordenar(long[] claves, int[] posiciones) {
+        boolean ordenadas = true;
+        for (int i = 1; i < claves.length && ordenadas; i++) {
+            ordenadas = claves[i - 1] <= claves[i];
+        }
+        if (ordenadas) {
+            return new IndiceOrdenado(claves, posiciones);
+        }
+        long[] ordenadasClaves = claves.clone();
+        Arrays.sort(ordenadasClaves);
+        int[] ordenadasPosiciones = new int[claves.length];
+        boolean[] ocupados = new boolean[claves.length];
+        for (int i = 0; i < claves.length; i++) {
+            int hueco = Arrays.binarySearch(ordenadasClaves, claves[i]);
+            while (hueco > 0 && ordenadasClaves[hueco - 1] == claves[i]) {
+                hueco--;
+            }
+            while (ocupados[hueco]) {
+                hueco++;
+            }
+            ocupados[hueco] = true;
+            ordenadasPosiciones[hueco] = posiciones[i];
+        }
+        return new IndiceOrdenado(ordenadasClaves, ordenadasPosiciones);
+    }
+
+    /**
+     * Convierte un ISBN o ISSN en una clave numérica, sin contar guiones ni espacios: cada carácter es un
+     * dígito en base 11, con la X del dígito de control como 10, detrás del tipo, que hace de cifra inicial
+     * y distingue también la longitud. Un ISBN-13 cabe de sobra en un long.
+     * @return La clave, o SIN_CLAVE si el código tiene otros caracteres o más de 13 cifras.
+     */
+    private static long claveCodigo(byte tipo, String codigo) {
+        long clave = tipo;
+        int cifras = 0;
+        for (int i = 0; i < codigo.length(); i++) {
+            char c = codigo.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            int valor = cifra(c);
+            if (valor < 0 || ++cifras > MAXIMO_CIFRAS_CODIGO) {
+                return SIN_CLAVE;
+            }
+            clave = clave * 11 + valor;
+        }
+        return clave;
+    }
+
+    /// Lo mismo que claveCodigo, leyendo el código del pool sin crear la cadena
+    private long claveCodigo(byte tipo, int offset) {
+        if (offset == SIN_TEXTO) {
+            return SIN_CLAVE;
+        }
+        long clave = tipo;
+        int cifras = 0;
+        int longitud = pool.getInt(offset);
+        for (int i = 0; i < longitud; i++) {
+            char c = (char) (pool.get(offset + 4 + i) & 0xFF);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            int valor = cifra(c);
+            if (valor < 0 || ++cifras > MAXIMO_CIFRAS_CODIGO) {
+                return SIN_CLAVE;
+            }
+            clave = clave * 11 + valor;
+        }
+        return clave;
+    }
+
+    private static int cifra(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        return c == 'X' || c == 'x' ? 10 : -1;
+    }
+
+    @Override
+    public List<Publicacion> buscarPorTitulo(String titulo) {
+        byte[] clave = normalizar(titulo).getBytes(StandardCharsets.UTF_8);
+        List<Publicacion> resultado = new ArrayList<>(1);
+        for (int i = primeraPosicionNoMenor(clave); i < tamanio && compararClave(i, clave, false) == 0; i++) {
+            resultado.add(cargar(i));
+        }
+        return resultado;
+    }
+
+    @Override
+    public List<Publicacion> buscarPorRango(String desde, String hasta) {
+        byte[] inicio = normalizar(desde).getBytes(StandardCharsets.UTF_8);
+        List<Publicacion> resultado = new ArrayList<>();
+        if (hasta == null) {
+            for (int i = primeraPosicionNoMenor(inicio); i < tamanio && compararClave(i, inicio, true) == 0; i++) {
+                resultado.add(cargar(i));
+            }
+        } else {
+            int fin = primeraPosicionNoMenor(normalizar(hasta).getBytes(StandardCharsets.UTF_8));
+            for (int i = primeraPosicionNoMenor(inicio); i < fin; i++) {
+                resultado.add(cargar(i));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Cierra el fichero. Las publicaciones ya cargadas siguen siendo válidas.
+     */
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private ByteBuffer segmento(int posicion) {
+        return registros[posicion / REGISTROS_POR_SEGMENTO];
+    }
+
+    private static int desplazamiento(int posicion) {
+        return (posicion % REGISTROS_POR_SEGMENTO) * TAMANIO_REGISTRO;
+    }
+
+    /// Búsqueda binaria de la primera posición cuya clave es mayor o igual que la indicada
+    private int primeraPosicionNoMenor(byte[] clave) {
+        int bajo = 0;
+        int alto = tamanio;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (compararClave(medio, clave, false) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Compara la clave de un registro con la indicada, byte a byte y sin signo, sin crear objetos.
+     * Si comoPrefijo es true, devuelve 0 cuando la clave del registro empieza por la indicada.
+     */
+    private int compararClave(int posicion, byte[] clave, boolean comoPrefijo) {
+        int offset = segmento(posicion).getInt(desplazamiento(posicion) + POS_CLAVE);
+        int longitud = pool.getInt(offset);
+        int comun = Math.min(longitud, clave.length);
+        for (int i = 0; i < comun; i++) {
+            int c = Integer.compare(pool.get(offset + 4 + i) & 0xFF, clave[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        if (comoPrefijo && longitud >= clave.length) {
+            return 0;
+        }
+        return Integer.compare(longitud, clave.length);
+    }
+
+    private String cadena(int offset) {
+        if (offset == SIN_TEXTO) {
+            return null;
+        }
+        byte[] contenido = new byte[pool.getInt(offset)];
+        pool.get(offset + 4, contenido);
+        return new String(contenido, StandardCharsets.UTF_8);
+    }
+
+    private Publicacion materializar(int posicion) {
+        ByteBuffer datos = segmento(posicion);
+        int base = desplazamiento(posicion);
+        long id = datos.getLong(base + POS_ID);
+        int anio = datos.getInt(base + POS_ANIO);
+        String titulo = cadena(datos.getInt(base + POS_TITULO));
+        String autor = cadena(datos.getInt(base + POS_AUTOR));
+        String texto1 = cadena(datos.getInt(base + POS_TEXTO1));
+        int numero = datos.getInt(base + POS_NUMERO);
+        return switch (datos.get(base + POS_TIPO)) {
+            case TIPO_LIBRO -> FabricaPublicaciones.restaurarLibro(id, titulo, autor, texto1, anio, numero);
+            case TIPO_REVISTA -> FabricaPublicaciones.restaurarRevista(id, titulo, autor, anio, texto1, numero,
+                    MESES[datos.get(base + POS_ENUM1)],
+                    CATEGORIAS[datos.get(base + POS_ENUM2)]);
+            case TIPO_AUDIOLIBRO -> FabricaPublicaciones.restaurarAudiolibro(id, titulo, autor, anio, texto1,
+                    datos.getDouble(base + POS_DURACION), cadena(datos.getInt(base + POS_TEXTO2)),
+                    FORMATOS[datos.get(base + POS_ENUM1)]);
+            default -> throw new IllegalStateException("Registro corrupto en la posición " + posicion);
+        };
+    }
+}
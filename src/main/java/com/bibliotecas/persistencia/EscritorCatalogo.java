@@ -0,0 +1,155 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static com.bibliotecas.persistencia.FormatoCatalogo.*;
+
+/**
+ * Escribe un catálogo en el formato binario que lee CatalogoMapeado.
+ */
+public final class EscritorCatalogo {
+
+    private EscritorCatalogo() {
+    }
+
+    /**
+     * Entrada pendiente de escribir junto con su clave de ordenación.
+     */
+    private record Entrada(String clave, byte[] bytesClave, Publicacion publicacion) {
+    }
+
+    /**
+     * Escribe las publicaciones en un fichero nuevo y lo mueve sobre el destino al terminar,
+     * de modo que un catálogo abierto sobre el destino sigue siendo válido mientras tanto.
+     *
+     * @param destino Fichero de catálogo.
+     * @param publicaciones Publicaciones a guardar. Solo se admiten libros, revistas y audiolibros.
+     * @throws IOException Si falla la escritura.
+     */
+    public static void escribir(Path destino, Collection<? extends Publicacion> publicaciones) throws IOException {
+        Entrada[] entradas = new Entrada[publicaciones.size()];
+        int n = 0;
+        long idMaximo = 0;
+        for (Publicacion p : publicaciones) {
+            String clave = normalizar(p.getTitulo());
+            entradas[n++] = new Entrada(clave, clave.getBytes(StandardCharsets.UTF_8), p);
+            idMaximo = Math.max(idMaximo, p.getId());
+        }
+        Arrays.sort(entradas, (a, b) -> {
+            int c = Arrays.compareUnsigned(a.bytesClave(), b.bytesClave());
+            return c != 0 ? c : Long.compare(a.publicacion().getId(), b.publicacion().getId());
+        });
+
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        PoolCadenas pool = new PoolCadenas();
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offsetPool = TAMANIO_CABECERA + (long) TAMANIO_REGISTRO * n;
+            canal.position(TAMANIO_CABECERA);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANIO_REGISTRO * 1024);
+            for (Entrada entrada : entradas) {
+                if (buffer.remaining() < TAMANIO_REGISTRO) {
+                    vaciar(buffer, canal);
+                }
+                escribirRegistro(buffer, entrada, pool);
+            }
+            vaciar(buffer, canal);
+            pool.escribir(canal);
+
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANIO_CABECERA);
+            cabecera.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0).putLong(idMaximo)
+                    .putLong(offsetPool).putLong(pool.tamanio()).flip();
+            canal.write(cabecera, 0);
+            canal.force(true);
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void escribirRegistro(ByteBuffer buffer, Entrada entrada, PoolCadenas pool) {
+        Publicacion p = entrada.publicacion();
+        int inicio = buffer.position();
+        for (int i = 0; i < TAMANIO_REGISTRO; i += Long.BYTES) {
+            buffer.putLong(0L);
+        }
+        buffer.putLong(inicio + POS_ID, p.getId());
+        buffer.putInt(inicio + POS_ANIO, p.getAnioPublicacion());
+        buffer.putInt(inicio + POS_TITULO, pool.agregar(p.getTitulo()));
+        buffer.putInt(inicio + POS_CLAVE, pool.agregar(entrada.clave()));
+        buffer.putInt(inicio + POS_AUTOR, pool.agregar(p.getAutor()));
+        buffer.putInt(inicio + POS_TEXTO2, SIN_TEXTO);
+        if (p instanceof Libro libro) {
+            buffer.put(inicio + POS_TIPO, TIPO_LIBRO);
+            buffer.putInt(inicio + POS_TEXTO1, pool.agregar(libro.getISBN()));
+            buffer.putInt(inicio + POS_NUMERO, libro.getNumPaginas());
+        } else if (p instanceof Revista revista) {
+            buffer.put(inicio + POS_TIPO, TIPO_REVISTA);
+            buffer.put(inicio + POS_ENUM1, (byte) revista.getMesPublicacion().ordinal());
+            buffer.put(inicio + POS_ENUM2, (byte) revista.getCategoria().ordinal());
+            buffer.putInt(inicio + POS_TEXTO1, pool.agregar(revista.getISSN()));
+            buffer.putInt(inicio + POS_NUMERO, revista.getNumEdicion());
+        } else if (p instanceof Audiolibro audiolibro) {
+            buffer.put(inicio + POS_TIPO, TIPO_AUDIOLIBRO);
+            buffer.put(inicio + POS_ENUM1, (byte) audiolibro.getFormatoAudio().ordinal());
+            buffer.putInt(inicio + POS_TEXTO1, pool.agregar(audiolibro.getNarrador()));
+            buffer.putInt(inicio + POS_TEXTO2, pool.agregar(audiolibro.getIdioma()));
+            buffer.putDouble(inicio + POS_DURACION, audiolibro.getDuracion());
+        } else {
+            throw new IllegalArgumentException("Tipo de publicación no soportado: " + p.getClass().getSimpleName());
+        }
+    }
+
+    private static void vaciar(ByteBuffer buffer, FileChannel canal) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Pool de cadenas en memoria; cada cadena distinta se guarda una sola vez.
+     */
+    private static final class PoolCadenas {
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+
+        int agregar(String texto) {
+            Integer existente = offsets.get(texto);
+            if (existente != null) {
+                return existente;
+            }
+            byte[] contenido = texto.getBytes(StandardCharsets.UTF_8);
+            int offset = bytes.size();
+            if ((long) offset + 4 + contenido.length > Integer.MAX_VALUE) {
+                throw new IllegalStateException("El pool de cadenas supera los 2 GB.");
+            }
+            int longitud = contenido.length;
+            bytes.write(longitud >>> 24);
+            bytes.write(longitud >>> 16);
+            bytes.write(longitud >>> 8);
+            bytes.write(longitud);
+            bytes.write(contenido, 0, longitud);
+            offsets.put(texto, offset);
+            return offset;
+        }
+
+        long tamanio() {
+            return bytes.size();
+        }
+
+        void escribir(FileChannel canal) throws IOException {
+            ByteBuffer contenido = ByteBuffer.wrap(bytes.toByteArray());
+            while (contenido.hasRemaining()) {
+                canal.write(contenido);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.bibliotecas.persistencia;
+
+import java.util.Locale;
+
+/**
+ * Constantes del formato binario del catálogo.
+ *
+ * Cabecera (40 bytes): magic, versión, número de registros, un int sin usar, mayor ID (long),
+ * offset y tamaño del pool de cadenas.
+ * Registros (48 bytes cada uno), ordenados por título normalizado:
+ * <pre>
+ *  0 byte   tipo (1 libro, 2 revista, 3 audiolibro)
+ *  1 byte   mes de la revista / formato del audiolibro
+ *  2 byte   categoría de la revista
+ *  4 int    año de publicación
+ *  8 long   ID de la publicación
+ * 16 int    título (offset en el pool)
+ * 20 int    título normalizado (offset en el pool)
+ * 24 int    autor (offset en el pool)
+ * 28 int    ISBN / ISSN / narrador (offset en el pool)
+ * 32 int    idioma del audiolibro (offset en el pool)
+ * 36 int    número de páginas / número de edición
+ * 40 double duración del audiolibro
+ * </pre>
+ * Pool de cadenas: cada cadena se guarda una sola vez como un int con su longitud seguido de sus bytes UTF-8.
+ */
+final class FormatoCatalogo {
+
+    static final int MAGIC = 0x47424354; // "GBCT"
+    static final int VERSION = 1;
+    static final int TAMANIO_CABECERA = 40;
+    static final int TAMANIO_REGISTRO = 48;
+
+    static final byte TIPO_LIBRO = 1;
+    static final byte TIPO_REVISTA = 2;
+    static final byte TIPO_AUDIOLIBRO = 3;
+
+    static final int POS_TIPO = 0;
+    static final int POS_ENUM1 = 1;
+    static final int POS_ENUM2 = 2;
+    static final int POS_ANIO = 4;
+    static final int POS_ID = 8;
+    static final int POS_TITULO = 16;
+    static final int POS_CLAVE = 20;
+    static final int POS_AUTOR = 24;
+    static final int POS_TEXTO1 = 28;
+    static final int POS_TEXTO2 = 32;
+    static final int POS_NUMERO = 36;
+    static final int POS_DURACION = 40;
+
+    /// Referencia usada para los campos de texto que no tiene un tipo de publicación
+    static final int SIN_TEXTO = -1;
+
+    private FormatoCatalogo() {
+    }
+
+    /// Clave por la que se ordenan los registros; coincide con la normalización del índice de Biblioteca
+    static String normalizar(String titulo) {
+        return titulo.toLowerCase(Locale.ROOT);
+    }
+}
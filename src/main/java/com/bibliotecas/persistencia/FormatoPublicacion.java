@@ -0,0 +1,124 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codificación binaria de una publicación completa, compartida por el registro de operaciones y el flujo
+ * de replicación:
+ * <pre>
+ * byte tipo | long id | texto titulo | texto autor | int anio | campos del tipo
+ * </pre>
+ * Los textos se guardan como int longitud | UTF-8 y los enumerados por su ordinal, como en el catálogo.
+ * Campos de cada tipo: libro, texto ISBN | int páginas; revista, texto ISSN | int edición | byte mes |
+ * byte categoría; audiolibro, texto narrador | double duración | texto idioma | byte formato.
+ */
+public final class FormatoPublicacion {
+
+    private static final byte LIBRO = 1;
+    private static final byte REVISTA = 2;
+    private static final byte AUDIOLIBRO = 3;
+
+    private FormatoPublicacion() {
+    }
+
+    /**
+     * Calcula el espacio que ocupa la publicación codificada.
+     * @throws IllegalArgumentException Si el tipo de publicación no se puede codificar.
+     */
+    public static int tamanio(Publicacion publicacion) {
+        int comun = 1 + 8 + texto(publicacion.getTitulo()) + texto(publicacion.getAutor()) + 4;
+        if (publicacion instanceof Libro libro) {
+            return comun + texto(libro.getISBN()) + 4;
+        } else if (publicacion instanceof Revista revista) {
+            return comun + texto(revista.getISSN()) + 4 + 1 + 1;
+        } else if (publicacion instanceof Audiolibro audiolibro) {
+            return comun + texto(audiolibro.getNarrador()) + 8 + texto(audiolibro.getIdioma()) + 1;
+        }
+        throw new IllegalArgumentException("Tipo de publicación desconocido: " + publicacion.getClass().getName());
+    }
+
+    /**
+     * Escribe la publicación en la posición actual del buffer, que debe tener tamanio(publicacion) bytes libres.
+     * @throws IllegalArgumentException Si el tipo de publicación no se puede codificar.
+     */
+    public static void codificar(Publicacion publicacion, ByteBuffer destino) {
+        byte tipo;
+        if (publicacion instanceof Libro) {
+            tipo = LIBRO;
+        } else if (publicacion instanceof Revista) {
+            tipo = REVISTA;
+        } else if (publicacion instanceof Audiolibro) {
+            tipo = AUDIOLIBRO;
+        } else {
+            throw new IllegalArgumentException("Tipo de publicación desconocido: " + publicacion.getClass().getName());
+        }
+        destino.put(tipo).putLong(publicacion.getId());
+        escribirTexto(destino, publicacion.getTitulo());
+        escribirTexto(destino, publicacion.getAutor());
+        destino.putInt(publicacion.getAnioPublicacion());
+        if (publicacion instanceof Libro libro) {
+            escribirTexto(destino, libro.getISBN());
+            destino.putInt(libro.getNumPaginas());
+        } else if (publicacion instanceof Revista revista) {
+            escribirTexto(destino, revista.getISSN());
+            destino.putInt(revista.getNumEdicion())
+                    .put((byte) revista.getMesPublicacion().ordinal())
+                    .put((byte) revista.getCategoria().ordinal());
+        } else if (publicacion instanceof Audiolibro audiolibro) {
+            escribirTexto(destino, audiolibro.getNarrador());
+            destino.putDouble(audiolibro.getDuracion());
+            escribirTexto(destino, audiolibro.getIdioma());
+            destino.put((byte) audiolibro.getFormatoAudio().ordinal());
+        }
+    }
+
+    /**
+     * Lee una publicación desde la posición actual del buffer y la restaura con su ID.
+     * @throws IllegalArgumentException Si el tipo es desconocido.
+     * @throws RuntimeException Si el contenido está dañado, por ejemplo BufferUnderflowException.
+     */
+    public static Publicacion leer(ByteBuffer origen) {
+        byte tipo = origen.get();
+        long id = origen.getLong();
+        String titulo = leerTexto(origen);
+        String autor = leerTexto(origen);
+        int anio = origen.getInt();
+        return switch (tipo) {
+            case LIBRO -> {
+                String isbn = leerTexto(origen);
+                yield FabricaPublicaciones.restaurarLibro(id, titulo, autor, isbn, anio, origen.getInt());
+            }
+            case REVISTA -> {
+                String issn = leerTexto(origen);
+                yield FabricaPublicaciones.restaurarRevista(id, titulo, autor, anio, issn, origen.getInt(),
+                        Revista.Mes.values()[origen.get()], Revista.CategoriaRevista.values()[origen.get()]);
+            }
+            case AUDIOLIBRO -> {
+                String narrador = leerTexto(origen);
+                double duracion = origen.getDouble();
+                String idioma = leerTexto(origen);
+                yield FabricaPublicaciones.restaurarAudiolibro(id, titulo, autor, anio, narrador, duracion, idioma,
+                        Audiolibro.FormatoAudio.values()[origen.get()]);
+            }
+            default -> throw new IllegalArgumentException("Tipo de publicación desconocido: " + tipo);
+        };
+    }
+
+    private static int texto(String texto) {
+        return 4 + texto.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void escribirTexto(ByteBuffer destino, String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        destino.putInt(bytes.length).put(bytes);
+    }
+
+    private static String leerTexto(ByteBuffer origen) {
+        byte[] bytes = new byte[origen.getInt()];
+        origen.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Instantánea compactada del estado de una biblioteca: publicaciones en memoria, usuarios registrados
+ * y préstamos activos. Se guarda como la lista mínima de operaciones que reconstruye ese estado, precedida
+ * del número del primer segmento del registro que hay que reaplicar encima, y seguida de un CRC32C del contenido.
+ * La versión 1 no guardaba las publicaciones; se sigue leyendo.
+ */
+final class Instantanea {
+
+    private static final int MAGIC = 0x47425350; // "GBSP"
+    private static final int VERSION = 2;
+
+    /**
+     * Contenido leído de una instantánea.
+     */
+    record Contenido(long primerSegmento, List<Operacion> operaciones) {
+    }
+
+    private Instantanea() {
+    }
+
+    static void escribir(Path destino, long primerSegmento, Biblioteca biblioteca) throws IOException {
+        List<Operacion> operaciones = new ArrayList<>();
+        for (Publicacion publicacion : biblioteca.obtenerPublicacionesEnMemoria()) {
+            operaciones.add(Operacion.publicacion(publicacion));
+        }
+        List<Usuario> usuarios = biblioteca.obtenerUsuarios();
+        for (Usuario usuario : usuarios) {
+            operaciones.add(Operacion.usuario(usuario.getIdUsuario(), usuario.getNombre()));
+        }
+        for (Usuario usuario : usuarios) {
+            for (Publicacion publicacion : biblioteca.obtenerPrestamosActivos(usuario.getIdUsuario())) {
+                PublicacionPrestable prestable = (PublicacionPrestable) publicacion;
+                LocalDate fechaPrestamo = prestable.getFechaPrestamo();
+                LocalDate fechaDevolucion = prestable.getFechaDevolucion();
+                if (fechaPrestamo != null && fechaDevolucion != null) {
+                    operaciones.add(Operacion.prestamo(usuario.getIdUsuario(), prestable.getId(), fechaPrestamo, fechaDevolucion));
+                }
+            }
+        }
+
+        int tamanio = 4 + 4 + 8 + 4;
+        for (Operacion operacion : operaciones) {
+            tamanio += operacion.tamanioCodificado();
+        }
+        ByteBuffer contenido = ByteBuffer.allocate(tamanio + 4);
+        contenido.putInt(MAGIC).putInt(VERSION).putLong(primerSegmento).putInt(operaciones.size());
+        for (Operacion operacion : operaciones) {
+            operacion.codificar(contenido);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(contenido.array(), 0, contenido.position());
+        contenido.putInt((int) crc.getValue());
+        contenido.flip();
+
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contenido.hasRemaining()) {
+                canal.write(contenido);
+            }
+            canal.force(true);
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDirectorio(destino.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Fuerza a disco la entrada del directorio, para que el cambio de nombre sobreviva a una caída antes
+     * de que se borren los segmentos que la instantánea sustituye. En sistemas que no permiten abrir un
+     * directorio, como Windows, no se hace nada: allí el cambio de nombre ya es duradero.
+     */
+    private static void sincronizarDirectorio(Path directorio) throws IOException {
+        FileChannel canal;
+        try {
+            canal = FileChannel.open(directorio, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        try (canal) {
+            canal.force(true);
+        }
+    }
+
+    static Contenido leer(Path origen) throws IOException {
+        ByteBuffer contenido = ByteBuffer.wrap(Files.readAllBytes(origen));
+        if (contenido.remaining() < 24 || contenido.getInt() != MAGIC) {
+            throw new IOException("El fichero " + origen + " no es una instantánea válida.");
+        }
+        int version = contenido.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("El fichero " + origen + " no es una instantánea válida.");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(contenido.array(), 0, contenido.limit() - 4);
+        if ((int) crc.getValue() != contenido.getInt(contenido.limit() - 4)) {
+            throw new IOException("La instantánea " + origen + " está dañada.");
+        }
+        contenido.limit(contenido.limit() - 4);
+        long primerSegmento = contenido.getLong();
+        int numero = contenido.getInt();
+        List<Operacion> operaciones = new ArrayList<>(numero);
+        for (int i = 0; i < numero; i++) {
+            Operacion operacion = Operacion.decodificar(contenido);
+            if (operacion == null) {
+                throw new IOException("La instantánea " + origen + " está dañada.");
+            }
+            operaciones.add(operacion);
+        }
+        return new Contenido(primerSegmento, operaciones);
+    }
+}
@@ -0,0 +1,163 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.Publicacion;
+import com.bibliotecas.model.PublicacionPrestable;
+import com.bibliotecas.model.ResultadoDevolucion;
+import com.bibliotecas.model.ResultadoPrestamo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.CRC32C;
+
+/**
+ * Operación guardada en el registro de operaciones o enviada a las réplicas de una biblioteca.
+ * En disco cada operación ocupa una entrada con su longitud, un CRC32C del contenido y el contenido:
+ * <pre>
+ * int longitud | int crc | byte tipo | int idUsuario | datos del tipo
+ * </pre>
+ * El CRC permite detectar al recuperar una entrada que quedó a medio escribir.
+ * Las altas de publicaciones (PUBLICACION) llevan la publicación entera, codificada con FormatoPublicacion,
+ * para que los préstamos de las que solo están en memoria se puedan recuperar.
+ */
+public record Operacion(byte tipo, int idUsuario, long idPublicacion, long diaPrestamo, long diaDevolucion, String nombre,
+                        Publicacion publicacion) {
+
+    public static final byte USUARIO = 1;
+    public static final byte PRESTAMO = 2;
+    public static final byte DEVOLUCION = 3;
+    public static final byte PUBLICACION = 4;
+
+    static final int TAMANIO_CABECERA = 8;
+
+    public static Operacion usuario(int idUsuario, String nombre) {
+        return new Operacion(USUARIO, idUsuario, 0, 0, 0, nombre, null);
+    }
+
+    public static Operacion prestamo(int idUsuario, long idPublicacion, LocalDate fechaPrestamo, LocalDate fechaDevolucion) {
+        return new Operacion(PRESTAMO, idUsuario, idPublicacion, fechaPrestamo.toEpochDay(), fechaDevolucion.toEpochDay(), null, null);
+    }
+
+    public static Operacion devolucion(int idUsuario, long idPublicacion) {
+        return new Operacion(DEVOLUCION, idUsuario, idPublicacion, 0, 0, null, null);
+    }
+
+    public static Operacion publicacion(Publicacion publicacion) {
+        return new Operacion(PUBLICACION, 0, publicacion.getId(), 0, 0, null, publicacion);
+    }
+
+    /**
+     * Operación que hay que guardar para un evento de préstamo.
+     * @return La operación, o null si el préstamo no se realizó o la publicación ya se ha devuelto.
+     */
+    public static Operacion prestamo(int idUsuario, PublicacionPrestable publicacion, ResultadoPrestamo resultado) {
+        if (resultado != ResultadoPrestamo.PRESTADO) {
+            return null;
+        }
+        LocalDate fechaPrestamo = publicacion.getFechaPrestamo();
+        LocalDate fechaDevolucion = publicacion.getFechaDevolucion();
+        // Si las fechas ya no están, la publicación se ha devuelto entretanto y la devolución tampoco se aplicará
+        if (fechaPrestamo == null || fechaDevolucion == null) {
+            return null;
+        }
+        return prestamo(idUsuario, publicacion.getId(), fechaPrestamo, fechaDevolucion);
+    }
+
+    /**
+     * Operación que hay que guardar para un evento de devolución.
+     * @return La operación, o null si no se devolvió nada.
+     */
+    public static Operacion devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado) {
+        if (resultado == ResultadoDevolucion.DEVUELTO || resultado == ResultadoDevolucion.DEVUELTO_CON_RETRASO) {
+            return devolucion(idUsuario, publicacion.getId());
+        }
+        return null;
+    }
+
+    public LocalDate fechaPrestamo() {
+        return LocalDate.ofEpochDay(diaPrestamo);
+    }
+
+    public LocalDate fechaDevolucion() {
+        return LocalDate.ofEpochDay(diaDevolucion);
+    }
+
+    /**
+     * Calcula el espacio que ocupa la operación codificada, incluida la cabecera.
+     */
+    public int tamanioCodificado() {
+        return TAMANIO_CABECERA + switch (tipo) {
+            case USUARIO -> 1 + 4 + 4 + nombre.getBytes(StandardCharsets.UTF_8).length;
+            case PRESTAMO -> 1 + 4 + 8 + 8 + 8;
+            case PUBLICACION -> 1 + 4 + FormatoPublicacion.tamanio(publicacion);
+            default -> 1 + 4 + 8;
+        };
+    }
+
+    /**
+     * Escribe la operación en la posición actual del buffer, que debe tener espacio suficiente.
+     */
+    public void codificar(ByteBuffer destino) {
+        int inicio = destino.position();
+        destino.position(inicio + TAMANIO_CABECERA);
+        destino.put(tipo).putInt(idUsuario);
+        switch (tipo) {
+            case USUARIO -> {
+                byte[] bytes = nombre.getBytes(StandardCharsets.UTF_8);
+                destino.putInt(bytes.length).put(bytes);
+            }
+            case PRESTAMO -> destino.putLong(idPublicacion).putLong(diaPrestamo).putLong(diaDevolucion);
+            case PUBLICACION -> FormatoPublicacion.codificar(publicacion, destino);
+            default -> destino.putLong(idPublicacion);
+        }
+        int longitud = destino.position() - inicio - TAMANIO_CABECERA;
+        CRC32C crc = new CRC32C();
+        crc.update(destino.slice(inicio + TAMANIO_CABECERA, longitud));
+        destino.putInt(inicio, longitud);
+        destino.putInt(inicio + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Lee la siguiente operación del buffer.
+     * @return La operación, o null si lo que queda en el buffer es una entrada incompleta o corrupta.
+     *         En ese caso la posición del buffer no se modifica.
+     */
+    public static Operacion decodificar(ByteBuffer origen) {
+        int inicio = origen.position();
+        if (origen.remaining() < TAMANIO_CABECERA) {
+            return null;
+        }
+        int longitud = origen.getInt(inicio);
+        int crcEsperado = origen.getInt(inicio + 4);
+        if (longitud <= 0 || longitud > origen.remaining() - TAMANIO_CABECERA) {
+            return null;
+        }
+        ByteBuffer contenido = origen.slice(inicio + TAMANIO_CABECERA, longitud);
+        CRC32C crc = new CRC32C();
+        crc.update(contenido.duplicate());
+        if ((int) crc.getValue() != crcEsperado) {
+            return null;
+        }
+        try {
+            byte tipo = contenido.get();
+            int idUsuario = contenido.getInt();
+            Operacion operacion = switch (tipo) {
+                case USUARIO -> {
+                    byte[] bytes = new byte[contenido.getInt()];
+                    contenido.get(bytes);
+                    yield usuario(idUsuario, new String(bytes, StandardCharsets.UTF_8));
+                }
+                case PRESTAMO -> new Operacion(PRESTAMO, idUsuario, contenido.getLong(), contenido.getLong(), contenido.getLong(), null, null);
+                case DEVOLUCION -> devolucion(idUsuario, contenido.getLong());
+                case PUBLICACION -> publicacion(FormatoPublicacion.leer(contenido));
+                default -> null;
+            };
+            if (operacion != null) {
+                origen.position(inicio + TAMANIO_CABECERA + longitud);
+            }
+            return operacion;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
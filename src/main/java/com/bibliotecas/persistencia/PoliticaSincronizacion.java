@@ -0,0 +1,34 @@
+package com.bibliotecas.persistencia;
+
+/**
+ * Configuración de la escritura por lotes del registro de operaciones.
+ *
+ * @param intervaloMillis     Tiempo máximo que una operación espera a que se llene su lote antes de escribirse.
+ *                            Con 0, cada lote contiene lo que se haya acumulado mientras se escribía el anterior.
+ * @param maxOperaciones      Número de operaciones a partir del cual el lote se escribe sin esperar al intervalo.
+ * @param sincronizar         Si es true, cada lote se fuerza a disco (fsync) antes de confirmarse.
+ * @param esperarConfirmacion Si es true, la operación no termina hasta que su lote está confirmado;
+ *                            si es false, se confirma en segundo plano y una caída puede perder el último lote.
+ */
+public record PoliticaSincronizacion(long intervaloMillis, int maxOperaciones, boolean sincronizar, boolean esperarConfirmacion) {
+
+    public PoliticaSincronizacion {
+        if (intervaloMillis < 0 || maxOperaciones <= 0) {
+            throw new IllegalArgumentException("El intervalo no puede ser negativo y el lote debe admitir al menos una operación.");
+        }
+    }
+
+    /**
+     * Cada operación termina cuando está en disco; lotes de hasta 2 ms o 4096 operaciones.
+     */
+    public static PoliticaSincronizacion duradera() {
+        return new PoliticaSincronizacion(2, 4096, true, true);
+    }
+
+    /**
+     * Las operaciones no esperan al disco; se fuerza a disco cada 50 ms o 16384 operaciones.
+     */
+    public static PoliticaSincronizacion asincrona() {
+        return new PoliticaSincronizacion(50, 16384, true, false);
+    }
+}
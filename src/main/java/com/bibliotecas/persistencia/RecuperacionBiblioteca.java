@@ -0,0 +1,108 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reconstruye el estado de una biblioteca a partir de la última instantánea y de los segmentos
+ * del registro de operaciones posteriores a ella.
+ *
+ * Las operaciones se aplican de forma idempotente: registrar un usuario o añadir una publicación que ya
+ * existe, prestar una publicación que el usuario ya tiene o devolver una que no tiene no cambia nada. Una
+ * entrada incompleta al final de un segmento (una caída a mitad de escritura) se descarta y el segmento se trunca.
+ */
+public final class RecuperacionBiblioteca {
+
+    private RecuperacionBiblioteca() {
+    }
+
+    /**
+     * Recupera la biblioteca. Debe llamarse con el catálogo adjunto ya abierto, porque sus publicaciones
+     * no están en el registro, y antes de añadir oyentes, para que las operaciones reaplicadas no vuelvan
+     * a registrarse. Las publicaciones en memoria se recuperan del registro antes que sus préstamos.
+     *
+     * @param directorio Directorio del registro de operaciones.
+     * @param biblioteca Biblioteca sobre la que se aplican las operaciones.
+     * @return Número de operaciones leídas de la instantánea y del registro.
+     * @throws IOException Si la instantánea no se puede leer.
+     */
+    public static long recuperar(Path directorio, Biblioteca biblioteca) throws IOException {
+        long aplicadas = 0;
+        long primerSegmento = 0;
+        Path instantanea = directorio.resolve(RegistroOperaciones.FICHERO_INSTANTANEA);
+        if (Files.exists(instantanea)) {
+            Instantanea.Contenido contenido = Instantanea.leer(instantanea);
+            primerSegmento = contenido.primerSegmento();
+            for (Operacion operacion : contenido.operaciones()) {
+                aplicar(operacion, biblioteca);
+                aplicadas++;
+            }
+        }
+        for (long numero : RegistroOperaciones.segmentos(directorio)) {
+            if (numero >= primerSegmento) {
+                aplicadas += reaplicarSegmento(RegistroOperaciones.rutaSegmento(directorio, numero), biblioteca);
+            }
+        }
+        return aplicadas;
+    }
+
+    private static long reaplicarSegmento(Path fichero, Biblioteca biblioteca) throws IOException {
+        long aplicadas = 0;
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long tamanio = canal.size();
+            if (tamanio > Integer.MAX_VALUE) {
+                throw new IOException("El segmento " + fichero + " es demasiado grande.");
+            }
+            // Se lee en memoria en lugar de mapearlo para poder truncarlo después en cualquier sistema
+            ByteBuffer contenido = ByteBuffer.allocate((int) tamanio);
+            while (contenido.hasRemaining()) {
+                if (canal.read(contenido, contenido.position()) < 0) {
+                    break;
+                }
+            }
+            contenido.flip();
+            Operacion operacion;
+            while ((operacion = Operacion.decodificar(contenido)) != null) {
+                aplicar(operacion, biblioteca);
+                aplicadas++;
+            }
+            if (contenido.position() < tamanio) {
+                canal.truncate(contenido.position());
+            }
+        }
+        return aplicadas;
+    }
+
+    /**
+     * Aplica una operación a la biblioteca de forma idempotente. Lo usan también las réplicas
+     * para aplicar las operaciones que reciben del primario.
+     */
+    public static void aplicar(Operacion operacion, Biblioteca biblioteca) {
+        switch (operacion.tipo()) {
+            case Operacion.USUARIO -> biblioteca.registrarUsuario(operacion.idUsuario(), operacion.nombre());
+            case Operacion.PUBLICACION -> {
+                if (biblioteca.buscarPublicacionPorId(operacion.idPublicacion()) == null) {
+                    biblioteca.agregarPublicacion(operacion.publicacion());
+                }
+            }
+            case Operacion.PRESTAMO -> {
+                if (biblioteca.buscarPublicacionPorId(operacion.idPublicacion()) instanceof PublicacionPrestable prestable) {
+                    biblioteca.restaurarPrestamo(operacion.idUsuario(), prestable, operacion.fechaPrestamo(), operacion.fechaDevolucion());
+                }
+            }
+            case Operacion.DEVOLUCION -> {
+                if (biblioteca.buscarPublicacionPorId(operacion.idPublicacion()) instanceof PublicacionPrestable prestable) {
+                    biblioteca.restaurarDevolucion(operacion.idUsuario(), prestable);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Registro de operaciones de solo escritura al final (write-ahead log) para una biblioteca.
+ * Se añade como oyente y guarda los registros de usuarios, las altas de publicaciones en memoria, los préstamos
+ * y las devoluciones. Las publicaciones del catálogo adjunto no se guardan: ya están en su fichero.
+ *
+ * Las operaciones se codifican en un buffer compartido y un único hilo escritor las pasa al fichero
+ * por lotes, con un solo fsync por lote (group commit). El tamaño de los lotes y si las operaciones
+ * esperan a estar en disco se configuran con PoliticaSincronizacion.
+ *
+ * El registro se divide en segmentos numerados. crearInstantanea empieza un segmento nuevo, guarda el
+ * estado de la biblioteca y borra los segmentos anteriores; RecuperacionBiblioteca carga la instantánea
+ * y reaplica los segmentos posteriores.
+ */
+public class RegistroOperaciones implements OyenteBiblioteca, AutoCloseable {
+
+    static final String PREFIJO_SEGMENTO = "operaciones-";
+    static final String SUFIJO_SEGMENTO = ".log";
+    static final String FICHERO_INSTANTANEA = "instantanea.bin";
+
+    private final Path directorio;
+    private final PoliticaSincronizacion politica;
+    private final ReentrantLock bloqueo;
+    private final Condition hayTrabajo;
+    private final Condition confirmado;
+    private final Thread escritor;
+    private ScheduledExecutorService programador;
+
+    // Protegidos por bloqueo
+    private ByteBuffer pendiente;            // Operaciones codificadas que aún no se han escrito
+    private int operacionesPendientes;
+    private long inicioPendientesNanos;      // Momento en que entró la primera operación del lote
+    private long secuencia;                  // Número de la última operación aceptada
+    private long secuenciaConfirmada;        // Número de la última operación escrita (y sincronizada)
+    private CompletableFuture<Long> rotacionSolicitada;
+    private IOException error;
+    private boolean cerrado;
+
+    // Solo los usa el hilo escritor
+    private ByteBuffer enEscritura;
+    private FileChannel canal;
+    private long segmento;
+
+    private RegistroOperaciones(Path directorio, PoliticaSincronizacion politica, long segmento) throws IOException {
+        this.directorio = directorio;
+        this.politica = politica;
+        this.bloqueo = new ReentrantLock();
+        this.hayTrabajo = bloqueo.newCondition();
+        this.confirmado = bloqueo.newCondition();
+        this.pendiente = ByteBuffer.allocate(1 << 16);
+        this.enEscritura = ByteBuffer.allocate(1 << 16);
+        this.segmento = segmento;
+        this.canal = abrirSegmento(segmento);
+        this.escritor = new Thread(this::escribir, "registro-operaciones");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Abre el registro en un directorio. Siempre empieza un segmento nuevo, así que debe
+     * llamarse después de RecuperacionBiblioteca.recuperar sobre el mismo directorio.
+     *
+     * @param directorio Directorio del registro; se crea si no existe.
+     * @param politica Configuración de los lotes y de la sincronización con disco.
+     * @return El registro abierto.
+     * @throws IOException Si no se puede crear el segmento.
+     */
+    public static RegistroOperaciones abrir(Path directorio, PoliticaSincronizacion politica) throws IOException {
+        Files.createDirectories(directorio);
+        List<Long> existentes = segmentos(directorio);
+        long ultimo = existentes.isEmpty() ? 0 : existentes.get(existentes.size() - 1);
+        return new RegistroOperaciones(directorio, politica, ultimo + 1);
+    }
+
+    @Override
+    public void usuarioRegistrado(int idUsuario, String nombre) {
+        agregar(Operacion.usuario(idUsuario, nombre));
+    }
+
+    /**
+     * Guarda el alta sin esperar a que se confirme, porque se avisa con el bloqueo del catálogo y un fsync
+     * lo retendría. El registro es secuencial, así que un préstamo de la publicación, que sí espera, no
+     * se confirma antes que su alta.
+     */
+    @Override
+    public void publicacionAgregada(Publicacion publicacion) {
+        agregar(List.of(Operacion.publicacion(publicacion)), false);
+    }
+
+    @Override
+    public void prestamo(int idUsuario, PublicacionPrestable publicacion, ResultadoPrestamo resultado) {
+        Operacion operacion = Operacion.prestamo(idUsuario, publicacion, resultado);
+        if (operacion != null) {
+            agregar(operacion);
+        }
+    }
+
+    @Override
+    public void prestamos(int idUsuario, List<? extends PublicacionPrestable> publicaciones, List<ResultadoPrestamo> resultados) {
+        List<Operacion> operaciones = new ArrayList<>(publicaciones.size());
+        for (int i = 0; i < publicaciones.size(); i++) {
+            Operacion operacion = Operacion.prestamo(idUsuario, publicaciones.get(i), resultados.get(i));
+            if (operacion != null) {
+                operaciones.add(operacion);
+            }
+        }
+        agregarTodas(operaciones);
+    }
+
+    @Override
+    public void devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado) {
+        Operacion operacion = Operacion.devolucion(idUsuario, publicacion, resultado);
+        if (operacion != null) {
+            agregar(operacion);
+        }
+    }
+
+    @Override
+    public void devoluciones(List<Devolucion> devoluciones) {
+        List<Operacion> operaciones = new ArrayList<>(devoluciones.size());
+        for (Devolucion devolucion : devoluciones) {
+            Operacion operacion = Operacion.devolucion(devolucion.idUsuario(), devolucion.publicacion(), devolucion.resultado());
+            if (operacion != null) {
+                operaciones.add(operacion);
+            }
+        }
+        agregarTodas(operaciones);
+    }
+
+    /**
+     * Añade una operación al registro. Si la política lo indica, espera a que su lote esté confirmado.
+     * @param operacion Operación a guardar.
+     * @throws UncheckedIOException Si el registro está cerrado o ha fallado una escritura anterior.
+     */
+    public void agregar(Operacion operacion) {
+        agregarTodas(List.of(operacion));
+    }
+
+    /**
+     * Añade varias operaciones seguidas al registro, de modo que siempre acaban en el mismo lote y se
+     * confirman con una sola escritura. Si la política lo indica, espera a que ese lote esté confirmado.
+     * @param operaciones Operaciones a guardar, en orden.
+     * @throws UncheckedIOException Si el registro está cerrado o ha fallado una escritura anterior.
+     */
+    public void agregarTodas(List<Operacion> operaciones) {
+        agregar(operaciones, politica.esperarConfirmacion());
+    }
+
+    private void agregar(List<Operacion> operaciones, boolean esperar) {
+        if (operaciones.isEmpty()) {
+            return;
+        }
+        int tamanio = 0;
+        for (Operacion operacion : operaciones) {
+            tamanio += operacion.tamanioCodificado();
+        }
+        bloqueo.lock();
+        try {
+            comprobarEstado();
+            if (pendiente.remaining() < tamanio) {
+                ByteBuffer mayor = ByteBuffer.allocate(Math.max(pendiente.capacity() * 2, pendiente.position() + tamanio));
+                pendiente.flip();
+                mayor.put(pendiente);
+                pendiente = mayor;
+            }
+            for (Operacion operacion : operaciones) {
+                operacion.codificar(pendiente);
+            }
+            long numero = secuencia += operaciones.size();
+            boolean vacio = operacionesPendientes == 0;
+            operacionesPendientes += operaciones.size();
+            if (vacio) {
+                inicioPendientesNanos = System.nanoTime();
+                hayTrabajo.signal();
+            } else if (operacionesPendientes >= politica.maxOperaciones()) {
+                hayTrabajo.signal();
+            }
+            if (esperar) {
+                while (secuenciaConfirmada < numero && error == null) {
+                    confirmado.awaitUninterruptibly();
+                }
+                comprobarEstado();
+            }
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /**
+     * Escribe lo pendiente, cierra el segmento actual y empieza uno nuevo.
+     * Todas las operaciones aceptadas antes de la llamada quedan en segmentos anteriores al devuelto.
+     * @return El número del segmento nuevo.
+     * @throws IOException Si falla la escritura.
+     */
+    public long rotar() throws IOException {
+        CompletableFuture<Long> rotacion;
+        bloqueo.lock();
+        try {
+            comprobarEstado();
+            if (rotacionSolicitada == null) {
+                rotacionSolicitada = new CompletableFuture<>();
+                hayTrabajo.signal();
+            }
+            rotacion = rotacionSolicitada;
+        } finally {
+            bloqueo.unlock();
+        }
+        try {
+            return rotacion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido mientras se rotaba el registro.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("No se ha podido rotar el registro.", e.getCause());
+        }
+    }
+
+    /**
+     * Guarda una instantánea compactada de la biblioteca y borra los segmentos que ya no hacen falta.
+     * Las operaciones que lleguen mientras se guarda quedan en el segmento nuevo; reaplicarlas sobre
+     * la instantánea es seguro porque la recuperación ignora las que ya están aplicadas.
+     *
+     * @param biblioteca Biblioteca cuyo estado se guarda.
+     * @throws IOException Si falla la escritura.
+     */
+    public synchronized void crearInstantanea(Biblioteca biblioteca) throws IOException {
+        long primerSegmento = rotar();
+        Instantanea.escribir(directorio.resolve(FICHERO_INSTANTANEA), primerSegmento, biblioteca);
+        for (long numero : segmentos(directorio)) {
+            if (numero < primerSegmento) {
+                Files.deleteIfExists(rutaSegmento(directorio, numero));
+            }
+        }
+    }
+
+    /**
+     * Crea instantáneas periódicamente en un hilo en segundo plano hasta que se cierre el registro.
+     * @param biblioteca Biblioteca cuyo estado se guarda.
+     * @param periodo Tiempo entre instantáneas.
+     */
+    public synchronized void programarInstantaneas(Biblioteca biblioteca, Duration periodo) {
+        if (programador == null) {
+            programador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "instantaneas-biblioteca");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+        long millis = periodo.toMillis();
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                crearInstantanea(biblioteca);
+            } catch (IOException e) {
+                System.err.println("No se ha podido crear la instantánea: " + e.getMessage());
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Escribe las operaciones pendientes, detiene el hilo escritor y cierra el segmento actual.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (programador != null) {
+                programador.shutdownNow();
+            }
+        }
+        bloqueo.lock();
+        try {
+            cerrado = true;
+            hayTrabajo.signal();
+        } finally {
+            bloqueo.unlock();
+        }
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canal.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void comprobarEstado() {
+        if (error != null) {
+            throw new UncheckedIOException("El registro de operaciones ha fallado.", error);
+        }
+        if (cerrado) {
+            throw new IllegalStateException("El registro de operaciones está cerrado.");
+        }
+    }
+
+    /// El lote se escribe al llenarse, al cumplirse el intervalo, al pedir una rotación o al cerrar
+    private boolean loteListo(long ahora) {
+        return cerrado || rotacionSolicitada != null
+                || operacionesPendientes >= politica.maxOperaciones()
+                || (operacionesPendientes > 0 && ahora - inicioPendientesNanos >= TimeUnit.MILLISECONDS.toNanos(politica.intervaloMillis()));
+    }
+
+    /// Bucle del hilo escritor
+    private void escribir() {
+        while (true) {
+            ByteBuffer lote;
+            long hasta;
+            CompletableFuture<Long> rotacion;
+            bloqueo.lock();
+            try {
+                long ahora;
+                while (!loteListo(ahora = System.nanoTime())) {
+                    try {
+                        if (operacionesPendientes == 0) {
+                            hayTrabajo.await();
+                        } else {
+                            long plazo = inicioPendientesNanos + TimeUnit.MILLISECONDS.toNanos(politica.intervaloMillis());
+                            hayTrabajo.awaitNanos(plazo - ahora);
+                        }
+                    } catch (InterruptedException e) {
+                        // El hilo escritor solo termina al cerrar el registro
+                    }
+                }
+                if (cerrado && operacionesPendientes == 0 && rotacionSolicitada == null) {
+                    return;
+                }
+                lote = pendiente;
+                pendiente = enEscritura;
+                enEscritura = lote;
+                hasta = secuencia;
+                operacionesPendientes = 0;
+                rotacion = rotacionSolicitada;
+                rotacionSolicitada = null;
+            } finally {
+                bloqueo.unlock();
+            }
+
+            try {
+                lote.flip();
+                while (lote.hasRemaining()) {
+                    canal.write(lote);
+                }
+                lote.clear();
+                if (politica.sincronizar()) {
+                    canal.force(false);
+                }
+                if (rotacion != null) {
+                    canal.close();
+                    segmento++;
+                    canal = abrirSegmento(segmento);
+                }
+            } catch (IOException e) {
+                bloqueo.lock();
+                try {
+                    error = e;
+                    confirmado.signalAll();
+                } finally {
+                    bloqueo.unlock();
+                }
+                if (rotacion != null) {
+                    rotacion.completeExceptionally(e);
+                }
+                return;
+            }
+
+            bloqueo.lock();
+            try {
+                secuenciaConfirmada = hasta;
+                confirmado.signalAll();
+            } finally {
+                bloqueo.unlock();
+            }
+            if (rotacion != null) {
+                rotacion.complete(segmento);
+            }
+        }
+    }
+
+    private FileChannel abrirSegmento(long numero) throws IOException {
+        return FileChannel.open(rutaSegmento(directorio, numero),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    static Path rutaSegmento(Path directorio, long numero) {
+        return directorio.resolve(String.format("%s%012d%s", PREFIJO_SEGMENTO, numero, SUFIJO_SEGMENTO));
+    }
+
+    /// Números de los segmentos que hay en el directorio, en orden
+    static List<Long> segmentos(Path directorio) throws IOException {
+        List<Long> numeros = new ArrayList<>();
+        if (!Files.isDirectory(directorio)) {
+            return numeros;
+        }
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            ficheros.map(f -> f.getFileName().toString())
+                    .filter(n -> n.startsWith(PREFIJO_SEGMENTO) && n.endsWith(SUFIJO_SEGMENTO))
+                    .forEach(n -> numeros.add(Long.parseLong(n.substring(PREFIJO_SEGMENTO.length(), n.length() - SUFIJO_SEGMENTO.length()))));
+        }
+        numeros.sort(null);
+        return numeros;
+    }
+}
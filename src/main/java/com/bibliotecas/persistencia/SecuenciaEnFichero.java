@@ -0,0 +1,137 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.AlmacenSecuencia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Almacén de secuencia que sobrevive a los reinicios: guarda en un fichero el límite hasta el que
+ * se han alquilado identificadores, y lo sincroniza con el disco antes de entregar ninguno por debajo.
+ * Para no sincronizar en cada bloque, el límite se adelanta de una vez por una reserva mayor;
+ * tras un reinicio se continúa desde el límite guardado, así que a lo sumo se pierde esa reserva.
+ * <p>
+ * El fichero tiene dos copias del límite, cada una con un número de escritura y un CRC32C, que se
+ * sobrescriben por turnos. Si la aplicación se detiene a mitad de una escritura, la otra copia sigue
+ * siendo válida y, como se escribe siempre un límite mayor, quedarse con la anterior nunca repite IDs
+ * ya entregados: solo se entregan IDs por debajo de un límite que ya está en disco.
+ * <pre>
+ * copia (24 bytes): long escritura | long límite | int crc | int relleno
+ * </pre>
+ */
+public class SecuenciaEnFichero implements AlmacenSecuencia, AutoCloseable {
+
+    public static final int RESERVA_POR_DEFECTO = 64 * 1024;
+
+    private static final int TAMANIO_COPIA = 24;
+
+    private final FileChannel canal;
+    private final int reserva;
+    private final ByteBuffer copia;
+    private long siguiente;
+    private long limite;
+    private long escrituras;
+
+    private SecuenciaEnFichero(FileChannel canal, int reserva, long limite, long escrituras) {
+        this.canal = canal;
+        this.reserva = reserva;
+        this.copia = ByteBuffer.allocate(TAMANIO_COPIA);
+        this.siguiente = limite;
+        this.limite = limite;
+        this.escrituras = escrituras;
+    }
+
+    /**
+     * Abre el fichero de la secuencia, o lo crea si no existe, con la reserva por defecto.
+     * @param fichero Fichero de la secuencia.
+     * @return El almacén, que continúa por encima de todo lo que se alquiló en ejecuciones anteriores.
+     * @throws IOException Si el fichero no se puede leer o escribir, o ninguna de sus copias es válida.
+     */
+    public static SecuenciaEnFichero abrir(Path fichero) throws IOException {
+        return abrir(fichero, RESERVA_POR_DEFECTO);
+    }
+
+    /**
+     * @param fichero Fichero de la secuencia.
+     * @param reserva Identificadores que se adelantan en disco cada vez que se agota el límite guardado.
+     */
+    public static SecuenciaEnFichero abrir(Path fichero, int reserva) throws IOException {
+        if (reserva <= 0) {
+            throw new IllegalArgumentException("La reserva debe ser positiva.");
+        }
+        FileChannel canal = FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long limite = 1;
+            long escrituras = 0;
+            if (canal.size() > 0) {
+                boolean valida = false;
+                for (int i = 0; i < 2; i++) {
+                    ByteBuffer leida = ByteBuffer.allocate(TAMANIO_COPIA);
+                    canal.read(leida, (long) i * TAMANIO_COPIA);
+                    leida.flip();
+                    if (leida.remaining() == TAMANIO_COPIA && leida.getInt(16) == crc(leida)
+                            && leida.getLong(0) >= escrituras) {
+                        escrituras = leida.getLong(0);
+                        limite = leida.getLong(8);
+                        valida = true;
+                    }
+                }
+                if (!valida) {
+                    throw new IOException("El fichero de secuencia " + fichero + " está dañado.");
+                }
+            }
+            return new SecuenciaEnFichero(canal, reserva, limite, escrituras);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    private static int crc(ByteBuffer copia) {
+        CRC32C crc = new CRC32C();
+        crc.update(copia.slice(0, 16));
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public synchronized long reservar(int cantidad) {
+        if (siguiente + cantidad > limite) {
+            guardarLimite(siguiente + Math.max(cantidad, reserva));
+        }
+        long inicio = siguiente;
+        siguiente += cantidad;
+        return inicio;
+    }
+
+    @Override
+    public synchronized void reservarHasta(long idMaximo) {
+        if (idMaximo >= siguiente) {
+            siguiente = idMaximo + 1;
+        }
+    }
+
+    private void guardarLimite(long nuevoLimite) {
+        long escritura = escrituras + 1;
+        copia.clear();
+        copia.putLong(0, escritura).putLong(8, nuevoLimite).putInt(16, 0).putInt(16, crc(copia)).putInt(20, 0);
+        try {
+            canal.write(copia, (escritura & 1) * TAMANIO_COPIA);
+            canal.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se ha podido guardar la secuencia de identificadores.", e);
+        }
+        escrituras = escritura;
+        limite = nuevoLimite;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        canal.close();
+    }
+}
@@ -0,0 +1,133 @@
+package com.bibliotecas.replicacion;
+
+import com.bibliotecas.model.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Reparte el trabajo de una biblioteca replicada: las escrituras van a la biblioteca primaria y las lecturas
+ * a las réplicas, por turnos, para que las consultas escalen añadiendo réplicas.
+ * Solo se lee de una réplica cuyo retraso no supera el máximo indicado; si ninguna cumple, se lee de la primaria.
+ * Además, las lecturas de un usuario ven siempre sus propias escrituras: por cada grupo de usuarios se anota
+ * el LSN de su última escritura, y se lee de una réplica que ya lo haya alcanzado o, tras esperar como mucho
+ * el retraso máximo, de la primaria. Los usuarios de un mismo grupo comparten la anotación, así que a veces
+ * se espera por la escritura de otro; a cambio, la memoria no crece con el número de usuarios.
+ *
+ * Las publicaciones que se leen de una réplica son copias: para prestarlas se usa su ID.
+ */
+public class BibliotecaReplicada {
+
+    private static final int GRUPOS_USUARIO = 4096;
+
+    private final Biblioteca primaria;
+    private final PrimarioReplicacion primario;
+    private final List<ReplicaBiblioteca> replicas;
+    private final Duration retrasoMaximo;
+    private final AtomicLongArray ultimaEscritura; // LSN de la última escritura de cada grupo de usuarios
+    private final AtomicInteger turno;
+
+    /**
+     * Constructor de la biblioteca replicada.
+     * @param primaria Biblioteca en la que se escribe.
+     * @param primario Primario que publica los cambios de la primaria.
+     * @param replicas Réplicas de las que leer.
+     * @param retrasoMaximo Retraso máximo que se admite en una lectura.
+     */
+    public BibliotecaReplicada(Biblioteca primaria, PrimarioReplicacion primario, List<ReplicaBiblioteca> replicas, Duration retrasoMaximo) {
+        this.primaria = primaria;
+        this.primario = primario;
+        this.replicas = List.copyOf(replicas);
+        this.retrasoMaximo = retrasoMaximo;
+        this.ultimaEscritura = new AtomicLongArray(GRUPOS_USUARIO);
+        this.turno = new AtomicInteger();
+    }
+
+    public Biblioteca primaria() {
+        return primaria;
+    }
+
+    private int grupoUsuario(int idUsuario) {
+        int h = idUsuario * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (GRUPOS_USUARIO - 1);
+    }
+
+    /// Anota que el usuario acaba de escribir; el cambio ya está publicado cuando vuelve la operación
+    private void anotarEscritura(int idUsuario) {
+        ultimaEscritura.accumulateAndGet(grupoUsuario(idUsuario), primario.lsn(), Math::max);
+    }
+
+    public boolean registrarUsuario(int id, String nombre) {
+        boolean registrado = primaria.registrarUsuario(id, nombre);
+        anotarEscritura(id);
+        return registrado;
+    }
+
+    public void agregarPublicacion(Publicacion publicacion) {
+        primaria.agregarPublicacion(publicacion);
+    }
+
+    /**
+     * Presta una publicación en la primaria.
+     * @throws IllegalArgumentException Si no existe ninguna publicación prestable con ese ID.
+     */
+    public ResultadoPrestamo registrarPrestamo(int idUsuario, long idPublicacion) {
+        ResultadoPrestamo resultado = primaria.registrarPrestamo(idUsuario, prestable(idPublicacion));
+        anotarEscritura(idUsuario);
+        return resultado;
+    }
+
+    /**
+     * Registra una devolución en la primaria.
+     * @throws IllegalArgumentException Si no existe ninguna publicación prestable con ese ID.
+     */
+    public ResultadoDevolucion registrarDevolucion(int idUsuario, long idPublicacion) {
+        ResultadoDevolucion resultado = primaria.registrarDevolucion(idUsuario, prestable(idPublicacion));
+        anotarEscritura(idUsuario);
+        return resultado;
+    }
+
+    private PublicacionPrestable prestable(long id) {
+        if (!(primaria.buscarPublicacionPorId(id) instanceof PublicacionPrestable prestable)) {
+            throw new IllegalArgumentException("No existe ninguna publicación prestable con ID " + id);
+        }
+        return prestable;
+    }
+
+    /// Biblioteca de la que hacer una lectura que no depende de ningún usuario
+    public Biblioteca paraLeer() {
+        return elegir(0);
+    }
+
+    /// Biblioteca de la que hacer una lectura que debe ver las escrituras del usuario
+    public Biblioteca paraLeer(int idUsuario) {
+        return elegir(ultimaEscritura.get(grupoUsuario(idUsuario)));
+    }
+
+    private Biblioteca elegir(long lsnMinimo) {
+        int n = replicas.size();
+        if (n == 0) {
+            return primaria;
+        }
+        int inicio = Math.floorMod(turno.getAndIncrement(), n);
+        ReplicaBiblioteca alDia = null;
+        for (int i = 0; i < n; i++) {
+            ReplicaBiblioteca replica = replicas.get((inicio + i) % n);
+            if (replica.retraso().compareTo(retrasoMaximo) <= 0) {
+                if (replica.lsn() >= lsnMinimo) {
+                    return replica.biblioteca();
+                }
+                if (alDia == null) {
+                    alDia = replica;
+                }
+            }
+        }
+        // Ninguna tiene aún la escritura del usuario, que suele estar a punto de llegar
+        if (alDia != null && alDia.esperar(lsnMinimo, retrasoMaximo)) {
+            return alDia.biblioteca();
+        }
+        return primaria;
+    }
+}
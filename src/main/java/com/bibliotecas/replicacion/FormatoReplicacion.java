@@ -0,0 +1,87 @@
+package com.bibliotecas.replicacion;
+
+import com.bibliotecas.model.*;
+import com.bibliotecas.persistencia.FormatoPublicacion;
+import com.bibliotecas.persistencia.Operacion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Formato del flujo que el primario envía a sus réplicas. El flujo es una sucesión de lotes:
+ * <pre>
+ * int longitud | byte tipo | long lsn | long instante | entradas
+ * </pre>
+ * longitud cuenta los bytes que la siguen e instante es el momento del primario, en milisegundos desde
+ * la época, hasta el que el lote está al día. Según el tipo:
+ * <ul>
+ *     <li>CAMBIOS: entradas consecutivas del primario; la primera tiene el número de secuencia (LSN) lsn.</li>
+ *     <li>INSTANTANEA: parte del estado completo del primario, para una réplica nueva o que se ha quedado atrás.</li>
+ *     <li>FIN_INSTANTANEA: sin entradas; la instantánea está completa y refleja el primario hasta lsn.</li>
+ *     <li>LATIDO: sin entradas; la réplica tiene todo hasta lsn, y sigue al día en instante.</li>
+ * </ul>
+ * Cada entrada es un byte de clase seguido de una Operacion, codificada como en el registro de operaciones,
+ * o de una publicación: int longitud | publicación codificada con FormatoPublicacion.
+ */
+final class FormatoReplicacion {
+
+    static final byte CAMBIOS = 1;
+    static final byte INSTANTANEA = 2;
+    static final byte FIN_INSTANTANEA = 3;
+    static final byte LATIDO = 4;
+
+    static final byte OPERACION = 1;
+    static final byte PUBLICACION = 2;
+
+    static final int TAMANIO_CABECERA = 4 + 1 + 8 + 8;
+
+    private FormatoReplicacion() {
+    }
+
+    /**
+     * Crea un lote con las entradas ya codificadas.
+     * @param entradas Bytes de las entradas, de 0 a longitud.
+     */
+    static byte[] lote(byte tipo, long lsn, long instante, byte[] entradas, int longitud) {
+        ByteBuffer lote = ByteBuffer.allocate(TAMANIO_CABECERA + longitud);
+        lote.putInt(lote.capacity() - 4).put(tipo).putLong(lsn).putLong(instante).put(entradas, 0, longitud);
+        return lote.array();
+    }
+
+    static byte[] lote(byte tipo, long lsn, long instante) {
+        return lote(tipo, lsn, instante, new byte[0], 0);
+    }
+
+    /// Espacio que ocupa la entrada de una operación
+    static int tamanioEntrada(Operacion operacion) {
+        return 1 + operacion.tamanioCodificado();
+    }
+
+    static void codificar(Operacion operacion, ByteBuffer destino) {
+        destino.put(OPERACION);
+        operacion.codificar(destino);
+    }
+
+    /// Entrada completa de una publicación
+    static byte[] codificar(Publicacion publicacion) {
+        int longitud = FormatoPublicacion.tamanio(publicacion);
+        ByteBuffer entrada = ByteBuffer.allocate(1 + 4 + longitud);
+        entrada.put(PUBLICACION).putInt(longitud);
+        FormatoPublicacion.codificar(publicacion, entrada);
+        return entrada.array();
+    }
+
+    /**
+     * Lee la publicación de una entrada cuyo byte de clase ya se ha leído.
+     * @throws IOException Si la entrada está dañada.
+     */
+    static Publicacion leerPublicacion(ByteBuffer origen) throws IOException {
+        try {
+            int longitud = origen.getInt();
+            ByteBuffer entrada = origen.slice(origen.position(), longitud);
+            origen.position(origen.position() + longitud);
+            return FormatoPublicacion.leer(entrada);
+        } catch (RuntimeException e) {
+            throw new IOException("Publicación dañada en el flujo de replicación", e);
+        }
+    }}
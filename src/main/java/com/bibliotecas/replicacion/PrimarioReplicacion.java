@@ -0,0 +1,502 @@
+package com.bibliotecas.replicacion;
+
+import com.bibliotecas.model.*;
+import com.bibliotecas.persistencia.Operacion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Primario de una replicación primario/réplica: publica los cambios de una biblioteca para sus réplicas.
+ * Se añade como oyente, igual que RegistroOperaciones, y numera con un LSN cada usuario registrado, cada
+ * publicación añadida y cada préstamo y devolución, que viajan con las mismas Operacion que guarda el registro.
+ * Las colas de espera no se replican, como tampoco se guardan en el registro.
+ *
+ * Los cambios se acumulan en un buffer, y cada réplica los recibe por lotes desde su propio hilo virtual,
+ * de modo que una réplica lenta no frena a las demás ni a la biblioteca. Se conservan los lotes más recientes,
+ * hasta MAXIMO_RETENIDO bytes, para las réplicas que se retrasan o se reconectan; a una réplica nueva, o a una
+ * que se ha quedado más atrás, se le envía antes una instantánea del estado completo. Sin cambios, cada réplica
+ * recibe un latido cada INTERVALO_LATIDO, con el que sabe hasta qué momento está al día.
+ * Las réplicas se conectan en la misma JVM con ReplicaBiblioteca.enProceso o por la red con escuchar.
+ */
+public class PrimarioReplicacion implements OyenteBiblioteca, AutoCloseable {
+
+    static final Duration INTERVALO_LATIDO = Duration.ofMillis(100);
+    private static final int MAXIMO_RETENIDO = 32 << 20;
+    private static final int TAMANIO_BUFFER = 1 << 16;
+    private static final int TAMANIO_LOTE_INSTANTANEA = 1 << 20;
+    private static final int GRUPOS_ORDEN = 64;
+
+    /**
+     * Lote ya codificado con los cambios de desde a hasta, ambos incluidos.
+     */
+    private record Lote(long desde, long hasta, byte[] bytes) {
+    }
+
+    /**
+     * Recibe los lotes de una réplica, en orden. Si lanza una excepción, la réplica deja de recibirlos.
+     */
+    interface Destino {
+        void enviar(byte[] lote) throws IOException;
+    }
+
+    private final Biblioteca biblioteca;
+    private final long epoca; // Distingue esta ejecución del primario: los LSN vuelven a empezar en cada una
+    private final ReentrantLock bloqueo;
+    private final Condition hayCambios;
+    private final ReentrantLock[] bloqueosOrden; // Ordenan los cambios de cada publicación, repartidas por ID
+    private final ExecutorService hilos;
+    private final Set<Closeable> canales; // Puertos de escucha y conexiones abiertas, para cerrarlos al terminar
+
+    // Protegidos por bloqueo; lsn además es volatile para leerlo sin el bloqueo
+    private ByteBuffer pendiente;       // Entradas codificadas que aún no forman un lote
+    private long primeroPendiente;      // LSN de la primera entrada de pendiente
+    private volatile long lsn;          // Último LSN asignado
+    private final ArrayDeque<Lote> retenidos;
+    private long bytesRetenidos;
+    private long descartadoHasta;       // Último LSN de los lotes que ya no se conservan
+    private boolean cerrado;
+
+    private PrimarioReplicacion(Biblioteca biblioteca) {
+        this.biblioteca = biblioteca;
+        this.epoca = ThreadLocalRandom.current().nextLong();
+        this.bloqueo = new ReentrantLock();
+        this.hayCambios = bloqueo.newCondition();
+        this.bloqueosOrden = new ReentrantLock[GRUPOS_ORDEN];
+        for (int i = 0; i < GRUPOS_ORDEN; i++) {
+            bloqueosOrden[i] = new ReentrantLock();
+        }
+        this.hilos = Executors.newVirtualThreadPerTaskExecutor();
+        this.canales = ConcurrentHashMap.newKeySet();
+        this.pendiente = ByteBuffer.allocate(TAMANIO_BUFFER);
+        this.primeroPendiente = 1;
+        this.retenidos = new ArrayDeque<>();
+    }
+
+    /**
+     * Empieza a publicar los cambios de la biblioteca. Lo que ya contiene les llega a las réplicas en la instantánea.
+     * @param biblioteca Biblioteca primaria; las escrituras deben hacerse siempre en ella.
+     * @return El primario, ya suscrito a la biblioteca.
+     */
+    public static PrimarioReplicacion iniciar(Biblioteca biblioteca) {
+        PrimarioReplicacion primario = new PrimarioReplicacion(biblioteca);
+        biblioteca.agregarOyente(primario);
+        return primario;
+    }
+
+    /**
+     * LSN del último cambio publicado. Cuando una operación de la biblioteca termina, su cambio ya está publicado,
+     * así que una réplica con este LSN ya la refleja.
+     */
+    public long lsn() {
+        return lsn;
+    }
+
+    long epoca() {
+        return epoca;
+    }
+
+    @Override
+    public void usuarioRegistrado(int idUsuario, String nombre) {
+        Operacion operacion = Operacion.usuario(idUsuario, nombre);
+        ByteBuffer entrada = ByteBuffer.allocate(FormatoReplicacion.tamanioEntrada(operacion));
+        FormatoReplicacion.codificar(operacion, entrada);
+        anotar(entrada.array(), 1);
+    }
+
+    @Override
+    public void publicacionAgregada(Publicacion publicacion) {
+        anotar(FormatoReplicacion.codificar(publicacion), 1);
+    }
+
+    @Override
+    public void prestamo(int idUsuario, PublicacionPrestable publicacion, ResultadoPrestamo resultado) {
+        if (resultado == ResultadoPrestamo.PRESTADO) {
+            publicarCambios(List.of(new Cambio(idUsuario, publicacion, true)));
+        }
+    }
+
+    @Override
+    public void prestamos(int idUsuario, List<? extends PublicacionPrestable> publicaciones, List<ResultadoPrestamo> resultados) {
+        List<Cambio> cambios = new ArrayList<>(publicaciones.size());
+        for (int i = 0; i < publicaciones.size(); i++) {
+            if (resultados.get(i) == ResultadoPrestamo.PRESTADO) {
+                cambios.add(new Cambio(idUsuario, publicaciones.get(i), true));
+            }
+        }
+        publicarCambios(cambios);
+    }
+
+    @Override
+    public void devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado) {
+        if (Operacion.devolucion(idUsuario, publicacion, resultado) != null) {
+            publicarCambios(List.of(new Cambio(idUsuario, publicacion, false)));
+        }
+    }
+
+    @Override
+    public void devoluciones(List<Devolucion> devoluciones) {
+        List<Cambio> cambios = new ArrayList<>(devoluciones.size());
+        for (Devolucion devolucion : devoluciones) {
+            if (Operacion.devolucion(devolucion.idUsuario(), devolucion.publicacion(), devolucion.resultado()) != null) {
+                cambios.add(new Cambio(devolucion.idUsuario(), devolucion.publicacion(), false));
+            }
+        }
+        publicarCambios(cambios);
+    }
+
+    /**
+     * Préstamo a idUsuario o devolución de idUsuario recibidos en un evento.
+     */
+    private record Cambio(int idUsuario, PublicacionPrestable publicacion, boolean prestamo) {
+    }
+
+    /**
+     * Publica los cambios de un evento con el usuario del evento. Se codifican fuera del bloqueo global, que
+     * solo se toma para añadirlos al buffer y asignarles LSN consecutivos.
+     *
+     * La biblioteca avisa a los oyentes después de soltar el bloqueo del usuario, así que los eventos de una
+     * misma publicación pueden llegar en otro orden que sus cambios (una devolución antes que su préstamo).
+     * Por eso cada publicación tiene un bloqueo de orden, repartido por ID, que se mantiene desde que se
+     * comprueba el cambio hasta que está en el buffer: un préstamo solo se publica si el usuario sigue siendo
+     * el titular, y si no, su devolución se publica, o ya se ha publicado, después. Las devoluciones siempre se
+     * publican; la réplica solo las aplica si el usuario tiene la publicación, y un préstamo a otro usuario
+     * ya implica la devolución anterior.
+     */
+    private void publicarCambios(List<Cambio> cambios) {
+        if (cambios.isEmpty()) {
+            return;
+        }
+        // Los bloqueos de orden se toman por número de grupo, para que dos lotes no se esperen mutuamente
+        boolean[] grupos = new boolean[GRUPOS_ORDEN];
+        for (Cambio cambio : cambios) {
+            grupos[grupoOrden(cambio.publicacion().getId())] = true;
+        }
+        for (int i = 0; i < GRUPOS_ORDEN; i++) {
+            if (grupos[i]) {
+                bloqueosOrden[i].lock();
+            }
+        }
+        try {
+            List<Operacion> operaciones = new ArrayList<>(cambios.size());
+            int tamanio = 0;
+            for (Cambio cambio : cambios) {
+                Operacion operacion = cambio.prestamo()
+                        ? prestamoVigente(cambio.idUsuario(), cambio.publicacion())
+                        : Operacion.devolucion(cambio.idUsuario(), cambio.publicacion().getId());
+                if (operacion != null) {
+                    operaciones.add(operacion);
+                    tamanio += FormatoReplicacion.tamanioEntrada(operacion);
+                }
+            }
+            if (operaciones.isEmpty()) {
+                return;
+            }
+            ByteBuffer entradas = ByteBuffer.allocate(tamanio);
+            for (Operacion operacion : operaciones) {
+                FormatoReplicacion.codificar(operacion, entradas);
+            }
+            anotar(entradas.array(), operaciones.size());
+        } finally {
+            for (int i = GRUPOS_ORDEN - 1; i >= 0; i--) {
+                if (grupos[i]) {
+                    bloqueosOrden[i].unlock();
+                }
+            }
+        }
+    }
+
+    /// Operación del préstamo de un evento, o null si el usuario ya no tiene la publicación; se llama con su bloqueo de orden
+    private Operacion prestamoVigente(int idUsuario, PublicacionPrestable publicacion) {
+        Integer titular = biblioteca.obtenerTitular(publicacion);
+        if (titular == null || titular != idUsuario) {
+            return null;
+        }
+        // Sin fechas se está devolviendo; su evento llegará después
+        return Operacion.prestamo(idUsuario, publicacion, ResultadoPrestamo.PRESTADO);
+    }
+
+    private static int grupoOrden(long idPublicacion) {
+        return (int) ((idPublicacion * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+
+    /// Añade entradas ya codificadas al buffer y les asigna LSN; es lo único que se hace con el bloqueo global
+    private void anotar(byte[] entradas, int numero) {
+        bloqueo.lock();
+        try {
+            reservar(entradas.length).put(entradas);
+            anotarEntradas(numero);
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /// Garantiza espacio en pendiente; se llama con el bloqueo
+    private ByteBuffer reservar(int bytes) {
+        if (pendiente.remaining() < bytes) {
+            ByteBuffer mayor = ByteBuffer.allocate(Math.max(pendiente.capacity() * 2, pendiente.position() + bytes));
+            pendiente.flip();
+            mayor.put(pendiente);
+            pendiente = mayor;
+        }
+        return pendiente;
+    }
+
+    private void anotarEntradas(int entradas) {
+        lsn += entradas;
+        hayCambios.signalAll();
+    }
+
+    /**
+     * Cierra un lote con las entradas pendientes y descarta los más antiguos si se supera MAXIMO_RETENIDO.
+     * Se llama con el bloqueo.
+     */
+    private void cerrarLote(long instante) {
+        if (pendiente.position() == 0) {
+            return;
+        }
+        byte[] bytes = FormatoReplicacion.lote(FormatoReplicacion.CAMBIOS, primeroPendiente, instante, pendiente.array(), pendiente.position());
+        retenidos.addLast(new Lote(primeroPendiente, lsn, bytes));
+        bytesRetenidos += bytes.length;
+        primeroPendiente = lsn + 1;
+        // Tras una ráfaga grande, el buffer vuelve a su tamaño normal
+        pendiente = pendiente.capacity() > TAMANIO_BUFFER * 16 ? ByteBuffer.allocate(TAMANIO_BUFFER) : pendiente.clear();
+        while (bytesRetenidos > MAXIMO_RETENIDO && retenidos.size() > 1) {
+            Lote descartado = retenidos.removeFirst();
+            bytesRetenidos -= descartado.bytes().length;
+            descartadoHasta = descartado.hasta();
+        }
+    }
+
+    /**
+     * Espera cambios posteriores a un LSN durante como mucho INTERVALO_LATIDO.
+     * @return Los lotes con cambios posteriores a desde; un latido si no ha habido cambios; una lista vacía
+     *         si el primario se ha cerrado, o null si esos cambios ya no se conservan y hace falta una instantánea.
+     */
+    private List<Lote> lotesDesde(long desde) throws InterruptedException {
+        bloqueo.lock();
+        try {
+            long espera = INTERVALO_LATIDO.toNanos();
+            while (!cerrado) {
+                long ahora = System.currentTimeMillis();
+                cerrarLote(ahora);
+                if (desde < descartadoHasta) {
+                    return null;
+                }
+                if (lsn > desde) {
+                    List<Lote> resultado = new ArrayList<>();
+                    for (Iterator<Lote> i = retenidos.descendingIterator(); i.hasNext(); ) {
+                        Lote lote = i.next();
+                        if (lote.hasta() <= desde) {
+                            break;
+                        }
+                        resultado.add(0, lote);
+                    }
+                    return resultado;
+                }
+                if (espera <= 0) {
+                    return List.of(new Lote(desde, desde, FormatoReplicacion.lote(FormatoReplicacion.LATIDO, desde, ahora)));
+                }
+                espera = hayCambios.awaitNanos(espera);
+            }
+            return List.of();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /**
+     * Envía los lotes a una réplica desde un hilo virtual hasta que se cierre el primario o falle el envío.
+     * @param epocaReplica Época del primario del que procede el estado de la réplica, o 0 si no tiene estado.
+     * @param desde Último LSN que tiene la réplica.
+     */
+    void suscribir(Destino destino, long epocaReplica, long desde) {
+        hilos.submit(() -> {
+            servir(destino, epocaReplica, desde);
+            return null;
+        });
+    }
+
+    private void servir(Destino destino, long epocaReplica, long desde) {
+        try {
+            if (epocaReplica != epoca) {
+                desde = enviarInstantanea(destino);
+            }
+            while (true) {
+                List<Lote> lotes = lotesDesde(desde);
+                if (lotes == null) {
+                    desde = enviarInstantanea(destino);
+                    continue;
+                }
+                if (lotes.isEmpty()) {
+                    return;
+                }
+                for (Lote lote : lotes) {
+                    destino.enviar(lote.bytes());
+                    desde = lote.hasta();
+                }
+            }
+        } catch (IOException e) {
+            // La réplica se ha desconectado o cerrado; si vuelve, pedirá los cambios desde el último que tiene
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Envía el estado completo de la biblioteca: publicaciones, usuarios y préstamos activos.
+     * Los cambios que se hagan mientras se recorre pueden aparecer en la instantánea y volver a llegar
+     * después con su LSN; la réplica los aplica de forma idempotente, como hace la recuperación del registro.
+     * @return LSN hasta el que llega la instantánea.
+     */
+    private long enviarInstantanea(Destino destino) throws IOException {
+        long hasta;
+        long instante;
+        bloqueo.lock();
+        try {
+            hasta = lsn;
+            instante = System.currentTimeMillis();
+        } finally {
+            bloqueo.unlock();
+        }
+        ByteBuffer entradas = ByteBuffer.allocate(TAMANIO_LOTE_INSTANTANEA);
+        for (Publicacion publicacion : biblioteca.obtenerPublicaciones()) {
+            entradas = agregarAInstantanea(destino, entradas, FormatoReplicacion.codificar(publicacion), hasta, instante);
+        }
+        List<Usuario> usuarios = biblioteca.obtenerUsuarios();
+        for (Usuario usuario : usuarios) {
+            entradas = agregarAInstantanea(destino, entradas, Operacion.usuario(usuario.getIdUsuario(), usuario.getNombre()), hasta, instante);
+        }
+        for (Usuario usuario : usuarios) {
+            for (Publicacion publicacion : biblioteca.obtenerPrestamosActivos(usuario.getIdUsuario())) {
+                PublicacionPrestable prestable = (PublicacionPrestable) publicacion;
+                LocalDate fechaPrestamo = prestable.getFechaPrestamo();
+                LocalDate fechaDevolucion = prestable.getFechaDevolucion();
+                if (fechaPrestamo != null && fechaDevolucion != null) {
+                    Operacion operacion = Operacion.prestamo(usuario.getIdUsuario(), prestable.getId(), fechaPrestamo, fechaDevolucion);
+                    entradas = agregarAInstantanea(destino, entradas, operacion, hasta, instante);
+                }
+            }
+        }
+        if (entradas.position() > 0) {
+            destino.enviar(FormatoReplicacion.lote(FormatoReplicacion.INSTANTANEA, hasta, instante, entradas.array(), entradas.position()));
+        }
+        destino.enviar(FormatoReplicacion.lote(FormatoReplicacion.FIN_INSTANTANEA, hasta, instante));
+        return hasta;
+    }
+
+    private static ByteBuffer agregarAInstantanea(Destino destino, ByteBuffer entradas, Operacion operacion,
+                                                  long hasta, long instante) throws IOException {
+        ByteBuffer entrada = ByteBuffer.allocate(FormatoReplicacion.tamanioEntrada(operacion));
+        FormatoReplicacion.codificar(operacion, entrada);
+        return agregarAInstantanea(destino, entradas, entrada.array(), hasta, instante);
+    }
+
+    /// Añade la entrada al lote de la instantánea en curso, y lo envía antes si no cabe
+    private static ByteBuffer agregarAInstantanea(Destino destino, ByteBuffer entradas, byte[] entrada,
+                                                  long hasta, long instante) throws IOException {
+        if (entradas.remaining() < entrada.length && entradas.position() > 0) {
+            destino.enviar(FormatoReplicacion.lote(FormatoReplicacion.INSTANTANEA, hasta, instante, entradas.array(), entradas.position()));
+            entradas.clear();
+        }
+        if (entradas.remaining() < entrada.length) {
+            entradas = ByteBuffer.allocate(entrada.length);
+        }
+        return entradas.put(entrada);
+    }
+
+    /**
+     * Acepta réplicas por TCP. Cada una envía al conectarse la época y el último LSN que tiene
+     * (long | long), recibe la época del primario (long) y después el flujo de lotes.
+     * @param direccion Dirección de escucha; con el puerto 0 se elige uno libre.
+     * @return Puerto en el que se escucha.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public int escuchar(InetSocketAddress direccion) throws IOException {
+        ServerSocketChannel servidor = ServerSocketChannel.open().bind(direccion);
+        canales.add(servidor);
+        hilos.submit(() -> aceptar(servidor));
+        return ((InetSocketAddress) servidor.getLocalAddress()).getPort();
+    }
+
+    private void aceptar(ServerSocketChannel servidor) {
+        while (servidor.isOpen()) {
+            SocketChannel conexion;
+            try {
+                conexion = servidor.accept();
+            } catch (IOException e) {
+                return; // Se ha cerrado el primario
+            }
+            canales.add(conexion);
+            hilos.submit(() -> atender(conexion));
+        }
+    }
+
+    private void atender(SocketChannel conexion) {
+        try (conexion) {
+            conexion.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer saludo = ByteBuffer.allocate(16);
+            while (saludo.hasRemaining()) {
+                if (conexion.read(saludo) < 0) {
+                    return;
+                }
+            }
+            saludo.flip();
+            long epocaReplica = saludo.getLong();
+            long desde = saludo.getLong();
+            escribir(conexion, ByteBuffer.allocate(8).putLong(epoca).flip());
+            servir(lote -> escribir(conexion, ByteBuffer.wrap(lote)), epocaReplica, desde);
+        } catch (IOException e) {
+            // La réplica se ha desconectado durante el saludo
+        } finally {
+            canales.remove(conexion);
+        }
+    }
+
+    private static void escribir(SocketChannel conexion, ByteBuffer datos) throws IOException {
+        while (datos.hasRemaining()) {
+            conexion.write(datos);
+        }
+    }
+
+    /**
+     * Deja de publicar cambios, cierra las conexiones con las réplicas y espera a que terminen sus hilos.
+     */
+    @Override
+    public void close() {
+        biblioteca.quitarOyente(this);
+        bloqueo.lock();
+        try {
+            cerrado = true;
+            hayCambios.signalAll();
+        } finally {
+            bloqueo.unlock();
+        }
+        for (Closeable canal : canales) {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // Ya no se va a usar
+            }
+        }
+        hilos.close();
+    }
+}
@@ -0,0 +1,291 @@
+package com.bibliotecas.replicacion;
+
+import com.bibliotecas.model.Biblioteca;
+import com.bibliotecas.model.Publicacion;
+import com.bibliotecas.model.PublicacionPrestable;
+import com.bibliotecas.persistencia.Operacion;
+import com.bibliotecas.persistencia.RecuperacionBiblioteca;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Réplica de solo lectura de una biblioteca, que aplica los cambios que le envía un PrimarioReplicacion.
+ * Las lecturas se hacen sobre biblioteca(); las escrituras deben hacerse siempre en el primario.
+ * lsn() dice hasta qué cambio del primario refleja la réplica y retraso() cuánto tiempo hace que estaba
+ * al día, lo que permite a quien lee exigir un retraso máximo o esperar a que lleguen sus propias escrituras.
+ *
+ * Al recibir una instantánea, la réplica la carga en una biblioteca nueva, creada con la fábrica indicada
+ * (para que tenga los mismos oyentes, como un índice de búsqueda), y la sustituye al terminar; mientras tanto
+ * las lecturas siguen sobre la anterior. Si la conexión con el primario se corta, se reintenta pidiendo
+ * los cambios desde el último aplicado.
+ */
+public class ReplicaBiblioteca implements AutoCloseable {
+
+    private static final Duration ESPERA_RECONEXION = Duration.ofMillis(500);
+
+    private final Supplier<Biblioteca> fabrica;
+    private final ReentrantLock bloqueo;
+    private final Condition avanzada;
+    private volatile Biblioteca biblioteca;
+    private volatile long lsn;        // Último cambio aplicado
+    private volatile long instante;   // Momento del primario hasta el que la réplica está al día; 0 si nunca lo ha estado
+    private volatile boolean cerrada;
+
+    // Solo los usa el hilo que recibe los lotes
+    private Biblioteca enConstruccion; // Destino de la instantánea que se está recibiendo
+    private long epoca;                // Época del primario del que procede el estado, o 0
+    private long epocaConexion;        // Época del primario al que se está conectado
+
+    private Thread receptor;
+    private volatile SocketChannel canal;
+
+    private ReplicaBiblioteca(Supplier<Biblioteca> fabrica) {
+        this.fabrica = fabrica;
+        this.bloqueo = new ReentrantLock();
+        this.avanzada = bloqueo.newCondition();
+        this.biblioteca = fabrica.get();
+    }
+
+    /**
+     * Crea una réplica en la misma JVM que el primario.
+     * @param primario Primario del que recibe los cambios.
+     * @param fabrica Crea las bibliotecas de la réplica, vacías.
+     * @return La réplica; se pone al día en segundo plano.
+     */
+    public static ReplicaBiblioteca enProceso(PrimarioReplicacion primario, Supplier<Biblioteca> fabrica) {
+        ReplicaBiblioteca replica = new ReplicaBiblioteca(fabrica);
+        replica.epocaConexion = primario.epoca();
+        primario.suscribir(lote -> replica.recibir(ByteBuffer.wrap(lote, 4, lote.length - 4)), 0, 0);
+        return replica;
+    }
+
+    /**
+     * Crea una réplica que recibe los cambios por TCP de un primario que está escuchando.
+     * @param primario Dirección en la que escucha el primario.
+     * @param fabrica Crea las bibliotecas de la réplica, vacías.
+     * @return La réplica; se conecta y se pone al día en segundo plano.
+     */
+    public static ReplicaBiblioteca conectar(InetSocketAddress primario, Supplier<Biblioteca> fabrica) {
+        ReplicaBiblioteca replica = new ReplicaBiblioteca(fabrica);
+        replica.receptor = Thread.ofVirtual().name("replica-" + primario).unstarted(() -> replica.recibirDe(primario));
+        replica.receptor.start();
+        return replica;
+    }
+
+    /// Biblioteca sobre la que leer; no debe modificarse
+    public Biblioteca biblioteca() {
+        return biblioteca;
+    }
+
+    /// LSN del último cambio del primario aplicado
+    public long lsn() {
+        return lsn;
+    }
+
+    /**
+     * Tiempo que hace que la réplica estaba al día, según el reloj del primario; si está en otra máquina,
+     * incluye la diferencia entre los relojes. Antes de recibir la primera instantánea no tiene límite.
+     */
+    public Duration retraso() {
+        long momento = instante;
+        return momento == 0 ? ChronoUnit.FOREVER.getDuration() : Duration.ofMillis(Math.max(0, System.currentTimeMillis() - momento));
+    }
+
+    /**
+     * Espera a que la réplica haya aplicado un cambio, por ejemplo el de la última escritura de un usuario
+     * antes de leer sus datos.
+     * @param lsnMinimo LSN que debe alcanzar, obtenido de PrimarioReplicacion.lsn tras la escritura.
+     * @param limite Tiempo máximo de espera.
+     * @return true si lo ha alcanzado; false si se ha agotado el tiempo o se ha interrumpido la espera.
+     */
+    public boolean esperar(long lsnMinimo, Duration limite) {
+        if (lsn >= lsnMinimo) {
+            return true;
+        }
+        bloqueo.lock();
+        try {
+            long espera = limite.toNanos();
+            while (lsn < lsnMinimo) {
+                if (espera <= 0 || cerrada) {
+                    return false;
+                }
+                espera = avanzada.awaitNanos(espera);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    private void avanzar(long nuevoLsn, long nuevoInstante) {
+        bloqueo.lock();
+        try {
+            lsn = nuevoLsn;
+            instante = nuevoInstante;
+            avanzada.signalAll();
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    /**
+     * Aplica un lote sin su longitud inicial.
+     * @throws IOException Si el lote está dañado o la réplica se ha cerrado.
+     */
+    private void recibir(ByteBuffer lote) throws IOException {
+        if (cerrada) {
+            throw new ClosedChannelException();
+        }
+        byte tipo = lote.get();
+        long lsnLote = lote.getLong();
+        long instanteLote = lote.getLong();
+        switch (tipo) {
+            case FormatoReplicacion.CAMBIOS -> {
+                if (lsnLote > lsn + 1) {
+                    throw new IOException("Faltan cambios en el flujo de replicación: se esperaba " + (lsn + 1) + " y ha llegado " + lsnLote);
+                }
+                // Tras reconectar, el lote puede empezar antes del último cambio aplicado
+                avanzar(Math.max(lsn, aplicar(lote, biblioteca, lsnLote, lsn)), instanteLote);
+            }
+            case FormatoReplicacion.INSTANTANEA -> {
+                if (enConstruccion == null) {
+                    enConstruccion = fabrica.get();
+                }
+                aplicar(lote, enConstruccion, lsnLote, Long.MIN_VALUE);
+            }
+            case FormatoReplicacion.FIN_INSTANTANEA -> {
+                biblioteca = enConstruccion != null ? enConstruccion : fabrica.get();
+                enConstruccion = null;
+                epoca = epocaConexion;
+                avanzar(lsnLote, instanteLote);
+            }
+            case FormatoReplicacion.LATIDO -> avanzar(lsn, instanteLote);
+            default -> throw new IOException("Tipo de lote desconocido en el flujo de replicación: " + tipo);
+        }
+    }
+
+    /**
+     * Aplica las entradas de un lote con LSN posterior a aplicado, de forma idempotente, como la recuperación
+     * del registro: una devolución solo cambia algo si el usuario tiene la publicación, y un préstamo a otro usuario
+     * da por hecha la devolución anterior. Las publicaciones seguidas se añaden juntas, antes de la siguiente
+     * operación, que puede ser un préstamo de una de ellas.
+     * @return LSN de la última entrada del lote.
+     */
+    private static long aplicar(ByteBuffer lote, Biblioteca destino, long primerLsn, long aplicado) throws IOException {
+        long numero = primerLsn - 1;
+        List<Publicacion> nuevas = new ArrayList<>();
+        while (lote.hasRemaining()) {
+            numero++;
+            byte clase = lote.get();
+            switch (clase) {
+                case FormatoReplicacion.PUBLICACION -> {
+                    Publicacion publicacion = FormatoReplicacion.leerPublicacion(lote);
+                    if (numero > aplicado && destino.buscarPublicacionPorId(publicacion.getId()) == null) {
+                        nuevas.add(publicacion);
+                    }
+                }
+                case FormatoReplicacion.OPERACION -> {
+                    Operacion operacion = Operacion.decodificar(lote);
+                    if (operacion == null) {
+                        throw new IOException("Operación dañada en el flujo de replicación");
+                    }
+                    if (numero > aplicado) {
+                        agregar(destino, nuevas);
+                        RecuperacionBiblioteca.aplicar(operacion, destino);
+                    }
+                }
+                default -> throw new IOException("Entrada desconocida en el flujo de replicación: " + clase);
+            }
+        }
+        agregar(destino, nuevas);
+        return numero;
+    }
+
+    private static void agregar(Biblioteca destino, List<Publicacion> nuevas) {
+        if (!nuevas.isEmpty()) {
+            destino.agregarPublicaciones(nuevas);
+            nuevas.clear();
+        }
+    }
+
+    /// Bucle del receptor: se conecta al primario y aplica sus lotes, reconectando si se corta
+    private void recibirDe(InetSocketAddress primario) {
+        while (!cerrada) {
+            try (SocketChannel conexion = SocketChannel.open(primario)) {
+                canal = conexion;
+                if (cerrada) {
+                    return;
+                }
+                conexion.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                enConstruccion = null;
+                ByteBuffer saludo = ByteBuffer.allocate(16).putLong(epoca).putLong(lsn).flip();
+                while (saludo.hasRemaining()) {
+                    conexion.write(saludo);
+                }
+                epocaConexion = leer(conexion, 8).getLong();
+                while (true) {
+                    recibir(leer(conexion, leer(conexion, 4).getInt()));
+                }
+            } catch (IOException e) {
+                // El primario no está disponible o la conexión se ha cortado; se reintenta desde el último cambio aplicado
+            }
+            try {
+                Thread.sleep(ESPERA_RECONEXION);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static ByteBuffer leer(SocketChannel conexion, int bytes) throws IOException {
+        ByteBuffer datos = ByteBuffer.allocate(bytes);
+        while (datos.hasRemaining()) {
+            if (conexion.read(datos) < 0) {
+                throw new EOFException("El primario ha cerrado la conexión");
+            }
+        }
+        return datos.flip();
+    }
+
+    /**
+     * Deja de recibir cambios. La biblioteca sigue disponible para leer, con el último estado aplicado.
+     */
+    @Override
+    public void close() throws IOException {
+        cerrada = true;
+        bloqueo.lock();
+        try {
+            avanzada.signalAll();
+        } finally {
+            bloqueo.unlock();
+        }
+        SocketChannel conexion = canal;
+        if (conexion != null) {
+            conexion.close();
+        }
+        if (receptor != null) {
+            receptor.interrupt();
+            try {
+                receptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.bibliotecas.servidor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escribe una respuesta JSON sobre un StringBuilder, sin pasar por ningún modelo intermedio.
+ * Lleva la cuenta de si el siguiente valor necesita una coma delante, de modo que los objetos
+ * y las listas se pueden anidar abriéndolos y cerrándolos en orden.
+ */
+final class EscritorJson {
+
+    private static final char[] HEXADECIMAL = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder texto = new StringBuilder(256);
+    private boolean primero = true; // El siguiente valor es el primero de su objeto o lista
+
+    EscritorJson abrirObjeto() {
+        separar();
+        texto.append('{');
+        primero = true;
+        return this;
+    }
+
+    EscritorJson abrirObjeto(String nombre) {
+        nombre(nombre);
+        texto.append('{');
+        primero = true;
+        return this;
+    }
+
+    EscritorJson cerrarObjeto() {
+        texto.append('}');
+        primero = false;
+        return this;
+    }
+
+    EscritorJson abrirLista(String nombre) {
+        nombre(nombre);
+        texto.append('[');
+        primero = true;
+        return this;
+    }
+
+    EscritorJson cerrarLista() {
+        texto.append(']');
+        primero = false;
+        return this;
+    }
+
+    EscritorJson campo(String nombre, String valor) {
+        nombre(nombre);
+        if (valor == null) {
+            texto.append("null");
+        } else {
+            cadena(valor);
+        }
+        return this;
+    }
+
+    EscritorJson campo(String nombre, long valor) {
+        nombre(nombre);
+        texto.append(valor);
+        return this;
+    }
+
+    /**
+     * Escribe el ID de una publicación como cadena: los IDs Snowflake pasan de 2^53 y un cliente que lea
+     * los números JSON como double, como JavaScript, los redondearía.
+     */
+    EscritorJson campoId(String nombre, long id) {
+        nombre(nombre);
+        texto.append('"').append(id).append('"');
+        return this;
+    }
+
+    EscritorJson campo(String nombre, double valor) {
+        nombre(nombre);
+        texto.append(valor);
+        return this;
+    }
+
+    EscritorJson campo(String nombre, boolean valor) {
+        nombre(nombre);
+        texto.append(valor);
+        return this;
+    }
+
+    byte[] bytes() {
+        return texto.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void nombre(String nombre) {
+        separar();
+        cadena(nombre);
+        texto.append(':');
+    }
+
+    private void separar() {
+        if (!primero) {
+            texto.append(',');
+        }
+        primero = false;
+    }
+
+    private void cadena(String valor) {
+        texto.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> texto.append("\\\"");
+                case '\\' -> texto.append("\\\\");
+                case '\n' -> texto.append("\\n");
+                case '\r' -> texto.append("\\r");
+                case '\t' -> texto.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        texto.append("\\u00").append(HEXADECIMAL[c >> 4]).append(HEXADECIMAL[c & 0xF]);
+                    } else {
+                        texto.append(c);
+                    }
+                }
+            }
+        }
+        texto.append('"');
+    }
+}
@@ -0,0 +1,588 @@
+package com.bibliotecas.servidor;
+
+import com.bibliotecas.busqueda.IndiceTextual;
+import com.bibliotecas.busqueda.ResultadoBusqueda;
+import com.bibliotecas.descargas.Contenido;
+import com.bibliotecas.descargas.MotorDescargas;
+import com.bibliotecas.descargas.Rango;
+import com.bibliotecas.importacion.ImportadorCatalogo;
+import com.bibliotecas.model.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servidor HTTP que da acceso a una Biblioteca compartida desde muchos terminales a la vez.
+ * Cada petición se atiende en su propio hilo virtual, de modo que las que esperan a la red o a un
+ * bloqueo de la biblioteca no ocupan un hilo del sistema.
+ * Los parámetros llegan en la consulta de la URL o, en los POST, como formulario
+ * (application/x-www-form-urlencoded); las respuestas son JSON, con los IDs de publicación como cadenas
+ * porque los IDs Snowflake no caben en un double. Rutas:
+ * <ul>
+ *     <li>POST /usuarios: id, nombre.</li>
+ *     <li>GET /usuarios: id.</li>
+ *     <li>POST /publicaciones: tipo y los mismos campos que acepta ImportadorCatalogo; con id, la publicación
+ *     conserva ese ID, como hace la federación de bibliotecas al repartir el catálogo.</li>
+ *     <li>GET /publicaciones: orden (autor o titulo), tipo, despues (ID de la última recibida), tamanio.</li>
+ *     <li>GET /publicacion: id.</li>
+ *     <li>GET /titulos: prefijo; devuelve todas las publicaciones cuyo título empieza por él, ordenadas por título.</li>
+ *     <li>GET /busqueda: q, k.</li>
+ *     <li>POST /prestamos: usuario, publicacion. Si está prestada y queda libre otro ejemplar de su obra, se presta
+ *     ese; la respuesta indica el ID del ejemplar prestado.</li>
+ *     <li>GET /prestamos: usuario; devuelve sus préstamos activos.</li>
+ *     <li>POST /devoluciones: usuario, publicacion.</li>
+ *     <li>POST /prestamos/lote: usuario, publicaciones (IDs separados por comas); "ejemplar" indica el ejemplar
+ *     prestado cuando no es el pedido.</li>
+ *     <li>POST /devoluciones/lote: publicaciones y, opcionalmente, usuario; sin él, cada una la devuelve quien la tiene.</li>
+ *     <li>GET /descargas: usuario, id. Responde con el contenido de la publicación multimedia en lugar de JSON;
+ *     admite la cabecera Range con un rango de bytes para reanudar descargas. Solo existe si el servidor
+ *     se inicia con un MotorDescargas.</li>
+ * </ul>
+ */
+public class ServidorBiblioteca implements AutoCloseable {
+
+    private static final int COLA_CONEXIONES = 1024; // Conexiones pendientes de aceptar que admite el sistema
+    private static final int TAMANIO_MAXIMO_CUERPO = 64 * 1024;
+    private static final int PAGINA_POR_DEFECTO = 50;
+    private static final int PAGINA_MAXIMA = 1000;
+    private static final int RESULTADOS_POR_DEFECTO = 10;
+    private static final int RESULTADOS_MAXIMOS = 100;
+    private static final int LOTE_MAXIMO = 5000;
+
+    private final Biblioteca biblioteca;
+    private final IndiceTextual indiceTextual;
+    private final MotorDescargas descargas;
+    private final HttpServer servidor;
+    private final ExecutorService hilos;
+
+    private ServidorBiblioteca(Biblioteca biblioteca, IndiceTextual indiceTextual, MotorDescargas descargas, HttpServer servidor) {
+        this.biblioteca = biblioteca;
+        this.indiceTextual = indiceTextual;
+        this.descargas = descargas;
+        this.servidor = servidor;
+        this.hilos = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Crea el servidor y empieza a atender peticiones.
+     * @param biblioteca Biblioteca sobre la que operan las peticiones.
+     * @param indiceTextual Índice para las búsquedas; debe estar suscrito a la biblioteca.
+     * @param direccion Dirección y puerto de escucha; con el puerto 0 se elige uno libre.
+     * @return El servidor en marcha.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public static ServidorBiblioteca iniciar(Biblioteca biblioteca, IndiceTextual indiceTextual,
+                                             InetSocketAddress direccion) throws IOException {
+        return iniciar(biblioteca, indiceTextual, null, direccion);
+    }
+
+    /**
+     * Crea el servidor, con descargas de contenidos multimedia, y empieza a atender peticiones.
+     * @param descargas Motor con el que se sirven las descargas, o null para no servirlas.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public static ServidorBiblioteca iniciar(Biblioteca biblioteca, IndiceTextual indiceTextual,
+                                             MotorDescargas descargas, InetSocketAddress direccion) throws IOException {
+        ServidorBiblioteca resultado = new ServidorBiblioteca(biblioteca, indiceTextual, descargas, HttpServer.create(direccion, COLA_CONEXIONES));
+        resultado.registrarRutas();
+        resultado.servidor.setExecutor(resultado.hilos);
+        resultado.servidor.start();
+        return resultado;
+    }
+
+    /// Puerto en el que escucha el servidor
+    public int puerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Deja de aceptar conexiones, da un segundo a los intercambios en curso y espera a que terminen sus hilos.
+     */
+    @Override
+    public void close() {
+        servidor.stop(1);
+        hilos.close();
+    }
+
+    private void registrarRutas() {
+        ruta("/usuarios", this::obtenerUsuario, this::registrarUsuario);
+        ruta("/publicaciones", this::listarPublicaciones, this::agregarPublicacion);
+        ruta("/publicacion", this::obtenerPublicacion, null);
+        ruta("/titulos", this::buscarPorPrefijo, null);
+        ruta("/busqueda", this::buscar, null);
+        ruta("/prestamos", this::listarPrestamos, this::registrarPrestamo);
+        ruta("/devoluciones", null, this::registrarDevolucion);
+        ruta("/prestamos/lote", null, this::registrarPrestamos);
+        ruta("/devoluciones/lote", null, this::registrarDevoluciones);
+        if (descargas != null) {
+            servidor.createContext("/descargas", intercambio -> {
+                try {
+                    descargar(intercambio);
+                } catch (IOException e) {
+                    // El cliente ha cortado la descarga; la reanudará con una cabecera Range
+                } finally {
+                    intercambio.close();
+                }
+            });
+        }
+    }
+
+    /**
+     * Operación de una ruta: recibe los parámetros de la petición y prepara la respuesta.
+     * Un IllegalArgumentException se responde como petición incorrecta, con su mensaje.
+     */
+    private interface Manejador {
+        Respuesta atender(Map<String, String> parametros);
+    }
+
+    private record Respuesta(int estado, EscritorJson cuerpo) {
+    }
+
+    private void ruta(String ruta, Manejador get, Manejador post) {
+        servidor.createContext(ruta, intercambio -> {
+            try {
+                responder(intercambio, atender(intercambio, ruta, get, post));
+            } catch (IOException e) {
+                // El cliente ha cerrado la conexión; no hay a quién responder
+            } finally {
+                intercambio.close();
+            }
+        });
+    }
+
+    private static Respuesta atender(HttpExchange intercambio, String ruta, Manejador get, Manejador post) throws IOException {
+        if (!intercambio.getRequestURI().getPath().equals(ruta)) {
+            return error(404, "Ruta desconocida: " + intercambio.getRequestURI().getPath());
+        }
+        Manejador manejador = switch (intercambio.getRequestMethod()) {
+            case "GET" -> get;
+            case "POST" -> post;
+            default -> null;
+        };
+        if (manejador == null) {
+            intercambio.getResponseHeaders().set("Allow", get == null ? "POST" : post == null ? "GET" : "GET, POST");
+            return error(405, "Método no permitido: " + intercambio.getRequestMethod());
+        }
+        Map<String, String> parametros = new HashMap<>();
+        leerFormulario(intercambio.getRequestURI().getRawQuery(), parametros);
+        if (manejador == post) {
+            InputStream cuerpo = intercambio.getRequestBody();
+            byte[] bytes = cuerpo.readNBytes(TAMANIO_MAXIMO_CUERPO + 1);
+            if (bytes.length > TAMANIO_MAXIMO_CUERPO) {
+                return error(413, "El cuerpo de la petición supera " + TAMANIO_MAXIMO_CUERPO + " bytes.");
+            }
+            leerFormulario(new String(bytes, StandardCharsets.UTF_8), parametros);
+        }
+        try {
+            return manejador.atender(parametros);
+        } catch (IllegalArgumentException e) {
+            return error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            return error(500, "Error interno: " + e);
+        }
+    }
+
+    private static void responder(HttpExchange intercambio, Respuesta respuesta) throws IOException {
+        byte[] bytes = respuesta.cuerpo().bytes();
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(respuesta.estado(), bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    /**
+     * Envía el contenido de una publicación multimedia, entero o el rango que pide la cabecera Range.
+     * Los errores se responden en JSON, como en las demás rutas.
+     */
+    private void descargar(HttpExchange intercambio) throws IOException {
+        if (!intercambio.getRequestURI().getPath().equals("/descargas")) {
+            responder(intercambio, error(404, "Ruta desconocida: " + intercambio.getRequestURI().getPath()));
+            return;
+        }
+        if (!intercambio.getRequestMethod().equals("GET")) {
+            intercambio.getResponseHeaders().set("Allow", "GET");
+            responder(intercambio, error(405, "Método no permitido: " + intercambio.getRequestMethod()));
+            return;
+        }
+        Map<String, String> parametros = new HashMap<>();
+        leerFormulario(intercambio.getRequestURI().getRawQuery(), parametros);
+        int usuario;
+        Publicacion publicacion;
+        try {
+            usuario = entero(parametros, "usuario");
+            publicacion = biblioteca.buscarPublicacionPorId(largo(parametros, "id"));
+        } catch (IllegalArgumentException e) {
+            responder(intercambio, error(400, e.getMessage()));
+            return;
+        }
+        if (!biblioteca.existeUsuario(usuario)) {
+            responder(intercambio, error(404, "El usuario no está registrado."));
+            return;
+        }
+        if (!(publicacion instanceof Multimedia multimedia)) {
+            responder(intercambio, error(404, "No existe ninguna publicación multimedia con ID " + parametros.get("id")));
+            return;
+        }
+        Contenido contenido;
+        try {
+            contenido = descargas.abrir(multimedia);
+        } catch (NoSuchFileException e) {
+            responder(intercambio, error(404, "El contenido de la publicación " + multimedia.getId() + " no está disponible."));
+            return;
+        }
+        try (contenido) {
+            long tamanio = contenido.tamanio();
+            Rango rango;
+            try {
+                rango = Rango.analizar(intercambio.getRequestHeaders().getFirst("Range"), tamanio);
+            } catch (IllegalArgumentException e) {
+                intercambio.getResponseHeaders().set("Content-Range", "bytes */" + tamanio);
+                responder(intercambio, error(416, e.getMessage()));
+                return;
+            }
+            intercambio.getResponseHeaders().set("Content-Type", tipoContenido(multimedia));
+            intercambio.getResponseHeaders().set("Accept-Ranges", "bytes");
+            if (rango != null) {
+                intercambio.getResponseHeaders().set("Content-Range", "bytes " + rango.desde() + "-" + rango.hasta() + "/" + tamanio);
+                intercambio.sendResponseHeaders(206, rango.longitud());
+            } else {
+                rango = Rango.completo(tamanio);
+                // Para HttpServer, una longitud 0 significa cuerpo de longitud desconocida; -1 es sin cuerpo
+                intercambio.sendResponseHeaders(200, tamanio == 0 ? -1 : tamanio);
+            }
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                descargas.transferir(usuario, contenido, rango, Channels.newChannel(salida));
+            }
+        }
+    }
+
+    private static String tipoContenido(Multimedia multimedia) {
+        return switch (multimedia.extension()) {
+            case "mp3" -> "audio/mpeg";
+            case "wav" -> "audio/wav";
+            case "aac" -> "audio/aac";
+            default -> "application/octet-stream";
+        };
+    }
+
+    private Respuesta registrarUsuario(Map<String, String> parametros) {
+        int id = entero(parametros, "id");
+        String nombre = texto(parametros, "nombre");
+        if (!biblioteca.registrarUsuario(id, nombre)) {
+            return error(409, "El usuario con ID " + id + " ya está registrado.");
+        }
+        return new Respuesta(201, new EscritorJson().abrirObjeto().campo("id", id).campo("nombre", nombre).cerrarObjeto());
+    }
+
+    private Respuesta obtenerUsuario(Map<String, String> parametros) {
+        Usuario usuario = biblioteca.obtenerUsuario(entero(parametros, "id"));
+        if (usuario == null) {
+            return error(404, "El usuario no está registrado.");
+        }
+        return new Respuesta(200, new EscritorJson().abrirObjeto()
+                .campo("id", usuario.getIdUsuario()).campo("nombre", usuario.getNombre()).campo("prestamos", usuario.numeroPrestamos())
+                .cerrarObjeto());
+    }
+
+    private Respuesta agregarPublicacion(Map<String, String> parametros) {
+        Publicacion publicacion;
+        if (parametros.containsKey("id")) {
+            long id = largo(parametros, "id");
+            publicacion = ImportadorCatalogo.restaurar(parametros, id);
+            FabricaPublicaciones.reservarIdsHasta(id);
+            // La biblioteca comprueba el ID en el mismo paso que el alta, así que dos peticiones simultáneas no entran ambas
+            try {
+                biblioteca.agregarPublicacion(publicacion);
+            } catch (IllegalArgumentException e) {
+                return error(409, e.getMessage());
+            }
+        } else {
+            publicacion = ImportadorCatalogo.crear(parametros);
+            biblioteca.agregarPublicacion(publicacion);
+        }
+        return new Respuesta(201, publicacion(new EscritorJson().abrirObjeto(), publicacion).cerrarObjeto());
+    }
+
+    private Respuesta listarPublicaciones(Map<String, String> parametros) {
+        OrdenPublicaciones orden = switch (parametros.getOrDefault("orden", "titulo").toLowerCase(Locale.ROOT)) {
+            case "autor" -> OrdenPublicaciones.AUTOR;
+            case "titulo" -> OrdenPublicaciones.TITULO;
+            default -> throw new IllegalArgumentException("Orden desconocido: " + parametros.get("orden"));
+        };
+        Class<? extends Publicacion> tipo = null;
+        if (parametros.containsKey("tipo")) {
+            tipo = switch (parametros.get("tipo").toLowerCase(Locale.ROOT)) {
+                case "libro" -> Libro.class;
+                case "revista" -> Revista.class;
+                case "audiolibro" -> Audiolibro.class;
+                default -> throw new IllegalArgumentException("Tipo de publicación desconocido: " + parametros.get("tipo"));
+            };
+        }
+        Publicacion despues = null;
+        if (parametros.containsKey("despues")) {
+            despues = biblioteca.buscarPublicacionPorId(largo(parametros, "despues"));
+            if (despues == null) {
+                return error(404, "No existe la publicación " + parametros.get("despues"));
+            }
+        }
+        int tamanio = acotado(parametros, "tamanio", PAGINA_POR_DEFECTO, PAGINA_MAXIMA);
+
+        List<Publicacion> pagina = biblioteca.pagina(orden, tipo, despues, tamanio);
+        EscritorJson json = new EscritorJson().abrirObjeto().abrirLista("publicaciones");
+        for (Publicacion publicacion : pagina) {
+            publicacion(json.abrirObjeto(), publicacion).cerrarObjeto();
+        }
+        json.cerrarLista();
+        // Con una página incompleta no hay más; si no, se sigue pidiendo con despues=siguiente
+        if (pagina.size() == tamanio) {
+            json.campoId("siguiente", pagina.get(tamanio - 1).getId());
+        } else {
+            json.campo("siguiente", (String) null);
+        }
+        return new Respuesta(200, json.cerrarObjeto());
+    }
+
+    private Respuesta obtenerPublicacion(Map<String, String> parametros) {
+        Publicacion publicacion = biblioteca.buscarPublicacionPorId(largo(parametros, "id"));
+        if (publicacion == null) {
+            return error(404, "No existe la publicación " + parametros.get("id"));
+        }
+        return new Respuesta(200, publicacion(new EscritorJson().abrirObjeto(), publicacion).cerrarObjeto());
+    }
+
+    private Respuesta buscarPorPrefijo(Map<String, String> parametros) {
+        EscritorJson json = new EscritorJson().abrirObjeto().abrirLista("publicaciones");
+        for (Publicacion publicacion : biblioteca.buscarPublicacionesPorPrefijo(texto(parametros, "prefijo"))) {
+            publicacion(json.abrirObjeto(), publicacion).cerrarObjeto();
+        }
+        return new Respuesta(200, json.cerrarLista().cerrarObjeto());
+    }
+
+    private Respuesta buscar(Map<String, String> parametros) {
+        String consulta = texto(parametros, "q");
+        int k = acotado(parametros, "k", RESULTADOS_POR_DEFECTO, RESULTADOS_MAXIMOS);
+        EscritorJson json = new EscritorJson().abrirObjeto().abrirLista("resultados");
+        for (ResultadoBusqueda resultado : indiceTextual.buscar(consulta, k)) {
+            publicacion(json.abrirObjeto(), resultado.publicacion()).campo("puntuacion", resultado.puntuacion()).cerrarObjeto();
+        }
+        return new Respuesta(200, json.cerrarLista().cerrarObjeto());
+    }
+
+    private Respuesta registrarPrestamo(Map<String, String> parametros) {
+        int usuario = entero(parametros, "usuario");
+        Publicacion publicacion = biblioteca.buscarPublicacionPorId(largo(parametros, "publicacion"));
+        if (publicacion == null) {
+            return error(404, "No existe la publicación " + parametros.get("publicacion"));
+        }
+        if (!(publicacion instanceof PublicacionPrestable prestable)) {
+            return error(409, "La publicación no es prestable.");
+        }
+        ResultadoPrestamo resultado = biblioteca.registrarPrestamo(usuario, prestable);
+        EscritorJson json = new EscritorJson().abrirObjeto().campo("resultado", resultado.name());
+        int estado = switch (resultado) {
+            case PRESTADO -> {
+                // Puede haberse prestado otro ejemplar libre de la misma obra
+                PublicacionPrestable prestada = biblioteca.ejemplarPrestado(usuario, prestable);
+                if (prestada != null) {
+                    json.campoId("publicacion", prestada.getId()).campo("fechaDevolucion", String.valueOf(prestada.getFechaDevolucion()));
+                }
+                yield 200;
+            }
+            case EN_COLA -> {
+                json.campo("posicion", biblioteca.posicionEnCola(usuario, prestable));
+                yield 202;
+            }
+            case LIMITE_ALCANZADO -> 409;
+            case USUARIO_NO_REGISTRADO -> 404;
+        };
+        return new Respuesta(estado, json.cerrarObjeto());
+    }
+
+    private Respuesta registrarDevolucion(Map<String, String> parametros) {
+        int usuario = entero(parametros, "usuario");
+        Publicacion publicacion = biblioteca.buscarPublicacionPorId(largo(parametros, "publicacion"));
+        if (!(publicacion instanceof PublicacionPrestable prestable)) {
+            return error(404, "El usuario no tiene prestada la publicación " + parametros.get("publicacion"));
+        }
+        ResultadoDevolucion resultado = biblioteca.registrarDevolucion(usuario, prestable);
+        int estado = switch (resultado) {
+            case DEVUELTO, DEVUELTO_CON_RETRASO -> 200;
+            case NO_PRESTADO -> 409;
+            case USUARIO_NO_REGISTRADO -> 404;
+        };
+        return new Respuesta(estado, new EscritorJson().abrirObjeto().campo("resultado", resultado.name()).cerrarObjeto());
+    }
+
+    private Respuesta registrarPrestamos(Map<String, String> parametros) {
+        int usuario = entero(parametros, "usuario");
+        List<PublicacionPrestable> publicaciones = prestables(parametros);
+        List<ResultadoPrestamo> resultados = biblioteca.registrarPrestamos(usuario, publicaciones);
+        EscritorJson json = new EscritorJson().abrirObjeto().abrirLista("resultados");
+        for (int i = 0; i < resultados.size(); i++) {
+            PublicacionPrestable publicacion = publicaciones.get(i);
+            json.abrirObjeto().campoId("publicacion", publicacion.getId()).campo("resultado", resultados.get(i).name());
+            PublicacionPrestable prestada = resultados.get(i) == ResultadoPrestamo.PRESTADO ? biblioteca.ejemplarPrestado(usuario, publicacion) : null;
+            if (prestada != null && prestada != publicacion) {
+                json.campoId("ejemplar", prestada.getId());
+            }
+            json.cerrarObjeto();
+        }
+        return new Respuesta(200, json.cerrarLista().cerrarObjeto());
+    }
+
+    private Respuesta registrarDevoluciones(Map<String, String> parametros) {
+        List<PublicacionPrestable> publicaciones = prestables(parametros);
+        List<ResultadoDevolucion> resultados = parametros.containsKey("usuario")
+                ? biblioteca.registrarDevoluciones(entero(parametros, "usuario"), publicaciones)
+                : biblioteca.registrarDevoluciones(publicaciones);
+        EscritorJson json = new EscritorJson().abrirObjeto().abrirLista("resultados");
+        for (int i = 0; i < resultados.size(); i++) {
+            json.abrirObjeto().campoId("publicacion", publicaciones.get(i).getId()).campo("resultado", resultados.get(i).name()).cerrarObjeto();
+        }
+        return new Respuesta(200, json.cerrarLista().cerrarObjeto());
+    }
+
+    /// Publicaciones prestables del parámetro publicaciones; cualquier ID desconocido o no prestable invalida la petición
+    private List<PublicacionPrestable> prestables(Map<String, String> parametros) {
+        String[] ids = texto(parametros, "publicaciones").split(",");
+        if (ids.length > LOTE_MAXIMO) {
+            throw new IllegalArgumentException("Un lote admite como mucho " + LOTE_MAXIMO + " publicaciones.");
+        }
+        List<PublicacionPrestable> publicaciones = new ArrayList<>(ids.length);
+        for (String id : ids) {
+            long numero;
+            try {
+                numero = Long.parseLong(id.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("ID de publicación no válido: " + id);
+            }
+            if (!(biblioteca.buscarPublicacionPorId(numero) instanceof PublicacionPrestable prestable)) {
+                throw new IllegalArgumentException("No existe ninguna publicación prestable con ID " + numero);
+            }
+            publicaciones.add(prestable);
+        }
+        return publicaciones;
+    }
+
+    private Respuesta listarPrestamos(Map<String, String> parametros) {
+        int usuario = entero(parametros, "usuario");
+        if (!biblioteca.existeUsuario(usuario)) {
+            return error(404, "El usuario no está registrado.");
+        }
+        EscritorJson json = new EscritorJson().abrirObjeto().campo("usuario", usuario).abrirLista("prestamos");
+        for (Publicacion publicacion : biblioteca.obtenerPrestamosActivos(usuario)) {
+            publicacion(json.abrirObjeto(), publicacion).cerrarObjeto();
+        }
+        return new Respuesta(200, json.cerrarLista().cerrarObjeto());
+    }
+
+    /**
+     * Añade al objeto abierto los campos de la publicación, con los mismos nombres que usa la importación.
+     */
+    private static EscritorJson publicacion(EscritorJson json, Publicacion publicacion) {
+        json.campoId("id", publicacion.getId())
+                .campo("tipo", publicacion.getClass().getSimpleName().toUpperCase(Locale.ROOT))
+                .campo("titulo", publicacion.getTitulo())
+                .campo("autor", publicacion.getAutor())
+                .campo("anio", publicacion.getAnioPublicacion());
+        if (publicacion instanceof Libro libro) {
+            json.campo("isbn", libro.getISBN()).campo("paginas", libro.getNumPaginas());
+        } else if (publicacion instanceof Revista revista) {
+            json.campo("issn", revista.getISSN())
+                    .campo("edicion", revista.getNumEdicion())
+                    .campo("mes", revista.getMesPublicacion().name())
+                    .campo("categoria", revista.getCategoria().name());
+        } else if (publicacion instanceof Audiolibro audiolibro) {
+            json.campo("narrador", audiolibro.getNarrador())
+                    .campo("duracion", audiolibro.getDuracion())
+                    .campo("idioma", audiolibro.getIdioma())
+                    .campo("formato", audiolibro.getFormatoAudio().name());
+        }
+        if (publicacion instanceof PublicacionPrestable prestable) {
+            boolean prestado = prestable.isPrestado();
+            json.campo("prestado", prestado);
+            if (prestado) {
+                json.campo("fechaDevolucion", String.valueOf(prestable.getFechaDevolucion()));
+            }
+        }
+        return json;
+    }
+
+    private static Respuesta error(int estado, String mensaje) {
+        return new Respuesta(estado, new EscritorJson().abrirObjeto().campo("error", mensaje).cerrarObjeto());
+    }
+
+    /**
+     * Añade al mapa los pares nombre=valor de un formulario o de la consulta de una URL.
+     * Si un nombre se repite, vale el último.
+     */
+    private static void leerFormulario(String texto, Map<String, String> destino) {
+        if (texto == null || texto.isEmpty()) {
+            return;
+        }
+        int inicio = 0;
+        while (inicio <= texto.length()) {
+            int fin = texto.indexOf('&', inicio);
+            if (fin < 0) {
+                fin = texto.length();
+            }
+            if (fin > inicio) {
+                int igual = texto.indexOf('=', inicio);
+                if (igual < 0 || igual > fin) {
+                    igual = fin;
+                }
+                String nombre = URLDecoder.decode(texto.substring(inicio, igual), StandardCharsets.UTF_8);
+                String valor = igual == fin ? "" : URLDecoder.decode(texto.substring(igual + 1, fin), StandardCharsets.UTF_8);
+                destino.put(nombre, valor);
+            }
+            inicio = fin + 1;
+        }
+    }
+
+    private static String texto(Map<String, String> parametros, String nombre) {
+        String valor = parametros.get(nombre);
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("Falta el parámetro " + nombre);
+        }
+        return valor.trim();
+    }
+
+    private static int entero(Map<String, String> parametros, String nombre) {
+        String valor = texto(parametros, nombre);
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + nombre + " no es un número entero: " + valor);
+        }
+    }
+
+    private static long largo(Map<String, String> parametros, String nombre) {
+        String valor = texto(parametros, nombre);
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + nombre + " no es un número entero: " + valor);
+        }
+    }
+
+    /// Parámetro entero opcional, limitado a [1, maximo]
+    private static int acotado(Map<String, String> parametros, String nombre, int porDefecto, int maximo) {
+        return parametros.containsKey(nombre) ? Math.max(1, Math.min(entero(parametros, nombre), maximo)) : porDefecto;
+    }
+}
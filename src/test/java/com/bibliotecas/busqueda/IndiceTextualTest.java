@@ -0,0 +1,128 @@
+package com.bibliotecas.busqueda;
+
+import com.bibliotecas.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ordenación BM25 del índice textual: los casos sencillos se comprueban a mano y, sobre un catálogo
+ * aleatorio, los k mejores de MaxScore se comparan con la puntuación BM25 calculada para todos los documentos.
+ */
+class IndiceTextualTest {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    @Test
+    void elTituloPesaMasQueElAutor() {
+        IndiceTextual indice = new IndiceTextual();
+        Libro enAutor = FabricaPublicaciones.restaurarLibro(1, "Poemas", "Rosalía Castro", "9788437604947", 1880, 200);
+        Libro enTitulo = FabricaPublicaciones.restaurarLibro(2, "Castro y la costa", "Otra Autora", "9788437604947", 1990, 200);
+        indice.agregar(enAutor);
+        indice.agregar(enTitulo);
+
+        List<ResultadoBusqueda> resultados = indice.buscar("castro", 10);
+        assertEquals(List.of(enTitulo, enAutor), publicaciones(resultados));
+        assertTrue(resultados.get(0).puntuacion() > resultados.get(1).puntuacion());
+    }
+
+    @Test
+    void noDistingueMayusculasNiAcentosYUnTerminoRaroPuntuaMas() {
+        IndiceTextual indice = new IndiceTextual();
+        for (int i = 0; i < 20; i++) {
+            indice.agregar(FabricaPublicaciones.restaurarLibro(i + 1, "Historia de España " + i, "Autor " + i, "9788437604947", 2000, 100));
+        }
+        Libro raro = FabricaPublicaciones.restaurarLibro(100, "Historia del Señor de los Anillos", "Tolkien", "9788437604947", 1954, 1200);
+        indice.agregar(raro);
+
+        List<ResultadoBusqueda> resultados = indice.buscar("SENOR historia", 5);
+        assertEquals(5, resultados.size());
+        assertSame(raro, resultados.get(0).publicacion());
+        assertTrue(indice.buscar("inexistente", 5).isEmpty());
+        assertTrue(indice.buscar("historia", 0).isEmpty());
+    }
+
+    @Test
+    void losMejoresCoincidenConLaPuntuacionDeTodosLosDocumentos() {
+        String[] palabras = {"mar", "sol", "luna", "noche", "casa", "río", "camino", "tiempo", "viento", "sombra",
+                "agua", "fuego", "tierra", "cielo", "historia", "amor", "guerra", "paz", "ciudad", "jardín"};
+        SplittableRandom aleatorio = new SplittableRandom(7);
+        IndiceTextual indice = new IndiceTextual();
+        List<Publicacion> documentos = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            // Distribución sesgada para que haya términos frecuentes y raros
+            StringBuilder titulo = new StringBuilder();
+            int longitud = 1 + aleatorio.nextInt(6);
+            for (int j = 0; j < longitud; j++) {
+                titulo.append(palabras[Math.min(aleatorio.nextInt(palabras.length), aleatorio.nextInt(palabras.length))]).append(' ');
+            }
+            Libro libro = FabricaPublicaciones.restaurarLibro(i + 1, titulo.toString().trim(), "Autor " + palabras[aleatorio.nextInt(palabras.length)],
+                    "9788437604947", 2000, 100);
+            documentos.add(libro);
+            indice.agregar(libro);
+        }
+
+        for (String consulta : List.of("mar", "jardín paz", "sol luna noche", "guerra tiempo ciudad amor", "rio")) {
+            int k = 10;
+            List<ResultadoBusqueda> resultados = indice.buscar(consulta, k);
+            double[] esperadas = puntuaciones(documentos, consulta);
+            double[] ordenadas = Arrays.stream(esperadas).filter(p -> p > 0).sorted().toArray();
+            assertEquals(Math.min(k, ordenadas.length), resultados.size(), consulta);
+            for (int i = 0; i < resultados.size(); i++) {
+                ResultadoBusqueda resultado = resultados.get(i);
+                int documento = (int) resultado.publicacion().getId() - 1;
+                assertEquals(esperadas[documento], resultado.puntuacion(), 1e-9, consulta);
+                // La i-ésima puntuación es la i-ésima mayor de todas
+                assertEquals(ordenadas[ordenadas.length - 1 - i], resultado.puntuacion(), 1e-9, consulta);
+            }
+        }
+    }
+
+    private static List<Publicacion> publicaciones(List<ResultadoBusqueda> resultados) {
+        List<Publicacion> publicaciones = new ArrayList<>();
+        for (ResultadoBusqueda resultado : resultados) {
+            publicaciones.add(resultado.publicacion());
+        }
+        return publicaciones;
+    }
+
+    /// BM25 de cada documento calculado sin índice, con el título contando doble como en IndiceTextual
+    private static double[] puntuaciones(List<Publicacion> documentos, String consulta) {
+        List<Map<String, Integer>> frecuencias = new ArrayList<>();
+        Map<String, Integer> documentosConTermino = new HashMap<>();
+        long longitudTotal = 0;
+        for (Publicacion publicacion : documentos) {
+            Map<String, Integer> delDocumento = new HashMap<>();
+            List<String> tokens = new ArrayList<>();
+            Tokenizador.tokenizar(publicacion.getTitulo(), tokens);
+            tokens.forEach(t -> delDocumento.merge(t, 2, Integer::sum));
+            tokens.clear();
+            Tokenizador.tokenizar(publicacion.getAutor(), tokens);
+            tokens.forEach(t -> delDocumento.merge(t, 1, Integer::sum));
+            frecuencias.add(delDocumento);
+            delDocumento.keySet().forEach(t -> documentosConTermino.merge(t, 1, Integer::sum));
+            longitudTotal += delDocumento.values().stream().mapToInt(Integer::intValue).sum();
+        }
+        double longitudMedia = (double) longitudTotal / documentos.size();
+        List<String> terminos = new ArrayList<>();
+        Tokenizador.tokenizar(consulta, terminos);
+        double[] resultado = new double[documentos.size()];
+        for (int d = 0; d < documentos.size(); d++) {
+            Map<String, Integer> delDocumento = frecuencias.get(d);
+            int longitud = delDocumento.values().stream().mapToInt(Integer::intValue).sum();
+            for (String termino : new LinkedHashSet<>(terminos)) {
+                Integer frecuencia = delDocumento.get(termino);
+                if (frecuencia != null) {
+                    int df = documentosConTermino.get(termino);
+                    double idf = Math.log(1 + (documentos.size() - df + 0.5) / (df + 0.5));
+                    double normalizacion = K1 * (1 - B + B * longitud / longitudMedia);
+                    resultado[d] += idf * frecuencia * (K1 + 1) / (frecuencia + normalizacion);
+                }
+            }
+        }
+        return resultado;
+    }
+}
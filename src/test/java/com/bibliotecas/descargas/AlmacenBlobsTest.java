@@ -0,0 +1,119 @@
+package com.bibliotecas.descargas;
+
+import com.bibliotecas.model.Audiolibro;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * El almacén guarda cada contenido una sola vez, comparte los trozos repetidos entre blobs distintos
+ * y conserva blobs y asociaciones al cerrarlo y volver a abrirlo.
+ */
+class AlmacenBlobsTest {
+
+    private static final int TAMANIO = 2 * 1024 * 1024;
+
+    @TempDir
+    Path directorio;
+
+    private static byte[] aleatorio(int tamanio, long semilla) {
+        byte[] datos = new byte[tamanio];
+        SplittableRandom aleatorio = new SplittableRandom(semilla);
+        for (int i = 0; i < tamanio; i++) {
+            datos[i] = (byte) aleatorio.nextInt(256);
+        }
+        return datos;
+    }
+
+    private static byte[] leer(AlmacenBlobs almacen, Huella blob) throws Exception {
+        try (Contenido contenido = almacen.abrir(blob)) {
+            ByteArrayOutputStream salida = new ByteArrayOutputStream();
+            WritableByteChannel destino = Channels.newChannel(salida);
+            long posicion = 0;
+            while (posicion < contenido.tamanio()) {
+                posicion += contenido.transferir(posicion, contenido.tamanio() - posicion, destino);
+            }
+            return salida.toByteArray();
+        }
+    }
+
+    @Test
+    void elMismoContenidoSeGuardaUnaSolaVez() throws Exception {
+        byte[] datos = aleatorio(TAMANIO, 1);
+        try (AlmacenBlobs almacen = AlmacenBlobs.abrir(directorio)) {
+            Huella blob = almacen.guardar(new ByteArrayInputStream(datos));
+            assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(datos)), blob.toString());
+            long tamanio = almacen.tamanioPaquete();
+            assertTrue(tamanio >= TAMANIO);
+
+            assertEquals(blob, almacen.guardar(new ByteArrayInputStream(datos)));
+            assertEquals(tamanio, almacen.tamanioPaquete());
+            assertArrayEquals(datos, leer(almacen, blob));
+        }
+    }
+
+    @Test
+    void unContenidoCasiIgualSoloAnadeLosTrozosQueCambian() throws Exception {
+        byte[] datos = aleatorio(TAMANIO, 2);
+        byte[] editado = datos.clone();
+        // Se cambian unos bytes en medio: los trozos definidos por el contenido antes y después se conservan
+        for (int i = 0; i < 100; i++) {
+            editado[TAMANIO / 2 + i] ^= 0x5A;
+        }
+        try (AlmacenBlobs almacen = AlmacenBlobs.abrir(directorio)) {
+            Huella original = almacen.guardar(new ByteArrayInputStream(datos));
+            long antes = almacen.tamanioPaquete();
+            Huella modificado = almacen.guardar(new ByteArrayInputStream(editado));
+            assertNotEquals(original, modificado);
+            long anadido = almacen.tamanioPaquete() - antes;
+            assertTrue(anadido <= 2L * Troceador.MAXIMO + 4096, "Se han añadido " + anadido + " bytes");
+
+            assertArrayEquals(datos, leer(almacen, original));
+            assertArrayEquals(editado, leer(almacen, modificado));
+        }
+    }
+
+    @Test
+    void losBlobsYLasAsociacionesSobrevivenAlReabrir() throws Exception {
+        byte[] datos = aleatorio(TAMANIO / 4, 3);
+        Audiolibro audiolibro = new Audiolibro("Platero y yo", "Juan Ramón Jiménez", 2015, "Narrador", 3.5,
+                "Español", Audiolibro.FormatoAudio.MP3);
+        Huella blob;
+        try (AlmacenBlobs almacen = AlmacenBlobs.abrir(directorio)) {
+            blob = almacen.guardar(new ByteArrayInputStream(datos));
+            almacen.asociar(audiolibro, blob);
+        }
+
+        try (AlmacenBlobs almacen = AlmacenBlobs.abrir(directorio)) {
+            assertTrue(almacen.contiene(blob));
+            assertEquals(blob, almacen.blobDe(audiolibro));
+            assertArrayEquals(datos, leer(almacen, blob));
+            long tamanio = almacen.tamanioPaquete();
+            assertEquals(blob, almacen.guardar(new ByteArrayInputStream(datos)));
+            assertEquals(tamanio, almacen.tamanioPaquete());
+        }
+    }
+
+    @Test
+    void noSeAsociaNiSeAbreUnBlobQueNoEsta() throws Exception {
+        Huella desconocido = new Huella(1, 2, 3, 4);
+        Audiolibro audiolibro = new Audiolibro("Platero y yo", "Juan Ramón Jiménez", 2015, "Narrador", 3.5,
+                "Español", Audiolibro.FormatoAudio.MP3);
+        try (AlmacenBlobs almacen = AlmacenBlobs.abrir(directorio)) {
+            assertFalse(almacen.contiene(desconocido));
+            assertThrows(IllegalArgumentException.class, () -> almacen.asociar(audiolibro, desconocido));
+            assertThrows(NoSuchFileException.class, () -> almacen.abrir(desconocido));
+        }
+    }
+}
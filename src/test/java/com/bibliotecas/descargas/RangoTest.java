@@ -0,0 +1,54 @@
+package com.bibliotecas.descargas;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Interpretación de la cabecera Range: los rangos válidos se recortan al contenido, los que no se entienden
+ * se ignoran (se envía todo) y los que empiezan después del final no se pueden satisfacer.
+ */
+class RangoTest {
+
+    private static final long TAMANIO = 1000;
+
+    @Test
+    void rangoCompleto() {
+        assertEquals(new Rango(100, 400), Rango.analizar("bytes=100-499", TAMANIO));
+        assertEquals(new Rango(0, 1), Rango.analizar("bytes=0-0", TAMANIO));
+        assertEquals(499, Rango.analizar("bytes=100-499", TAMANIO).hasta());
+    }
+
+    @Test
+    void rangoAbiertoYRangoQuePasaDelFinal() {
+        assertEquals(new Rango(900, 100), Rango.analizar("bytes=900-", TAMANIO));
+        assertEquals(new Rango(900, 100), Rango.analizar("bytes=900-5000", TAMANIO));
+        assertEquals(new Rango(999, 1), Rango.analizar("bytes=999-", TAMANIO));
+    }
+
+    @Test
+    void sufijo() {
+        assertEquals(new Rango(800, 200), Rango.analizar("bytes=-200", TAMANIO));
+        // Un sufijo mayor que el contenido lo pide entero
+        assertEquals(new Rango(0, TAMANIO), Rango.analizar("bytes=-5000", TAMANIO));
+    }
+
+    @Test
+    void seIgnoranLasCabecerasQueNoSeEntienden() {
+        assertNull(Rango.analizar(null, TAMANIO));
+        assertNull(Rango.analizar("items=0-10", TAMANIO));
+        assertNull(Rango.analizar("bytes=0-10,20-30", TAMANIO));
+        assertNull(Rango.analizar("bytes=diez-veinte", TAMANIO));
+        assertNull(Rango.analizar("bytes=100", TAMANIO));
+        // Termina antes de empezar
+        assertNull(Rango.analizar("bytes=500-100", TAMANIO));
+    }
+
+    @Test
+    void rangosNoSatisfacibles() {
+        assertThrows(IllegalArgumentException.class, () -> Rango.analizar("bytes=1000-", TAMANIO));
+        assertThrows(IllegalArgumentException.class, () -> Rango.analizar("bytes=2000-3000", TAMANIO));
+        assertThrows(IllegalArgumentException.class, () -> Rango.analizar("bytes=-0", TAMANIO));
+        assertThrows(IllegalArgumentException.class, () -> Rango.analizar("bytes=-10", 0));
+    }
+}
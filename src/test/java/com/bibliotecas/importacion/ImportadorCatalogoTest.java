@@ -0,0 +1,77 @@
+package com.bibliotecas.importacion;
+
+import com.bibliotecas.model.Biblioteca;
+import com.bibliotecas.model.Libro;
+import com.bibliotecas.model.Revista;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * El importador añade las líneas válidas y anota cada línea rechazada con su número en el fichero y el motivo,
+ * aunque las líneas se repartan en lotes entre varios hilos.
+ */
+class ImportadorCatalogoTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void anotaLasLineasRechazadasConSuNumeroYSuMotivo() throws Exception {
+        String csv = """
+                tipo,titulo,autor,anio,isbn,paginas
+                LIBRO,Niebla,Miguel de Unamuno,1914,9788437604947,300
+                LIBRO,Malo,Autor Cualquiera,1990,9788437604948,100
+                REVISTA,Muy Interesante,Redacción,2024,0317-8471,1,ENERO,CIENCIA
+
+                LIBRO,Sin año,Autor Cualquiera,hace mucho,9788437604947,100
+                PERIODICO,El Diario,Redacción,2024
+                LIBRO,"Títulos, con coma",Autora,2001,0-306-40615-2,250
+                """;
+        Biblioteca biblioteca = new Biblioteca();
+        InformeImportacion informe = new ImportadorCatalogo(2, 2)
+                .importar(new StringReader(csv), FormatoImportacion.CSV, biblioteca);
+
+        assertEquals(3, informe.getAceptadas());
+        assertEquals(3, informe.getRechazadas());
+        assertEquals(3, biblioteca.obtenerPublicaciones().size());
+        assertInstanceOf(Revista.class, biblioteca.buscarPublicacionPorTitulo("Muy Interesante"));
+        assertInstanceOf(Libro.class, biblioteca.buscarPublicacionPorTitulo("Títulos, con coma"));
+
+        List<InformeImportacion.ErrorImportacion> errores = informe.getErrores();
+        assertEquals(List.of(3L, 6L, 7L), errores.stream().map(InformeImportacion.ErrorImportacion::linea).toList());
+        assertTrue(errores.get(0).motivo().contains("ISBN"), errores.get(0).motivo());
+        assertTrue(errores.get(1).motivo().contains("anio"), errores.get(1).motivo());
+        assertTrue(errores.get(2).motivo().contains("PERIODICO"), errores.get(2).motivo());
+
+        Path fichero = directorio.resolve("errores.txt");
+        informe.escribirErrores(fichero);
+        List<String> lineas = Files.readAllLines(fichero, StandardCharsets.UTF_8);
+        assertEquals(3, lineas.size());
+        assertTrue(lineas.get(0).startsWith("3: "), lineas.get(0));
+    }
+
+    @Test
+    void importaJsonLinesYRechazaLosObjetosMalFormados() throws Exception {
+        String jsonl = """
+                {"tipo": "LIBRO", "titulo": "Niebla", "autor": "Miguel de Unamuno", "anio": 1914, "isbn": "9788437604947", "paginas": 300}
+                {"tipo": "LIBRO", "titulo": "Niebla"
+                {"tipo": "AUDIOLIBRO", "titulo": "Platero y yo", "autor": "Juan Ramón Jiménez", "anio": 2015, "narrador": "Narrador", "duracion": 3.5, "idioma": "Español", "formato": "MP3"}
+                {"tipo": "AUDIOLIBRO", "titulo": "Platero y yo", "autor": "Juan Ramón Jiménez", "anio": 2015, "narrador": "Narrador", "duracion": 3.5, "idioma": "Español", "formato": "VINILO"}
+                """;
+        Biblioteca biblioteca = new Biblioteca();
+        InformeImportacion informe = new ImportadorCatalogo(2, 1)
+                .importar(new StringReader(jsonl), FormatoImportacion.JSONL, biblioteca);
+
+        assertEquals(2, informe.getAceptadas());
+        assertEquals(List.of(2L, 4L), informe.getErrores().stream().map(InformeImportacion.ErrorImportacion::linea).toList());
+        assertTrue(informe.getErrores().get(1).motivo().contains("formato"), informe.getErrores().get(1).motivo());
+    }
+}
@@ -0,0 +1,158 @@
+package com.bibliotecas.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Varios hilos piden y devuelven unas pocas publicaciones para muchos usuarios a la vez, de modo que compiten
+ * por las mismas publicaciones y por los mismos bloqueos de usuario. Entre una ronda y la siguiente, con los
+ * hilos parados, se comprueba que ninguna publicación ha quedado prestada a dos usuarios y que la biblioteca,
+ * las publicaciones y los usuarios cuentan lo mismo.
+ */
+class PrestamosConcurrentesTest {
+
+    private static final int HILOS = 8;
+    private static final int USUARIOS = 16;
+    private static final int RONDAS = 20;
+    private static final int OPERACIONES_POR_HILO = 20_000;
+
+    @Test
+    void ningunaPublicacionQuedaPrestadaADosUsuarios() throws Exception {
+        // Pocos bloqueos para que varios usuarios compartan cada uno
+        Biblioteca biblioteca = new Biblioteca(4);
+        for (int id = 1; id <= USUARIOS; id++) {
+            assertTrue(biblioteca.registrarUsuario(id, "Usuario " + id));
+        }
+        List<PublicacionPrestable> publicaciones = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            publicaciones.add(new Libro(i + 1, "Libro " + i, "Autora " + i, "9788491050292", 2015, 300));
+        }
+        // Dos ejemplares de una misma obra, que se prestan a través de su contador
+        publicaciones.add(new Libro(5, "La Regenta", "Leopoldo Alas", "9788437604220", 1884, 800));
+        publicaciones.add(new Libro(6, "La Regenta", "Leopoldo Alas", "9788437604220", 1884, 800));
+        publicaciones.add(new Revista(7, "Muy Interesante", "Redacción", 2024, "0210-1440", 1,
+                Revista.Mes.ENERO, Revista.CategoriaRevista.CIENCIA));
+        biblioteca.agregarPublicaciones(publicaciones);
+        Map<Long, Integer> posiciones = new HashMap<>();
+        for (int i = 0; i < publicaciones.size(); i++) {
+            posiciones.put(publicaciones.get(i).getId(), i);
+        }
+        ContadorPrestamos contador = new ContadorPrestamos(posiciones);
+        biblioteca.agregarOyente(contador);
+
+        try (ExecutorService hilos = Executors.newFixedThreadPool(HILOS)) {
+            for (int ronda = 0; ronda < RONDAS; ronda++) {
+                CountDownLatch salida = new CountDownLatch(1);
+                List<Future<?>> tareas = new ArrayList<>();
+                for (int h = 0; h < HILOS; h++) {
+                    SplittableRandom aleatorio = new SplittableRandom(ronda * HILOS + h);
+                    tareas.add(hilos.submit(() -> {
+                        salida.await();
+                        operar(biblioteca, publicaciones, aleatorio);
+                        return null;
+                    }));
+                }
+                salida.countDown();
+                for (Future<?> tarea : tareas) {
+                    tarea.get(); // Propaga cualquier excepción de los hilos, como un NullPointerException por una fecha borrada
+                }
+                comprobar(biblioteca, publicaciones, contador);
+            }
+        }
+    }
+
+    private static void operar(Biblioteca biblioteca, List<PublicacionPrestable> publicaciones, SplittableRandom aleatorio) {
+        for (int i = 0; i < OPERACIONES_POR_HILO; i++) {
+            int idUsuario = 1 + aleatorio.nextInt(USUARIOS);
+            PublicacionPrestable publicacion = publicaciones.get(aleatorio.nextInt(publicaciones.size()));
+            int operacion = aleatorio.nextInt(10);
+            if (operacion < 5) {
+                biblioteca.registrarPrestamo(idUsuario, publicacion);
+            } else if (operacion < 8) {
+                biblioteca.registrarDevolucion(idUsuario, publicacion);
+            } else if (operacion == 8) {
+                biblioteca.registrarPrestamos(idUsuario, List.of(publicacion, publicaciones.get(aleatorio.nextInt(publicaciones.size()))));
+            } else {
+                // Buzón de devoluciones: cada publicación la devuelve quien la tenga
+                biblioteca.registrarDevoluciones(List.of(publicacion, publicaciones.get(aleatorio.nextInt(publicaciones.size()))));
+            }
+        }
+    }
+
+    private static void comprobar(Biblioteca biblioteca, List<PublicacionPrestable> publicaciones, ContadorPrestamos contador) {
+        Map<Long, Integer> titularSegunUsuarios = new HashMap<>();
+        for (int idUsuario = 1; idUsuario <= USUARIOS; idUsuario++) {
+            List<Vencimiento> prestamos = biblioteca.vencimientosDe(idUsuario);
+            assertTrue(prestamos.size() <= Usuario.LIMITE_PRESTAMOS, "Usuario " + idUsuario + " supera el límite");
+            assertEquals(prestamos.size(), biblioteca.obtenerUsuario(idUsuario).numeroPrestamos());
+            for (Vencimiento vencimiento : prestamos) {
+                PublicacionPrestable publicacion = vencimiento.publicacion();
+                Integer anterior = titularSegunUsuarios.put(publicacion.getId(), idUsuario);
+                assertNull(anterior, publicacion.getTitulo() + " está prestada a " + anterior + " y a " + idUsuario);
+                assertEquals(publicacion.getFechaDevolucion(), vencimiento.fechaDevolucion());
+            }
+        }
+
+        for (int i = 0; i < publicaciones.size(); i++) {
+            PublicacionPrestable publicacion = publicaciones.get(i);
+            Integer titular = biblioteca.obtenerTitular(publicacion);
+            assertEquals(titularSegunUsuarios.get(publicacion.getId()), titular, publicacion.getTitulo());
+            assertEquals(titular != null, publicacion.isPrestado(), publicacion.getTitulo());
+            if (titular != null) {
+                LocalDate hoy = LocalDate.now();
+                assertNotNull(publicacion.getFechaPrestamo(), publicacion.getTitulo());
+                assertNotNull(publicacion.getFechaDevolucion(), publicacion.getTitulo());
+                assertFalse(publicacion.getFechaDevolucion().isBefore(hoy), publicacion.getTitulo());
+            } else {
+                assertNull(publicacion.getFechaDevolucion(), publicacion.getTitulo());
+            }
+            assertEquals(publicacion.isPrestado() ? 1 : 0, contador.prestados.get(i) - contador.devueltos.get(i),
+                    "Préstamos menos devoluciones de " + publicacion.getTitulo());
+        }
+
+        Obra obra = publicaciones.get(4).getObra();
+        assertSame(obra, publicaciones.get(5).getObra());
+        long libres = obra.ejemplares().stream().filter(p -> !p.isPrestado()).count();
+        assertEquals(libres, obra.disponibles());
+    }
+
+    /// Cuenta los préstamos y devoluciones realizados de cada publicación, incluidas las entregas desde la cola
+    private static final class ContadorPrestamos implements OyenteBiblioteca {
+        private final Map<Long, Integer> posiciones;
+        final AtomicIntegerArray prestados;
+        final AtomicIntegerArray devueltos;
+
+        ContadorPrestamos(Map<Long, Integer> posiciones) {
+            this.posiciones = posiciones;
+            this.prestados = new AtomicIntegerArray(posiciones.size());
+            this.devueltos = new AtomicIntegerArray(posiciones.size());
+        }
+
+        @Override
+        public void prestamo(int idUsuario, PublicacionPrestable publicacion, ResultadoPrestamo resultado) {
+            if (resultado == ResultadoPrestamo.PRESTADO) {
+                prestados.incrementAndGet(posiciones.get(publicacion.getId()));
+            }
+        }
+
+        @Override
+        public void devolucion(int idUsuario, PublicacionPrestable publicacion, ResultadoDevolucion resultado) {
+            if (resultado == ResultadoDevolucion.DEVUELTO || resultado == ResultadoDevolucion.DEVUELTO_CON_RETRASO) {
+                devueltos.incrementAndGet(posiciones.get(publicacion.getId()));
+            }
+        }
+    }
+}
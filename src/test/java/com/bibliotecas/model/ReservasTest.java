@@ -0,0 +1,94 @@
+package com.bibliotecas.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Colas de reserva: quien pide una publicación prestada espera su turno, la cola se atiende en orden
+ * de llegada al devolver, y quien cancela deja de ocupar su puesto.
+ */
+class ReservasTest {
+
+    private static Biblioteca bibliotecaConUsuarios(int usuarios) {
+        Biblioteca biblioteca = new Biblioteca(4);
+        for (int id = 1; id <= usuarios; id++) {
+            assertTrue(biblioteca.registrarUsuario(id, "Usuario " + id));
+        }
+        return biblioteca;
+    }
+
+    @Test
+    void laColaSeAtiendeEnOrdenDeLlegada() {
+        Biblioteca biblioteca = bibliotecaConUsuarios(3);
+        Libro libro = new Libro(1, "Niebla", "Miguel de Unamuno", "9788437604947", 1914, 300);
+        biblioteca.agregarPublicacion(libro);
+
+        assertEquals(ResultadoPrestamo.PRESTADO, biblioteca.registrarPrestamo(1, libro));
+        assertEquals(ResultadoPrestamo.EN_COLA, biblioteca.registrarPrestamo(2, libro));
+        assertEquals(ResultadoPrestamo.EN_COLA, biblioteca.registrarPrestamo(3, libro));
+        assertEquals(1, biblioteca.posicionEnCola(2, libro));
+        assertEquals(2, biblioteca.posicionEnCola(3, libro));
+
+        biblioteca.registrarDevolucion(1, libro);
+        assertEquals(2, biblioteca.obtenerTitular(libro));
+        assertEquals(1, biblioteca.posicionEnCola(3, libro));
+
+        biblioteca.registrarDevolucion(2, libro);
+        assertEquals(3, biblioteca.obtenerTitular(libro));
+        assertEquals(List.of(libro), biblioteca.obtenerPrestamosActivos(3));
+    }
+
+    @Test
+    void cancelarQuitaElPuestoYAdelantaAlResto() {
+        Biblioteca biblioteca = bibliotecaConUsuarios(3);
+        Libro libro = new Libro(1, "Niebla", "Miguel de Unamuno", "9788437604947", 1914, 300);
+        biblioteca.agregarPublicacion(libro);
+        biblioteca.registrarPrestamo(1, libro);
+        biblioteca.registrarPrestamo(2, libro);
+        biblioteca.registrarPrestamo(3, libro);
+
+        assertTrue(biblioteca.cancelarReserva(2, libro));
+        assertFalse(biblioteca.cancelarReserva(2, libro));
+        assertEquals(0, biblioteca.posicionEnCola(2, libro));
+        assertEquals(1, biblioteca.posicionEnCola(3, libro));
+
+        biblioteca.registrarDevolucion(1, libro);
+        assertEquals(3, biblioteca.obtenerTitular(libro));
+        assertTrue(biblioteca.obtenerPrestamosActivos(2).isEmpty());
+    }
+
+    @Test
+    void cancelarAlUltimoQueEsperaDejaLaPublicacionLibreAlDevolverla() {
+        Biblioteca biblioteca = bibliotecaConUsuarios(2);
+        Libro libro = new Libro(1, "Niebla", "Miguel de Unamuno", "9788437604947", 1914, 300);
+        biblioteca.agregarPublicacion(libro);
+        biblioteca.registrarPrestamo(1, libro);
+        biblioteca.registrarPrestamo(2, libro);
+
+        assertTrue(biblioteca.cancelarReserva(2, libro));
+        biblioteca.registrarDevolucion(1, libro);
+        assertNull(biblioteca.obtenerTitular(libro));
+        assertFalse(libro.isPrestado());
+    }
+
+    @Test
+    void laReservaDeUnaObraSeAtiendeConCualquierEjemplar() {
+        Biblioteca biblioteca = bibliotecaConUsuarios(3);
+        Libro primero = new Libro(1, "La Regenta", "Leopoldo Alas", "9788437604220", 1884, 800);
+        Libro segundo = new Libro(2, "La Regenta", "Leopoldo Alas", "9788437604220", 1884, 800);
+        biblioteca.agregarPublicaciones(List.of(primero, segundo));
+
+        assertEquals(ResultadoPrestamo.PRESTADO, biblioteca.registrarPrestamo(1, primero));
+        // El primer ejemplar está prestado, pero queda otro de la misma obra
+        assertEquals(ResultadoPrestamo.PRESTADO, biblioteca.registrarPrestamo(2, primero));
+        assertSame(segundo, biblioteca.ejemplarPrestado(2, primero));
+        assertEquals(ResultadoPrestamo.EN_COLA, biblioteca.registrarPrestamo(3, primero));
+
+        // Se devuelve el ejemplar por el que no preguntó: también le vale
+        biblioteca.registrarDevolucion(2, segundo);
+        assertEquals(3, biblioteca.obtenerTitular(segundo));
+    }
+}
@@ -0,0 +1,61 @@
+package com.bibliotecas.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dígitos de control de ISBN-10, ISBN-13 e ISSN, con y sin separadores.
+ */
+class ValidacionesTest {
+
+    @Test
+    void aceptaISBNConDigitoDeControlCorrecto() {
+        assertTrue(Validaciones.esISBN("9788437604947"));
+        assertTrue(Validaciones.esISBN("978-84-376-0494-7"));
+        assertTrue(Validaciones.esISBN("978 84 376 0494 7"));
+        assertTrue(Validaciones.esISBN("0306406152"));
+        assertTrue(Validaciones.esISBN("0-306-40615-2"));
+        assertTrue(Validaciones.esISBN("080442957X"));
+        assertTrue(Validaciones.esISBN("080442957x"));
+    }
+
+    @Test
+    void rechazaISBNConDigitoDeControlIncorrecto() {
+        assertFalse(Validaciones.esISBN("9788437604948"));
+        assertFalse(Validaciones.esISBN("0306406153"));
+        // Dos dígitos intercambiados cambian la suma ponderada
+        assertFalse(Validaciones.esISBN("0360406152"));
+    }
+
+    @Test
+    void rechazaISBNMalFormados() {
+        assertFalse(Validaciones.esISBN(null));
+        assertFalse(Validaciones.esISBN(""));
+        assertFalse(Validaciones.esISBN("978843760494"));
+        assertFalse(Validaciones.esISBN("97884376049470"));
+        assertFalse(Validaciones.esISBN("-9788437604947"));
+        assertFalse(Validaciones.esISBN("9788437604947-"));
+        assertFalse(Validaciones.esISBN("97884376049X7"));
+        // La X solo vale como dígito de control de un ISBN-10
+        assertFalse(Validaciones.esISBN("978843760494X"));
+    }
+
+    @Test
+    void compruebaElDigitoDeControlDelISSN() {
+        assertTrue(Validaciones.esISSN("0317-8471"));
+        assertTrue(Validaciones.esISSN("2434-561X"));
+        assertTrue(Validaciones.esISSN("2434-561x"));
+        assertFalse(Validaciones.esISSN("0317-8472"));
+        assertFalse(Validaciones.esISSN("2434-5610"));
+    }
+
+    @Test
+    void rechazaISSNMalFormados() {
+        assertFalse(Validaciones.esISSN(null));
+        assertFalse(Validaciones.esISSN("03178471"));
+        assertFalse(Validaciones.esISSN("0317 8471"));
+        assertFalse(Validaciones.esISSN("0317-847"));
+        assertFalse(Validaciones.esISSN("X317-8471"));
+    }
+}
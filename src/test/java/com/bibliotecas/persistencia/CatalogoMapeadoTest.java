@@ -0,0 +1,88 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Se escribe un catálogo con EscritorCatalogo, se abre con CatalogoMapeado y se comprueba que cada
+ * publicación vuelve con su ID, sus campos y su tipo, y que las búsquedas la encuentran.
+ */
+class CatalogoMapeadoTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void lasPublicacionesVuelvenIgualesTrasEscribirYAbrir() throws Exception {
+        List<Publicacion> publicaciones = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            publicaciones.add(new Libro("Título " + (499 - i), "Autor " + i, "978-84-376-0494-7", 1990, 100 + i));
+        }
+        Revista revista = new Revista("Muy Interesante", "Redacción", 2024, "0210-1440", 7,
+                Revista.Mes.JULIO, Revista.CategoriaRevista.CIENCIA);
+        Audiolibro audiolibro = new Audiolibro("Platero y yo", "Juan Ramón Jiménez", 2015, "Narrador", 3.5,
+                "Español", Audiolibro.FormatoAudio.MP3);
+        publicaciones.add(revista);
+        publicaciones.add(audiolibro);
+        Path fichero = directorio.resolve("catalogo.bin");
+        EscritorCatalogo.escribir(fichero, publicaciones);
+
+        try (CatalogoMapeado catalogo = CatalogoMapeado.abrir(fichero)) {
+            assertEquals(publicaciones.size(), catalogo.tamanio());
+            for (Publicacion original : publicaciones) {
+                Publicacion leida = catalogo.buscarPorId(original.getId());
+                assertNotNull(leida, original.getTitulo());
+                assertSame(original.getClass(), leida.getClass());
+                assertEquals(original.getTitulo(), leida.getTitulo());
+                assertEquals(original.getAutor(), leida.getAutor());
+                assertEquals(original.getAnioPublicacion(), leida.getAnioPublicacion());
+            }
+            long mayorId = publicaciones.stream().mapToLong(Publicacion::getId).max().getAsLong();
+            assertNull(catalogo.buscarPorId(mayorId + 1));
+
+            Libro libro = (Libro) catalogo.buscarPorId(publicaciones.get(0).getId());
+            assertEquals("978-84-376-0494-7", libro.getISBN());
+            assertEquals(100, libro.getNumPaginas());
+
+            Revista revistaLeida = (Revista) catalogo.buscarPorTitulo("muy interesante").get(0);
+            assertEquals(revista.getId(), revistaLeida.getId());
+            assertEquals(7, revistaLeida.getNumEdicion());
+            assertEquals(Revista.Mes.JULIO, revistaLeida.getMesPublicacion());
+            assertEquals(Revista.CategoriaRevista.CIENCIA, revistaLeida.getCategoria());
+            assertEquals(List.of(revistaLeida), catalogo.buscarPorISSN("02101440"));
+
+            Audiolibro audiolibroLeido = (Audiolibro) catalogo.buscarPorTitulo("Platero y yo").get(0);
+            assertEquals("Narrador", audiolibroLeido.getNarrador());
+            assertEquals(3.5, audiolibroLeido.getDuracion());
+            assertEquals("Español", audiolibroLeido.getIdioma());
+            assertEquals(Audiolibro.FormatoAudio.MP3, audiolibroLeido.getFormatoAudio());
+
+            assertEquals(500, catalogo.buscarPorISBN("9788437604947").size());
+            // Los registros están ordenados por título, así que el rango sale en orden
+            List<Publicacion> rango = catalogo.buscarPorRango("título 10", "título 11");
+            assertFalse(rango.isEmpty());
+            for (int i = 1; i < rango.size(); i++) {
+                assertTrue(rango.get(i - 1).getTitulo().toLowerCase(Locale.ROOT).compareTo(rango.get(i).getTitulo().toLowerCase(Locale.ROOT)) <= 0);
+            }
+        }
+    }
+
+    @Test
+    void cargarDosVecesLaMismaPosicionDevuelveElMismoObjeto() throws Exception {
+        Path fichero = directorio.resolve("catalogo.bin");
+        EscritorCatalogo.escribir(fichero, List.of(new Libro("Niebla", "Miguel de Unamuno", "9788437604947", 1914, 300)));
+        try (CatalogoMapeado catalogo = CatalogoMapeado.abrir(fichero)) {
+            Publicacion primera = catalogo.cargar(0);
+            assertSame(primera, catalogo.cargar(0));
+            assertSame(primera, catalogo.buscarPorId(primera.getId()));
+        }
+    }
+}
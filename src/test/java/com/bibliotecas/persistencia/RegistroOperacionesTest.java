@@ -0,0 +1,96 @@
+package com.bibliotecas.persistencia;
+
+import com.bibliotecas.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Se registran operaciones en el registro, se cierra y se recupera una biblioteca nueva a partir de él:
+ * debe quedar con los mismos usuarios, publicaciones y préstamos, también con una entrada cortada al final
+ * del último segmento, que se descarta y se trunca.
+ */
+class RegistroOperacionesTest {
+
+    @TempDir
+    Path directorio;
+
+    /// Registra dos usuarios, un libro prestado a Ana, un audiolibro y una revista prestada y devuelta
+    private Libro registrarOperaciones() throws Exception {
+        Biblioteca biblioteca = new Biblioteca();
+        Libro libro;
+        try (RegistroOperaciones registro = RegistroOperaciones.abrir(directorio, PoliticaSincronizacion.duradera())) {
+            biblioteca.agregarOyente(registro);
+            biblioteca.registrarUsuario(1, "Ana");
+            biblioteca.registrarUsuario(2, "Luis");
+            libro = new Libro("Niebla", "Miguel de Unamuno", "9788437604947", 1914, 300);
+            Revista revista = new Revista("Muy Interesante", "Redacción", 2024, "0210-1440", 1,
+                    Revista.Mes.ENERO, Revista.CategoriaRevista.CIENCIA);
+            biblioteca.agregarPublicacion(libro);
+            biblioteca.agregarPublicacion(revista);
+            biblioteca.agregarPublicacion(new Audiolibro("Platero y yo", "Juan Ramón Jiménez", 2015, "Narrador",
+                    3.5, "Español", Audiolibro.FormatoAudio.MP3));
+            assertEquals(ResultadoPrestamo.PRESTADO, biblioteca.registrarPrestamo(1, libro));
+            assertEquals(ResultadoPrestamo.PRESTADO, biblioteca.registrarPrestamo(2, revista));
+            biblioteca.registrarDevolucion(2, revista);
+        }
+        return libro;
+    }
+
+    private static void comprobarRecuperada(Biblioteca recuperada, Libro libro) {
+        assertTrue(recuperada.existeUsuario(1));
+        assertTrue(recuperada.existeUsuario(2));
+        assertEquals(3, recuperada.obtenerPublicaciones().size());
+        Publicacion encontrada = recuperada.buscarPublicacionPorId(libro.getId());
+        assertInstanceOf(Libro.class, encontrada);
+        assertEquals("Niebla", encontrada.getTitulo());
+        assertEquals(1, recuperada.obtenerTitular((PublicacionPrestable) encontrada));
+        assertEquals(List.of(encontrada), recuperada.obtenerPrestamosActivos(1));
+        assertTrue(recuperada.obtenerPrestamosActivos(2).isEmpty());
+    }
+
+    @Test
+    void recuperaUsuariosPublicacionesYPrestamos() throws Exception {
+        Libro libro = registrarOperaciones();
+
+        Biblioteca recuperada = new Biblioteca();
+        assertEquals(8, RecuperacionBiblioteca.recuperar(directorio, recuperada));
+        comprobarRecuperada(recuperada, libro);
+    }
+
+    @Test
+    void descartaYTruncaUnaEntradaCortadaAlFinal() throws Exception {
+        Libro libro = registrarOperaciones();
+        List<Long> segmentos = RegistroOperaciones.segmentos(directorio);
+        Path ultimo = RegistroOperaciones.rutaSegmento(directorio, segmentos.get(segmentos.size() - 1));
+        long tamanio = Files.size(ultimo);
+        // Cabecera de una entrada de 40 bytes de la que solo llegaron a escribirse 3
+        Files.write(ultimo, new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5, 6, 7}, StandardOpenOption.APPEND);
+
+        Biblioteca recuperada = new Biblioteca();
+        assertEquals(8, RecuperacionBiblioteca.recuperar(directorio, recuperada));
+        comprobarRecuperada(recuperada, libro);
+        assertEquals(tamanio, Files.size(ultimo));
+    }
+
+    @Test
+    void laInstantaneaConservaLasPublicacionesYSusPrestamos() throws Exception {
+        Libro libro = registrarOperaciones();
+        Biblioteca intermedia = new Biblioteca();
+        RecuperacionBiblioteca.recuperar(directorio, intermedia);
+        try (RegistroOperaciones registro = RegistroOperaciones.abrir(directorio, PoliticaSincronizacion.duradera())) {
+            intermedia.agregarOyente(registro);
+            registro.crearInstantanea(intermedia);
+        }
+
+        Biblioteca recuperada = new Biblioteca();
+        RecuperacionBiblioteca.recuperar(directorio, recuperada);
+        comprobarRecuperada(recuperada, libro);
+    }
+}